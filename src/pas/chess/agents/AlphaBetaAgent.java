@@ -17,8 +17,13 @@ import edu.bu.chess.streaming.Streamer;
 import edu.bu.chess.utils.Pair;
 
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -29,11 +34,31 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 
 // JAVA PROJECT IMPORTS
 import src.pas.chess.heuristics.CustomHeuristics;
+import src.pas.chess.heuristics.HeuristicParameters;
+import src.pas.chess.heuristics.LeafBatch;
+import src.pas.chess.instrumentation.SearchRecorder;
+import src.pas.chess.instrumentation.SearchStats;
 import src.pas.chess.moveorder.CustomMoveOrderer;
+import src.pas.chess.nnue.NnueEvaluator;
+import src.pas.chess.replay.ReplayWriter;
+import src.pas.chess.search.MoveList;
+import src.pas.chess.search.PackedMove;
+import src.pas.chess.search.PositionHashStack;
+import src.pas.chess.search.PvLine;
+import src.pas.chess.search.SearchAbortedException;
+import src.pas.chess.search.SearchLimits;
+import src.pas.chess.search.SearchOptions;
+import src.pas.chess.search.SearchSnapshot;
+import src.pas.chess.search.SearchStack;
+import src.pas.chess.search.TranspositionTable;
+import src.pas.chess.streaming.AsyncPgnStreamer;
+import src.pas.chess.tuning.TexelFeatures;
+import src.pas.chess.utils.Zobrist;
 
 
 public class AlphaBetaAgent
@@ -47,16 +72,408 @@ public class AlphaBetaAgent
 
 		private DFSTreeNode rootNode;
 		private final int maxDepth;
+		private int deepestPly;  // for the search stats
+		private int completedDepth;  // the deepest depth searched in full
+		private final SearchRecorder recorder;  // JFR events
+		private SearchStack stack;              // per ply state of the search thread, taken when the search starts
+		private NnueEvaluator evaluator;        // null: the leaves are evaluated with CustomHeuristics
+		private LeafBatch leafBatch;            // null: the leaves below a frontier node are evaluated one at a time
+		private final SearchOptions options;    // the engine's (installed on the thread building it) or the agent's
+		private TranspositionTable table;       // the options', null when they have none
+		private SearchLimits limits;            // the options', null: search to getMaxDepth() no matter what
+		private int ply;
 
 		public AlphaBetaSearcher(DFSTreeNode rootNode,
                                  int maxDepth)
 		{
 			this.rootNode = rootNode;
 			this.maxDepth = maxDepth;
+			this.deepestPly = 0;
+			this.completedDepth = 0;
+			this.recorder = new SearchRecorder("AlphaBetaAgent", AlphaBetaAgent.this.getSearchStats());
+			this.stack = null;
+			this.evaluator = null;
+			this.leafBatch = null;
+			SearchOptions threadOptions = SearchOptions.ofCurrentThread();
+			this.options = threadOptions != null ? threadOptions : AlphaBetaAgent.this.getSearchOptions();
+			this.table = null;
+			this.limits = null;
+			this.ply = 0;
 		}
 
 		public DFSTreeNode getRootNode() { return this.rootNode; }
 		public int getMaxDepth() { return this.maxDepth; }
+		public SearchRecorder getRecorder() { return this.recorder; }
+		public SearchStack getSearchStack() { return this.stack; }
+		public MoveList getMoveList() { return this.getSearchStack().getMoveList(); }
+		public NnueEvaluator getEvaluator() { return this.evaluator; }
+		public LeafBatch getLeafBatch() { return this.leafBatch; }
+		public SearchOptions getSearchOptions() { return this.options; }
+		public TranspositionTable getTranspositionTable() { return this.table; }
+		public SearchLimits getSearchLimits() { return this.limits; }
+
+		/**
+		 * @return the principal variation of the last search, as packed moves from the root
+		 */
+		public int[] getPrincipalVariation() { return this.getSearchStack().getPrincipalVariation(); }
+
+		/**
+		 * Get the per search state ready for a search from rootNode, on the thread that runs it.
+		 */
+		private void startSearch(DFSTreeNode rootNode)
+		{
+			// the stack belongs to the thread running the search (not the one that built this searcher)
+			this.stack = SearchStack.forCurrentThread(this.getMaxDepth() + 2);
+			this.getSearchStack().startSearch(rootNode.getGame());
+			this.table = this.getSearchOptions().getTranspositionTable();
+			this.limits = this.getSearchOptions().getSearchLimits();
+			this.evaluator = NnueEvaluator.forPlayer(rootNode.getMaxPlayer().getPlayerType(), this.getMaxDepth() + 2);
+			if(this.getEvaluator() != null)
+			{
+				this.getEvaluator().refresh(0, rootNode.getGame());
+			} else if(Boolean.getBoolean(AlphaBetaAgent.BATCH_LEAVES_PROPERTY))
+			{
+				this.leafBatch = LeafBatch.forCurrentParameters();
+			}
+		}
+
+		/**
+		 * Build the child of node reached by the move at (ply, moveIdx) of the move list.
+		 */
+		private DFSTreeNode makeChild(DFSTreeNode node, int ply, int moveIdx)
+		{
+			Move move = this.getMoveList().getMove(ply, moveIdx);
+			DFSTreeNode child = this.getRecorder().makeChild(node, move);
+			if(this.getEvaluator() != null)
+			{
+				this.getEvaluator().update(ply + 1, child.getGame());
+			}
+			return child;
+		}
+
+		/**
+		 * The heuristic value of a leaf at ply, from the max player's point of view.
+		 */
+		private double evaluate(DFSTreeNode node, int ply)
+		{
+			if(this.getEvaluator() != null)
+			{
+				return this.getRecorder().evaluate(node, leaf -> this.getEvaluator().evaluate(ply, leaf));
+			}
+			return this.getRecorder().evaluate(node, CustomHeuristics::getMaxPlayerHeuristicValue);
+		}
+
+		/**
+		 * The children of a frontier node (depth 1) are all leaves: build every one of them, score the ones that need
+		 * the heuristic in one LeafBatch pass, and back the scores up. Every child is scored, so the node gets its exact
+		 * value instead of a bound; the best child (the first in move order among equals, as in alphaBetaSearch) is the
+		 * move that should have been tried first, so it becomes the ply's killer when the node fails high.
+		 */
+		private DFSTreeNode searchFrontier(DFSTreeNode node, int ply, int numMoves, double alpha, double beta)
+		{
+			LeafBatch batch = this.getLeafBatch();
+			batch.clear();
+			DFSTreeNode[] children = new DFSTreeNode[numMoves];
+			int[] leafIdxs = new int[numMoves];
+			PlayerType maxPlayerType = node.getMaxPlayer().getPlayerType();
+			for(int childIdx = 0; childIdx < numMoves; ++childIdx)
+			{
+				DFSTreeNode child = this.makeChild(node, ply, childIdx);
+				children[childIdx] = child;
+				leafIdxs[childIdx] = -1;
+				AlphaBetaAgent.this.getSearchStats().incNodes();
+				this.deepestPly = Math.max(this.deepestPly, ply + 1);
+
+				this.getSearchStack().enterPosition(child.getGame(), this.getMoveList().get(ply, childIdx));
+				if(child.isTerminal())
+				{
+					// keeps the utility it was built with
+				} else if(this.getSearchStack().isRepetition())
+				{
+					child.setMaxPlayerUtilityValue(PositionHashStack.DRAW_UTILITY);
+				} else
+				{
+					AlphaBetaAgent.this.getSearchStats().incLeafEvaluations();
+					leafIdxs[childIdx] = this.getRecorder().addLeaf(batch, child.getGame(), maxPlayerType);
+				}
+				this.getSearchStack().leavePosition();
+			}
+			double[] scores = this.getRecorder().evaluate(batch);
+
+			boolean isMaxNode = node.getType() == DFSTreeNodeType.MAX;
+			DFSTreeNode bestChild = null;
+			int bestIdx = -1;
+			int cutoffIdx = -1;
+			double bestUtilityValue = isMaxNode ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+			for(int childIdx = 0; childIdx < numMoves; ++childIdx)
+			{
+				DFSTreeNode child = children[childIdx];
+				if(leafIdxs[childIdx] >= 0)
+				{
+					child.setMaxPlayerUtilityValue(scores[leafIdxs[childIdx]]);
+				}
+				double utilityValue = child.getMaxPlayerUtilityValue();
+				if(isMaxNode ? utilityValue > bestUtilityValue : utilityValue < bestUtilityValue)
+				{
+					bestUtilityValue = utilityValue;
+					bestChild = child;
+					bestIdx = childIdx;
+				}
+				if(cutoffIdx < 0 && (isMaxNode ? utilityValue >= beta : utilityValue <= alpha))
+				{
+					cutoffIdx = childIdx;  // where the one at a time loop would have stopped
+				}
+				this.getRecorder().finishChild(child, ply);
+			}
+
+			if(bestChild != null)
+			{
+				this.getSearchStack().setBest(ply, this.getMoveList().get(ply, bestIdx), bestUtilityValue);
+				this.getSearchStack().setWindow(ply, isMaxNode ? Math.max(alpha, bestUtilityValue) : alpha,
+					isMaxNode ? beta : Math.min(beta, bestUtilityValue));
+			}
+			if(cutoffIdx >= 0)
+			{
+				AlphaBetaAgent.this.getSearchStats().incBetaCutoffs(cutoffIdx);
+				this.addKiller(ply, bestIdx);
+			}
+			return bestChild;
+		}
+
+		/**
+		 * Look the node up in the transposition table (the top of the position hashes is the node's position). Scores
+		 * in the table are from the point of view of the player to move, so they are flipped at MIN nodes.
+		 * @return whether an entry deep enough settles the node for the window; its utility is then set
+		 */
+		private boolean probeTable(DFSTreeNode node, int depth, double alpha, double beta)
+		{
+			int slot = this.getTranspositionTable().probe(this.getSearchStack().getPositionHashes().getTopHash());
+			if(slot < 0)
+			{
+				return false;
+			}
+			boolean isMaxNode = node.getType() == DFSTreeNodeType.MAX;
+			double score = isMaxNode ? this.getTranspositionTable().getScore(slot)
+				: -this.getTranspositionTable().getScore(slot);
+			byte bound = isMaxNode ? this.getTranspositionTable().getBound(slot)
+				: TranspositionTable.flipBound(this.getTranspositionTable().getBound(slot));
+			if(!TranspositionTable.isUsable(this.getTranspositionTable().getDepth(slot), bound, score, depth, alpha,
+				beta))
+			{
+				return false;
+			}
+			node.setMaxPlayerUtilityValue(score);
+			return true;
+		}
+
+		/**
+		 * Move the best move the transposition table knows for ply's node to the front of its move list.
+		 */
+		private void orderTableMove(int ply)
+		{
+			int slot = this.getTranspositionTable().probe(this.getSearchStack().getPositionHashes().getTopHash());
+			int moveIdx = slot >= 0 && this.getTranspositionTable().getMove(slot) != PackedMove.NONE
+				? this.getMoveList().indexOf(ply, this.getTranspositionTable().getMove(slot)) : -1;
+			if(moveIdx > 0)
+			{
+				this.getMoveList().moveToFront(ply, moveIdx, 0);
+			}
+		}
+
+		/**
+		 * Remember the result of searching ply's node to depth with the window (alpha, beta) it was searched with.
+		 */
+		private void storeTable(DFSTreeNode node, int ply, int depth, double alpha, double beta)
+		{
+			double score = this.getSearchStack().getBestScore(ply);
+			if(Double.isNaN(score))
+			{
+				return;
+			}
+			boolean isMaxNode = node.getType() == DFSTreeNodeType.MAX;
+			byte bound = TranspositionTable.getBound(score, alpha, beta);
+			this.getTranspositionTable().store(this.getSearchStack().getPositionHashes().getTopHash(), depth,
+				isMaxNode ? bound : TranspositionTable.flipBound(bound), isMaxNode ? score : -score,
+				this.getSearchStack().getBestMove(ply));
+		}
+
+		/**
+		 * Analysis search: iterative deepening to getMaxDepth(), finding the best numLines root moves with their scores
+		 * and principal variations at every depth, which go to listener as each depth finishes. At a depth, the first
+		 * numLines root moves (in the order of the previous depth's scores) are searched with a full window; every
+		 * other one with a null window just above the numLines-th best score so far, and only searched again with a
+		 * full window when it beats it. All the searches share the options' transposition table, if they have one, so
+		 * a line reuses what the others (and the shallower depths) found.
+		 *
+		 * With SearchLimits, no depth is started once they say so, and a depth they abort is thrown away: the lines of
+		 * the last finished depth stand (those of the aborted one only when no depth finished, and the first root move
+		 * when not even one line did).
+		 * @return the root child of the best line, with its utility set
+		 */
+		private DFSTreeNode searchMultiPv(DFSTreeNode rootNode, int numLines, Consumer<List<PvLine> > listener)
+		{
+			this.startSearch(rootNode);
+			AlphaBetaAgent.this.getSearchStats().incNodes();
+			int numMoves = this.getRecorder().generate(rootNode, this.getMaxDepth(), this.getMoveList(), 0);
+			int[] rootMoves = new int[numMoves];
+			double[] rootScores = new double[numMoves];
+			for(int moveIdx = 0; moveIdx < numMoves; ++moveIdx)
+			{
+				rootMoves[moveIdx] = this.getMoveList().get(0, moveIdx);
+			}
+
+			DFSTreeNode bestChild = null;
+			PositionHashStack positionHashes = this.getSearchStack().getPositionHashes();
+			for(int depth = 1; depth <= this.getMaxDepth() && numMoves > 0; ++depth)
+			{
+				if(depth > 1 && this.getSearchLimits() != null && !this.getSearchLimits().canStartDepth())
+				{
+					break;
+				}
+				this.getSearchStack().push(0, rootNode, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+				List<PvLine> lines = new ArrayList<PvLine>(numLines + 1);
+				List<DFSTreeNode> lineChildren = new ArrayList<DFSTreeNode>(numLines + 1);
+				int numRootHashes = positionHashes.size();
+				boolean isAborted = false;
+				this.getRecorder().startIteration();
+				this.ply = 1;
+				try
+				{
+					for(int childIdx = 0; childIdx < numMoves; ++childIdx)
+					{
+						DFSTreeNode child = this.makeChild(rootNode, 0, childIdx);
+						int move = this.getMoveList().get(0, childIdx);
+						this.getSearchStack().enterPosition(child.getGame(), move);
+						double score;
+						if(lines.size() < numLines)
+						{
+							score = this.alphaBetaSearch(child, depth - 1, Double.NEGATIVE_INFINITY,
+								Double.POSITIVE_INFINITY).getMaxPlayerUtilityValue();
+						} else
+						{
+							double kthScore = lines.get(numLines - 1).getScore();
+							score = this.alphaBetaSearch(child, depth - 1, kthScore, Math.nextUp(kthScore))
+								.getMaxPlayerUtilityValue();
+							if(score > kthScore)
+							{
+								score = this.alphaBetaSearch(child, depth - 1, Double.NEGATIVE_INFINITY,
+									Double.POSITIVE_INFINITY).getMaxPlayerUtilityValue();
+							}
+						}
+						child.setMaxPlayerUtilityValue(score);
+						int[] childLine = this.getSearchStack().getPrincipalVariation(1);
+						this.getSearchStack().leavePosition();
+						this.getRecorder().finishChild(child, 0);
+						rootScores[this.indexOf(rootMoves, move)] = score;
+
+						// keep the best numLines, the earlier searched line first among equal scores
+						int rank = lines.size();
+						while(rank > 0 && score > lines.get(rank - 1).getScore())
+						{
+							rank -= 1;
+						}
+						if(rank < numLines)
+						{
+							int[] line = new int[childLine.length + 1];
+							line[0] = move;
+							System.arraycopy(childLine, 0, line, 1, childLine.length);
+							lines.add(rank, new PvLine(depth, rank + 1, score, line));
+							lineChildren.add(rank, child);
+							if(lines.size() > numLines)
+							{
+								lines.remove(numLines);
+								lineChildren.remove(numLines);
+							}
+						}
+					}
+				} catch(SearchAbortedException e)
+				{
+					// unwind the path the search was on when it stopped
+					while(positionHashes.size() > numRootHashes)
+					{
+						positionHashes.pop();
+					}
+					isAborted = true;
+				}
+				this.ply = 0;
+				if(isAborted && (bestChild != null || lines.isEmpty()))
+				{
+					this.getSearchStack().pop(0);
+					break;
+				}
+
+				for(int rank = 0; rank < lines.size(); ++rank)
+				{
+					lines.set(rank, lines.get(rank).withRank(rank + 1));
+				}
+				bestChild = lineChildren.get(0);
+				this.completedDepth = isAborted ? depth - 1 : depth;
+				this.getSearchStack().setBest(0, lines.get(0).getMoves(), lines.get(0).getScore());
+				this.getSearchStack().pop(0);
+				if(!isAborted)
+				{
+					this.getRecorder().finishIteration(rootNode, bestChild, depth);
+				}
+				if(listener != null)
+				{
+					listener.accept(lines);
+				}
+				if(isAborted)
+				{
+					break;
+				}
+				this.orderRootMoves(rootMoves, rootScores);
+			}
+			if(bestChild == null && numMoves > 0)
+			{
+				// stopped before a single root move was searched: any legal move beats none
+				bestChild = this.makeChild(rootNode, 0, 0);
+				this.getSearchStack().setBest(0, new int[]{this.getMoveList().get(0, 0)}, Double.NaN);
+			}
+			return bestChild;
+		}
+
+		private int indexOf(int[] moves, int move)
+		{
+			for(int idx = 0; idx < moves.length; ++idx)
+			{
+				if(moves[idx] == move)
+				{
+					return idx;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Sort the root move list by score, best first (equal scores keep their order).
+		 */
+		private void orderRootMoves(int[] rootMoves, double[] rootScores)
+		{
+			Integer[] order = new Integer[rootMoves.length];
+			for(int idx = 0; idx < order.length; ++idx)
+			{
+				order[idx] = idx;
+			}
+			Arrays.sort(order, (a, b) -> Double.compare(rootScores[b], rootScores[a]));
+			for(int rank = 0; rank < order.length; ++rank)
+			{
+				this.getMoveList().moveToFront(0, this.getMoveList().indexOf(0, rootMoves[order[rank]]), rank);
+			}
+		}
+
+		/**
+		 * Quiet moves that cause a cutoff become killers of their ply; captures and promotions already look good to
+		 * the search on their own.
+		 */
+		private void addKiller(int ply, int moveIdx)
+		{
+			int move = this.getMoveList().get(ply, moveIdx);
+			if(!PackedMove.isCapture(move) && !PackedMove.isPromotion(move))
+			{
+				this.getSearchStack().addKiller(ply, move);
+			}
+		}
 
 		/**
 		 * TODO: implement me!
@@ -73,31 +490,73 @@ public class AlphaBetaAgent
                                            double beta)
 		{
 			DFSTreeNode bestChild = null;
+			AlphaBetaAgent.this.getSearchStats().incNodes();
+			int ply = this.ply;
+			this.deepestPly = Math.max(this.deepestPly, ply);
+			if(ply == 0)
+			{
+				this.startSearch(node);
+			}
+			if(this.getSearchLimits() != null)
+			{
+				this.getSearchLimits().countNode();  // throws when the search has to stop
+			}
+			this.getSearchStack().push(ply, node, alpha, beta);
 			if(node.isTerminal()){ // terminal state!
 				bestChild = node;
+			}else if (ply > 0 && this.getSearchStack().isRepetition()){ // been here before: a draw, no need to search on
+				node.setMaxPlayerUtilityValue(PositionHashStack.DRAW_UTILITY);
+				bestChild = node;
 			}else if (depth <= 0){// reached the end of the depth!
 
 				// set the utility value for the node by using the heuristic value
-				node.setMaxPlayerUtilityValue(CustomHeuristics.getMaxPlayerHeuristicValue(node));
+				AlphaBetaAgent.this.getSearchStats().incLeafEvaluations();
+				node.setMaxPlayerUtilityValue(this.evaluate(node, ply));
+				bestChild = node;
+			}else if (ply > 0 && this.getTranspositionTable() != null && this.probeTable(node, depth, alpha, beta)){
+				// searched before, deep enough for this window
 				bestChild = node;
 			} else{ // can keep going to find the best value
-				List<DFSTreeNode> children = node.getChildren();
+				// the moves go into this ply's row of the move list; a child node is only built once it is searched,
+				// so the moves after a cutoff are never applied. The transposition table's move and the killer moves
+				// of this ply are tried first.
+				double windowAlpha = alpha;
+				double windowBeta = beta;
+				int numMoves = this.getRecorder().generate(node, depth, this.getMoveList(), ply);
+				this.getSearchStack().orderKillers(ply);
+				if(this.getTranspositionTable() != null)
+				{
+					this.orderTableMove(ply);
+				}
 
 				double bestUtilityValue;
-				if(node.getType() == DFSTreeNodeType.MAX)
+				this.ply += 1;
+				if(depth == 1 && this.getLeafBatch() != null)
+				{
+					bestChild = this.searchFrontier(node, ply, numMoves, alpha, beta);
+				}
+				else if(node.getType() == DFSTreeNodeType.MAX)
 				{
 					bestUtilityValue = Double.NEGATIVE_INFINITY;
-					for (DFSTreeNode child : children) 
+					for (int childIdx = 0; childIdx < numMoves; ++childIdx) 
 					{
+						DFSTreeNode child = this.makeChild(node, ply, childIdx);
+						this.getSearchStack().enterPosition(child.getGame(), this.getMoveList().get(ply, childIdx));
 						child.setMaxPlayerUtilityValue(this.alphaBetaSearch(child, depth - 1, alpha, beta).getMaxPlayerUtilityValue());
+						this.getSearchStack().leavePosition();
 						if(child.getMaxPlayerUtilityValue() > bestUtilityValue)
 						{
 							bestUtilityValue = child.getMaxPlayerUtilityValue();
 							bestChild = child;
+							this.getSearchStack().setBest(ply, this.getMoveList().get(ply, childIdx), bestUtilityValue);
 						}
 						alpha = Math.max(alpha,child.getMaxPlayerUtilityValue());
-						
+						this.getSearchStack().setWindow(ply, alpha, beta);
+						this.getRecorder().finishChild(child, ply);
+
 						if (alpha >= beta) {
+							AlphaBetaAgent.this.getSearchStats().incBetaCutoffs(childIdx);
+							this.addKiller(ply, childIdx);
 							break;
 						}
 
@@ -105,21 +564,36 @@ public class AlphaBetaAgent
 				} 
 				else { //min player
 					bestUtilityValue = Double.POSITIVE_INFINITY;
-					for (DFSTreeNode child : children) {
+					for (int childIdx = 0; childIdx < numMoves; ++childIdx) {
+						DFSTreeNode child = this.makeChild(node, ply, childIdx);
+						this.getSearchStack().enterPosition(child.getGame(), this.getMoveList().get(ply, childIdx));
 						child.setMaxPlayerUtilityValue(this.alphaBetaSearch(child, depth - 1, alpha, beta).getMaxPlayerUtilityValue());
+						this.getSearchStack().leavePosition();
 						if (child.getMaxPlayerUtilityValue() < bestUtilityValue){
 							bestUtilityValue = child.getMaxPlayerUtilityValue();
 							bestChild = child;
+							this.getSearchStack().setBest(ply, this.getMoveList().get(ply, childIdx), bestUtilityValue);
 						}
 						beta = Math.min(beta, child.getMaxPlayerUtilityValue());
+						this.getSearchStack().setWindow(ply, alpha, beta);
+						this.getRecorder().finishChild(child, ply);
 
 						if (beta <= alpha) {
+							AlphaBetaAgent.this.getSearchStats().incBetaCutoffs(childIdx);
+							this.addKiller(ply, childIdx);
 							break;
 						}
 					}
 					}
+				this.ply -= 1;
+				this.getRecorder().finishNode(depth);
+				if(this.getTranspositionTable() != null)
+				{
+					this.storeTable(node, ply, depth, windowAlpha, windowBeta);
+				}
 
 		}
+		this.getSearchStack().pop(ply);
 		if (bestChild == null) { //all children pruned
 			return node;
 		}
@@ -131,10 +605,37 @@ public class AlphaBetaAgent
 		{
 			Move move = null;
 
+			this.getRecorder().startMove();
+			AlphaBetaAgent.this.getSearchStats().startMove();
 			double startTime = System.nanoTime();
-			move = this.alphaBetaSearch(this.getRootNode(), this.getMaxDepth(),
-					Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY).getMove();
+			DFSTreeNode bestChild;
+			if(this.getSearchOptions().isIterative())
+			{
+				bestChild = this.searchMultiPv(this.getRootNode(), this.getSearchOptions().getNumPvLines(),
+					this.getSearchOptions().getPvListener());
+			} else
+			{
+				bestChild = this.alphaBetaSearch(this.getRootNode(), this.getMaxDepth(),
+					Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+				this.completedDepth = this.getMaxDepth();
+			}
+			// the only conversion back from packed moves: the root move list still holds the root's Move objects
+			int rootBestMove = this.getSearchStack().getBestMove(0);
+			move = rootBestMove != PackedMove.NONE
+				? this.getMoveList().toMove(0, rootBestMove) : bestChild.getMove();
+			double rootScore = this.getSearchStack().getBestScore(0);
+			if(rootBestMove != PackedMove.NONE && !Double.isNaN(rootScore))
+			{
+				// the root is searched with a full window, so its score is exact (engines may share the agent)
+				synchronized(AlphaBetaAgent.this.getLearnedPositions())
+				{
+					AlphaBetaAgent.this.getLearnedPositions().store(Zobrist.hash(this.getRootNode().getGame()),
+						this.completedDepth, TranspositionTable.EXACT, rootScore, rootBestMove);
+				}
+			}
 			double endTime = System.nanoTime();
+			AlphaBetaAgent.this.getSearchStats().endMove(this.deepestPly);
+			this.getRecorder().finishMove(this.getRootNode(), bestChild, this.deepestPly);
 
 			return new Pair<Move, Long>(move, (long)((endTime-startTime)/1000000));
 		}
@@ -149,11 +650,38 @@ public class AlphaBetaAgent
 	 */
 	private static final int DEFAULTMAXDEPTH = 3;
 
+	/**
+	 * -Dchess.search.batchLeaves=true: score the leaves below each frontier node together (see LeafBatch) instead of
+	 * one at a time. Only with CustomHeuristics, not with an NnueEvaluator.
+	 */
+	public static final String BATCH_LEAVES_PROPERTY = "chess.search.batchLeaves";
+
+	/**
+	 * -Dchess.search.snapshot=path: load what earlier games learned (see SearchSnapshot) from path when a game starts,
+	 * and save it back when the game ends.
+	 */
+	public static final String SNAPSHOT_PROPERTY = "chess.search.snapshot";
+
 	private final int maxDepth;
 	private final long maxPlaytimeInMS;
 	private final PlayerType playerType;
 
 	private Player myPlayer;
+	private AsyncPgnStreamer pgnStreamer;  // null when the agent has no file to stream to
+	private ReplayWriter replayWriter;     // null when the agent has no file to stream to
+
+	// live search counters, visible over JMX
+	private final SearchStats searchStats = SearchStats.register("AlphaBetaAgent");
+
+	// the table, limits and analysis mode of the searches SEPIA runs (engines bring their own, see SearchOptions)
+	private final SearchOptions searchOptions = SearchOptions.fromProperties();
+
+	// runs every search of a game, so its SearchStack (and the JIT's view of it) carries over from move to move;
+	// started in initialStep and shut down in terminalStep
+	private ExecutorService searchThread;
+
+	// the result of every search a move was played from, kept across games with the snapshots
+	private final TranspositionTable learnedPositions = new TranspositionTable(SearchSnapshot.MAX_LEARNED_ENTRIES);
 
 	/**
 	 * The constructor. Please do not modify. This constructor will work for variable-sized program args
@@ -211,6 +739,36 @@ public class AlphaBetaAgent
 	 */
 	public int getMaxDepth() { return this.maxDepth; }
 	public long getMaxPlaytimeInMS() { return this.maxPlaytimeInMS; }
+	public SearchStats getSearchStats() { return this.searchStats; }
+	public AsyncPgnStreamer getPgnStreamer() { return this.pgnStreamer; }
+	public ReplayWriter getReplayWriter() { return this.replayWriter; }
+	public SearchOptions getSearchOptions() { return this.searchOptions; }
+	private ExecutorService getSearchThread() { return this.searchThread; }
+	public TranspositionTable getLearnedPositions() { return this.learnedPositions; }
+
+	/**
+	 * @return what the scores of the agent's searches depend on (its evaluator and the CustomHeuristics parameters):
+	 *         snapshots only reuse the scores of a snapshot with the same fingerprint
+	 */
+	public long getSnapshotFingerprint()
+	{
+		long fingerprint = Arrays.hashCode(TexelFeatures.toCoefficients(HeuristicParameters.get()));
+		return 31 * fingerprint + NnueEvaluator.getSpec(this.getPlayerType()).hashCode();
+	}
+
+	/**
+	 * Searches use snapshots through the transposition table: an agent without one gets one of the default size
+	 * before a snapshot is loaded.
+	 */
+	private TranspositionTable getTableForSnapshot()
+	{
+		if(this.getSearchOptions().getTranspositionTable() == null)
+		{
+			this.getSearchOptions().setTranspositionTable(
+				TranspositionTable.ofSizeInMB(TranspositionTable.DEFAULT_SIZE_IN_MB));
+		}
+		return this.getSearchOptions().getTranspositionTable();
+	}
 
 	@Override
 	public PlayerType getPlayerType() { return this.playerType; }
@@ -227,7 +785,7 @@ public class AlphaBetaAgent
 	protected Move getChessMove(StateView state)
 	{
 		// will run the alpha-beta algorithm in a background thread with a timeout
-		ExecutorService backgroundThreadManager = Executors.newSingleThreadExecutor();
+		ExecutorService backgroundThreadManager = this.getSearchThread();
 
 		// preallocate so we don't spend precious time doing it when we are recording duration
 		Move move = null;
@@ -247,9 +805,6 @@ public class AlphaBetaAgent
 			// if we get here the move was chosen quick enough! :)
 			move = moveAndDuration.getFirst();
 			durationInMs = moveAndDuration.getSecond();
-
-			// convert the move into a text form (algebraic notation) and stream it somewhere
-			Streamer.getStreamer(this.getFilePath()).streamMove(move, Planner.getPlanner().getGame());
 		} catch(TimeoutException e)
 		{
 			// timeout = out of time...get ready to end the game (by subtracting all of the time we had left)
@@ -264,9 +819,25 @@ public class AlphaBetaAgent
 			System.exit(-1);
 		}
 
+		// record the move in the binary replay, while the clocks still show the time from before it
+		if(move != null && this.getReplayWriter() != null)
+		{
+			this.getReplayWriter().writeMove(Planner.getPlanner().getGame(), move, durationInMs);
+		}
+
 		// update the game singleton to record that our player took some time to think
 		Planner.getPlanner().getGame().removeTimeFromPlayer(this.getPlayer(), durationInMs); // convert duration to ms
 
+		// queue the move for the PGN file: rendering and writing it happens on the streamer's thread
+		if(move != null && this.getPgnStreamer() != null)
+		{
+			Game game = Planner.getPlanner().getGame();
+			double utility = searcherObject.getSearchStack() != null
+				? searcherObject.getSearchStack().getBestScore(0) : Double.NaN;
+			this.getPgnStreamer().streamMove(move, game, game.getTimeLeftInMS(this.getPlayer()),
+				AsyncPgnStreamer.getWhiteEval(utility, this.getPlayerType()));
+		}
+
 		return move;
 	}
 
@@ -283,15 +854,55 @@ public class AlphaBetaAgent
 		// remember what player we are
 		this.myPlayer = game.getPlayer(this.getPlayerType());
 
-		// init streamer
+		this.searchThread = Executors.newSingleThreadExecutor(runnable ->
+		{
+			Thread thread = new Thread(runnable, "AlphaBetaAgent-search");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		// init streamers
 		Streamer.getStreamer(this.getFilePath());
+		if(this.getFilePath() != null)
+		{
+			this.pgnStreamer = AsyncPgnStreamer.forFile(this.getFilePath());
+			this.pgnStreamer.setPlayerName(this.getPlayerType(), "AlphaBetaAgent(maxDepth=" + this.getMaxDepth() + ")");
+			this.replayWriter = ReplayWriter.forFile(ReplayWriter.getReplayPath(this.getFilePath()));
+		}
+
+		String snapshotPath = System.getProperty(AlphaBetaAgent.SNAPSHOT_PROPERTY);
+		if(snapshotPath != null && Paths.get(snapshotPath).toFile().isFile())
+		{
+			try
+			{
+				SearchSnapshot.load(Paths.get(snapshotPath), this.getSnapshotFingerprint(), this.getTableForSnapshot(),
+					this.getLearnedPositions());
+			} catch(IOException e)
+			{
+				System.err.println("AlphaBetaAgent.initialStep [ERROR]: unable to load snapshot=" + snapshotPath + ": " +
+					e);
+			}
+		}
 		return null;
 	}
 
 	@Override
 	public void loadPlayerData(InputStream stream)
 	{
-		// TODO Auto-generated method stub
+		// the same snapshot format as SNAPSHOT_PROPERTY, through whatever stream SEPIA saved it to
+		try
+		{
+			byte[] snapshot = stream.readNBytes(SearchSnapshot.MAX_SIZE);
+			if(snapshot.length > 0 && SearchSnapshot.read(ByteBuffer.wrap(snapshot), this.getSnapshotFingerprint(),
+				this.getTableForSnapshot(), this.getLearnedPositions()) < 0)
+			{
+				System.err.println("AlphaBetaAgent.loadPlayerData [ERROR]: not a complete snapshot of version " +
+					SearchSnapshot.VERSION);
+			}
+		} catch(IOException e)
+		{
+			System.err.println("AlphaBetaAgent.loadPlayerData [ERROR]: unable to read the snapshot: " + e);
+		}
 	}
 
 	/**
@@ -345,13 +956,55 @@ public class AlphaBetaAgent
 	@Override
 	public void savePlayerData(OutputStream history)
 	{
-		// TODO Auto-generated method stub
+		TranspositionTable table = this.getSearchOptions().getTranspositionTable();
+		ByteBuffer snapshot;
+		synchronized(this.getLearnedPositions())
+		{
+			snapshot = ByteBuffer.allocate(SearchSnapshot.getSize(table, this.getLearnedPositions()));
+			SearchSnapshot.write(snapshot, this.getSnapshotFingerprint(), table, this.getLearnedPositions());
+		}
+		try
+		{
+			history.write(snapshot.array());
+			history.flush();
+		} catch(IOException e)
+		{
+			System.err.println("AlphaBetaAgent.savePlayerData [ERROR]: unable to write the snapshot: " + e);
+		}
 	}
 
 	@Override
 	public void terminalStep(StateView state, HistoryView history)
 	{
-		// TODO Auto-generated method stub
+		if(this.getPgnStreamer() != null)
+		{
+			this.getPgnStreamer().finishGame(Planner.getPlanner().getGame());
+		}
+		if(this.getReplayWriter() != null)
+		{
+			this.getReplayWriter().finishGame(Planner.getPlanner().getGame());
+		}
+
+		String snapshotPath = System.getProperty(AlphaBetaAgent.SNAPSHOT_PROPERTY);
+		if(snapshotPath != null)
+		{
+			try
+			{
+				synchronized(this.getLearnedPositions())
+				{
+					SearchSnapshot.save(Paths.get(snapshotPath), this.getSnapshotFingerprint(),
+						this.getSearchOptions().getTranspositionTable(), this.getLearnedPositions());
+				}
+			} catch(IOException e)
+			{
+				System.err.println("AlphaBetaAgent.terminalStep [ERROR]: unable to save snapshot=" + snapshotPath + ": " +
+					e);
+			}
+		}
+
+		// the game is over: nothing searches with this agent anymore (a search that ran out of time may still be going)
+		this.getSearchThread().shutdownNow();
+		this.getSearchStats().unregister();
 	}
 
 }
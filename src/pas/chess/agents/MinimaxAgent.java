@@ -20,7 +20,6 @@ import edu.bu.chess.utils.Pair;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
@@ -33,6 +32,14 @@ import java.util.concurrent.TimeoutException;
 
 // JAVA PROJECT IMPORTS
 import src.pas.chess.heuristics.CustomHeuristics;
+import src.pas.chess.instrumentation.SearchRecorder;
+import src.pas.chess.instrumentation.SearchStats;
+import src.pas.chess.replay.ReplayWriter;
+import src.pas.chess.search.MoveList;
+import src.pas.chess.search.PackedMove;
+import src.pas.chess.search.PositionHashStack;
+import src.pas.chess.search.SearchStack;
+import src.pas.chess.streaming.AsyncPgnStreamer;
 
 
 public class MinimaxAgent
@@ -46,59 +53,114 @@ public class MinimaxAgent
 
 		private DFSTreeNode rootNode;
 		private final int maxDepth;
+		private int deepestPly;  // for the search stats
+		private final SearchRecorder recorder;  // JFR events
+		private SearchStack stack;              // per ply state of the search thread, taken when the search starts
+		private int ply;
 
 		public MinimaxSearcher(DFSTreeNode rootNode, int maxDepth)
 		{
 			this.rootNode = rootNode;
 			this.maxDepth = maxDepth;
+			this.deepestPly = 0;
+			this.recorder = new SearchRecorder("MinimaxAgent", MinimaxAgent.this.getSearchStats());
+			this.stack = null;
+			this.ply = 0;
 		}
 
 		public DFSTreeNode getRootNode() { return this.rootNode; }
 		public int getMaxDepth() { return this.maxDepth; }
+		public SearchRecorder getRecorder() { return this.recorder; }
+		public SearchStack getSearchStack() { return this.stack; }
+		public MoveList getMoveList() { return this.getSearchStack().getMoveList(); }
+
+		/**
+		 * @return the principal variation of the last search, as packed moves from the root
+		 */
+		public int[] getPrincipalVariation() { return this.getSearchStack().getPrincipalVariation(); }
+
+		/**
+		 * Build the child of node reached by the move at (ply, moveIdx) of the move list.
+		 */
+		private DFSTreeNode makeChild(DFSTreeNode node, int ply, int moveIdx)
+		{
+			Move move = this.getMoveList().getMove(ply, moveIdx);
+			return this.getRecorder().makeChild(node, move);
+		}
 
 		public DFSTreeNode minimaxSearch(DFSTreeNode node, int depth)
 		{
 			DFSTreeNode bestChild = null;
+			MinimaxAgent.this.getSearchStats().incNodes();
+			this.deepestPly = Math.max(this.deepestPly, this.getMaxDepth() - depth);
+			int ply = this.ply;
+			if(ply == 0)
+			{
+				// the stack belongs to the thread running the search (not the one that built this searcher)
+				this.stack = SearchStack.forCurrentThread(this.getMaxDepth() + 2);
+				this.getSearchStack().startSearch(node.getGame());
+			}
+			this.getSearchStack().push(ply, node, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
 			if(node.isTerminal()) // terminal state!
 			{
 				bestChild = node;
+			} else if(ply > 0 && this.getSearchStack().isRepetition()) // been here before: a draw, no need to search on
+			{
+				node.setMaxPlayerUtilityValue(PositionHashStack.DRAW_UTILITY);
+				bestChild = node;
 			} else if(depth <= 0) // reached the end of the depth!
 			{
 				// assign heuristic value to the child as its utility
-				node.setMaxPlayerUtilityValue(CustomHeuristics.getMaxPlayerHeuristicValue(node));
+				MinimaxAgent.this.getSearchStats().incLeafEvaluations();
+				node.setMaxPlayerUtilityValue(this.getRecorder().evaluate(node, CustomHeuristics::getMaxPlayerHeuristicValue));
 				bestChild = node;
 			} else // we can get the children of this node and find its best value
 			{
-				List<DFSTreeNode> children = node.getChildren();
+				// the moves go into this ply's row of the move list, each child is built when it is searched
+				int numMoves = this.getRecorder().generate(node, depth, this.getMoveList(), ply);
 
 				double bestUtilityValue;
+				this.ply += 1;
 				if(node.getType() == DFSTreeNodeType.MAX)
 				{
 					bestUtilityValue = Double.NEGATIVE_INFINITY;
-					for(DFSTreeNode child : children)
+					for(int childIdx = 0; childIdx < numMoves; ++childIdx)
 					{
+						DFSTreeNode child = this.makeChild(node, ply, childIdx);
+						this.getSearchStack().enterPosition(child.getGame(), this.getMoveList().get(ply, childIdx));
 						child.setMaxPlayerUtilityValue(this.minimaxSearch(child, depth-1).getMaxPlayerUtilityValue());
+						this.getSearchStack().leavePosition();
 						if(child.getMaxPlayerUtilityValue() > bestUtilityValue)
 						{
 							bestUtilityValue = child.getMaxPlayerUtilityValue();
 							bestChild = child;
+							this.getSearchStack().setBest(ply, this.getMoveList().get(ply, childIdx), bestUtilityValue);
 						}
+						this.getRecorder().finishChild(child, ply);
 					}
 				} else
 				{
 					// min
 					bestUtilityValue = Double.POSITIVE_INFINITY;
-					for(DFSTreeNode child : children)
+					for(int childIdx = 0; childIdx < numMoves; ++childIdx)
 					{
+						DFSTreeNode child = this.makeChild(node, ply, childIdx);
+						this.getSearchStack().enterPosition(child.getGame(), this.getMoveList().get(ply, childIdx));
 						child.setMaxPlayerUtilityValue(this.minimaxSearch(child, depth-1).getMaxPlayerUtilityValue());
+						this.getSearchStack().leavePosition();
 						if(child.getMaxPlayerUtilityValue() < bestUtilityValue)
 						{
 							bestUtilityValue = child.getMaxPlayerUtilityValue();
 							bestChild = child;
+							this.getSearchStack().setBest(ply, this.getMoveList().get(ply, childIdx), bestUtilityValue);
 						}
+						this.getRecorder().finishChild(child, ply);
 					}
 				}
+				this.ply -= 1;
+				this.getRecorder().finishNode(depth);
 			}
+			this.getSearchStack().pop(ply);
 			return bestChild;
 		}
 
@@ -107,9 +169,16 @@ public class MinimaxAgent
 		{
 			Move move = null;
 
+			this.getRecorder().startMove();
+			MinimaxAgent.this.getSearchStats().startMove();
 			double startTime = System.nanoTime();
-			move = this.minimaxSearch(this.getRootNode(), this.getMaxDepth()).getMove();
+			DFSTreeNode bestChild = this.minimaxSearch(this.getRootNode(), this.getMaxDepth());
+			int rootBestMove = this.getSearchStack().getBestMove(0);
+			move = rootBestMove != PackedMove.NONE
+				? this.getMoveList().toMove(0, rootBestMove) : bestChild.getMove();
 			double endTime = System.nanoTime();
+			MinimaxAgent.this.getSearchStats().endMove(this.deepestPly);
+			this.getRecorder().finishMove(this.getRootNode(), bestChild, this.deepestPly);
 
 			return new Pair<Move, Long>(move, (long)((endTime-startTime)/1000000));
 		}
@@ -122,6 +191,11 @@ public class MinimaxAgent
 	private final PlayerType playerType;
 
 	private Player myPlayer;
+	private AsyncPgnStreamer pgnStreamer;  // null when the agent has no file to stream to
+	private ReplayWriter replayWriter;     // null when the agent has no file to stream to
+
+	// live search counters, visible over JMX
+	private final SearchStats searchStats = SearchStats.register("MinimaxAgent");
 
 	/**
 	 * The constructor. Please do not modify. This constructor will work for variable-sized program args
@@ -171,6 +245,9 @@ public class MinimaxAgent
 	 */
 	public int getMaxDepth() { return this.maxDepth; }
 	public long getMaxPlaytimeInMS() { return this.maxPlaytimeInMS; }
+	public SearchStats getSearchStats() { return this.searchStats; }
+	public AsyncPgnStreamer getPgnStreamer() { return this.pgnStreamer; }
+	public ReplayWriter getReplayWriter() { return this.replayWriter; }
 
 	@Override
 	public PlayerType getPlayerType() { return this.playerType; }
@@ -209,9 +286,6 @@ public class MinimaxAgent
 			// if we get here the move was chosen quick enough! :)
 			move = moveAndDuration.getFirst();
 			durationInMs = moveAndDuration.getSecond();
-
-			// convert the move into a text form (algebraic notation) and stream it somewhere
-			Streamer.getStreamer(this.getFilePath()).streamMove(move, Planner.getPlanner().getGame());
 		} catch(TimeoutException e)
 		{
 			// timeout = out of time...get ready to end the game (by subtracting all of the time we had left)
@@ -226,9 +300,25 @@ public class MinimaxAgent
 			System.exit(-1);
 		}
 
+		// record the move in the binary replay, while the clocks still show the time from before it
+		if(move != null && this.getReplayWriter() != null)
+		{
+			this.getReplayWriter().writeMove(Planner.getPlanner().getGame(), move, durationInMs);
+		}
+
 		// update the game singleton to record that our player took some time to think
 		Planner.getPlanner().getGame().removeTimeFromPlayer(this.getPlayer(), durationInMs); // convert duration to ms
 
+		// queue the move for the PGN file: rendering and writing it happens on the streamer's thread
+		if(move != null && this.getPgnStreamer() != null)
+		{
+			Game game = Planner.getPlanner().getGame();
+			double utility = searcherObject.getSearchStack() != null
+				? searcherObject.getSearchStack().getBestScore(0) : Double.NaN;
+			this.getPgnStreamer().streamMove(move, game, game.getTimeLeftInMS(this.getPlayer()),
+				AsyncPgnStreamer.getWhiteEval(utility, this.getPlayerType()));
+		}
+
         Planner.getPlanner().thaw(this.getPlayer());
 
 		return move;
@@ -247,8 +337,14 @@ public class MinimaxAgent
 		// remember what player we are
 		this.myPlayer = game.getPlayer(this.getPlayerType());
 
-		// init streamer
+		// init streamers
 		Streamer.getStreamer(this.getFilePath());
+		if(this.getFilePath() != null)
+		{
+			this.pgnStreamer = AsyncPgnStreamer.forFile(this.getFilePath());
+			this.pgnStreamer.setPlayerName(this.getPlayerType(), "MinimaxAgent(maxDepth=" + this.getMaxDepth() + ")");
+			this.replayWriter = ReplayWriter.forFile(ReplayWriter.getReplayPath(this.getFilePath()));
+		}
 		return null;
 	}
 
@@ -317,8 +413,17 @@ public class MinimaxAgent
 	@Override
 	public void terminalStep(StateView state, HistoryView history)
 	{
-		// TODO Auto-generated method stub
+		if(this.getPgnStreamer() != null)
+		{
+			this.getPgnStreamer().finishGame(Planner.getPlanner().getGame());
+		}
+		if(this.getReplayWriter() != null)
+		{
+			this.getReplayWriter().finishGame(Planner.getPlanner().getGame());
+		}
 
+		// the game is over: nothing searches with this agent anymore
+		this.getSearchStats().unregister();
 	}
 
 }
@@ -0,0 +1,178 @@
+package src.pas.chess.analysis;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.move.Move;
+
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.history.GameHistory;
+import src.pas.chess.match.EngineFactory;
+import src.pas.chess.match.SearcherEngine;
+import src.pas.chess.replay.Replay;
+import src.pas.chess.replay.ReplayWriter;
+import src.pas.chess.search.PackedMove;
+import src.pas.chess.search.PvLine;
+import src.pas.chess.search.TranspositionTable;
+import src.pas.chess.utils.Fen;
+import src.pas.chess.utils.PositionCorpus;
+
+
+/**
+ * Post-game analysis with AlphaBetaAgent's multi-PV mode: for every position, the best --lines root moves with their
+ * scores and principal variations, printed after every depth of the iterative deepening. One transposition table is
+ * shared by all lines, depths and positions, so consecutive positions of a game start from what the previous ones
+ * found.
+ *
+ * Usage:
+ *     java -cp "./lib/*:." src.pas.chess.analysis.MultiPvAnalyzer <positions> [--depth D] [--lines K] [--hash MB]
+ *         [--game N]
+ * positions is a FEN, a file of FENs (one per line), or a ReplayWriter .replay file, whose games are analyzed move by
+ * move (only game N with --game N, counting from 0), showing where the move played ranks. Scores are from the point of
+ * view of the player to move, in CustomHeuristics units.
+ */
+public class MultiPvAnalyzer
+    extends Object
+{
+
+	public static final int DEFAULT_NUM_LINES = 3;
+
+	private final SearcherEngine engine;
+	private final List<PvLine> lastLines;
+
+	public MultiPvAnalyzer(int maxDepth, int numLines, TranspositionTable transpositionTable)
+	{
+		EngineFactory factory = EngineFactory.fromSpec("AlphaBetaAgent:" + maxDepth, 0);
+		this.engine = (SearcherEngine)factory.makeEngine();
+		this.engine.getSearchOptions().setTranspositionTable(transpositionTable);
+		this.lastLines = new ArrayList<PvLine>();
+		this.engine.getSearchOptions().setMultiPv(numLines, lines ->
+		{
+			for(PvLine line : lines)
+			{
+				System.out.println(line);
+			}
+			this.lastLines.clear();
+			this.lastLines.addAll(lines);
+		});
+	}
+
+	public SearcherEngine getEngine() { return this.engine; }
+
+	/**
+	 * @return the lines of the deepest search of the last position analyzed
+	 */
+	public List<PvLine> getLastLines() { return this.lastLines; }
+
+	/**
+	 * Analyze the current position of history (the earlier ones count for repetitions).
+	 */
+	public List<PvLine> analyze(GameHistory history)
+	{
+		long startTime = System.nanoTime();
+		this.getLastLines().clear();
+		this.getEngine().getChessMove(history);
+		System.out.println(String.format(Locale.ROOT, "(%.2f s)", (System.nanoTime() - startTime) / 1e9));
+		return this.getLastLines();
+	}
+
+	private void analyzeReplay(Replay replay)
+	{
+		GameHistory history = new GameHistory(replay.getInitialGame());
+		for(int ply = 0; ply < replay.size(); ++ply)
+		{
+			Game game = history.getCurrentGame();
+			Move move = Replay.decodeMove(game, replay.getCompactMove(ply));
+			System.out.println("ply " + (ply + 1) + ": " + Fen.toFen(game));
+			List<PvLine> lines = this.analyze(history);
+
+			int playedMove = PackedMove.encode(game, move);
+			String rank = "not in the top " + lines.size();
+			for(PvLine line : lines)
+			{
+				rank = line.getRootMove() == playedMove ? "line " + line.getRank() : rank;
+			}
+			System.out.println("played " + PackedMove.toText(playedMove) + " (" + rank + ")");
+			System.out.println();
+			history.addMove(move);
+		}
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		if(args.length < 1)
+		{
+			System.err.println("Usage: java src.pas.chess.analysis.MultiPvAnalyzer <positions> [--depth D] [--lines K]" +
+				" [--hash MB] [--game N]");
+			System.exit(-1);
+		}
+
+		int maxDepth = EngineFactory.DEFAULT_MAX_DEPTH;
+		int numLines = MultiPvAnalyzer.DEFAULT_NUM_LINES;
+		int hashSizeInMB = TranspositionTable.DEFAULT_SIZE_IN_MB;
+		int gameIdx = -1;
+		for(int argIdx = 1; argIdx < args.length; argIdx += 2)
+		{
+			if(argIdx + 1 >= args.length)
+			{
+				System.err.println("MultiPvAnalyzer.main [ERROR]: missing value for option=" + args[argIdx]);
+				System.exit(-1);
+			}
+			switch(args[argIdx])
+			{
+			case "--depth":
+				maxDepth = Integer.parseInt(args[argIdx + 1]);
+				break;
+			case "--lines":
+				numLines = Integer.parseInt(args[argIdx + 1]);
+				break;
+			case "--hash":
+				hashSizeInMB = Integer.parseInt(args[argIdx + 1]);
+				break;
+			case "--game":
+				gameIdx = Integer.parseInt(args[argIdx + 1]);
+				break;
+			default:
+				System.err.println("MultiPvAnalyzer.main [ERROR]: unknown option=" + args[argIdx]);
+				System.exit(-1);
+			}
+		}
+		if(maxDepth < 1 || numLines < 1)
+		{
+			System.err.println("MultiPvAnalyzer.main [ERROR]: depth and lines must be at least 1");
+			System.exit(-1);
+		}
+
+		MultiPvAnalyzer analyzer = new MultiPvAnalyzer(maxDepth, numLines,
+			hashSizeInMB > 0 ? TranspositionTable.ofSizeInMB(hashSizeInMB) : null);
+		String positions = args[0];
+		if(positions.endsWith(ReplayWriter.FILE_EXTENSION))
+		{
+			List<Replay> replays = gameIdx >= 0 ? List.of(Replay.read(Paths.get(positions), gameIdx))
+				: Replay.readAll(Paths.get(positions));
+			for(Replay replay : replays)
+			{
+				analyzer.analyzeReplay(replay);
+			}
+			return;
+		}
+
+		List<String> fens = positions.indexOf('/') >= 0 && !Paths.get(positions).toFile().exists()
+			? List.of(positions) : PositionCorpus.load(positions).getFens();
+		for(String fen : fens)
+		{
+			System.out.println(fen);
+			analyzer.analyze(new GameHistory(Fen.parse(fen)));
+			System.out.println();
+		}
+	}
+
+}
@@ -0,0 +1,116 @@
+package src.pas.chess.benchmark;
+
+
+// SYSTEM IMPORTS
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Runs the engine benchmarks with the GC profiler on and writes two result files:
+ * the raw JMH JSON (resultPrefix.json) and a small, sorted summary (resultPrefix.csv) with one line per benchmark:
+ * benchmark,score,error,unit,alloc_bytes_per_op. The csv is the one to diff between commits.
+ *
+ * Build (the JMH jars, i.e. jmh-core, jmh-generator-annprocess, jopt-simple and commons-math3, go in lib/jmh/):
+ *     javac -cp "./lib/*:./lib/jmh/*:." @chess.srcs @benchmark.srcs
+ * Run:
+ *     java -cp "./lib/*:./lib/jmh/*:." src.pas.chess.benchmark.BenchmarkMain [resultPrefix] [includeRegex] [corpusPath]
+ *
+ * Plain JMH works too, e.g. java -cp ... org.openjdk.jmh.Main HeuristicsBenchmark -prof gc -rf json
+ */
+public class BenchmarkMain
+    extends Object
+{
+
+	public static final String DEFAULT_RESULT_PREFIX = "output/benchmarks/results";
+	public static final String DEFAULT_INCLUDE_REGEX = "src\\.pas\\.chess\\.benchmark\\..*";
+	public static final String CSV_HEADER = "benchmark,score,error,unit,alloc_bytes_per_op";
+
+	public static void main(String[] args) throws IOException, RunnerException
+	{
+		String resultPrefix = args.length > 0 ? args[0] : BenchmarkMain.DEFAULT_RESULT_PREFIX;
+		String includeRegex = args.length > 1 ? args[1] : BenchmarkMain.DEFAULT_INCLUDE_REGEX;
+		String corpusPath = args.length > 2 ? args[2] : BenchmarkPositions.DEFAULT_CORPUS_PATH;
+
+		File resultDirectory = new File(resultPrefix).getAbsoluteFile().getParentFile();
+		if(!resultDirectory.exists())
+		{
+			resultDirectory.mkdirs();
+		}
+
+		Options options = new OptionsBuilder()
+			.include(includeRegex)
+			.addProfiler(GCProfiler.class)
+			.jvmArgsAppend("-D" + BenchmarkPositions.CORPUS_PATH_PROPERTY + "=" + corpusPath)
+			.resultFormat(ResultFormatType.JSON)
+			.result(resultPrefix + ".json")
+			.build();
+
+		Collection<RunResult> results = new Runner(options).run();
+		BenchmarkMain.writeSummary(results, resultPrefix + ".csv");
+	}
+
+	public static void writeSummary(Collection<RunResult> results, String path) throws IOException
+	{
+		List<String> lines = new ArrayList<String>(results.size());
+		for(RunResult runResult : results)
+		{
+			Result<?> primaryResult = runResult.getPrimaryResult();
+			lines.add(String.format(Locale.ROOT, "%s,%.3f,%.3f,%s,%.1f",
+				runResult.getParams().getBenchmark(),
+				primaryResult.getScore(),
+				primaryResult.getScoreError(),
+				primaryResult.getScoreUnit(),
+				BenchmarkMain.getAllocatedBytesPerOp(runResult)));
+		}
+		lines.sort(null);
+
+		try(BufferedWriter writer = Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8))
+		{
+			writer.write(BenchmarkMain.CSV_HEADER);
+			writer.newLine();
+			for(String line : lines)
+			{
+				writer.write(line);
+				writer.newLine();
+			}
+		}
+	}
+
+	/**
+	 * The gc profiler reports normalized allocation under "gc.alloc.rate.norm" (older JMH versions prefix it with a dot)
+	 */
+	private static double getAllocatedBytesPerOp(RunResult runResult)
+	{
+		for(String label : runResult.getSecondaryResults().keySet())
+		{
+			if(label.endsWith("gc.alloc.rate.norm"))
+			{
+				return runResult.getSecondaryResults().get(label).getScore();
+			}
+		}
+		return Double.NaN;
+	}
+
+}
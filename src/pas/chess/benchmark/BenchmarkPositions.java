@@ -0,0 +1,138 @@
+package src.pas.chess.benchmark;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.move.Move;
+import edu.bu.chess.search.DFSTreeNode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.utils.PositionCorpus;
+
+
+/**
+ * The fixed position corpus every benchmark runs against. Each benchmark invocation works on the next element of one
+ * of the arrays below (round robin), so a single op always means "one position" (or one node/move) and the scores
+ * from -prof gc read directly as allocations per op.
+ */
+@State(Scope.Thread)
+public class BenchmarkPositions
+    extends Object
+{
+
+	public static final String CORPUS_PATH_PROPERTY = "chess.benchmark.positions";
+	public static final String DEFAULT_CORPUS_PATH = "data/pas/chess/benchmark/positions.fen";
+
+	private String[] fens;
+	private Game[] games;
+	private DFSTreeNode[] rootNodes;
+	private DFSTreeNode[] childNodes;
+	private List<DFSTreeNode>[] siblingLists;
+	private Game[] moveGames;
+	private Move[] moves;
+
+	private int fenIdx;
+	private int gameIdx;
+	private int rootNodeIdx;
+	private int childNodeIdx;
+	private int siblingListIdx;
+	private int moveIdx;
+
+	public String[] getFens() { return this.fens; }
+	public Game[] getGames() { return this.games; }
+	public DFSTreeNode[] getRootNodes() { return this.rootNodes; }
+	public DFSTreeNode[] getChildNodes() { return this.childNodes; }
+	public List<DFSTreeNode>[] getSiblingLists() { return this.siblingLists; }
+
+	@Setup(Level.Trial)
+	@SuppressWarnings("unchecked")
+	public void setup() throws IOException
+	{
+		PositionCorpus corpus = PositionCorpus.load(System.getProperty(BenchmarkPositions.CORPUS_PATH_PROPERTY,
+			BenchmarkPositions.DEFAULT_CORPUS_PATH));
+
+		List<String> fens = corpus.getFens();
+		List<Game> games = corpus.getGames();
+		List<DFSTreeNode> childNodes = new ArrayList<DFSTreeNode>();
+		List<Game> moveGames = new ArrayList<Game>();
+		List<Move> moves = new ArrayList<Move>();
+
+		this.fens = fens.toArray(new String[fens.size()]);
+		this.games = games.toArray(new Game[games.size()]);
+		this.rootNodes = new DFSTreeNode[this.games.length];
+		this.siblingLists = (List<DFSTreeNode>[])new List<?>[this.games.length];
+		for(int idx = 0; idx < this.games.length; ++idx)
+		{
+			Game game = this.games[idx];
+
+			// the player to move is the max player, just like the root of a real search
+			this.rootNodes[idx] = new DFSTreeNode(game, game.getCurrentPlayer());
+			this.siblingLists[idx] = this.rootNodes[idx].getChildren();
+			childNodes.addAll(this.siblingLists[idx]);
+
+			for(Move move : game.getAllMoves(game.getCurrentPlayer()))
+			{
+				moveGames.add(game);
+				moves.add(move);
+			}
+		}
+		this.childNodes = childNodes.toArray(new DFSTreeNode[childNodes.size()]);
+		this.moveGames = moveGames.toArray(new Game[moveGames.size()]);
+		this.moves = moves.toArray(new Move[moves.size()]);
+	}
+
+	public String nextFen()
+	{
+		this.fenIdx = (this.fenIdx + 1) % this.fens.length;
+		return this.fens[this.fenIdx];
+	}
+
+	public Game nextGame()
+	{
+		this.gameIdx = (this.gameIdx + 1) % this.games.length;
+		return this.games[this.gameIdx];
+	}
+
+	public DFSTreeNode nextRootNode()
+	{
+		this.rootNodeIdx = (this.rootNodeIdx + 1) % this.rootNodes.length;
+		return this.rootNodes[this.rootNodeIdx];
+	}
+
+	/**
+	 * Children of the corpus positions: unlike the roots these have a move, which some heuristics read.
+	 */
+	public DFSTreeNode nextChildNode()
+	{
+		this.childNodeIdx = (this.childNodeIdx + 1) % this.childNodes.length;
+		return this.childNodes[this.childNodeIdx];
+	}
+
+	public List<DFSTreeNode> nextSiblingList()
+	{
+		this.siblingListIdx = (this.siblingListIdx + 1) % this.siblingLists.length;
+		return this.siblingLists[this.siblingListIdx];
+	}
+
+	/**
+	 * Advance to the next (position, legal move) pair. Read it back with getMoveGame() and getMove().
+	 */
+	public void nextMove()
+	{
+		this.moveIdx = (this.moveIdx + 1) % this.moves.length;
+	}
+
+	public Game getMoveGame() { return this.moveGames[this.moveIdx]; }
+	public Move getMove() { return this.moves[this.moveIdx]; }
+
+}
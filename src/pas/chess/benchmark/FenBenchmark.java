@@ -0,0 +1,62 @@
+package src.pas.chess.benchmark;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+import java.util.concurrent.TimeUnit;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.utils.Fen;
+import src.pas.chess.utils.FenPosition;
+
+
+/**
+ * Loading and writing positions as FEN, which is what perft, the position corpora and the match runner start from.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FenBenchmark
+    extends Object
+{
+
+	/**
+	 * One op builds the Game of one corpus position.
+	 */
+	@Benchmark
+	public Game parse(BenchmarkPositions positions)
+	{
+		return Fen.parse(positions.nextFen());
+	}
+
+	/**
+	 * One op reads all six fields of one corpus position.
+	 */
+	@Benchmark
+	public FenPosition read(BenchmarkPositions positions)
+	{
+		return Fen.read(positions.nextFen());
+	}
+
+	/**
+	 * One op writes one corpus position back out.
+	 */
+	@Benchmark
+	public String toFen(BenchmarkPositions positions)
+	{
+		return Fen.toFen(positions.nextGame());
+	}
+
+}
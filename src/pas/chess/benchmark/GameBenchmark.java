@@ -0,0 +1,64 @@
+package src.pas.chess.benchmark;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.move.Move;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * The edu.bu.chess.game.Game primitives the searchers are built on.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameBenchmark
+    extends Object
+{
+
+	/**
+	 * One op generates every legal move of one corpus position.
+	 */
+	@Benchmark
+	public List<Move> getAllMoves(BenchmarkPositions positions)
+	{
+		Game game = positions.nextGame();
+		return game.getAllMoves(game.getCurrentPlayer());
+	}
+
+	/**
+	 * One op applies one legal move of one corpus position.
+	 */
+	@Benchmark
+	public Game applyMove(BenchmarkPositions positions)
+	{
+		positions.nextMove();
+		return positions.getMoveGame().applyMove(positions.getMove());
+	}
+
+	/**
+	 * One op copies one corpus position.
+	 */
+	@Benchmark
+	public Game copy(BenchmarkPositions positions)
+	{
+		return positions.nextGame().copy();
+	}
+
+}
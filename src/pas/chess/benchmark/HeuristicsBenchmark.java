@@ -0,0 +1,46 @@
+package src.pas.chess.benchmark;
+
+
+// SYSTEM IMPORTS
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+import java.util.concurrent.TimeUnit;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.heuristics.CustomHeuristics;
+import src.pas.chess.heuristics.DefaultHeuristics;
+
+
+/**
+ * Leaf evaluation cost: one op is one heuristic evaluation of a corpus child node.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeuristicsBenchmark
+    extends Object
+{
+
+	@Benchmark
+	public double customHeuristics(BenchmarkPositions positions)
+	{
+		return CustomHeuristics.getMaxPlayerHeuristicValue(positions.nextChildNode());
+	}
+
+	@Benchmark
+	public double defaultHeuristics(BenchmarkPositions positions)
+	{
+		return DefaultHeuristics.getMaxPlayerHeuristicValue(positions.nextChildNode());
+	}
+
+}
@@ -0,0 +1,107 @@
+package src.pas.chess.benchmark;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.search.DFSTreeNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.heuristics.CustomHeuristics;
+import src.pas.chess.heuristics.HeuristicParameters;
+import src.pas.chess.heuristics.LeafBatch;
+import src.pas.chess.heuristics.LeafBatchKernel;
+import src.pas.chess.heuristics.ScalarLeafBatchKernel;
+
+
+/**
+ * Scoring the leaves below a frontier node one at a time vs as a LeafBatch: one op is one corpus sibling list, once per
+ * kernel (perLeaf does not use it).
+ *     perLeaf     CustomHeuristics.getMaxPlayerHeuristicValue on every sibling
+ *     batch       extract every sibling into a LeafBatch and score it: what the search does with batchLeaves
+ *     scoreOnly   score the largest sibling list, already extracted: the kernel alone
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Thread)
+public class LeafBatchBenchmark
+    extends Object
+{
+
+	@Param({"scalar", "vector"})
+	public String kernelName;
+
+	private LeafBatch batch;
+	private LeafBatch filledBatch;
+
+	@Setup(Level.Trial)
+	public void setup(BenchmarkPositions positions)
+	{
+		LeafBatchKernel kernel = this.kernelName.equals("scalar") ? new ScalarLeafBatchKernel()
+			: LeafBatch.loadVectorKernel();
+		if(kernel == null)
+		{
+			throw new IllegalStateException("LeafBatchBenchmark.setup [ERROR]: the vector kernel is not available, build" +
+				" vector.srcs and run with --add-modules jdk.incubator.vector");
+		}
+
+		this.batch = new LeafBatch(HeuristicParameters.get(), kernel, LeafBatch.DEFAULT_CAPACITY);
+		this.filledBatch = new LeafBatch(HeuristicParameters.get(), kernel, LeafBatch.DEFAULT_CAPACITY);
+		List<DFSTreeNode> largestSiblings = positions.getSiblingLists()[0];
+		for(List<DFSTreeNode> siblings : positions.getSiblingLists())
+		{
+			largestSiblings = siblings.size() > largestSiblings.size() ? siblings : largestSiblings;
+		}
+		for(DFSTreeNode sibling : largestSiblings)
+		{
+			this.filledBatch.add(sibling.getGame(), sibling.getMaxPlayer().getPlayerType());
+		}
+	}
+
+	@Benchmark
+	public double perLeaf(BenchmarkPositions positions)
+	{
+		double sum = 0.0;
+		for(DFSTreeNode sibling : positions.nextSiblingList())
+		{
+			sum += CustomHeuristics.getMaxPlayerHeuristicValue(sibling);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public double[] batch(BenchmarkPositions positions)
+	{
+		this.batch.clear();
+		for(DFSTreeNode sibling : positions.nextSiblingList())
+		{
+			this.batch.add(sibling.getGame(), sibling.getMaxPlayer().getPlayerType());
+		}
+		return this.batch.score();
+	}
+
+	@Benchmark
+	public double[] scoreOnly()
+	{
+		return this.filledBatch.score();
+	}
+
+}
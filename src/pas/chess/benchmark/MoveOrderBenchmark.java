@@ -0,0 +1,41 @@
+package src.pas.chess.benchmark;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.search.DFSTreeNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.moveorder.CustomMoveOrderer;
+
+
+/**
+ * Move ordering cost: one op orders all children of one corpus position.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveOrderBenchmark
+    extends Object
+{
+
+	@Benchmark
+	public List<DFSTreeNode> customMoveOrderer(BenchmarkPositions positions)
+	{
+		return CustomMoveOrderer.order(positions.nextSiblingList());
+	}
+
+}
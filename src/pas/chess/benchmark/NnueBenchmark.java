@@ -0,0 +1,114 @@
+package src.pas.chess.benchmark;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.player.PlayerType;
+import edu.bu.chess.search.DFSTreeNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+import java.util.concurrent.TimeUnit;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.heuristics.HeuristicParameters;
+import src.pas.chess.nnue.NnueAccumulator;
+import src.pas.chess.nnue.NnueEvaluator;
+import src.pas.chess.nnue.NnueKernel;
+import src.pas.chess.nnue.NnueNetwork;
+import src.pas.chess.nnue.ScalarNnueKernel;
+
+
+/**
+ * NNUE evaluation cost per corpus child node (compare with HeuristicsBenchmark.customHeuristics), once per kernel:
+ *     forward       the dense layers only, on accumulators that are already up to date
+ *     incremental   update the child's accumulators from its parent's, then forward: the cost of a leaf in a search
+ *     refresh       compute the child's accumulators from scratch, then forward
+ * The vector kernel needs vector.srcs built; the benchmark JVM gets --add-modules jdk.incubator.vector. The network is
+ * NnueNetwork.materialNetwork (the arithmetic does not depend on the weights).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Thread)
+public class NnueBenchmark
+    extends Object
+{
+
+	@Param({"scalar", "vector"})
+	public String kernelName;
+
+	private NnueEvaluator evaluator;
+	private DFSTreeNode[] childNodes;
+	private boolean[] whiteToMove;
+	private int childIdx;
+
+	@Setup(Level.Trial)
+	public void setup(BenchmarkPositions positions)
+	{
+		NnueKernel kernel = this.kernelName.equals("scalar") ? new ScalarNnueKernel() : NnueEvaluator.loadVectorKernel();
+		if(kernel == null)
+		{
+			throw new IllegalStateException("NnueBenchmark.setup [ERROR]: the vector kernel is not available, build" +
+				" vector.srcs and run with --add-modules jdk.incubator.vector");
+		}
+
+		// ply 2 * idx holds the parent of child idx, ply 2 * idx + 1 the child itself
+		this.childNodes = positions.getChildNodes();
+		this.whiteToMove = new boolean[this.childNodes.length];
+		this.evaluator = new NnueEvaluator(NnueNetwork.materialNetwork(HeuristicParameters.get()), kernel,
+			2 * this.childNodes.length);
+		NnueAccumulator accumulator = this.evaluator.getAccumulator();
+		for(int idx = 0; idx < this.childNodes.length; ++idx)
+		{
+			DFSTreeNode child = this.childNodes[idx];
+			accumulator.refresh(2 * idx, child.getParent().getGame());
+			accumulator.update(2 * idx + 1, child.getGame());
+			this.whiteToMove[idx] = child.getGame().getCurrentPlayer().getPlayerType() == PlayerType.WHITE;
+		}
+		this.childIdx = 0;
+	}
+
+	private int nextChildIdx()
+	{
+		this.childIdx = (this.childIdx + 1) % this.childNodes.length;
+		return this.childIdx;
+	}
+
+	@Benchmark
+	public double forward()
+	{
+		int idx = this.nextChildIdx();
+		return this.evaluator.evaluate(2 * idx + 1, this.whiteToMove[idx]);
+	}
+
+	@Benchmark
+	public double incremental()
+	{
+		int idx = this.nextChildIdx();
+		this.evaluator.update(2 * idx + 1, this.childNodes[idx].getGame());
+		return this.evaluator.evaluate(2 * idx + 1, this.whiteToMove[idx]);
+	}
+
+	@Benchmark
+	public double refresh()
+	{
+		int idx = this.nextChildIdx();
+		this.evaluator.refresh(2 * idx + 1, this.childNodes[idx].getGame());
+		return this.evaluator.evaluate(2 * idx + 1, this.whiteToMove[idx]);
+	}
+
+}
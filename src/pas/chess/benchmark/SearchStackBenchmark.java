@@ -0,0 +1,114 @@
+package src.pas.chess.benchmark;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.move.Move;
+import edu.bu.chess.search.DFSTreeNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+import java.util.concurrent.TimeUnit;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.search.MoveList;
+import src.pas.chess.search.PackedMove;
+import src.pas.chess.search.SearchStack;
+
+
+/**
+ * Per node cost of the search stack. Run with -prof gc: gc.alloc.rate.norm of visitNodes is what the stack itself
+ * allocates per visited node (0 B/op once warmed up), searchNode adds move generation and applying one move, which is
+ * the edu.bu.chess allocation a searcher cannot avoid.
+ *
+ * One op is one node: visitNodes walks the moves of a pre-generated root row like a search visiting its leaves (push,
+ * score, best move / pv update, killer on a "cutoff", pop); searchNode generates the next corpus position's moves into
+ * the stack, orders killers and builds the child of the first move.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchStackBenchmark
+    extends Object
+{
+
+	@State(Scope.Thread)
+	public static class StackState
+	    extends Object
+	{
+		private SearchStack stack;
+		private int numRootMoves;
+		private int moveIdx;
+
+		public SearchStack getStack() { return this.stack; }
+
+		@Setup(Level.Trial)
+		public void setup(BenchmarkPositions positions)
+		{
+			this.stack = SearchStack.forCurrentThread(8);
+			DFSTreeNode rootNode = positions.getRootNodes()[0];
+			this.stack.push(0, rootNode, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+			this.numRootMoves = this.stack.getMoveList().generate(0, rootNode.getGame());
+			this.moveIdx = 0;
+		}
+
+		/**
+		 * @return the index of the next root move to visit
+		 */
+		public int nextMoveIdx()
+		{
+			this.moveIdx = (this.moveIdx + 1) % this.numRootMoves;
+			return this.moveIdx;
+		}
+	}
+
+	@Benchmark
+	public int visitNodes(StackState state)
+	{
+		SearchStack stack = state.getStack();
+		int moveIdx = state.nextMoveIdx();
+		int move = stack.getMoveList().get(0, moveIdx);
+
+		stack.push(1, stack.getNode(0), stack.getAlpha(0), stack.getBeta(0));
+		double score = PackedMove.getTo(move) - PackedMove.getFrom(move);
+		stack.pop(1);
+		if(moveIdx == 0 || score > stack.getBestScore(0))
+		{
+			stack.setBest(0, move, score);
+		}
+		if((moveIdx & 7) == 0)
+		{
+			stack.addKiller(1, move);
+		}
+		return stack.getBestMove(0);
+	}
+
+	@Benchmark
+	public DFSTreeNode searchNode(StackState state, BenchmarkPositions positions)
+	{
+		SearchStack stack = state.getStack();
+		DFSTreeNode node = positions.nextRootNode();
+		stack.push(2, node, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+		MoveList moveList = stack.getMoveList();
+		moveList.generate(2, node.getGame());
+		stack.orderKillers(2);
+
+		Move move = moveList.getMove(2, 0);
+		DFSTreeNode child = new DFSTreeNode(move, node.getGame().applyMove(move), node, node.getMaxPlayer());
+		stack.pop(2);
+		return child;
+	}
+
+}
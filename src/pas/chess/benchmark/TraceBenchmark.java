@@ -0,0 +1,161 @@
+package src.pas.chess.benchmark;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.search.DFSTreeNode;
+import edu.bu.chess.search.DFSTreeNodeType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.heuristics.DefaultHeuristics;
+import src.pas.chess.instrumentation.TraceRingBuffer;
+
+
+/**
+ * Overhead of instrumentation.MinimaxAgent's per-node tracing: the same depth 1 minimax search (DefaultHeuristics, as the
+ * instrumented agent uses) run untraced, traced through the TraceRingBuffer, and traced the old way with a synchronous
+ * BufferedWriter.write/newLine per node. Traces go to temp files that are deleted after the trial.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TraceBenchmark
+    extends Object
+{
+
+	public static final int SEARCH_DEPTH = 1;
+
+	@State(Scope.Thread)
+	public static class TraceFiles
+	    extends Object
+	{
+		private File ringBufferFile;
+		private File synchronousFile;
+		private BufferedWriter ringBufferWriter;
+		private BufferedWriter synchronousWriter;
+		private TraceRingBuffer traceBuffer;
+
+		public BufferedWriter getSynchronousWriter() { return this.synchronousWriter; }
+		public TraceRingBuffer getTraceBuffer() { return this.traceBuffer; }
+
+		@Setup(Level.Trial)
+		public void setup() throws IOException
+		{
+			this.ringBufferFile = File.createTempFile("trace-ring-buffer", ".csv");
+			this.synchronousFile = File.createTempFile("trace-synchronous", ".csv");
+			// same writers the agent uses
+			this.ringBufferWriter = new BufferedWriter(new FileWriter(this.ringBufferFile), 1 << 16);
+			this.synchronousWriter = new BufferedWriter(new FileWriter(this.synchronousFile));
+			this.traceBuffer = new TraceRingBuffer(this.ringBufferWriter);
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() throws IOException
+		{
+			this.traceBuffer.close();
+			System.out.println("TraceBenchmark [INFO] ring buffer wrote=" + this.traceBuffer.getNumWritten() +
+				" dropped=" + this.traceBuffer.getNumDropped());
+			this.ringBufferWriter.close();
+			this.synchronousWriter.close();
+			this.ringBufferFile.delete();
+			this.synchronousFile.delete();
+		}
+	}
+
+	@Benchmark
+	public double untraced(BenchmarkPositions positions) throws IOException
+	{
+		return TraceBenchmark.minimax(positions.nextRootNode(), TraceBenchmark.SEARCH_DEPTH, null, null);
+	}
+
+	@Benchmark
+	public double ringBufferTrace(BenchmarkPositions positions, TraceFiles files) throws IOException
+	{
+		return TraceBenchmark.minimax(positions.nextRootNode(), TraceBenchmark.SEARCH_DEPTH, files.getTraceBuffer(), null);
+	}
+
+	@Benchmark
+	public double synchronousTrace(BenchmarkPositions positions, TraceFiles files) throws IOException
+	{
+		return TraceBenchmark.minimax(positions.nextRootNode(), TraceBenchmark.SEARCH_DEPTH, null,
+			files.getSynchronousWriter());
+	}
+
+	/**
+	 * Cost of tracing one node in isolation (node expansion in the searches above costs far more than either).
+	 * When the drainer cannot keep up, record() takes the drop path, which the teardown line reports.
+	 */
+	@Benchmark
+	public void ringBufferRecord(TraceFiles files)
+	{
+		files.getTraceBuffer().record(3, 30, 123456789L);
+	}
+
+	@Benchmark
+	public void synchronousRecord(TraceFiles files) throws IOException
+	{
+		files.getSynchronousWriter().write(3 + "," + 30 + "," + 123456789L);
+		files.getSynchronousWriter().newLine();
+	}
+
+	/**
+	 * The instrumented agent's minimax, tracing into whichever of traceBuffer/writer is not null.
+	 */
+	private static double minimax(DFSTreeNode node, int depth, TraceRingBuffer traceBuffer, BufferedWriter writer)
+		throws IOException
+	{
+		int numChildren = 0;
+		long startTime = System.nanoTime();
+		double utilityValue;
+		if(node.isTerminal())
+		{
+			utilityValue = node.getMaxPlayerUtilityValue();
+		} else if(depth <= 0)
+		{
+			utilityValue = DefaultHeuristics.getMaxPlayerHeuristicValue(node);
+		} else
+		{
+			boolean isMax = node.getType() == DFSTreeNodeType.MAX;
+			utilityValue = isMax ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+			for(DFSTreeNode child : node.getChildren())
+			{
+				numChildren += 1;
+				double childUtilityValue = TraceBenchmark.minimax(child, depth - 1, traceBuffer, writer);
+				utilityValue = isMax ? Math.max(utilityValue, childUtilityValue) : Math.min(utilityValue, childUtilityValue);
+			}
+		}
+		long endTime = System.nanoTime();
+
+		if(traceBuffer != null)
+		{
+			traceBuffer.record(depth, numChildren, endTime - startTime);
+		} else if(writer != null)
+		{
+			writer.write(depth + "," + numChildren + "," + (endTime - startTime));
+			writer.newLine();
+		}
+		return utilityValue;
+	}
+
+}
@@ -0,0 +1,522 @@
+package src.pas.chess.debug;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.move.Move;
+import edu.bu.chess.game.piece.PieceType;
+import edu.bu.chess.search.DFSTreeNode;
+
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.agents.AlphaBetaAgent;
+import src.pas.chess.agents.MinimaxAgent;
+import src.pas.chess.match.EngineFactory;
+import src.pas.chess.search.PackedMove;
+import src.pas.chess.search.PositionHashStack;
+import src.pas.chess.search.SearchStack;
+import src.pas.chess.utils.Fen;
+import src.pas.chess.utils.MoveNotation;
+import src.pas.chess.utils.PositionCorpus;
+import src.pas.chess.utils.Zobrist;
+
+
+/**
+ * Offline version of MinimaxReflectionAgent: runs AlphaBetaAgent's alphaBetaSearch and MinimaxAgent's minimaxSearch
+ * (both through reflection, both with CustomHeuristics) on every position of a corpus, in parallel, and checks that
+ *     - the root utility of alpha-beta equals the minimax utility, and
+ *     - the move alpha-beta picks is one of the moves minimax scores as best (its equivalence class).
+ * Every failing position is shrunk before it is reported: first to the smallest depth that still fails, then by
+ * removing pieces (kings stay) one at a time for as long as the same kind of failure remains.
+ *
+ * Usage:
+ *     java -cp "./lib/*:." src.pas.chess.debug.DifferentialValidator <corpus file> [--depth D] [--threads T]
+ *         [--samples N] [--max-plies P] [--seed S] [--out report]
+ * With --samples N every corpus position also yields N positions reached by playing 1..P random moves from it, so a
+ * few dozen openings turn into thousands of positions.
+ *
+ * Cost: both searchers walk the library's DFSTreeNodes (about 2 ms per node, mostly its terminal checks and move
+ * generation), and minimax, about 90% of the nodes at depth 3, searches every root move in full. That is about 2
+ * minutes per middlegame position at depth 3 on one core. Positions are independent tasks sharing only LongAdder
+ * counters, so a depth 3 corpus scales with --threads up to the number of cores; the summary reports nodes/s.
+ */
+public class DifferentialValidator
+    extends Object
+{
+
+	public static final int DEFAULT_DEPTH = 3;
+	public static final int DEFAULT_MAX_PLIES = 40;
+	public static final String DEFAULT_REPORT_PATH = "output/validation/report.txt";
+	public static final double EPSILON = 1e-9;
+
+	public static enum Verdict
+	{
+		PASS,
+		UTILITY_MISMATCH,   // alpha-beta root utility differs from minimax
+		NOT_OPTIMAL,        // alpha-beta utility is right but its move is not among minimax's best moves
+		ERROR;              // one of the searchers threw
+	}
+
+	public static class Result
+	    extends Object
+	{
+		private final String fen;
+		private final int depth;
+		private final Verdict verdict;
+		private final double minimaxUtility;
+		private final double alphaBetaUtility;
+		private final String alphaBetaMove;
+		private final TreeSet<String> bestMoves;
+		private final String error;
+
+		public Result(String fen, int depth, Verdict verdict, double minimaxUtility, double alphaBetaUtility,
+		              String alphaBetaMove, TreeSet<String> bestMoves, String error)
+		{
+			this.fen = fen;
+			this.depth = depth;
+			this.verdict = verdict;
+			this.minimaxUtility = minimaxUtility;
+			this.alphaBetaUtility = alphaBetaUtility;
+			this.alphaBetaMove = alphaBetaMove;
+			this.bestMoves = bestMoves;
+			this.error = error;
+		}
+
+		public String getFen() { return this.fen; }
+		public int getDepth() { return this.depth; }
+		public Verdict getVerdict() { return this.verdict; }
+		public double getMinimaxUtility() { return this.minimaxUtility; }
+		public double getAlphaBetaUtility() { return this.alphaBetaUtility; }
+		public String getAlphaBetaMove() { return this.alphaBetaMove; }
+		public TreeSet<String> getBestMoves() { return this.bestMoves; }
+		public String getError() { return this.error; }
+
+		@Override
+		public String toString()
+		{
+			if(this.getVerdict() == Verdict.ERROR)
+			{
+				return String.format(Locale.ROOT, "%s depth=%d fen=%s error=%s", this.getVerdict(), this.getDepth(),
+					this.getFen(), this.getError());
+			}
+			return String.format(Locale.ROOT, "%s depth=%d fen=%s minimax=%.6f alphabeta=%.6f alphabeta_move=%s " +
+				"best_moves=%s", this.getVerdict(), this.getDepth(), this.getFen(), this.getMinimaxUtility(),
+				this.getAlphaBetaUtility(), this.getAlphaBetaMove(), this.getBestMoves());
+		}
+	}
+
+	private final EngineFactory alphaBetaFactory;
+	private final EngineFactory minimaxFactory;
+	private final Method alphaBetaSearchMethod;
+	private final Method minimaxSearchMethod;
+
+	public DifferentialValidator()
+	{
+		// the depth in the spec only matters to the agents' own searches, we pass the depth to the search methods
+		this.alphaBetaFactory = EngineFactory.fromSpec(AlphaBetaAgent.class.getName(), 0);
+		this.minimaxFactory = EngineFactory.fromSpec(MinimaxAgent.class.getName(), 0);
+		this.alphaBetaSearchMethod = DifferentialValidator.getSearchMethod(this.alphaBetaFactory, "alphaBetaSearch");
+		this.minimaxSearchMethod = DifferentialValidator.getSearchMethod(this.minimaxFactory, "minimaxSearch");
+	}
+
+	public EngineFactory getAlphaBetaFactory() { return this.alphaBetaFactory; }
+	public EngineFactory getMinimaxFactory() { return this.minimaxFactory; }
+	public Method getAlphaBetaSearchMethod() { return this.alphaBetaSearchMethod; }
+	public Method getMinimaxSearchMethod() { return this.minimaxSearchMethod; }
+
+	/**
+	 * Same lookup MinimaxReflectionAgent does: the first declared method with that name.
+	 */
+	private static Method getSearchMethod(EngineFactory factory, String methodName)
+	{
+		for(Method method : factory.getSearcherConstructor().getDeclaringClass().getDeclaredMethods())
+		{
+			if(method.getName().equals(methodName))
+			{
+				method.setAccessible(true);
+				return method;
+			}
+		}
+		throw new IllegalStateException("DifferentialValidator.getSearchMethod [ERROR]: " +
+			factory.getSearcherConstructor().getDeclaringClass().getName() + " has no method " + methodName);
+	}
+
+	private Object makeSearcher(EngineFactory factory, DFSTreeNode rootNode, int depth)
+		throws ReflectiveOperationException
+	{
+		Constructor<?> constructor = factory.getSearcherConstructor();
+		return constructor.newInstance(factory.getAgent(), rootNode, depth);
+	}
+
+	private static boolean isClose(double a, double b)
+	{
+		return Math.abs(a - b) <= DifferentialValidator.EPSILON * Math.max(1.0, Math.max(Math.abs(a), Math.abs(b)));
+	}
+
+	/**
+	 * Search one position with both searchers and compare.
+	 */
+	public Result validate(String fen, int depth)
+	{
+		try
+		{
+			Game game = Fen.parse(fen);
+
+			// minimax, one root move at a time so we know the utility of every root move
+			DFSTreeNode minimaxRoot = new DFSTreeNode(game, game.getCurrentPlayer());
+			Object minimaxSearcher = this.makeSearcher(this.getMinimaxFactory(), minimaxRoot, depth);
+			List<String> moves = new ArrayList<String>();
+			List<Double> utilities = new ArrayList<Double>();
+			double minimaxUtility = Double.NEGATIVE_INFINITY;  // the root is always a MAX node (side to move)
+			long rootHash = Zobrist.hash(game);
+			for(DFSTreeNode child : minimaxRoot.getChildren())
+			{
+				// the child is the root of this search, but its repetitions have to count the real root like alpha-beta:
+				// load both from the one root expansion instead of replaying the move into a GameHistory
+				PositionHashStack positionHashes = SearchStack.forCurrentThread(depth + 2).getPositionHashes();
+				positionHashes.clear();
+				positionHashes.push(rootHash, true);
+				positionHashes.push(Zobrist.hash(child.getGame()),
+					PackedMove.isIrreversible(PackedMove.encode(game, child.getMove())));
+				positionHashes.setLoaded(true);
+				DFSTreeNode searched = (DFSTreeNode)this.getMinimaxSearchMethod().invoke(minimaxSearcher, child, depth - 1);
+				moves.add(MoveNotation.toText(game, child.getMove()));
+				utilities.add(searched.getMaxPlayerUtilityValue());
+				minimaxUtility = Math.max(minimaxUtility, searched.getMaxPlayerUtilityValue());
+			}
+			if(moves.isEmpty())
+			{
+				// terminal position: nothing to compare
+				return new Result(fen, depth, Verdict.PASS, minimaxRoot.getMaxPlayerUtilityValue(),
+					minimaxRoot.getMaxPlayerUtilityValue(), null, new TreeSet<String>(), null);
+			}
+			TreeSet<String> bestMoves = new TreeSet<String>();
+			for(int moveIdx = 0; moveIdx < moves.size(); ++moveIdx)
+			{
+				if(DifferentialValidator.isClose(utilities.get(moveIdx), minimaxUtility))
+				{
+					bestMoves.add(moves.get(moveIdx));
+				}
+			}
+
+			DFSTreeNode alphaBetaRoot = new DFSTreeNode(game, game.getCurrentPlayer());
+			Object alphaBetaSearcher = this.makeSearcher(this.getAlphaBetaFactory(), alphaBetaRoot, depth);
+			DFSTreeNode alphaBetaChild = (DFSTreeNode)this.getAlphaBetaSearchMethod().invoke(alphaBetaSearcher,
+				alphaBetaRoot, depth, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+			Move alphaBetaMove = alphaBetaChild.getMove();
+			String alphaBetaMoveText = alphaBetaMove != null ? MoveNotation.toText(game, alphaBetaMove) : null;
+			double alphaBetaUtility = alphaBetaChild.getMaxPlayerUtilityValue();
+
+			Verdict verdict = Verdict.PASS;
+			if(!DifferentialValidator.isClose(alphaBetaUtility, minimaxUtility))
+			{
+				verdict = Verdict.UTILITY_MISMATCH;
+			} else if(!bestMoves.contains(alphaBetaMoveText))
+			{
+				verdict = Verdict.NOT_OPTIMAL;
+			}
+			return new Result(fen, depth, verdict, minimaxUtility, alphaBetaUtility, alphaBetaMoveText, bestMoves, null);
+		} catch(InvocationTargetException e)
+		{
+			return new Result(fen, depth, Verdict.ERROR, Double.NaN, Double.NaN, null, null, e.getCause().toString());
+		} catch(ReflectiveOperationException | RuntimeException e)
+		{
+			return new Result(fen, depth, Verdict.ERROR, Double.NaN, Double.NaN, null, null, e.toString());
+		}
+	}
+
+	/**
+	 * Shrink a failing result: lowest failing depth first, then drop pieces while the verdict stays the same.
+	 * Candidates where the side that just moved is left in check are not legal positions and are skipped.
+	 */
+	public Result shrink(Result failure)
+	{
+		Result smallest = failure;
+		for(int depth = 1; depth < failure.getDepth(); ++depth)
+		{
+			Result candidate = this.validate(failure.getFen(), depth);
+			if(candidate.getVerdict() == failure.getVerdict())
+			{
+				smallest = candidate;
+				break;
+			}
+		}
+
+		boolean isShrinking = true;
+		while(isShrinking)
+		{
+			isShrinking = false;
+			char[] squares = DifferentialValidator.expandPlacement(smallest.getFen());
+			for(int squareIdx = 0; squareIdx < squares.length && !isShrinking; ++squareIdx)
+			{
+				if(squares[squareIdx] == 0 || Fen.getPieceType(squares[squareIdx]) == PieceType.KING)
+				{
+					continue;
+				}
+
+				char removed = squares[squareIdx];
+				squares[squareIdx] = 0;
+				String candidateFen = DifferentialValidator.compressPlacement(squares, smallest.getFen());
+				squares[squareIdx] = removed;
+				if(!DifferentialValidator.isLegal(candidateFen))
+				{
+					continue;
+				}
+
+				Result candidate = this.validate(candidateFen, smallest.getDepth());
+				if(candidate.getVerdict() == failure.getVerdict())
+				{
+					smallest = candidate;
+					isShrinking = true;
+				}
+			}
+		}
+		return smallest;
+	}
+
+	private static boolean isLegal(String fen)
+	{
+		try
+		{
+			Game game = Fen.parse(fen);
+			return !game.isInCheck(game.getOtherPlayer());
+		} catch(RuntimeException e)
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * @return the FEN piece placement as 64 squares, rank 8 first, 0 for empty squares
+	 */
+	private static char[] expandPlacement(String fen)
+	{
+		char[] squares = new char[64];
+		int squareIdx = 0;
+		for(char c : fen.substring(0, fen.indexOf(' ')).toCharArray())
+		{
+			if(Character.isDigit(c))
+			{
+				squareIdx += c - '0';
+			} else if(c != '/')
+			{
+				squares[squareIdx] = c;
+				squareIdx += 1;
+			}
+		}
+		return squares;
+	}
+
+	/**
+	 * @return fen with its piece placement replaced by squares (the other fields are kept)
+	 */
+	private static String compressPlacement(char[] squares, String fen)
+	{
+		StringBuilder builder = new StringBuilder(fen.length());
+		for(int rankIdx = 0; rankIdx < 8; ++rankIdx)
+		{
+			int numEmpty = 0;
+			for(int fileIdx = 0; fileIdx < 8; ++fileIdx)
+			{
+				char c = squares[8 * rankIdx + fileIdx];
+				if(c == 0)
+				{
+					numEmpty += 1;
+					continue;
+				}
+				if(numEmpty > 0)
+				{
+					builder.append(numEmpty);
+					numEmpty = 0;
+				}
+				builder.append(c);
+			}
+			if(numEmpty > 0)
+			{
+				builder.append(numEmpty);
+			}
+			if(rankIdx < 7)
+			{
+				builder.append('/');
+			}
+		}
+		return builder.append(fen.substring(fen.indexOf(' '))).toString();
+	}
+
+	/**
+	 * Play 1..maxPlies random moves from fen (stopping early at terminal positions).
+	 */
+	public static String randomPosition(String fen, int maxPlies, Random random)
+	{
+		Game game = Fen.parse(fen);
+		int numPlies = 1 + random.nextInt(maxPlies);
+		for(int plyIdx = 0; plyIdx < numPlies; ++plyIdx)
+		{
+			List<Move> moves = game.getAllMoves(game.getCurrentPlayer());
+			if(moves.isEmpty())
+			{
+				break;
+			}
+			Game nextGame = game.applyMove(moves.get(random.nextInt(moves.size())));
+			if(nextGame.getAllMoves(nextGame.getCurrentPlayer()).isEmpty())
+			{
+				// keep positions that still have something to search
+				break;
+			}
+			game = nextGame;
+		}
+		return Fen.toFen(game);
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException, ExecutionException
+	{
+		if(args.length < 1)
+		{
+			System.err.println("Usage: java src.pas.chess.debug.DifferentialValidator <corpus file> [--depth D]" +
+				" [--threads T] [--samples N] [--max-plies P] [--seed S] [--out report]");
+			System.exit(-1);
+		}
+
+		int depth = DifferentialValidator.DEFAULT_DEPTH;
+		int numThreads = Runtime.getRuntime().availableProcessors();
+		int numSamples = 0;
+		int maxPlies = DifferentialValidator.DEFAULT_MAX_PLIES;
+		long seed = 0;
+		String reportPath = DifferentialValidator.DEFAULT_REPORT_PATH;
+		for(int argIdx = 1; argIdx + 1 < args.length; argIdx += 2)
+		{
+			switch(args[argIdx])
+			{
+			case "--depth":
+				depth = Integer.parseInt(args[argIdx + 1]);
+				break;
+			case "--threads":
+				numThreads = Integer.parseInt(args[argIdx + 1]);
+				break;
+			case "--samples":
+				numSamples = Integer.parseInt(args[argIdx + 1]);
+				break;
+			case "--max-plies":
+				maxPlies = Integer.parseInt(args[argIdx + 1]);
+				break;
+			case "--seed":
+				seed = Long.parseLong(args[argIdx + 1]);
+				break;
+			case "--out":
+				reportPath = args[argIdx + 1];
+				break;
+			default:
+				System.err.println("DifferentialValidator.main [ERROR]: unknown option=" + args[argIdx]);
+				System.exit(-1);
+			}
+		}
+
+		List<String> fens = new ArrayList<String>();
+		Random random = new Random(seed);
+		for(String fen : PositionCorpus.load(args[0]).getFens())
+		{
+			fens.add(fen);
+			for(int sampleIdx = 0; sampleIdx < numSamples; ++sampleIdx)
+			{
+				fens.add(DifferentialValidator.randomPosition(fen, maxPlies, random));
+			}
+		}
+
+		DifferentialValidator validator = new DifferentialValidator();
+		ExecutorService threadPool = Executors.newFixedThreadPool(numThreads);
+		CompletionService<Result[]> completionService = new ExecutorCompletionService<Result[]>(threadPool);
+		final int searchDepth = depth;
+		for(String fen : fens)
+		{
+			completionService.submit(new Callable<Result[]>()
+			{
+				@Override
+				public Result[] call()
+				{
+					Result result = validator.validate(fen, searchDepth);
+					if(result.getVerdict() == Verdict.PASS)
+					{
+						return new Result[]{result};
+					}
+					return new Result[]{result, validator.shrink(result)};
+				}
+			});
+		}
+
+		File reportDirectory = new File(reportPath).getAbsoluteFile().getParentFile();
+		if(!reportDirectory.exists())
+		{
+			reportDirectory.mkdirs();
+		}
+
+		int[] verdictCounts = new int[Verdict.values().length];
+		long startTime = System.nanoTime();
+		try(BufferedWriter writer = Files.newBufferedWriter(Paths.get(reportPath), StandardCharsets.UTF_8))
+		{
+			for(int resultIdx = 0; resultIdx < fens.size(); ++resultIdx)
+			{
+				Result[] results = completionService.take().get();
+				verdictCounts[results[0].getVerdict().ordinal()] += 1;
+				if(results.length > 1)
+				{
+					writer.write(results[0].toString());
+					writer.newLine();
+					writer.write("    shrunk to: " + results[1]);
+					writer.newLine();
+					writer.flush();
+					System.out.println(results[0]);
+					System.out.println("    shrunk to: " + results[1]);
+				}
+				if((resultIdx + 1) % 100 == 0)
+				{
+					System.out.println(String.format(Locale.ROOT, "DifferentialValidator.main [INFO] %d/%d positions " +
+						"(%.1f s)", resultIdx + 1, fens.size(), (System.nanoTime() - startTime) / 1e9));
+				}
+			}
+		} finally
+		{
+			threadPool.shutdown();
+		}
+
+		long minimaxNodes = ((MinimaxAgent)validator.getMinimaxFactory().getAgent()).getSearchStats().getNodes();
+		long alphaBetaNodes = ((AlphaBetaAgent)validator.getAlphaBetaFactory().getAgent()).getSearchStats().getNodes();
+		validator.getMinimaxFactory().close();
+		validator.getAlphaBetaFactory().close();
+		double elapsedInS = (System.nanoTime() - startTime) / 1e9;
+		StringBuilder summary = new StringBuilder(String.format(Locale.ROOT, "%d positions at depth %d in %.1f s " +
+			"(%.1f s/position, %.0f nodes/s on %d threads):", fens.size(), depth, elapsedInS,
+			fens.isEmpty() ? 0.0 : elapsedInS / fens.size(), (minimaxNodes + alphaBetaNodes) / Math.max(elapsedInS, 1e-9),
+			numThreads));
+		for(Verdict verdict : Verdict.values())
+		{
+			summary.append(' ').append(verdict).append('=').append(verdictCounts[verdict.ordinal()]);
+		}
+		summary.append(String.format(Locale.ROOT, ", nodes minimax=%d alphabeta=%d (%.1f%%), report=%s", minimaxNodes,
+			alphaBetaNodes, minimaxNodes > 0 ? 100.0 * alphaBetaNodes / minimaxNodes : 0.0, reportPath));
+		System.out.println(summary);
+		System.exit(verdictCounts[Verdict.PASS.ordinal()] == fens.size() ? 0 : 1);
+	}
+
+}
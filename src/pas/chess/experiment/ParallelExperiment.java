@@ -0,0 +1,411 @@
+package src.pas.chess.experiment;
+
+
+// SYSTEM IMPORTS
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.instrumentation.SearchStats;
+import src.pas.chess.match.GameOutcome;
+import src.pas.chess.replay.Replay;
+import src.pas.chess.replay.ReplayWriter;
+import src.pas.chess.streaming.AsyncPgnStreamer;
+
+
+/**
+ * Runs the episodes of a SEPIA config concurrently in one JVM. The chess library keeps the game in singletons (Planner,
+ * History, Streamer) and SEPIA has static state of its own, so two episodes can not share classes: every episode
+ * gets its own class loader over the class path, i.e. its own copy of every library and project class and so of every
+ * singleton, and runs edu.cwru.sepia.Main2 inside it on a thread of a fixed pool.
+ *
+ * Every episode runs its own copy of the config in outDir/epN/config.xml:
+ *     - experiment.NumEpisodes is 1 and the save directories are outDir/epN/saves
+ *     - agent arguments under output/ (the streaming files) are moved to outDir/epN/
+ *     - VisualAgent players are left out, N game windows would only get in each other's way
+ * Once an episode is over its outcome is read from the .replay file its agents recorded (see ReplayWriter), and a line
+ * is appended to outDir/results.csv; episodes finish out of order, so lines are in completion order. Agents that do
+ * not record replays (e.g. the library's agents) show up with outcome "?".
+ *
+ * Usage:
+ *     java -cp "./lib/*:." src.pas.chess.experiment.ParallelExperiment &lt;config.xml&gt; [--episodes N] [--threads T]
+ *         [--out outDir]
+ * The number of episodes defaults to the config's experiment.NumEpisodes. Each episode pays for loading (and JIT
+ * compiling) its own classes, a few hundred ms, which short episodes notice.
+ */
+public class ParallelExperiment
+    extends Object
+{
+
+	public static final String DEFAULT_OUT_DIR = "output/experiments/experiment";
+	public static final String NUM_EPISODES_KEY = "experiment.NumEpisodes";
+	public static final String SEPIA_MAIN_CLASS = "edu.cwru.sepia.Main2";
+	public static final String VISUAL_AGENT_CLASS = "edu.cwru.sepia.agent.visual.VisualAgent";
+	public static final String STREAM_DIRECTORY_PREFIX = "output/";
+	public static final String CSV_HEADER = "episode,outcome,plies,wallTimeMS,directory";
+
+	private static final String[] CLOSE_ALL_CLASSES = new String[]{AsyncPgnStreamer.class.getName(),
+		ReplayWriter.class.getName(), SearchStats.class.getName()};
+	private static final String[] SAVE_DIRECTORY_KEYS = new String[]{"experiment.save.replaydirectory",
+		"experiment.save.agentdirectory", "experiment.temp.thing"};
+
+	public static class EpisodeResult
+	    extends Object
+	{
+		private final int episodeIdx;
+		private final String outcome;     // a PGN result, "?" if unknown, "error" if the episode failed
+		private final int numPlies;
+		private final long wallTimeInMS;
+		private final File directory;
+
+		public EpisodeResult(int episodeIdx, String outcome, int numPlies, long wallTimeInMS, File directory)
+		{
+			this.episodeIdx = episodeIdx;
+			this.outcome = outcome;
+			this.numPlies = numPlies;
+			this.wallTimeInMS = wallTimeInMS;
+			this.directory = directory;
+		}
+
+		public int getEpisodeIdx() { return this.episodeIdx; }
+		public String getOutcome() { return this.outcome; }
+		public int getNumPlies() { return this.numPlies; }
+		public long getWallTimeInMS() { return this.wallTimeInMS; }
+		public File getDirectory() { return this.directory; }
+
+		public String toCsvLine()
+		{
+			return this.getEpisodeIdx() + "," + this.getOutcome() + "," + this.getNumPlies() + "," +
+				this.getWallTimeInMS() + "," + this.getDirectory().getPath();
+		}
+	}
+
+	private final File configFile;
+	private final File outDir;
+	private final URL[] classPath;
+
+	public ParallelExperiment(File configFile, File outDir) throws MalformedURLException
+	{
+		this.configFile = configFile;
+		this.outDir = outDir;
+		this.classPath = ParallelExperiment.getClassPathURLs();
+	}
+
+	public File getConfigFile() { return this.configFile; }
+	public File getOutDir() { return this.outDir; }
+
+	public File getEpisodeDirectory(int episodeIdx) { return new File(this.getOutDir(), "ep" + episodeIdx); }
+
+	/**
+	 * The class path this JVM was started with (the launcher has already expanded lib/* into the jars).
+	 */
+	private static URL[] getClassPathURLs() throws MalformedURLException
+	{
+		String[] entries = System.getProperty("java.class.path").split(File.pathSeparator);
+		List<URL> urls = new ArrayList<URL>(entries.length);
+		for(String entry : entries)
+		{
+			if(!entry.isEmpty())
+			{
+				urls.add(new File(entry).toURI().toURL());
+			}
+		}
+		return urls.toArray(new URL[urls.size()]);
+	}
+
+	/**
+	 * Play one episode in its own class loader and directory.
+	 */
+	public EpisodeResult runEpisode(int episodeIdx)
+	{
+		File directory = this.getEpisodeDirectory(episodeIdx);
+		long startTime = System.nanoTime();
+		try
+		{
+			File episodeConfig = this.writeEpisodeConfig(directory);
+
+			// the platform loader as parent: only the JDK is shared, every class on the class path is loaded again
+			Thread thread = Thread.currentThread();
+			ClassLoader previousLoader = thread.getContextClassLoader();
+			try(URLClassLoader loader = new URLClassLoader("episode" + episodeIdx, this.classPath,
+				ClassLoader.getPlatformClassLoader()))
+			{
+				thread.setContextClassLoader(loader);
+				Method main = loader.loadClass(ParallelExperiment.SEPIA_MAIN_CLASS).getMethod("main", String[].class);
+				try
+				{
+					main.invoke(null, (Object)new String[]{episodeConfig.getPath()});
+				} finally
+				{
+					// the episode's writer threads and MBeans would keep its loader (every class of it) alive
+					for(String className : ParallelExperiment.CLOSE_ALL_CLASSES)
+					{
+						loader.loadClass(className).getMethod("closeAll").invoke(null);
+					}
+				}
+			} finally
+			{
+				thread.setContextClassLoader(previousLoader);
+			}
+		} catch(InvocationTargetException e)
+		{
+			System.err.println("ParallelExperiment.runEpisode [ERROR]: episode " + episodeIdx + " failed: " + e.getCause());
+			e.getCause().printStackTrace();
+			return new EpisodeResult(episodeIdx, "error", 0, (System.nanoTime() - startTime) / 1000000, directory);
+		} catch(Exception | LinkageError e)
+		{
+			// a LinkageError is a class path without SEPIA's dependencies (e.g. JAXB), the next episode will not fare better
+			System.err.println("ParallelExperiment.runEpisode [ERROR]: unable to run episode " + episodeIdx + ": " + e);
+			return new EpisodeResult(episodeIdx, "error", 0, (System.nanoTime() - startTime) / 1000000, directory);
+		}
+		long wallTimeInMS = (System.nanoTime() - startTime) / 1000000;
+
+		Replay replay = ParallelExperiment.findReplay(directory);
+		if(replay == null)
+		{
+			return new EpisodeResult(episodeIdx, "?", 0, wallTimeInMS, directory);
+		}
+		GameOutcome outcome = replay.getOutcome();
+		return new EpisodeResult(episodeIdx, outcome != null ? outcome.getPgnResult() : "*", replay.size(), wallTimeInMS,
+			directory);
+	}
+
+	/**
+	 * @return the first game of the first replay file in directory, null if there is none
+	 */
+	private static Replay findReplay(File directory)
+	{
+		File[] files = directory.listFiles((dir, name) -> name.endsWith(ReplayWriter.FILE_EXTENSION));
+		if(files == null)
+		{
+			return null;
+		}
+		for(File file : files)
+		{
+			try
+			{
+				List<Replay> replays = Replay.readAll(file.toPath());
+				if(!replays.isEmpty())
+				{
+					return replays.get(0);
+				}
+			} catch(IOException e)
+			{
+				System.err.println("ParallelExperiment.findReplay [WARNING]: unable to read " + file + ": " + e);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the config's experiment.NumEpisodes, 1 if it has none
+	 */
+	public int getNumEpisodes() throws Exception
+	{
+		Element parameter = ParallelExperiment.findParameter(this.readConfig(), ParallelExperiment.NUM_EPISODES_KEY);
+		return parameter != null ? Integer.parseInt(parameter.getAttribute("Value")) : 1;
+	}
+
+	private Document readConfig() throws Exception
+	{
+		return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(this.getConfigFile());
+	}
+
+	private File writeEpisodeConfig(File directory) throws Exception
+	{
+		Document config = this.readConfig();
+		String directoryPath = directory.getPath().replace(File.separatorChar, '/');
+
+		// one episode, saved into the episode's directory
+		Element numEpisodes = ParallelExperiment.findParameter(config, ParallelExperiment.NUM_EPISODES_KEY);
+		if(numEpisodes != null)
+		{
+			numEpisodes.setAttribute("Value", "1");
+		}
+		for(String key : ParallelExperiment.SAVE_DIRECTORY_KEYS)
+		{
+			Element parameter = ParallelExperiment.findParameter(config, key);
+			if(parameter != null)
+			{
+				parameter.setAttribute("Value", directoryPath + "/saves");
+			}
+		}
+
+		// no game windows, streaming files into the episode's directory
+		NodeList players = config.getElementsByTagName("Player");
+		for(int playerIdx = players.getLength() - 1; playerIdx >= 0; --playerIdx)
+		{
+			Element player = (Element)players.item(playerIdx);
+			NodeList classNames = player.getElementsByTagName("ClassName");
+			if(classNames.getLength() > 0 &&
+			   ParallelExperiment.VISUAL_AGENT_CLASS.equals(classNames.item(0).getTextContent().trim()))
+			{
+				player.getParentNode().removeChild(player);
+				continue;
+			}
+
+			NodeList arguments = player.getElementsByTagName("Argument");
+			for(int argumentIdx = 0; argumentIdx < arguments.getLength(); ++argumentIdx)
+			{
+				Node argument = arguments.item(argumentIdx);
+				String value = argument.getTextContent().trim();
+				if(value.startsWith(ParallelExperiment.STREAM_DIRECTORY_PREFIX))
+				{
+					argument.setTextContent(directoryPath + "/" +
+						value.substring(ParallelExperiment.STREAM_DIRECTORY_PREFIX.length()));
+				}
+			}
+		}
+
+		Files.createDirectories(directory.toPath());
+		File episodeConfig = new File(directory, "config.xml");
+		Transformer transformer = TransformerFactory.newInstance().newTransformer();
+		transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+		transformer.transform(new DOMSource(config), new StreamResult(episodeConfig));
+		return episodeConfig;
+	}
+
+	private static Element findParameter(Document config, String name)
+	{
+		NodeList parameters = config.getElementsByTagName("Parameter");
+		for(int parameterIdx = 0; parameterIdx < parameters.getLength(); ++parameterIdx)
+		{
+			Element parameter = (Element)parameters.item(parameterIdx);
+			if(name.equalsIgnoreCase(parameter.getAttribute("Name")))
+			{
+				return parameter;
+			}
+		}
+		return null;
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		if(args.length < 1)
+		{
+			System.err.println("Usage: java src.pas.chess.experiment.ParallelExperiment <config.xml> [--episodes N]" +
+				" [--threads T] [--out outDir]");
+			System.exit(-1);
+		}
+
+		int numEpisodes = -1;
+		int numThreads = Runtime.getRuntime().availableProcessors();
+		String outDir = ParallelExperiment.DEFAULT_OUT_DIR;
+		for(int argIdx = 1; argIdx + 1 < args.length; argIdx += 2)
+		{
+			switch(args[argIdx])
+			{
+			case "--episodes":
+				numEpisodes = Integer.parseInt(args[argIdx + 1]);
+				break;
+			case "--threads":
+				numThreads = Integer.parseInt(args[argIdx + 1]);
+				break;
+			case "--out":
+				outDir = args[argIdx + 1];
+				break;
+			default:
+				System.err.println("ParallelExperiment.main [ERROR]: unknown option=" + args[argIdx]);
+				System.exit(-1);
+			}
+		}
+
+		ParallelExperiment experiment = new ParallelExperiment(new File(args[0]), new File(outDir));
+		if(numEpisodes < 0)
+		{
+			numEpisodes = experiment.getNumEpisodes();
+		}
+
+		long startTime = System.nanoTime();
+		ExecutorService threadPool = Executors.newFixedThreadPool(numThreads);
+		CompletionService<EpisodeResult> completionService = new ExecutorCompletionService<EpisodeResult>(threadPool);
+		for(int episodeIdx = 0; episodeIdx < numEpisodes; ++episodeIdx)
+		{
+			final int finalEpisodeIdx = episodeIdx;
+			completionService.submit(new Callable<EpisodeResult>()
+			{
+				@Override
+				public EpisodeResult call()
+				{
+					return experiment.runEpisode(finalEpisodeIdx);
+				}
+			});
+		}
+
+		// from white's point of view
+		int numWins = 0;
+		int numDraws = 0;
+		int numLosses = 0;
+		int numUnknown = 0;
+		Files.createDirectories(experiment.getOutDir().toPath());
+		Path csvPath = Paths.get(experiment.getOutDir().getPath(), "results.csv");
+		try(BufferedWriter csvWriter = Files.newBufferedWriter(csvPath, StandardCharsets.UTF_8))
+		{
+			csvWriter.write(ParallelExperiment.CSV_HEADER);
+			csvWriter.newLine();
+			for(int episodeIdx = 0; episodeIdx < numEpisodes; ++episodeIdx)
+			{
+				EpisodeResult result = completionService.take().get();
+				csvWriter.write(result.toCsvLine());
+				csvWriter.newLine();
+				// flush per episode so a long experiment can be watched (and killed) without losing results
+				csvWriter.flush();
+
+				if(GameOutcome.WHITE_WIN.getPgnResult().equals(result.getOutcome()))
+				{
+					numWins += 1;
+				} else if(GameOutcome.DRAW.getPgnResult().equals(result.getOutcome()))
+				{
+					numDraws += 1;
+				} else if(GameOutcome.BLACK_WIN.getPgnResult().equals(result.getOutcome()))
+				{
+					numLosses += 1;
+				} else
+				{
+					numUnknown += 1;
+				}
+			}
+		} finally
+		{
+			threadPool.shutdownNow();
+		}
+
+		double elapsedHours = (System.nanoTime() - startTime) / 3.6e12;
+		System.out.println(String.format(Locale.ROOT, "%s: white +%d =%d -%d, %d unfinished or unknown (%d episodes on %d" +
+			" threads, %.0f episodes/hour), results in %s", experiment.getConfigFile(), numWins, numDraws, numLosses,
+			numUnknown, numEpisodes, numThreads, numEpisodes / elapsedHours, csvPath));
+	}
+
+}
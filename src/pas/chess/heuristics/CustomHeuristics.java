@@ -60,24 +60,9 @@ public class CustomHeuristics extends Object {
         return maxPlayerMaterial - minPlayerMaterial;
     }
 
-    // More Granular Piece Values
+    // More Granular Piece Values (see HeuristicParameters, which TexelTuner tunes)
     public static double getPieceValue(PieceType type) {
-        switch (type) {
-            case PAWN:
-                return 1.0;
-            case KNIGHT:
-                return 3.2;
-            case BISHOP:
-                return 3.33;
-            case ROOK:
-                return 5.1;
-            case QUEEN:
-                return 8.8;
-            case KING:
-                return 100.0; // Assign a high value to the king
-            default:
-                return 0.0;
-        }
+        return HeuristicParameters.get().getPieceValue(type);
     }
 
     // Piece-Square Tables for Positional Value
@@ -92,96 +77,12 @@ public class CustomHeuristics extends Object {
             return 0.0; // or some default value
         }
         
-        double[][] pieceSquareTable = getPieceSquareTable(piece.getType(), playerType);
-        return pieceSquareTable[x][y];
+        return HeuristicParameters.get().getPieceSquareValue(piece.getType(), playerType, x, y);
     }
 
     public static double[][] getPieceSquareTable(PieceType type, PlayerType playerType) {
-        // Define piece-square tables for each piece type
-        // For simplicity, we'll use simplified tables with values between -0.5 and 0.5
-        // Flip the table for black pieces
-        double[][] table = new double[8][8];
-        switch (type) {
-            case PAWN:
-                table = new double[][] {
-                        { 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0 },
-                        { 0.5, 0.5, 0.5, 0.5, 0.5, 0.5, 0.5, 0.5 },
-                        { 0.1, 0.1, 0.2, 0.3, 0.3, 0.2, 0.1, 0.1 },
-                        { 0.05, 0.05, 0.1, 0.25, 0.25, 0.1, 0.05, 0.05 },
-                        { 0.0, 0.0, 0.0, 0.2, 0.2, 0.0, 0.0, 0.0 },
-                        { 0.05, -0.05, -0.1, 0.0, 0.0, -0.1, -0.05, 0.05 },
-                        { 0.05, 0.1, 0.1, -0.2, -0.2, 0.1, 0.1, 0.05 },
-                        { 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0 } };
-                break;
-            case KNIGHT:
-                table = new double[][] {
-                        { -0.5, -0.4, -0.3, -0.3, -0.3, -0.3, -0.4, -0.5 },
-                        { -0.4, -0.2, 0.0, 0.0, 0.0, 0.0, -0.2, -0.4 },
-                        { -0.3, 0.0, 0.1, 0.15, 0.15, 0.1, 0.0, -0.3 },
-                        { -0.3, 0.05, 0.15, 0.2, 0.2, 0.15, 0.05, -0.3 },
-                        { -0.3, 0.0, 0.15, 0.2, 0.2, 0.15, 0.0, -0.3 },
-                        { -0.3, 0.05, 0.1, 0.15, 0.15, 0.1, 0.05, -0.3 },
-                        { -0.4, -0.2, 0.0, 0.05, 0.05, 0.0, -0.2, -0.4 },
-                        { -0.5, -0.4, -0.3, -0.3, -0.3, -0.3, -0.4, -0.5 } };
-                break;
-            case BISHOP:
-                table = new double[][] {
-                        { -0.2, -0.1, -0.1, -0.1, -0.1, -0.1, -0.1, -0.2 },
-                        { -0.1, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, -0.1 },
-                        { -0.1, 0.0, 0.05, 0.1, 0.1, 0.05, 0.0, -0.1 },
-                        { -0.1, 0.05, 0.05, 0.1, 0.1, 0.05, 0.05, -0.1 },
-                        { -0.1, 0.0, 0.1, 0.1, 0.1, 0.1, 0.0, -0.1 },
-                        { -0.1, 0.1, 0.1, 0.1, 0.1, 0.1, 0.1, -0.1 },
-                        { -0.1, 0.05, 0.0, 0.0, 0.0, 0.0, 0.05, -0.1 },
-                        { -0.2, -0.1, -0.1, -0.1, -0.1, -0.1, -0.1, -0.2 } };
-                break;
-            case ROOK:
-                table = new double[][] {
-                        { 0.0, 0.0, 0.0, 0.05, 0.05, 0.0, 0.0, 0.0 },
-                        { -0.05, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, -0.05 },
-                        { -0.05, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, -0.05 },
-                        { -0.05, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, -0.05 },
-                        { -0.05, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, -0.05 },
-                        { -0.05, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, -0.05 },
-                        { 0.05, 0.1, 0.1, 0.1, 0.1, 0.1, 0.1, 0.05 },
-                        { 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0 } };
-                break;
-            case QUEEN:
-                table = new double[][] {
-                        { -0.2, -0.1, -0.1, -0.05, -0.05, -0.1, -0.1, -0.2 },
-                        { -0.1, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, -0.1 },
-                        { -0.1, 0.0, 0.05, 0.05, 0.05, 0.05, 0.0, -0.1 },
-                        { -0.05, 0.0, 0.05, 0.05, 0.05, 0.05, 0.0, -0.05 },
-                        { 0.0, 0.0, 0.05, 0.05, 0.05, 0.05, 0.0, -0.05 },
-                        { -0.1, 0.05, 0.05, 0.05, 0.05, 0.05, 0.0, -0.1 },
-                        { -0.1, 0.0, 0.05, 0.0, 0.0, 0.0, 0.0, -0.1 },
-                        { -0.2, -0.1, -0.1, -0.05, -0.05, -0.1, -0.1, -0.2 } };
-                break;
-            case KING:
-                // Simplified king safety table
-                table = new double[][] {
-                        { -0.3, -0.4, -0.4, -0.5, -0.5, -0.4, -0.4, -0.3 },
-                        { -0.3, -0.4, -0.4, -0.5, -0.5, -0.4, -0.4, -0.3 },
-                        { -0.3, -0.4, -0.4, -0.5, -0.5, -0.4, -0.4, -0.3 },
-                        { -0.3, -0.4, -0.4, -0.5, -0.5, -0.4, -0.4, -0.3 },
-                        { -0.2, -0.3, -0.3, -0.4, -0.4, -0.3, -0.3, -0.2 },
-                        { -0.1, -0.2, -0.2, -0.2, -0.2, -0.2, -0.2, -0.1 },
-                        { 0.2, 0.2, 0.0, 0.0, 0.0, 0.0, 0.2, 0.2 },
-                        { 0.2, 0.3, 0.1, 0.0, 0.0, 0.1, 0.3, 0.2 } };
-                break;
-            default:
-                table = new double[8][8];
-        }
-
-        // Flip the table for black pieces
-        if (playerType == PlayerType.BLACK) {
-            double[][] flippedTable = new double[8][8];
-            for (int i = 0; i < 8; i++) {
-                flippedTable[i] = table[7 - i];
-            }
-            return flippedTable;
-        }
-        return table;
+        // the tables are flipped for black pieces; a copy, like the tables this used to build on every call
+        return HeuristicParameters.get().getPieceSquareTable(type, playerType);
     }
 
     // Refined Mobility - Weighted by Piece Type
@@ -189,8 +90,7 @@ public class CustomHeuristics extends Object {
         double mobility = 0;
         for (Piece piece : node.getGame().getBoard().getPieces(player)) {
             int moveCount = piece.getAllMoves(node.getGame()).size();
-            double pieceValue = getPieceValue(piece.getType());
-            mobility += moveCount * (pieceValue / 10.0); // Normalize the influence
+            mobility += moveCount * HeuristicParameters.get().getMobilityValue(piece.getType()); // a tenth of the piece value by default
         }
         return mobility;
     }
@@ -198,7 +98,7 @@ public class CustomHeuristics extends Object {
     // Improved Pawn Structure Evaluation
     public static double getPawnStructureScore(DFSTreeNode node, Player player) {
         double score = 0;
-        score += countAdvancedPawns(node, player) * 0.2;
+        score += countAdvancedPawns(node, player) * HeuristicParameters.get().getAdvancedPawnValue();
         return score;
     }
 
@@ -266,11 +166,12 @@ public class CustomHeuristics extends Object {
         double centerControlMin = getCenterControlScore(node, minPlayer);
 
         // Combine the scores with weights
+        HeuristicParameters parameters = HeuristicParameters.get();
         double heuristicValue = 0;
-        heuristicValue += (materialBalance) * 10.0; // Material is crucial
-        heuristicValue += (mobilityMax - mobilityMin) * 0.5;
-        heuristicValue += (pawnStructureMax - pawnStructureMin) * 2.0;
-        heuristicValue += (centerControlMax - centerControlMin) * 1.0;
+        heuristicValue += (materialBalance) * parameters.getMaterialWeight(); // Material is crucial
+        heuristicValue += (mobilityMax - mobilityMin) * parameters.getMobilityWeight();
+        heuristicValue += (pawnStructureMax - pawnStructureMin) * parameters.getPawnStructureWeight();
+        heuristicValue += (centerControlMax - centerControlMin) * parameters.getCenterControlWeight();
 
         return heuristicValue;
     }
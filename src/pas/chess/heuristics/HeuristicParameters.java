@@ -0,0 +1,430 @@
+package src.pas.chess.heuristics;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.piece.PieceType;
+import edu.bu.chess.game.player.PlayerType;
+
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Properties;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * The numbers CustomHeuristics weighs a position with: the group weights of getMaxPlayerHeuristicValue, piece values,
+ * piece-square tables, per piece mobility values and the advanced pawn bonus. The hand-picked values are the defaults;
+ * TexelTuner writes tuned ones to a parameter file, which is loaded once, the first time CustomHeuristics evaluates:
+ *     -Dchess.heuristics.params=path, or DEFAULT_PATH if that file exists, or the defaults.
+ *
+ * The file is a java.util.Properties file, tables are 64 numbers (row by row, in the orientation of
+ * CustomHeuristics.getPieceSquareTable for white). Missing keys keep their default.
+ *
+ * The parameters the searches use (get()) are shared by every search thread, so they are read only: their setters
+ * throw. To change them, copy them (new HeuristicParameters(HeuristicParameters.get())), change the copy and set(...)
+ * it, which swaps it in for the searches that start from then on.
+ */
+public class HeuristicParameters
+    extends Object
+{
+
+	public static final String PATH_PROPERTY = "chess.heuristics.params";
+	public static final String DEFAULT_PATH = "data/pas/chess/heuristics/params.properties";
+
+	public static final int NUM_PIECE_TYPES = PieceType.values().length;
+
+	private static final PieceType[] PIECE_TYPES = PieceType.values();
+
+	private static volatile HeuristicParameters instance = null;
+
+	private double materialWeight;
+	private double mobilityWeight;
+	private double pawnStructureWeight;
+	private double centerControlWeight;
+	private double advancedPawnValue;
+	private final double[] pieceValues;                 // indexed by PieceType ordinal
+	private final double[] mobilityValues;              // per legal move of a piece of that type
+	private final double[][][] pieceSquareTables;       // [2 * PieceType ordinal + (black ? 1 : 0)], black's flipped
+	private boolean isShared;                           // the instance of get(): read only
+
+	public HeuristicParameters()
+	{
+		this.materialWeight = 10.0;
+		this.mobilityWeight = 0.5;
+		this.pawnStructureWeight = 2.0;
+		this.centerControlWeight = 1.0;
+		this.advancedPawnValue = 0.2;
+		this.pieceValues = new double[HeuristicParameters.NUM_PIECE_TYPES];
+		this.mobilityValues = new double[HeuristicParameters.NUM_PIECE_TYPES];
+		this.pieceSquareTables = new double[HeuristicParameters.NUM_PIECE_TYPES * 2][][];
+		this.isShared = false;
+
+		this.setPieceValue(PieceType.PAWN, 1.0);
+		this.setPieceValue(PieceType.KNIGHT, 3.2);
+		this.setPieceValue(PieceType.BISHOP, 3.33);
+		this.setPieceValue(PieceType.ROOK, 5.1);
+		this.setPieceValue(PieceType.QUEEN, 8.8);
+		this.setPieceValue(PieceType.KING, 100.0); // Assign a high value to the king
+		for(PieceType type : HeuristicParameters.PIECE_TYPES)
+		{
+			// mobility used to weigh every move with a tenth of the piece value
+			this.setMobilityValue(type, this.getPieceValue(type) / 10.0);
+		}
+
+		this.setPieceSquareTable(PieceType.PAWN, new double[][] {
+			{ 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0 },
+			{ 0.5, 0.5, 0.5, 0.5, 0.5, 0.5, 0.5, 0.5 },
+			{ 0.1, 0.1, 0.2, 0.3, 0.3, 0.2, 0.1, 0.1 },
+			{ 0.05, 0.05, 0.1, 0.25, 0.25, 0.1, 0.05, 0.05 },
+			{ 0.0, 0.0, 0.0, 0.2, 0.2, 0.0, 0.0, 0.0 },
+			{ 0.05, -0.05, -0.1, 0.0, 0.0, -0.1, -0.05, 0.05 },
+			{ 0.05, 0.1, 0.1, -0.2, -0.2, 0.1, 0.1, 0.05 },
+			{ 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0 } });
+		this.setPieceSquareTable(PieceType.KNIGHT, new double[][] {
+			{ -0.5, -0.4, -0.3, -0.3, -0.3, -0.3, -0.4, -0.5 },
+			{ -0.4, -0.2, 0.0, 0.0, 0.0, 0.0, -0.2, -0.4 },
+			{ -0.3, 0.0, 0.1, 0.15, 0.15, 0.1, 0.0, -0.3 },
+			{ -0.3, 0.05, 0.15, 0.2, 0.2, 0.15, 0.05, -0.3 },
+			{ -0.3, 0.0, 0.15, 0.2, 0.2, 0.15, 0.0, -0.3 },
+			{ -0.3, 0.05, 0.1, 0.15, 0.15, 0.1, 0.05, -0.3 },
+			{ -0.4, -0.2, 0.0, 0.05, 0.05, 0.0, -0.2, -0.4 },
+			{ -0.5, -0.4, -0.3, -0.3, -0.3, -0.3, -0.4, -0.5 } });
+		this.setPieceSquareTable(PieceType.BISHOP, new double[][] {
+			{ -0.2, -0.1, -0.1, -0.1, -0.1, -0.1, -0.1, -0.2 },
+			{ -0.1, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, -0.1 },
+			{ -0.1, 0.0, 0.05, 0.1, 0.1, 0.05, 0.0, -0.1 },
+			{ -0.1, 0.05, 0.05, 0.1, 0.1, 0.05, 0.05, -0.1 },
+			{ -0.1, 0.0, 0.1, 0.1, 0.1, 0.1, 0.0, -0.1 },
+			{ -0.1, 0.1, 0.1, 0.1, 0.1, 0.1, 0.1, -0.1 },
+			{ -0.1, 0.05, 0.0, 0.0, 0.0, 0.0, 0.05, -0.1 },
+			{ -0.2, -0.1, -0.1, -0.1, -0.1, -0.1, -0.1, -0.2 } });
+		this.setPieceSquareTable(PieceType.ROOK, new double[][] {
+			{ 0.0, 0.0, 0.0, 0.05, 0.05, 0.0, 0.0, 0.0 },
+			{ -0.05, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, -0.05 },
+			{ -0.05, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, -0.05 },
+			{ -0.05, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, -0.05 },
+			{ -0.05, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, -0.05 },
+			{ -0.05, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, -0.05 },
+			{ 0.05, 0.1, 0.1, 0.1, 0.1, 0.1, 0.1, 0.05 },
+			{ 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0 } });
+		this.setPieceSquareTable(PieceType.QUEEN, new double[][] {
+			{ -0.2, -0.1, -0.1, -0.05, -0.05, -0.1, -0.1, -0.2 },
+			{ -0.1, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, -0.1 },
+			{ -0.1, 0.0, 0.05, 0.05, 0.05, 0.05, 0.0, -0.1 },
+			{ -0.05, 0.0, 0.05, 0.05, 0.05, 0.05, 0.0, -0.05 },
+			{ 0.0, 0.0, 0.05, 0.05, 0.05, 0.05, 0.0, -0.05 },
+			{ -0.1, 0.05, 0.05, 0.05, 0.05, 0.05, 0.0, -0.1 },
+			{ -0.1, 0.0, 0.05, 0.0, 0.0, 0.0, 0.0, -0.1 },
+			{ -0.2, -0.1, -0.1, -0.05, -0.05, -0.1, -0.1, -0.2 } });
+		// Simplified king safety table
+		this.setPieceSquareTable(PieceType.KING, new double[][] {
+			{ -0.3, -0.4, -0.4, -0.5, -0.5, -0.4, -0.4, -0.3 },
+			{ -0.3, -0.4, -0.4, -0.5, -0.5, -0.4, -0.4, -0.3 },
+			{ -0.3, -0.4, -0.4, -0.5, -0.5, -0.4, -0.4, -0.3 },
+			{ -0.3, -0.4, -0.4, -0.5, -0.5, -0.4, -0.4, -0.3 },
+			{ -0.2, -0.3, -0.3, -0.4, -0.4, -0.3, -0.3, -0.2 },
+			{ -0.1, -0.2, -0.2, -0.2, -0.2, -0.2, -0.2, -0.1 },
+			{ 0.2, 0.2, 0.0, 0.0, 0.0, 0.0, 0.2, 0.2 },
+			{ 0.2, 0.3, 0.1, 0.0, 0.0, 0.1, 0.3, 0.2 } });
+	}
+
+	/**
+	 * A copy of parameters that can be changed (even when they are the shared ones).
+	 */
+	public HeuristicParameters(HeuristicParameters parameters)
+	{
+		this.materialWeight = parameters.getMaterialWeight();
+		this.mobilityWeight = parameters.getMobilityWeight();
+		this.pawnStructureWeight = parameters.getPawnStructureWeight();
+		this.centerControlWeight = parameters.getCenterControlWeight();
+		this.advancedPawnValue = parameters.getAdvancedPawnValue();
+		this.pieceValues = parameters.pieceValues.clone();
+		this.mobilityValues = parameters.mobilityValues.clone();
+		this.pieceSquareTables = new double[HeuristicParameters.NUM_PIECE_TYPES * 2][][];
+		this.isShared = false;
+		for(PieceType type : HeuristicParameters.PIECE_TYPES)
+		{
+			this.setPieceSquareTable(type, parameters.pieceSquareTables[2 * type.ordinal()]);
+		}
+	}
+
+	/**
+	 * @return the parameters CustomHeuristics uses, loaded on first use; read only
+	 */
+	public static HeuristicParameters get()
+	{
+		HeuristicParameters parameters = HeuristicParameters.instance;
+		if(parameters == null)
+		{
+			synchronized(HeuristicParameters.class)
+			{
+				parameters = HeuristicParameters.instance;
+				if(parameters == null)
+				{
+					parameters = HeuristicParameters.loadStartupParameters();
+					parameters.isShared = true;
+					HeuristicParameters.instance = parameters;
+				}
+			}
+		}
+		return parameters;
+	}
+
+	/**
+	 * Replace the parameters CustomHeuristics uses with a (read only) copy of parameters. Searches in progress may see
+	 * a mix of old and new values, but never a half changed table.
+	 */
+	public static void set(HeuristicParameters parameters)
+	{
+		HeuristicParameters sharedParameters = new HeuristicParameters(parameters);
+		sharedParameters.isShared = true;
+		HeuristicParameters.instance = sharedParameters;
+	}
+
+	private static HeuristicParameters loadStartupParameters()
+	{
+		String path = System.getProperty(HeuristicParameters.PATH_PROPERTY);
+		if(path == null && Files.isRegularFile(Paths.get(HeuristicParameters.DEFAULT_PATH)))
+		{
+			path = HeuristicParameters.DEFAULT_PATH;
+		}
+		if(path == null)
+		{
+			return new HeuristicParameters();
+		}
+
+		try
+		{
+			HeuristicParameters parameters = HeuristicParameters.load(Paths.get(path));
+			System.out.println("HeuristicParameters.get [INFO]: loaded " + path);
+			return parameters;
+		} catch(IOException | IllegalArgumentException e)
+		{
+			System.err.println("HeuristicParameters.get [ERROR]: unable to load " + path + ", using the defaults: " + e);
+			return new HeuristicParameters();
+		}
+	}
+
+	public double getMaterialWeight() { return this.materialWeight; }
+	public double getMobilityWeight() { return this.mobilityWeight; }
+	public double getPawnStructureWeight() { return this.pawnStructureWeight; }
+	public double getCenterControlWeight() { return this.centerControlWeight; }
+	public double getAdvancedPawnValue() { return this.advancedPawnValue; }
+	public double getPieceValue(PieceType type) { return this.pieceValues[type.ordinal()]; }
+	public double getMobilityValue(PieceType type) { return this.mobilityValues[type.ordinal()]; }
+
+	/**
+	 * @return a copy of the table of a piece type from playerType's side (black's is white's upside down)
+	 */
+	public double[][] getPieceSquareTable(PieceType type, PlayerType playerType)
+	{
+		double[][] table = this.pieceSquareTables[2 * type.ordinal() + (playerType == PlayerType.BLACK ? 1 : 0)];
+		double[][] copy = new double[8][];
+		for(int rowIdx = 0; rowIdx < 8; ++rowIdx)
+		{
+			copy[rowIdx] = table[rowIdx].clone();
+		}
+		return copy;
+	}
+
+	/**
+	 * @return entry (rowIdx, colIdx) of getPieceSquareTable(type, playerType), without copying the table
+	 */
+	public double getPieceSquareValue(PieceType type, PlayerType playerType, int rowIdx, int colIdx)
+	{
+		return this.pieceSquareTables[2 * type.ordinal() + (playerType == PlayerType.BLACK ? 1 : 0)][rowIdx][colIdx];
+	}
+
+	public void setMaterialWeight(double weight)
+	{
+		this.checkNotShared("setMaterialWeight");
+		this.materialWeight = weight;
+	}
+
+	public void setMobilityWeight(double weight)
+	{
+		this.checkNotShared("setMobilityWeight");
+		this.mobilityWeight = weight;
+	}
+
+	public void setPawnStructureWeight(double weight)
+	{
+		this.checkNotShared("setPawnStructureWeight");
+		this.pawnStructureWeight = weight;
+	}
+
+	public void setCenterControlWeight(double weight)
+	{
+		this.checkNotShared("setCenterControlWeight");
+		this.centerControlWeight = weight;
+	}
+
+	public void setAdvancedPawnValue(double value)
+	{
+		this.checkNotShared("setAdvancedPawnValue");
+		this.advancedPawnValue = value;
+	}
+
+	public void setPieceValue(PieceType type, double value)
+	{
+		this.checkNotShared("setPieceValue");
+		this.pieceValues[type.ordinal()] = value;
+	}
+
+	public void setMobilityValue(PieceType type, double value)
+	{
+		this.checkNotShared("setMobilityValue");
+		this.mobilityValues[type.ordinal()] = value;
+	}
+
+	/**
+	 * @param table white's table, copied
+	 */
+	public void setPieceSquareTable(PieceType type, double[][] table)
+	{
+		this.checkNotShared("setPieceSquareTable");
+		if(table.length != 8)
+		{
+			throw new IllegalArgumentException("HeuristicParameters.setPieceSquareTable [ERROR]: expected 8 rows for " +
+				type + ", got " + table.length);
+		}
+		double[][] whiteTable = new double[8][];
+		double[][] blackTable = new double[8][];
+		for(int rowIdx = 0; rowIdx < 8; ++rowIdx)
+		{
+			if(table[rowIdx].length != 8)
+			{
+				throw new IllegalArgumentException("HeuristicParameters.setPieceSquareTable [ERROR]: expected 8 columns" +
+					" in row " + rowIdx + " of " + type + ", got " + table[rowIdx].length);
+			}
+			whiteTable[rowIdx] = table[rowIdx].clone();
+		}
+		// Flip the table for black pieces
+		for(int rowIdx = 0; rowIdx < 8; ++rowIdx)
+		{
+			blackTable[rowIdx] = whiteTable[7 - rowIdx];
+		}
+		this.pieceSquareTables[2 * type.ordinal()] = whiteTable;
+		this.pieceSquareTables[2 * type.ordinal() + 1] = blackTable;
+	}
+
+	private void checkNotShared(String methodName)
+	{
+		if(this.isShared)
+		{
+			throw new IllegalStateException("HeuristicParameters." + methodName + " [ERROR]: these are the parameters" +
+				" every search reads, change a copy (new HeuristicParameters(HeuristicParameters.get())) and set it");
+		}
+	}
+
+	public static HeuristicParameters load(Path path) throws IOException
+	{
+		Properties properties = new Properties();
+		try(Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8))
+		{
+			properties.load(reader);
+		}
+
+		HeuristicParameters parameters = new HeuristicParameters();
+		parameters.setMaterialWeight(HeuristicParameters.getDouble(properties, "weight.material",
+			parameters.getMaterialWeight()));
+		parameters.setMobilityWeight(HeuristicParameters.getDouble(properties, "weight.mobility",
+			parameters.getMobilityWeight()));
+		parameters.setPawnStructureWeight(HeuristicParameters.getDouble(properties, "weight.pawnStructure",
+			parameters.getPawnStructureWeight()));
+		parameters.setCenterControlWeight(HeuristicParameters.getDouble(properties, "weight.centerControl",
+			parameters.getCenterControlWeight()));
+		parameters.setAdvancedPawnValue(HeuristicParameters.getDouble(properties, "pawn.advanced",
+			parameters.getAdvancedPawnValue()));
+		for(PieceType type : HeuristicParameters.PIECE_TYPES)
+		{
+			parameters.setPieceValue(type, HeuristicParameters.getDouble(properties, "value." + type,
+				parameters.getPieceValue(type)));
+			parameters.setMobilityValue(type, HeuristicParameters.getDouble(properties, "mobility." + type,
+				parameters.getMobilityValue(type)));
+
+			String table = properties.getProperty("table." + type);
+			if(table != null)
+			{
+				String[] values = table.trim().split("\\s+");
+				if(values.length != 64)
+				{
+					throw new IllegalArgumentException("HeuristicParameters.load [ERROR]: table." + type + " in " + path +
+						" has " + values.length + " values instead of 64");
+				}
+				double[][] whiteTable = new double[8][8];
+				for(int squareIdx = 0; squareIdx < 64; ++squareIdx)
+				{
+					whiteTable[squareIdx / 8][squareIdx % 8] = Double.parseDouble(values[squareIdx]);
+				}
+				parameters.setPieceSquareTable(type, whiteTable);
+			}
+		}
+		return parameters;
+	}
+
+	public void save(Path path, String comment) throws IOException
+	{
+		if(path.toAbsolutePath().getParent() != null)
+		{
+			Files.createDirectories(path.toAbsolutePath().getParent());
+		}
+		try(BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8))
+		{
+			writer.write("# CustomHeuristics parameters" + (comment != null ? ", " + comment : ""));
+			writer.newLine();
+			writer.write("weight.material = " + this.getMaterialWeight());
+			writer.newLine();
+			writer.write("weight.mobility = " + this.getMobilityWeight());
+			writer.newLine();
+			writer.write("weight.pawnStructure = " + this.getPawnStructureWeight());
+			writer.newLine();
+			writer.write("weight.centerControl = " + this.getCenterControlWeight());
+			writer.newLine();
+			writer.write("pawn.advanced = " + this.getAdvancedPawnValue());
+			writer.newLine();
+			for(PieceType type : HeuristicParameters.PIECE_TYPES)
+			{
+				writer.write("value." + type + " = " + this.getPieceValue(type));
+				writer.newLine();
+				writer.write("mobility." + type + " = " + this.getMobilityValue(type));
+				writer.newLine();
+			}
+			for(PieceType type : HeuristicParameters.PIECE_TYPES)
+			{
+				double[][] table = this.getPieceSquareTable(type, PlayerType.WHITE);
+				writer.write("table." + type + " = \\");
+				for(int rowIdx = 0; rowIdx < 8; ++rowIdx)
+				{
+					writer.newLine();
+					writer.write("   ");
+					for(int colIdx = 0; colIdx < 8; ++colIdx)
+					{
+						writer.write(String.format(Locale.ROOT, " %.4f", table[rowIdx][colIdx]));
+					}
+					if(rowIdx < 7)
+					{
+						writer.write(" \\");
+					}
+				}
+				writer.newLine();
+			}
+		}
+	}
+
+	private static double getDouble(Properties properties, String key, double defaultValue)
+	{
+		String value = properties.getProperty(key);
+		return value != null ? Double.parseDouble(value.trim()) : defaultValue;
+	}
+
+}
@@ -0,0 +1,189 @@
+package src.pas.chess.heuristics;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.player.PlayerType;
+
+
+import java.util.Arrays;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.tuning.TexelFeatures;
+
+
+/**
+ * The leaves below one frontier node, scored by CustomHeuristics all at once. CustomHeuristics is linear in the
+ * features of TexelFeatures, so each leaf added is extracted into those features, and score() computes every leaf's
+ * getMaxPlayerHeuristicValue as coefficients . features in one pass of a LeafBatchKernel.
+ *
+ * The features are kept as a structure of arrays: row f of features holds feature f of every leaf (stride getCapacity()
+ * apart), so the kernel runs along a row with one vector lane per leaf. Only the rows some leaf of the batch uses are
+ * scored and cleared (a few dozen of the NUM_FEATURES), which keeps a batch of siblings cheap despite the dense rows.
+ *
+ * The kernel is VectorLeafBatchKernel when it was built (vector.srcs) and the JVM runs with
+ * --add-modules jdk.incubator.vector, ScalarLeafBatchKernel otherwise or with -Dchess.batch.kernel=scalar.
+ */
+public class LeafBatch
+    extends Object
+{
+
+	public static final String KERNEL_PROPERTY = "chess.batch.kernel";
+	public static final String VECTOR_KERNEL_CLASS = "src.pas.chess.heuristics.VectorLeafBatchKernel";
+	public static final int DEFAULT_CAPACITY = 64;
+
+	private static volatile LeafBatchKernel defaultKernel = null;
+
+	private final LeafBatchKernel kernel;
+	private final double[] coefficients;
+	private final int[] dense;          // the features of the leaf being added
+	private final boolean[] isRowUsed;
+	private final int[] rows;           // the used rows, in the order they were first used
+	private int numRows;
+	private int capacity;
+	private int size;
+	private double[] features;          // NUM_FEATURES rows of capacity
+	private double[] signs;             // 1 if the leaf's max player is white, -1 if black
+	private double[] scores;
+
+	public LeafBatch(HeuristicParameters parameters, LeafBatchKernel kernel, int capacity)
+	{
+		this.kernel = kernel;
+		this.coefficients = TexelFeatures.toCoefficients(parameters);
+		this.dense = new int[TexelFeatures.NUM_FEATURES];
+		this.isRowUsed = new boolean[TexelFeatures.NUM_FEATURES];
+		this.rows = new int[TexelFeatures.NUM_FEATURES];
+		this.numRows = 0;
+		this.capacity = capacity;
+		this.size = 0;
+		this.features = new double[TexelFeatures.NUM_FEATURES * capacity];
+		this.signs = new double[capacity];
+		this.scores = new double[capacity];
+	}
+
+	public LeafBatchKernel getKernel() { return this.kernel; }
+	public int getCapacity() { return this.capacity; }
+	public int size() { return this.size; }
+	public int getNumRows() { return this.numRows; }
+
+	/**
+	 * Empty the batch for the next frontier node.
+	 */
+	public void clear()
+	{
+		for(int rowIdx = 0; rowIdx < this.numRows; ++rowIdx)
+		{
+			int row = this.rows[rowIdx];
+			Arrays.fill(this.features, row * this.capacity, row * this.capacity + this.size, 0.0);
+			this.isRowUsed[row] = false;
+		}
+		this.numRows = 0;
+		this.size = 0;
+	}
+
+	/**
+	 * Extract a leaf into the batch.
+	 * @param maxPlayerType whose point of view the leaf is scored from
+	 * @return the index of its score in score()
+	 */
+	public int add(Game game, PlayerType maxPlayerType)
+	{
+		if(this.size == this.capacity)
+		{
+			this.ensureCapacity(2 * this.capacity);
+		}
+
+		Arrays.fill(this.dense, 0);
+		TexelFeatures.extract(game, this.dense);
+		int leafIdx = this.size;
+		for(int feature = 0; feature < this.dense.length; ++feature)
+		{
+			if(this.dense[feature] == 0)
+			{
+				continue;
+			}
+			if(!this.isRowUsed[feature])
+			{
+				this.isRowUsed[feature] = true;
+				this.rows[this.numRows] = feature;
+				this.numRows += 1;
+			}
+			this.features[feature * this.capacity + leafIdx] = this.dense[feature];
+		}
+		this.signs[leafIdx] = maxPlayerType == PlayerType.WHITE ? 1.0 : -1.0;
+		this.size += 1;
+		return leafIdx;
+	}
+
+	/**
+	 * @return the heuristic value of every leaf, from its max player's point of view, at the indices add(...) returned
+	 *         (the array is reused by the next score())
+	 */
+	public double[] score()
+	{
+		this.getKernel().score(this.coefficients, this.rows, this.numRows, this.features, this.capacity, this.size,
+			this.scores);
+		for(int leafIdx = 0; leafIdx < this.size; ++leafIdx)
+		{
+			this.scores[leafIdx] *= this.signs[leafIdx];
+		}
+		return this.scores;
+	}
+
+	private void ensureCapacity(int capacity)
+	{
+		double[] features = new double[TexelFeatures.NUM_FEATURES * capacity];
+		for(int rowIdx = 0; rowIdx < this.numRows; ++rowIdx)
+		{
+			int row = this.rows[rowIdx];
+			System.arraycopy(this.features, row * this.capacity, features, row * capacity, this.size);
+		}
+		this.features = features;
+		this.signs = Arrays.copyOf(this.signs, capacity);
+		this.scores = Arrays.copyOf(this.scores, capacity);
+		this.capacity = capacity;
+	}
+
+	/**
+	 * @return a batch for the current HeuristicParameters with the default kernel
+	 */
+	public static LeafBatch forCurrentParameters()
+	{
+		return new LeafBatch(HeuristicParameters.get(), LeafBatch.getDefaultKernel(), LeafBatch.DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @return VectorLeafBatchKernel if it can be loaded (and was not turned off), ScalarLeafBatchKernel otherwise
+	 */
+	public static LeafBatchKernel getDefaultKernel()
+	{
+		LeafBatchKernel kernel = LeafBatch.defaultKernel;
+		if(kernel == null)
+		{
+			kernel = "scalar".equals(System.getProperty(LeafBatch.KERNEL_PROPERTY)) ? null
+				: LeafBatch.loadVectorKernel();
+			if(kernel == null)
+			{
+				kernel = new ScalarLeafBatchKernel();
+			}
+			LeafBatch.defaultKernel = kernel;
+		}
+		return kernel;
+	}
+
+	/**
+	 * @return a VectorLeafBatchKernel, null if it was not built or jdk.incubator.vector is not resolved
+	 */
+	public static LeafBatchKernel loadVectorKernel()
+	{
+		try
+		{
+			return (LeafBatchKernel)Class.forName(LeafBatch.VECTOR_KERNEL_CLASS).getConstructor().newInstance();
+		} catch(ReflectiveOperationException | LinkageError e)
+		{
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,25 @@
+package src.pas.chess.heuristics;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Scores a LeafBatch: for every leaf l in [0, numLeaves)
+ *     scores[l] = sum over r in [0, numRows) of coefficients[rows[r]] * features[rows[r] * stride + l]
+ * with the products added in the order of rows. ScalarLeafBatchKernel does this in plain loops, VectorLeafBatchKernel
+ * (built separately, see vector.srcs) with the incubating Vector API, a vector of leaves at a time. Both compute exactly
+ * the same numbers.
+ */
+public interface LeafBatchKernel
+{
+
+	public String getName();
+
+	public void score(double[] coefficients, int[] rows, int numRows, double[] features, int stride, int numLeaves,
+	                  double[] scores);
+
+}
@@ -0,0 +1,37 @@
+package src.pas.chess.heuristics;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * LeafBatchKernel in plain Java loops: the fallback when the Vector API is not available, and the reference the vector
+ * kernel is checked against.
+ */
+public class ScalarLeafBatchKernel
+    extends Object
+    implements LeafBatchKernel
+{
+
+	@Override
+	public String getName() { return "scalar"; }
+
+	@Override
+	public void score(double[] coefficients, int[] rows, int numRows, double[] features, int stride, int numLeaves,
+	                  double[] scores)
+	{
+		for(int leafIdx = 0; leafIdx < numLeaves; ++leafIdx)
+		{
+			double score = 0.0;
+			for(int rowIdx = 0; rowIdx < numRows; ++rowIdx)
+			{
+				score += coefficients[rows[rowIdx]] * features[rows[rowIdx] * stride + leafIdx];
+			}
+			scores[leafIdx] = score;
+		}
+	}
+
+}
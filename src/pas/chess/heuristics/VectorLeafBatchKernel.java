@@ -0,0 +1,55 @@
+package src.pas.chess.heuristics;
+
+
+// SYSTEM IMPORTS
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * LeafBatchKernel with the (incubating) Vector API: one lane per leaf, so a row of the batch is a few vector
+ * multiply-adds against its broadcast coefficient. The products are added with separate mul/add (not fma) to round like
+ * the scalar kernel; leaves past the last full vector are scored by a scalar loop. Built and loaded like
+ * VectorNnueKernel (see vector.srcs); LeafBatch.getDefaultKernel() falls back to ScalarLeafBatchKernel.
+ */
+public class VectorLeafBatchKernel
+    extends Object
+    implements LeafBatchKernel
+{
+
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	@Override
+	public String getName() { return "vector" + VectorLeafBatchKernel.SPECIES.vectorBitSize(); }
+
+	@Override
+	public void score(double[] coefficients, int[] rows, int numRows, double[] features, int stride, int numLeaves,
+	                  double[] scores)
+	{
+		int leafIdx = 0;
+		for(int bound = VectorLeafBatchKernel.SPECIES.loopBound(numLeaves); leafIdx < bound;
+		    leafIdx += VectorLeafBatchKernel.SPECIES.length())
+		{
+			DoubleVector score = DoubleVector.zero(VectorLeafBatchKernel.SPECIES);
+			for(int rowIdx = 0; rowIdx < numRows; ++rowIdx)
+			{
+				score = score.add(DoubleVector.fromArray(VectorLeafBatchKernel.SPECIES, features,
+					rows[rowIdx] * stride + leafIdx).mul(coefficients[rows[rowIdx]]));
+			}
+			score.intoArray(scores, leafIdx);
+		}
+		for(; leafIdx < numLeaves; ++leafIdx)
+		{
+			double score = 0.0;
+			for(int rowIdx = 0; rowIdx < numRows; ++rowIdx)
+			{
+				score += coefficients[rows[rowIdx]] * features[rows[rowIdx] * stride + leafIdx];
+			}
+			scores[leafIdx] = score;
+		}
+	}
+
+}
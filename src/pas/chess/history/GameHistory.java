@@ -0,0 +1,291 @@
+package src.pas.chess.history;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.move.Move;
+
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.search.PackedMove;
+import src.pas.chess.utils.Zobrist;
+
+
+/**
+ * The moves of one game, compact: instead of a Game copy per ply (edu.bu.chess.game.history.History keeps a
+ * Pair&lt;Move, Game&gt; for every move) this keeps the initial position, every move (packed, plus the Move itself, which
+ * is a few ids rather than a board), the Zobrist hash of every position, and a Game checkpoint every
+ * checkpointInterval plies. Past positions are rebuilt on demand by replaying at most checkpointInterval - 1 moves
+ * from the nearest checkpoint.
+ *
+ * Ply i is the i-th move (0 = the first move); position i is the position ply i was played from, so position 0 is the
+ * initial position and position size() is the current one.
+ *
+ * Unlike History this is not a singleton and not synchronized: every game owns one and adds its moves from one thread.
+ */
+public class GameHistory
+    extends Object
+{
+
+	public static final int DEFAULT_CHECKPOINT_INTERVAL = 16;
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final int checkpointInterval;
+	private Game[] checkpoints;       // checkpoints[k] is position k * checkpointInterval
+	private Move[] moves;
+	private int[] packedMoves;
+	private long[] hashes;            // hashes[i] is the hash of position i, size() + 1 of them
+	private int size;
+	private Game currentGame;
+
+	public GameHistory(Game initialGame)
+	{
+		this(initialGame, GameHistory.DEFAULT_CHECKPOINT_INTERVAL);
+	}
+
+	public GameHistory(Game initialGame, int checkpointInterval)
+	{
+		if(checkpointInterval < 1)
+		{
+			throw new IllegalArgumentException("GameHistory.GameHistory [ERROR]: checkpointInterval must be positive, got " +
+				checkpointInterval);
+		}
+		this.checkpointInterval = checkpointInterval;
+		this.checkpoints = new Game[GameHistory.INITIAL_CAPACITY / checkpointInterval + 1];
+		this.moves = new Move[GameHistory.INITIAL_CAPACITY];
+		this.packedMoves = new int[GameHistory.INITIAL_CAPACITY];
+		this.hashes = new long[GameHistory.INITIAL_CAPACITY + 1];
+		this.size = 0;
+		this.currentGame = initialGame;
+
+		this.checkpoints[0] = initialGame;
+		this.hashes[0] = Zobrist.hash(initialGame);
+	}
+
+	public int getCheckpointInterval() { return this.checkpointInterval; }
+
+	/**
+	 * @return the number of moves played
+	 */
+	public int size() { return this.size; }
+	public Game getInitialGame() { return this.checkpoints[0]; }
+	public Game getCurrentGame() { return this.currentGame; }
+	public long getCurrentHash() { return this.hashes[this.size]; }
+
+	/**
+	 * Play move in the current position and record it.
+	 * @return the new current position
+	 */
+	public Game addMove(Move move)
+	{
+		Game game = this.getCurrentGame();
+		int packedMove = PackedMove.encode(game, move);
+		Game nextGame = GameHistory.applyMove(game, move);
+
+		this.ensureCapacity(this.size + 1);
+		this.moves[this.size] = move;
+		this.packedMoves[this.size] = packedMove;
+		this.size += 1;
+		this.hashes[this.size] = Zobrist.hash(nextGame);
+		if(this.size % this.getCheckpointInterval() == 0)
+		{
+			this.checkpoints[this.size / this.getCheckpointInterval()] = nextGame;
+		}
+		this.currentGame = nextGame;
+		return nextGame;
+	}
+
+	/**
+	 * @return the first position after the last irreversible move (see PackedMove.isIrreversible), 0 if there is none:
+	 *         no position before it can occur again
+	 */
+	public int getLastIrreversiblePosition()
+	{
+		int positionIdx = this.size;
+		while(positionIdx > 0 && !PackedMove.isIrreversible(this.packedMoves[positionIdx - 1]))
+		{
+			positionIdx -= 1;
+		}
+		return positionIdx;
+	}
+
+	/**
+	 * @return how often the current position has occurred in this game, counting the current one
+	 */
+	public int getRepetitionCount()
+	{
+		long currentHash = this.getCurrentHash();
+		int count = 1;
+		for(int positionIdx = this.getLastIrreversiblePosition(); positionIdx < this.size; ++positionIdx)
+		{
+			if(this.hashes[positionIdx] == currentHash)
+			{
+				count += 1;
+			}
+		}
+		return count;
+	}
+
+	public Move getPastMove(int ply)
+	{
+		this.checkPly(ply, this.size - 1);
+		return this.moves[ply];
+	}
+
+	public int getPackedMove(int ply)
+	{
+		this.checkPly(ply, this.size - 1);
+		return this.packedMoves[ply];
+	}
+
+	/**
+	 * @return the Zobrist hash of position positionIdx (0 through size())
+	 */
+	public long getHash(int positionIdx)
+	{
+		this.checkPly(positionIdx, this.size);
+		return this.hashes[positionIdx];
+	}
+
+	/**
+	 * @return position positionIdx (0 through size()), replayed from the nearest checkpoint
+	 */
+	public Game getPastGame(int positionIdx)
+	{
+		this.checkPly(positionIdx, this.size);
+		if(positionIdx == this.size)
+		{
+			return this.getCurrentGame();
+		}
+
+		int checkpointIdx = positionIdx / this.getCheckpointInterval();
+		return this.replay(this.checkpoints[checkpointIdx], checkpointIdx * this.getCheckpointInterval(), positionIdx);
+	}
+
+	/**
+	 * @return a read only view of numMoves moves starting at ply start (fewer if the game is shorter), backed by this
+	 *         history: nothing is copied
+	 */
+	public List<Move> getPastMoves(int start, int numMoves)
+	{
+		int end = this.getRangeEnd(start, numMoves, this.size);
+		return new AbstractList<Move>()
+		{
+			@Override
+			public Move get(int idx)
+			{
+				if(idx < 0 || idx >= this.size())
+				{
+					throw new IndexOutOfBoundsException("GameHistory.getPastMoves [ERROR]: idx=" + idx + " size=" + this.size());
+				}
+				return GameHistory.this.moves[start + idx];
+			}
+
+			@Override
+			public int size() { return end - start; }
+		};
+	}
+
+	/**
+	 * @return a read only view of numPositions positions starting at position start (fewer if the game is shorter).
+	 *         Positions are rebuilt when they are read; reading them in order replays every move once.
+	 */
+	public List<Game> getPastGames(int start, int numPositions)
+	{
+		int end = this.getRangeEnd(start, numPositions, this.size + 1);
+		return new AbstractList<Game>()
+		{
+			private int lastPositionIdx = -1;
+			private Game lastGame = null;
+
+			@Override
+			public Game get(int idx)
+			{
+				if(idx < 0 || idx >= this.size())
+				{
+					throw new IndexOutOfBoundsException("GameHistory.getPastGames [ERROR]: idx=" + idx + " size=" + this.size());
+				}
+
+				int positionIdx = start + idx;
+				Game game = null;
+				if(this.lastGame != null && positionIdx == this.lastPositionIdx + 1 &&
+				   positionIdx % GameHistory.this.getCheckpointInterval() != 0)
+				{
+					// iterating: one move on from the last position instead of a replay from the checkpoint
+					game = GameHistory.applyMove(this.lastGame, GameHistory.this.moves[this.lastPositionIdx]);
+				} else
+				{
+					game = GameHistory.this.getPastGame(positionIdx);
+				}
+				this.lastPositionIdx = positionIdx;
+				this.lastGame = game;
+				return game;
+			}
+
+			@Override
+			public int size() { return end - start; }
+		};
+	}
+
+	/**
+	 * game.applyMove(move), except that a move of the player not to move (a promotion played right after the pawn move
+	 * that reached the last rank, the way UCI plays them, see UciEngine) leaves the turn where it was.
+	 */
+	public static Game applyMove(Game game, Move move)
+	{
+		Game nextGame = game.applyMove(move);
+		if(move.getActorPlayer().getPlayerType() != game.getCurrentPlayer().getPlayerType())
+		{
+			nextGame.setCurrentPlayer(nextGame.getPlayer(game.getCurrentPlayer().getPlayerType()));
+		}
+		return nextGame;
+	}
+
+	private Game replay(Game game, int fromPositionIdx, int toPositionIdx)
+	{
+		for(int ply = fromPositionIdx; ply < toPositionIdx; ++ply)
+		{
+			game = GameHistory.applyMove(game, this.moves[ply]);
+		}
+		return game;
+	}
+
+	private int getRangeEnd(int start, int length, int limit)
+	{
+		if(start < 0 || start > limit || length < 0)
+		{
+			throw new IndexOutOfBoundsException("GameHistory.getRangeEnd [ERROR]: start=" + start + " length=" + length +
+				" limit=" + limit);
+		}
+		return (int)Math.min((long)start + length, limit);
+	}
+
+	private void checkPly(int idx, int maxIdx)
+	{
+		if(idx < 0 || idx > maxIdx)
+		{
+			throw new IndexOutOfBoundsException("GameHistory.checkPly [ERROR]: idx=" + idx + " is not in [0, " + maxIdx + "]");
+		}
+	}
+
+	private void ensureCapacity(int numMoves)
+	{
+		if(numMoves <= this.moves.length)
+		{
+			return;
+		}
+
+		int newCapacity = Math.max(numMoves, 2 * this.moves.length);
+		this.moves = Arrays.copyOf(this.moves, newCapacity);
+		this.packedMoves = Arrays.copyOf(this.packedMoves, newCapacity);
+		this.hashes = Arrays.copyOf(this.hashes, newCapacity + 1);
+		this.checkpoints = Arrays.copyOf(this.checkpoints, newCapacity / this.getCheckpointInterval() + 1);
+	}
+
+}
@@ -0,0 +1,39 @@
+package src.pas.chess.instrumentation;
+
+
+// SYSTEM IMPORTS
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * The leaves below one frontier node (remaining depth 1), which are evaluated one after the other. Emitted per batch
+ * instead of per leaf so that the event count stays far below the node count.
+ */
+@Name("src.pas.chess.EvaluationBatch")
+@Label("Evaluation Batch")
+@Category({"Chess", "Search"})
+@Description("Heuristic evaluation of the leaves below one frontier node")
+@StackTrace(false)
+@Threshold("1 ms")
+public class EvaluationBatchEvent
+    extends jdk.jfr.Event
+{
+
+	@Label("Evaluations")
+	public int numEvaluations;
+
+	@Label("Evaluation Time")
+	@Description("Part of the duration spent in the heuristic")
+	@Timespan(Timespan.NANOSECONDS)
+	public long evaluationTime;
+
+}
@@ -8,10 +8,13 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -51,31 +54,51 @@ public class MinimaxAgent
 
 		private DFSTreeNode rootNode;
 		private final int maxDepth;
-		private BufferedWriter writer;
+		private TraceRingBuffer traceBuffer;    // csv trace
+		private SearchTraceWriter traceWriter;  // binary trace
 
-		public MinimaxSearcher(DFSTreeNode rootNode, int maxDepth, BufferedWriter writer)
+		public MinimaxSearcher(DFSTreeNode rootNode, int maxDepth, TraceRingBuffer traceBuffer,
+		                       SearchTraceWriter traceWriter)
 		{
 			this.rootNode = rootNode;
 			this.maxDepth = maxDepth;
-			this.writer = writer;
+			this.traceBuffer = traceBuffer;
+			this.traceWriter = traceWriter;
 		}
 
 		public DFSTreeNode getRootNode() { return this.rootNode; }
 		public int getMaxDepth() { return this.maxDepth; }
-		public BufferedWriter getWriter() { return this.writer; }
+		public TraceRingBuffer getTraceBuffer() { return this.traceBuffer; }
+		public SearchTraceWriter getTraceWriter() { return this.traceWriter; }
 
-		public DFSTreeNode minimaxSearch(DFSTreeNode node, int depth)
+		public DFSTreeNode minimaxSearch(DFSTreeNode node, int depth) throws IOException
+		{
+			return this.minimaxSearch(node, depth, -1, 0);
+		}
+
+		/**
+		 * @param parentId trace id of the parent node (-1 at the root)
+		 * @param childIdx position of node among its siblings
+		 */
+		private DFSTreeNode minimaxSearch(DFSTreeNode node, int depth, long parentId, int childIdx) throws IOException
 		{
 			int numChildren = 0;
-			double startTime = System.nanoTime();
+			long nodeId = this.getTraceWriter() != null ? this.getTraceWriter().nextNodeId() : -1;
+			byte flags = 0;
+			double utilityValue;
+			long startTime = System.nanoTime();
 			DFSTreeNode bestChild = null;
 			if(node.isTerminal()) // terminal state!
 			{
+				flags = SearchTraceWriter.FLAG_TERMINAL;
+				utilityValue = node.getMaxPlayerUtilityValue();
 				bestChild = node;
 			} else if(depth <= 0) // reached the end of the depth!
 			{
 				// assign heuristic value to the child as its utility
+				flags = SearchTraceWriter.FLAG_LEAF;
 				node.setMaxPlayerUtilityValue(DefaultHeuristics.getMaxPlayerHeuristicValue(node));
+				utilityValue = node.getMaxPlayerUtilityValue();
 				bestChild = node;
 			} else // we can get the children of this node and find its best value
 			{
@@ -83,12 +106,14 @@ public class MinimaxAgent
 				numChildren = children.size();
 
 				double bestUtilityValue;
+				int nextChildIdx = 0;
 				if(node.getType() == DFSTreeNodeType.MAX)
 				{
 					bestUtilityValue = Double.NEGATIVE_INFINITY;
 					for(DFSTreeNode child : children)
 					{
-						child.setMaxPlayerUtilityValue(this.minimaxSearch(child, depth-1).getMaxPlayerUtilityValue());
+						child.setMaxPlayerUtilityValue(this.minimaxSearch(child, depth-1, nodeId, nextChildIdx).getMaxPlayerUtilityValue());
+						nextChildIdx += 1;
 						if(child.getMaxPlayerUtilityValue() > bestUtilityValue)
 						{
 							bestUtilityValue = child.getMaxPlayerUtilityValue();
@@ -101,7 +126,8 @@ public class MinimaxAgent
 					bestUtilityValue = Double.POSITIVE_INFINITY;
 					for(DFSTreeNode child : children)
 					{
-						child.setMaxPlayerUtilityValue(this.minimaxSearch(child, depth-1).getMaxPlayerUtilityValue());
+						child.setMaxPlayerUtilityValue(this.minimaxSearch(child, depth-1, nodeId, nextChildIdx).getMaxPlayerUtilityValue());
+						nextChildIdx += 1;
 						if(child.getMaxPlayerUtilityValue() < bestUtilityValue)
 						{
 							bestUtilityValue = child.getMaxPlayerUtilityValue();
@@ -109,16 +135,21 @@ public class MinimaxAgent
 						}
 					}
 				}
+				utilityValue = bestUtilityValue;
 			}
-			double endTime = System.nanoTime();
+			long endTime = System.nanoTime();
 
-			try
+			if(this.getTraceWriter() != null)
 			{
-				this.getWriter().write(depth + "," + numChildren + "," + (long)((endTime-startTime)/1000000));
-				this.getWriter().newLine();
-			} catch(IOException e)
+				// minimax searches every child with the full window
+				int move = node.getParent() != null
+					? SearchTraceWriter.encodeMove(node.getParent().getGame(), node.getMove()) : 0;
+				this.getTraceWriter().write(nodeId, parentId, move, depth, childIdx, utilityValue, Double.NEGATIVE_INFINITY,
+					Double.POSITIVE_INFINITY, endTime - startTime, numChildren, numChildren, flags);
+			} else
 			{
-				e.printStackTrace();
+				// no I/O here: the record is copied into the ring buffer and written to disk by its drainer thread
+				this.getTraceBuffer().record(depth, numChildren, endTime - startTime);
 			}
 
 			return bestChild;
@@ -139,7 +170,9 @@ public class MinimaxAgent
 	}
 
 	private static final long serialVersionUID = -8325987205183244708L;
-	private static final String HEADER = "depth,num_children,runtime_ms";
+	private static final String HEADER = "depth,num_children,runtime_ns";
+	private static final String BINARY_TRACE_EXTENSION = ".trace";
+	private static final String OLD_TRACE_EXTENSION = ".old";  // where a csv trace of another format is moved to
 	private final int maxDepth;
 	private final long maxPlaytimeInMS;
 	private final PlayerType playerType;
@@ -149,6 +182,8 @@ public class MinimaxAgent
 	private File outputFile;
 	private FileWriter outputFileWriter;
 	private BufferedWriter outputBufferedWriter;
+	private TraceRingBuffer traceBuffer;
+	private SearchTraceWriter traceWriter;
 
 	/**
 	 * The constructor. Please do not modify. This constructor will work for variable-sized program args
@@ -198,19 +233,37 @@ public class MinimaxAgent
 			new File(fileDirectory).mkdirs();
 		}
 
-		boolean fileExists = this.getOutputFile().exists() && !this.getOutputFile().isDirectory();
+		boolean fileExists = this.getOutputFile().exists() && !this.getOutputFile().isDirectory() &&
+			this.getOutputFile().length() > 0;
 
 		try
 		{
-			this.outputFileWriter = new FileWriter(this.getOutputFile(), true); // true = append mode
-			this.outputBufferedWriter = new BufferedWriter(this.outputFileWriter);
-
-			if(!fileExists)
+			if(this.getFilePath().endsWith(MinimaxAgent.BINARY_TRACE_EXTENSION))
 			{
-				// write header
-				this.getOutputBufferedWriter().write(MinimaxAgent.HEADER);
-				this.getOutputBufferedWriter().newLine();
-				// this.getOutputFileWriter().write("depth, num_children, runtime_ms\n");
+				// whole tree structure in fixed width records, see SearchTraceWriter/SearchTraceReader
+				this.traceWriter = new SearchTraceWriter(this.getOutputFile());
+			} else
+			{
+				// only append to a trace of the same columns: older traces have runtime_ms rows
+				if(fileExists && !MinimaxAgent.HEADER.equals(MinimaxAgent.readFirstLine(this.getOutputFile())))
+				{
+					File oldFile = new File(this.getFilePath() + MinimaxAgent.OLD_TRACE_EXTENSION);
+					Files.move(this.getOutputFile().toPath(), oldFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+					System.out.println("MinimaxAgent.MinimaxAgent [INFO]: path=" + this.getFilePath() +
+						" has another header, moved it to " + oldFile.getPath() + " and started a new trace");
+					fileExists = false;
+				}
+				this.outputFileWriter = new FileWriter(this.getOutputFile(), true); // true = append mode
+				this.outputBufferedWriter = new BufferedWriter(this.outputFileWriter, 1 << 16);
+
+				if(!fileExists)
+				{
+					// write header
+					this.getOutputBufferedWriter().write(MinimaxAgent.HEADER);
+					this.getOutputBufferedWriter().newLine();
+					// this.getOutputFileWriter().write("depth, num_children, runtime_ms\n");
+				}
+				this.traceBuffer = new TraceRingBuffer(this.getOutputBufferedWriter());
 			}
 		} catch (IOException e)
 		{
@@ -221,6 +274,17 @@ public class MinimaxAgent
 		System.out.println("Constructed MinimaxAgent(teamColor=" + this.getPlayerType() + ", timeLimit(ms)=" + this.getMaxPlaytimeInMS() + ", maxDepth=" + this.getMaxDepth() + ")");
 	}
 
+	/**
+	 * @return the first line of file, null if it is empty
+	 */
+	private static String readFirstLine(File file) throws IOException
+	{
+		try(Stream<String> lines = Files.lines(file.toPath()))
+		{
+			return lines.findFirst().orElse(null);
+		}
+	}
+
 	/**
 	 * Some constants
 	 */
@@ -236,6 +300,8 @@ public class MinimaxAgent
 	private File getOutputFile() { return this.outputFile; }
 	private FileWriter getOutputFileWriter() { return this.outputFileWriter; }
 	private BufferedWriter getOutputBufferedWriter() { return this.outputBufferedWriter; }
+	private TraceRingBuffer getTraceBuffer() { return this.traceBuffer; }
+	private SearchTraceWriter getTraceWriter() { return this.traceWriter; }
 	
 	/**
 	 * This method is responsible for getting a chess move selected via the minimax algorithm.
@@ -254,7 +320,8 @@ public class MinimaxAgent
 		Move move = null;
 		long durationInMs = 0;
 		DFSTreeNode rootNode = new DFSTreeNode(Planner.getPlanner().getGame(), this.getPlayer());
-		MinimaxSearcher searcherObject = new MinimaxSearcher(rootNode, this.getMaxDepth(), this.getOutputBufferedWriter()); // this obj will run in the background
+		MinimaxSearcher searcherObject = new MinimaxSearcher(rootNode, this.getMaxDepth(), this.getTraceBuffer(),
+			this.getTraceWriter()); // this obj will run in the background
 
 		// submit the job
 		Future<Pair<Move, Long> > future = backgroundThreadManager.submit(searcherObject);
@@ -378,6 +445,21 @@ public class MinimaxAgent
 	{
 		try
 		{
+			if(this.getTraceWriter() != null)
+			{
+				System.out.println("MinimaxAgent.terminalStep [INFO] wrote " + this.getTraceWriter().getNumWritten() +
+					" trace records");
+				this.getTraceWriter().close();
+				return;
+			}
+
+			// let the drainer write out whatever is still buffered before the file is closed
+			this.getTraceBuffer().close();
+			if(this.getTraceBuffer().getNumDropped() > 0)
+			{
+				System.out.println("MinimaxAgent.terminalStep [INFO] trace buffer dropped " + this.getTraceBuffer().getNumDropped() +
+					" of " + (this.getTraceBuffer().getNumDropped() + this.getTraceBuffer().getNumWritten()) + " records");
+			}
 			this.getOutputBufferedWriter().close();
 			this.getOutputFileWriter().close();
 		} catch (IOException e)
@@ -0,0 +1,36 @@
+package src.pas.chess.instrumentation;
+
+
+// SYSTEM IMPORTS
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Expanding one node (DFSTreeNode.getChildren()). There is one per interior node, so only slow expansions are kept.
+ */
+@Name("src.pas.chess.MoveGeneration")
+@Label("Move Generation")
+@Category({"Chess", "Search"})
+@Description("Expansion of one search node into its children")
+@StackTrace(false)
+@Threshold("1 ms")
+public class MoveGenerationEvent
+    extends jdk.jfr.Event
+{
+
+	@Label("Depth")
+	@Description("Remaining search depth at the node")
+	public int depth;
+
+	@Label("Moves")
+	public int numMoves;
+
+}
@@ -0,0 +1,35 @@
+package src.pas.chess.instrumentation;
+
+
+// SYSTEM IMPORTS
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * One call to a move orderer.
+ */
+@Name("src.pas.chess.MoveOrdering")
+@Label("Move Ordering")
+@Category({"Chess", "Search"})
+@Description("Ordering the children of one search node")
+@StackTrace(false)
+@Threshold("1 ms")
+public class MoveOrderingEvent
+    extends jdk.jfr.Event
+{
+
+	@Label("Orderer")
+	public String orderer;
+
+	@Label("Moves")
+	public int numMoves;
+
+}
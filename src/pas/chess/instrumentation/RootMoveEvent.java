@@ -0,0 +1,46 @@
+package src.pas.chess.instrumentation;
+
+
+// SYSTEM IMPORTS
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * The search of one root move's subtree in one iteration: the score the root move got and how many nodes it cost. A
+ * fixed depth search has a single iteration; an iterative deepening one searches every root move again at each depth
+ * (see SearchIterationEvent), so its root moves come once per depth, numbered from 0 each time.
+ */
+@Name("src.pas.chess.RootMove")
+@Label("Root Move")
+@Category({"Chess", "Search"})
+@Description("Search of the subtree below one root move")
+@StackTrace(false)
+public class RootMoveEvent
+    extends jdk.jfr.Event
+{
+
+	@Label("Agent")
+	public String agent;
+
+	@Label("Index")
+	@Description("Position of the move among the root moves searched in its iteration (0 = first)")
+	public int index;
+
+	@Label("Move")
+	public String move;
+
+	@Label("Score")
+	@Description("Max player utility of the move (a bound if the move was cut off)")
+	public double score;
+
+	@Label("Nodes")
+	public long nodes;
+
+}
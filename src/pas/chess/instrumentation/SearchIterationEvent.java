@@ -0,0 +1,45 @@
+package src.pas.chess.instrumentation;
+
+
+// SYSTEM IMPORTS
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * One finished depth of an iterative deepening search (analysis, UCI and searches with SearchLimits): how deep, what
+ * it cost, and the move it settled on. A depth the search was stopped in has none.
+ */
+@Name("src.pas.chess.SearchIteration")
+@Label("Search Iteration")
+@Category({"Chess", "Search"})
+@Description("One finished depth of an iterative deepening search")
+@StackTrace(false)
+public class SearchIterationEvent
+    extends jdk.jfr.Event
+{
+
+	@Label("Agent")
+	public String agent;
+
+	@Label("Depth")
+	public int depth;
+
+	@Label("Nodes")
+	@Description("Nodes searched in this iteration")
+	public long nodes;
+
+	@Label("Score")
+	@Description("Max player utility of the best move of this iteration")
+	public double score;
+
+	@Label("Best Move")
+	public String bestMove;
+
+}
@@ -0,0 +1,63 @@
+package src.pas.chess.instrumentation;
+
+
+// SYSTEM IMPORTS
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * One search for one move, from call() to the chosen move. The timespans break the event's duration down into the
+ * search phases, so `jfr print --events src.pas.chess.SearchMove` shows where each move's time went.
+ */
+@Name("src.pas.chess.SearchMove")
+@Label("Search Move")
+@Category({"Chess", "Search"})
+@Description("A complete search for one move, broken down by phase")
+@StackTrace(false)
+public class SearchMoveEvent
+    extends jdk.jfr.Event
+{
+
+	@Label("Agent")
+	public String agent;
+
+	@Label("Depth Reached")
+	public int depth;
+
+	@Label("Nodes")
+	public long nodes;
+
+	@Label("Leaf Evaluations")
+	public long leafEvaluations;
+
+	@Label("Score")
+	@Description("Max player utility of the chosen move")
+	public double score;
+
+	@Label("Best Move")
+	public String bestMove;
+
+	@Label("Move Generation Time")
+	@Description("Time spent expanding nodes (move generation, applying moves, terminal checks of the children)")
+	@Timespan(Timespan.NANOSECONDS)
+	public long moveGenerationTime;
+
+	@Label("Evaluation Time")
+	@Description("Time spent in the heuristic")
+	@Timespan(Timespan.NANOSECONDS)
+	public long evaluationTime;
+
+	@Label("Other Time")
+	@Description("The rest of the search: recursion, bookkeeping and instrumentation")
+	@Timespan(Timespan.NANOSECONDS)
+	public long otherTime;
+
+}
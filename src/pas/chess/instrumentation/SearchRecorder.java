@@ -0,0 +1,364 @@
+package src.pas.chess.instrumentation;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.move.Move;
+import edu.bu.chess.game.player.PlayerType;
+import edu.bu.chess.search.DFSTreeNode;
+
+
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.heuristics.LeafBatch;
+import src.pas.chess.search.MoveList;
+import src.pas.chess.utils.MoveNotation;
+
+
+/**
+ * Emits the JFR events of one search (one move) from a searcher: a SearchMoveEvent with the per phase breakdown, a
+ * SearchIterationEvent per finished depth of an iterative deepening search, a RootMoveEvent per root move (of every
+ * iteration), and thresholded MoveGenerationEvent/EvaluationBatchEvent for slow expansions and leaf batches. Make a new recorder per search (the searchers make one in their constructor) and use it from the search
+ * thread only; it is not thread safe.
+ *
+ * Whether anything is recorded is decided once, when the recorder is made. When no recording has the search events
+ * enabled, expand(...), makeChild(...) and evaluate(...) just forward to the node/heuristic after a single field check, so the
+ * searchers pay nothing measurable.
+ *
+ * Record with the settings profile in data/pas/chess/instrumentation/search.jfc on top of a JDK one:
+ *     java -XX:StartFlightRecording:settings=default,settings=data/pas/chess/instrumentation/search.jfc,filename=search.jfr ...
+ * and read the per move breakdown (move generation / evaluation / other time) with
+ *     jfr print --events src.pas.chess.SearchMove search.jfr
+ *     jfr summary search.jfr
+ */
+public class SearchRecorder
+    extends Object
+{
+
+	private final String agentName;
+	private final SearchStats searchStats;
+	private final SearchMoveEvent moveEvent;
+	private final boolean isEnabled;
+	private long startTime;
+
+	// phase totals for the SearchMoveEvent
+	private long moveGenerationTimeInNS;
+	private long evaluationTimeInNS;
+	private long numEvaluations;
+
+	// the open leaf batch (below the frontier node being searched), if any
+	private EvaluationBatchEvent batchEvent;
+	private int batchEvaluations;
+	private long batchEvaluationTimeInNS;
+
+	// the open iteration, if any
+	private SearchIterationEvent iterationEvent;
+	private long iterationStartNodes;
+
+	// the open root move
+	private RootMoveEvent rootMoveEvent;
+	private int rootMoveIdx;
+	private long rootMoveStartNodes;
+
+	public SearchRecorder(String agentName, SearchStats searchStats)
+	{
+		this.agentName = agentName;
+		this.searchStats = searchStats;
+		this.moveEvent = new SearchMoveEvent();
+		this.isEnabled = this.moveEvent.isEnabled();
+		this.startTime = 0;
+		this.moveGenerationTimeInNS = 0;
+		this.evaluationTimeInNS = 0;
+		this.numEvaluations = 0;
+		this.batchEvent = null;
+		this.batchEvaluations = 0;
+		this.batchEvaluationTimeInNS = 0;
+		this.iterationEvent = null;
+		this.iterationStartNodes = 0;
+		this.rootMoveEvent = null;
+		this.rootMoveIdx = 0;
+		this.rootMoveStartNodes = 0;
+	}
+
+	public String getAgentName() { return this.agentName; }
+	public SearchStats getSearchStats() { return this.searchStats; }
+	public boolean isEnabled() { return this.isEnabled; }
+
+	/**
+	 * Opens the SearchMoveEvent; call when the search starts.
+	 */
+	public void startMove()
+	{
+		if(!this.isEnabled())
+		{
+			return;
+		}
+
+		this.moveEvent.begin();
+		this.startTime = System.nanoTime();
+	}
+
+	/**
+	 * node.getChildren(), timed as move generation. Expanding the root (ply 0) opens the first root move, expanding a
+	 * frontier node (depth 1) opens a leaf batch that finishNode(...) closes.
+	 */
+	public List<DFSTreeNode> expand(DFSTreeNode node, int depth, int ply)
+	{
+		if(!this.isEnabled())
+		{
+			return node.getChildren();
+		}
+
+		MoveGenerationEvent event = new MoveGenerationEvent();
+		event.begin();
+		long startTime = System.nanoTime();
+		List<DFSTreeNode> children = node.getChildren();
+		this.finishExpand(event, System.nanoTime() - startTime, depth, ply, children.size());
+		return children;
+	}
+
+	/**
+	 * Same as expand(node, depth, ply) for searchers that keep packed moves: moveList.generate(ply, node.getGame()).
+	 * They build each child with makeChild(...) when they search it, which is timed as move generation too.
+	 * @return the number of moves generated
+	 */
+	public int generate(DFSTreeNode node, int depth, MoveList moveList, int ply)
+	{
+		if(!this.isEnabled())
+		{
+			return moveList.generate(ply, node.getGame());
+		}
+
+		MoveGenerationEvent event = new MoveGenerationEvent();
+		event.begin();
+		long startTime = System.nanoTime();
+		int numMoves = moveList.generate(ply, node.getGame());
+		this.finishExpand(event, System.nanoTime() - startTime, depth, ply, numMoves);
+		return numMoves;
+	}
+
+	/**
+	 * The child of node reached by move, timed as move generation: applying the move (and the terminal checks of the
+	 * child) is what node.getChildren() spends most of its time on.
+	 */
+	public DFSTreeNode makeChild(DFSTreeNode node, Move move)
+	{
+		if(!this.isEnabled())
+		{
+			return new DFSTreeNode(move, node.getGame().applyMove(move), node, node.getMaxPlayer());
+		}
+
+		long startTime = System.nanoTime();
+		DFSTreeNode child = new DFSTreeNode(move, node.getGame().applyMove(move), node, node.getMaxPlayer());
+		this.moveGenerationTimeInNS += System.nanoTime() - startTime;
+		return child;
+	}
+
+	private void finishExpand(MoveGenerationEvent event, long elapsedInNS, int depth, int ply, int numMoves)
+	{
+		this.moveGenerationTimeInNS += elapsedInNS;
+		event.end();
+		if(event.shouldCommit())
+		{
+			event.depth = depth;
+			event.numMoves = numMoves;
+			event.commit();
+		}
+
+		if(ply == 0)
+		{
+			this.rootMoveIdx = 0;
+			this.beginRootMove();
+		}
+		if(depth == 1)
+		{
+			this.batchEvent = new EvaluationBatchEvent();
+			this.batchEvaluations = 0;
+			this.batchEvaluationTimeInNS = 0;
+			this.batchEvent.begin();
+		}
+	}
+
+	/**
+	 * heuristic.applyAsDouble(node), timed as evaluation. Pass a static method reference so nothing is captured.
+	 */
+	public double evaluate(DFSTreeNode node, ToDoubleFunction<DFSTreeNode> heuristic)
+	{
+		if(!this.isEnabled())
+		{
+			return heuristic.applyAsDouble(node);
+		}
+
+		long startTime = System.nanoTime();
+		double heuristicValue = heuristic.applyAsDouble(node);
+		long elapsedInNS = System.nanoTime() - startTime;
+		this.evaluationTimeInNS += elapsedInNS;
+		this.numEvaluations += 1;
+		this.batchEvaluations += 1;
+		this.batchEvaluationTimeInNS += elapsedInNS;
+		return heuristicValue;
+	}
+
+	/**
+	 * batch.add(game, maxPlayerType), timed as evaluation: extracting the features is most of a batched leaf's cost.
+	 */
+	public int addLeaf(LeafBatch batch, Game game, PlayerType maxPlayerType)
+	{
+		if(!this.isEnabled())
+		{
+			return batch.add(game, maxPlayerType);
+		}
+
+		long startTime = System.nanoTime();
+		int leafIdx = batch.add(game, maxPlayerType);
+		long elapsedInNS = System.nanoTime() - startTime;
+		this.evaluationTimeInNS += elapsedInNS;
+		this.batchEvaluationTimeInNS += elapsedInNS;
+		return leafIdx;
+	}
+
+	/**
+	 * batch.score(), timed as the evaluation of batch.size() leaves (see addLeaf(...) for the rest of their cost).
+	 */
+	public double[] evaluate(LeafBatch batch)
+	{
+		if(!this.isEnabled())
+		{
+			return batch.score();
+		}
+
+		long startTime = System.nanoTime();
+		double[] scores = batch.score();
+		long elapsedInNS = System.nanoTime() - startTime;
+		this.evaluationTimeInNS += elapsedInNS;
+		this.numEvaluations += batch.size();
+		this.batchEvaluations += batch.size();
+		this.batchEvaluationTimeInNS += elapsedInNS;
+		return scores;
+	}
+
+	/**
+	 * Called by the searcher when it is done with the children of an expanded node (including after a cutoff).
+	 */
+	public void finishNode(int depth)
+	{
+		if(!this.isEnabled() || depth != 1 || this.batchEvent == null)
+		{
+			return;
+		}
+
+		this.batchEvent.end();
+		if(this.batchEvent.shouldCommit())
+		{
+			this.batchEvent.numEvaluations = this.batchEvaluations;
+			this.batchEvent.evaluationTime = this.batchEvaluationTimeInNS;
+			this.batchEvent.commit();
+		}
+		this.batchEvent = null;
+	}
+
+	/**
+	 * Called by the searcher after each child of the node at ply was searched; only root (ply 0) children matter.
+	 */
+	public void finishChild(DFSTreeNode child, int ply)
+	{
+		if(!this.isEnabled() || ply != 0 || this.rootMoveEvent == null)
+		{
+			return;
+		}
+
+		this.rootMoveEvent.end();
+		if(this.rootMoveEvent.shouldCommit())
+		{
+			this.rootMoveEvent.agent = this.getAgentName();
+			this.rootMoveEvent.index = this.rootMoveIdx;
+			this.rootMoveEvent.move = MoveNotation.toText(child.getParent().getGame(), child.getMove());
+			this.rootMoveEvent.score = child.getMaxPlayerUtilityValue();
+			this.rootMoveEvent.nodes = this.getSearchStats().getMoveNodes() - this.rootMoveStartNodes;
+			this.rootMoveEvent.commit();
+		}
+		this.rootMoveIdx += 1;
+		this.beginRootMove();
+	}
+
+	/**
+	 * Opens the SearchIterationEvent of an iterative deepening search's next depth, whose root moves are numbered from
+	 * 0 again. Call before the first root move of the depth is searched.
+	 */
+	public void startIteration()
+	{
+		if(!this.isEnabled())
+		{
+			return;
+		}
+
+		this.iterationEvent = new SearchIterationEvent();
+		this.iterationStartNodes = this.getSearchStats().getMoveNodes();
+		this.iterationEvent.begin();
+		this.rootMoveIdx = 0;
+		this.beginRootMove();
+	}
+
+	/**
+	 * Closes the SearchIterationEvent once depth is finished; bestChild is the root child it settled on. An iteration
+	 * the search was stopped in is just never finished.
+	 */
+	public void finishIteration(DFSTreeNode rootNode, DFSTreeNode bestChild, int depth)
+	{
+		if(!this.isEnabled() || this.iterationEvent == null)
+		{
+			return;
+		}
+
+		this.iterationEvent.end();
+		if(this.iterationEvent.shouldCommit())
+		{
+			this.iterationEvent.agent = this.getAgentName();
+			this.iterationEvent.depth = depth;
+			this.iterationEvent.nodes = this.getSearchStats().getMoveNodes() - this.iterationStartNodes;
+			this.iterationEvent.score = bestChild.getMaxPlayerUtilityValue();
+			this.iterationEvent.bestMove = MoveNotation.toText(rootNode.getGame(), bestChild.getMove());
+			this.iterationEvent.commit();
+		}
+		this.iterationEvent = null;
+	}
+
+	/**
+	 * Closes the SearchMoveEvent. Call after SearchStats.endMove(...) so the node counts are those of this move.
+	 */
+	public void finishMove(DFSTreeNode rootNode, DFSTreeNode bestChild, int depthReached)
+	{
+		if(!this.isEnabled())
+		{
+			return;
+		}
+
+		long elapsedInNS = System.nanoTime() - this.startTime;
+		this.moveEvent.end();
+		if(this.moveEvent.shouldCommit())
+		{
+			Move bestMove = bestChild != null ? bestChild.getMove() : null;
+			this.moveEvent.agent = this.getAgentName();
+			this.moveEvent.depth = depthReached;
+			this.moveEvent.nodes = this.getSearchStats().getMoveNodes();
+			this.moveEvent.leafEvaluations = this.numEvaluations;
+			this.moveEvent.score = bestChild != null ? bestChild.getMaxPlayerUtilityValue() : Double.NaN;
+			this.moveEvent.bestMove = bestMove != null ? MoveNotation.toText(rootNode.getGame(), bestMove) : null;
+			this.moveEvent.moveGenerationTime = this.moveGenerationTimeInNS;
+			this.moveEvent.evaluationTime = this.evaluationTimeInNS;
+			this.moveEvent.otherTime = Math.max(0, elapsedInNS - this.moveGenerationTimeInNS - this.evaluationTimeInNS);
+			this.moveEvent.commit();
+		}
+	}
+
+	private void beginRootMove()
+	{
+		this.rootMoveEvent = new RootMoveEvent();
+		this.rootMoveStartNodes = this.getSearchStats().getMoveNodes();
+		this.rootMoveEvent.begin();
+	}
+
+}
@@ -0,0 +1,268 @@
+package src.pas.chess.instrumentation;
+
+
+// SYSTEM IMPORTS
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Search counters of one agent, published as a platform MBean under
+ *     src.pas.chess:type=SearchStats,agent=<agent class>,id=<n>[,loader=<class loader>]
+ * (the loader key only when this class was not loaded by the application class loader: ids count per copy of the
+ * class, e.g. per episode of ParallelExperiment, and the platform MBean server is shared by all of them) so a running
+ * match can be watched with jconsole or jcmd, until unregister() is called. Counters are LongAdders, so bumping one
+ * from the search thread is about as cheap as a plain field increment and never contends with the JMX thread reading
+ * it.
+ *
+ * An agent may search on several threads at once (the engines of an EngineFactory play parallel games), so the per move
+ * counts are kept per thread: startMove, the nodes and endMove of one search all happen on its thread. The last move
+ * values the MBean shows are those of whichever search ended last.
+ */
+public class SearchStats
+    extends Object
+    implements SearchStatsMBean
+{
+
+	public static final String DOMAIN = "src.pas.chess";
+
+	private static final AtomicInteger NEXT_ID = new AtomicInteger(0);
+	private static final ConcurrentHashMap<ObjectName, SearchStats> REGISTERED =
+		new ConcurrentHashMap<ObjectName, SearchStats>();
+
+	private final LongAdder nodes;
+	private final LongAdder leafEvaluations;
+	private final LongAdder betaCutoffs;
+	private final LongAdder firstMoveCutoffs;
+	private final LongAdder movesSearched;
+	private final LongAdder searchTimeInNS;
+
+	private final ThreadLocal<MoveCounts> moveCounts;
+	private volatile int depthReached;
+	private volatile long lastMoveNodes;
+	private volatile long lastMoveTimeInNS;
+	private ObjectName objectName;          // null when not registered
+
+	/**
+	 * The counts of the move the owning thread is searching (or searched last).
+	 */
+	private static class MoveCounts
+	    extends Object
+	{
+		private long numNodes;
+		private long startTime;
+
+		private MoveCounts()
+		{
+			this.numNodes = 0;
+			this.startTime = 0;
+		}
+	}
+
+	public SearchStats()
+	{
+		this.nodes = new LongAdder();
+		this.leafEvaluations = new LongAdder();
+		this.betaCutoffs = new LongAdder();
+		this.firstMoveCutoffs = new LongAdder();
+		this.movesSearched = new LongAdder();
+		this.searchTimeInNS = new LongAdder();
+		this.moveCounts = ThreadLocal.withInitial(MoveCounts::new);
+		this.depthReached = 0;
+		this.lastMoveNodes = 0;
+		this.lastMoveTimeInNS = 0;
+		this.objectName = null;
+	}
+
+	/**
+	 * Make a SearchStats and register it with the platform MBean server. If registration fails (e.g. no JMX in this
+	 * JVM) the stats are still counted, just not visible.
+	 */
+	public static SearchStats register(String agentName)
+	{
+		SearchStats stats = new SearchStats();
+		try
+		{
+			ObjectName objectName = new ObjectName(SearchStats.DOMAIN + ":type=SearchStats,agent=" + agentName +
+				",id=" + SearchStats.NEXT_ID.getAndIncrement() + SearchStats.getLoaderKey());
+			ManagementFactory.getPlatformMBeanServer().registerMBean(stats, objectName);
+			stats.objectName = objectName;
+			SearchStats.REGISTERED.put(objectName, stats);
+		} catch(JMException e)
+		{
+			System.err.println("SearchStats.register [ERROR]: unable to register search stats for agent=" + agentName);
+			e.printStackTrace();
+		}
+		return stats;
+	}
+
+	private static String getLoaderKey()
+	{
+		ClassLoader loader = SearchStats.class.getClassLoader();
+		if(loader == null || loader == ClassLoader.getSystemClassLoader())
+		{
+			return "";
+		}
+		String loaderName = loader.getName() != null ? loader.getName()
+			: loader.getClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(loader));
+		return ",loader=" + ObjectName.quote(loaderName);
+	}
+
+	/**
+	 * Take the MBean off the platform MBean server (a no-op if it is not on it): call once the agent is done searching,
+	 * or the server keeps the stats, and the agent's class loader, alive.
+	 */
+	public synchronized void unregister()
+	{
+		if(this.objectName == null)
+		{
+			return;
+		}
+		try
+		{
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if(server.isRegistered(this.objectName))
+			{
+				server.unregisterMBean(this.objectName);
+			}
+		} catch(JMException e)
+		{
+			System.err.println("SearchStats.unregister [ERROR]: unable to unregister " + this.objectName);
+			e.printStackTrace();
+		}
+		SearchStats.REGISTERED.remove(this.objectName, this);
+		this.objectName = null;
+	}
+
+	/**
+	 * Unregister every SearchStats still registered, e.g. when an episode of ParallelExperiment is done (whether or not
+	 * its agents got to terminalStep).
+	 */
+	public static void closeAll()
+	{
+		for(SearchStats stats : SearchStats.REGISTERED.values())
+		{
+			stats.unregister();
+		}
+	}
+
+	// hot path: called by the searcher
+	public void incNodes()
+	{
+		this.nodes.increment();
+		this.moveCounts.get().numNodes += 1;
+	}
+
+	public void incLeafEvaluations() { this.leafEvaluations.increment(); }
+
+	/**
+	 * @param childIdx which child (0 = first searched) caused the cutoff
+	 */
+	public void incBetaCutoffs(int childIdx)
+	{
+		this.betaCutoffs.increment();
+		if(childIdx == 0)
+		{
+			this.firstMoveCutoffs.increment();
+		}
+	}
+
+	public void startMove()
+	{
+		MoveCounts counts = this.moveCounts.get();
+		counts.numNodes = 0;
+		counts.startTime = System.nanoTime();
+	}
+
+	/**
+	 * @param depthReached the deepest ply the search visited
+	 */
+	public void endMove(int depthReached)
+	{
+		MoveCounts counts = this.moveCounts.get();
+		long elapsedInNS = System.nanoTime() - counts.startTime;
+		this.searchTimeInNS.add(elapsedInNS);
+		this.movesSearched.increment();
+		this.depthReached = depthReached;
+		this.lastMoveNodes = counts.numNodes;
+		this.lastMoveTimeInNS = elapsedInNS;
+	}
+
+	/**
+	 * @return the nodes of the move the calling thread is searching (or searched last), not counting those other
+	 *         threads searched meanwhile
+	 */
+	public long getMoveNodes() { return this.moveCounts.get().numNodes; }
+
+	@Override
+	public long getNodes() { return this.nodes.sum(); }
+
+	@Override
+	public long getLeafEvaluations() { return this.leafEvaluations.sum(); }
+
+	@Override
+	public long getBetaCutoffs() { return this.betaCutoffs.sum(); }
+
+	@Override
+	public long getMovesSearched() { return this.movesSearched.sum(); }
+
+	@Override
+	public int getDepthReached() { return this.depthReached; }
+
+	@Override
+	public long getLastMoveNodes() { return this.lastMoveNodes; }
+
+	@Override
+	public double getLastMoveTimeInMS() { return this.lastMoveTimeInNS / 1e6; }
+
+	@Override
+	public double getFirstMoveCutoffRatio()
+	{
+		long betaCutoffs = this.betaCutoffs.sum();
+		return betaCutoffs > 0 ? (double)this.firstMoveCutoffs.sum() / betaCutoffs : 0.0;
+	}
+
+	@Override
+	public double getEffectiveBranchingFactor()
+	{
+		int depth = this.getDepthReached();
+		return depth > 0 ? Math.pow(this.getLastMoveNodes(), 1.0 / depth) : 0.0;
+	}
+
+	@Override
+	public double getNodesPerSecond()
+	{
+		long searchTimeInNS = this.searchTimeInNS.sum();
+		return searchTimeInNS > 0 ? this.nodes.sum() * 1e9 / searchTimeInNS : 0.0;
+	}
+
+	@Override
+	public double getAverageMoveTimeInMS()
+	{
+		long movesSearched = this.movesSearched.sum();
+		return movesSearched > 0 ? this.searchTimeInNS.sum() / 1e6 / movesSearched : 0.0;
+	}
+
+	@Override
+	public void reset()
+	{
+		this.nodes.reset();
+		this.leafEvaluations.reset();
+		this.betaCutoffs.reset();
+		this.firstMoveCutoffs.reset();
+		this.movesSearched.reset();
+		this.searchTimeInNS.reset();
+		this.depthReached = 0;
+		this.lastMoveNodes = 0;
+		this.lastMoveTimeInNS = 0;
+	}
+
+}
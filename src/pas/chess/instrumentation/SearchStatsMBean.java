@@ -0,0 +1,40 @@
+package src.pas.chess.instrumentation;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * What jconsole/jcmd see of a SearchStats. Totals are since the agent was made (or since the last reset),
+ * the "last move" values describe the most recent search.
+ */
+public interface SearchStatsMBean
+{
+
+	public long getNodes();
+	public long getLeafEvaluations();
+	public long getBetaCutoffs();
+	public long getMovesSearched();
+
+	/**
+	 * @return fraction of beta cutoffs that happened on the first child searched (a move ordering quality measure)
+	 */
+	public double getFirstMoveCutoffRatio();
+
+	/**
+	 * @return nodes of the last search to the power 1/depth of the last search
+	 */
+	public double getEffectiveBranchingFactor();
+	public int getDepthReached();
+	public long getLastMoveNodes();
+	public double getLastMoveTimeInMS();
+
+	public double getNodesPerSecond();
+	public double getAverageMoveTimeInMS();
+
+	public void reset();
+
+}
@@ -0,0 +1,312 @@
+package src.pas.chess.instrumentation;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.move.MoveType;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.utils.MoveNotation;
+
+
+/**
+ * Reads a SearchTraceWriter file by memory mapping it in CHUNK_SIZE pieces (a single MappedByteBuffer cannot exceed
+ * 2 GB) and scanning the records with absolute gets. The aggregate statistics are computed per chunk in parallel and
+ * merged, so 10^8 records (6.4 GB) take seconds once the file is in the page cache.
+ *
+ * Usage:
+ *     java -cp "./lib/*:." src.pas.chess.instrumentation.SearchTraceReader <trace file> [--dump N]
+ * prints per depth node counts, branching factors and runtimes plus the histogram of the child position at which
+ * cutoffs happened. --dump N also prints the first N records.
+ */
+public class SearchTraceReader
+    extends Object
+    implements AutoCloseable
+{
+
+	public static final long CHUNK_SIZE = (1L << 26) / SearchTraceWriter.RECORD_SIZE * SearchTraceWriter.RECORD_SIZE;
+	public static final int MAX_DEPTH = 64;
+	public static final int MAX_CUTOFF_IDX = 64;  // cutoffs at later children are counted in the last bucket
+
+	/**
+	 * Aggregates over a range of records; depths are the remaining depth stored in the record.
+	 */
+	public static class Stats
+	    extends Object
+	{
+		private long numRecords;
+		private long numRoots;
+		private final long[] numNodes;           // by depth
+		private final long[] numInteriorNodes;   // nodes that generated children
+		private final long[] numChildren;        // children generated, summed over interior nodes
+		private final long[] numSearched;        // children searched, summed over interior nodes
+		private final long[] numCutoffs;
+		private final long[] runtimesInNS;
+		private final long[] cutoffIdxCounts;    // by index of the child that caused the cutoff
+		private long numTerminal;
+		private long numLeaves;
+
+		public Stats()
+		{
+			this.numRecords = 0;
+			this.numRoots = 0;
+			this.numNodes = new long[SearchTraceReader.MAX_DEPTH];
+			this.numInteriorNodes = new long[SearchTraceReader.MAX_DEPTH];
+			this.numChildren = new long[SearchTraceReader.MAX_DEPTH];
+			this.numSearched = new long[SearchTraceReader.MAX_DEPTH];
+			this.numCutoffs = new long[SearchTraceReader.MAX_DEPTH];
+			this.runtimesInNS = new long[SearchTraceReader.MAX_DEPTH];
+			this.cutoffIdxCounts = new long[SearchTraceReader.MAX_CUTOFF_IDX];
+			this.numTerminal = 0;
+			this.numLeaves = 0;
+		}
+
+		public long getNumRecords() { return this.numRecords; }
+		public long getNumRoots() { return this.numRoots; }
+		public long getNumTerminal() { return this.numTerminal; }
+		public long getNumLeaves() { return this.numLeaves; }
+		public long[] getNumNodes() { return this.numNodes; }
+		public long[] getNumInteriorNodes() { return this.numInteriorNodes; }
+		public long[] getNumChildren() { return this.numChildren; }
+		public long[] getNumSearched() { return this.numSearched; }
+		public long[] getNumCutoffs() { return this.numCutoffs; }
+		public long[] getRuntimesInNS() { return this.runtimesInNS; }
+		public long[] getCutoffIdxCounts() { return this.cutoffIdxCounts; }
+
+		public double getBranchingFactor(int depth)
+		{
+			return this.numInteriorNodes[depth] > 0 ? (double)this.numChildren[depth] / this.numInteriorNodes[depth] : 0.0;
+		}
+
+		public double getSearchedBranchingFactor(int depth)
+		{
+			return this.numInteriorNodes[depth] > 0 ? (double)this.numSearched[depth] / this.numInteriorNodes[depth] : 0.0;
+		}
+
+		public void add(MappedByteBuffer chunk)
+		{
+			for(int offset = 0; offset + SearchTraceWriter.RECORD_SIZE <= chunk.limit();
+				offset += SearchTraceWriter.RECORD_SIZE)
+			{
+				int depth = Math.min(Math.max(chunk.getShort(offset + SearchTraceWriter.DEPTH_OFFSET), 0),
+					SearchTraceReader.MAX_DEPTH - 1);
+				int numChildren = chunk.getShort(offset + SearchTraceWriter.NUM_CHILDREN_OFFSET);
+				int numSearched = chunk.getShort(offset + SearchTraceWriter.NUM_SEARCHED_OFFSET);
+				byte flags = chunk.get(offset + SearchTraceWriter.FLAGS_OFFSET);
+
+				this.numRecords += 1;
+				this.numNodes[depth] += 1;
+				this.runtimesInNS[depth] += chunk.getLong(offset + SearchTraceWriter.RUNTIME_OFFSET);
+				if(chunk.getLong(offset + SearchTraceWriter.PARENT_ID_OFFSET) < 0)
+				{
+					this.numRoots += 1;
+				}
+				if((flags & SearchTraceWriter.FLAG_TERMINAL) != 0)
+				{
+					this.numTerminal += 1;
+				}
+				if((flags & SearchTraceWriter.FLAG_LEAF) != 0)
+				{
+					this.numLeaves += 1;
+				}
+				if(numChildren > 0)
+				{
+					this.numInteriorNodes[depth] += 1;
+					this.numChildren[depth] += numChildren;
+					this.numSearched[depth] += numSearched;
+				}
+				if((flags & SearchTraceWriter.FLAG_CUTOFF) != 0)
+				{
+					this.numCutoffs[depth] += 1;
+					int cutoffIdx = Math.min(Math.max(numSearched - 1, 0), SearchTraceReader.MAX_CUTOFF_IDX - 1);
+					this.cutoffIdxCounts[cutoffIdx] += 1;
+				}
+			}
+		}
+
+		public Stats merge(Stats other)
+		{
+			this.numRecords += other.numRecords;
+			this.numRoots += other.numRoots;
+			this.numTerminal += other.numTerminal;
+			this.numLeaves += other.numLeaves;
+			for(int depth = 0; depth < SearchTraceReader.MAX_DEPTH; ++depth)
+			{
+				this.numNodes[depth] += other.numNodes[depth];
+				this.numInteriorNodes[depth] += other.numInteriorNodes[depth];
+				this.numChildren[depth] += other.numChildren[depth];
+				this.numSearched[depth] += other.numSearched[depth];
+				this.numCutoffs[depth] += other.numCutoffs[depth];
+				this.runtimesInNS[depth] += other.runtimesInNS[depth];
+			}
+			for(int cutoffIdx = 0; cutoffIdx < SearchTraceReader.MAX_CUTOFF_IDX; ++cutoffIdx)
+			{
+				this.cutoffIdxCounts[cutoffIdx] += other.cutoffIdxCounts[cutoffIdx];
+			}
+			return this;
+		}
+	}
+
+	private final FileChannel channel;
+	private final long numRecords;
+
+	public SearchTraceReader(File file) throws IOException
+	{
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+		MappedByteBuffer header = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, SearchTraceWriter.HEADER_SIZE);
+		header.order(ByteOrder.LITTLE_ENDIAN);
+		if(header.getInt(0) != SearchTraceWriter.MAGIC || header.getShort(4) != SearchTraceWriter.VERSION ||
+			header.getShort(6) != SearchTraceWriter.RECORD_SIZE)
+		{
+			this.channel.close();
+			throw new IllegalArgumentException("SearchTraceReader.SearchTraceReader [ERROR]: " + file +
+				" is not a version " + SearchTraceWriter.VERSION + " search trace");
+		}
+		this.numRecords = (this.channel.size() - SearchTraceWriter.HEADER_SIZE) / SearchTraceWriter.RECORD_SIZE;
+	}
+
+	public long getNumRecords() { return this.numRecords; }
+
+	/**
+	 * @return the records as consecutive mapped chunks of at most CHUNK_SIZE bytes (a whole number of records each)
+	 */
+	public List<MappedByteBuffer> mapChunks() throws IOException
+	{
+		List<MappedByteBuffer> chunks = new ArrayList<MappedByteBuffer>();
+		long end = SearchTraceWriter.HEADER_SIZE + this.getNumRecords() * SearchTraceWriter.RECORD_SIZE;
+		for(long start = SearchTraceWriter.HEADER_SIZE; start < end; start += SearchTraceReader.CHUNK_SIZE)
+		{
+			MappedByteBuffer chunk = this.channel.map(FileChannel.MapMode.READ_ONLY, start,
+				Math.min(SearchTraceReader.CHUNK_SIZE, end - start));
+			chunk.order(ByteOrder.LITTLE_ENDIAN);
+			chunks.add(chunk);
+		}
+		return chunks;
+	}
+
+	public Stats computeStats() throws IOException
+	{
+		return this.mapChunks().parallelStream().collect(Stats::new, Stats::add, Stats::merge);
+	}
+
+	public static String decodeMove(int move)
+	{
+		if(move == 0)
+		{
+			return "-";
+		}
+		int src = move & 63;
+		int dst = (move >>> 6) & 63;
+		MoveType type = MoveType.values()[move >>> 12];
+		String text = "" + MoveNotation.getFile(src % 8 + 1) + (char)('1' + src / 8);
+		if(type != MoveType.PROMOTEPAWNMOVE)
+		{
+			text += "" + MoveNotation.getFile(dst % 8 + 1) + (char)('1' + dst / 8);
+		}
+		return text + "(" + type + ")";
+	}
+
+	public void dump(int numRecords) throws IOException
+	{
+		System.out.println("node_id,parent_id,move,depth,child_idx,score,alpha,beta,runtime_ns,num_children," +
+			"num_searched,flags");
+		int numDumped = 0;
+		for(MappedByteBuffer chunk : this.mapChunks())
+		{
+			for(int offset = 0; offset < chunk.limit() && numDumped < numRecords;
+				offset += SearchTraceWriter.RECORD_SIZE)
+			{
+				System.out.println(chunk.getLong(offset + SearchTraceWriter.NODE_ID_OFFSET) + "," +
+					chunk.getLong(offset + SearchTraceWriter.PARENT_ID_OFFSET) + "," +
+					SearchTraceReader.decodeMove(chunk.getInt(offset + SearchTraceWriter.MOVE_OFFSET)) + "," +
+					chunk.getShort(offset + SearchTraceWriter.DEPTH_OFFSET) + "," +
+					chunk.getShort(offset + SearchTraceWriter.CHILD_IDX_OFFSET) + "," +
+					chunk.getDouble(offset + SearchTraceWriter.SCORE_OFFSET) + "," +
+					chunk.getDouble(offset + SearchTraceWriter.ALPHA_OFFSET) + "," +
+					chunk.getDouble(offset + SearchTraceWriter.BETA_OFFSET) + "," +
+					chunk.getLong(offset + SearchTraceWriter.RUNTIME_OFFSET) + "," +
+					chunk.getShort(offset + SearchTraceWriter.NUM_CHILDREN_OFFSET) + "," +
+					chunk.getShort(offset + SearchTraceWriter.NUM_SEARCHED_OFFSET) + "," +
+					chunk.get(offset + SearchTraceWriter.FLAGS_OFFSET));
+				numDumped += 1;
+			}
+			if(numDumped >= numRecords)
+			{
+				return;
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		this.channel.close();
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		if(args.length < 1)
+		{
+			System.err.println("Usage: java src.pas.chess.instrumentation.SearchTraceReader <trace file> [--dump N]");
+			System.exit(-1);
+		}
+
+		try(SearchTraceReader reader = new SearchTraceReader(new File(args[0])))
+		{
+			if(args.length >= 3 && args[1].equals("--dump"))
+			{
+				reader.dump(Integer.parseInt(args[2]));
+			}
+
+			long startTime = System.nanoTime();
+			Stats stats = reader.computeStats();
+			double elapsedSeconds = (System.nanoTime() - startTime) / 1e9;
+
+			System.out.println(String.format(Locale.ROOT, "records=%d roots=%d terminal=%d leaves=%d (scanned in %.2f s)",
+				stats.getNumRecords(), stats.getNumRoots(), stats.getNumTerminal(), stats.getNumLeaves(),
+				elapsedSeconds));
+			System.out.println("depth,nodes,interior,branching,searched_branching,cutoffs,avg_runtime_us");
+			for(int depth = SearchTraceReader.MAX_DEPTH - 1; depth >= 0; --depth)
+			{
+				long numNodes = stats.getNumNodes()[depth];
+				if(numNodes == 0)
+				{
+					continue;
+				}
+				System.out.println(String.format(Locale.ROOT, "%d,%d,%d,%.2f,%.2f,%d,%.1f", depth, numNodes,
+					stats.getNumInteriorNodes()[depth], stats.getBranchingFactor(depth),
+					stats.getSearchedBranchingFactor(depth), stats.getNumCutoffs()[depth],
+					stats.getRuntimesInNS()[depth] / 1e3 / numNodes));
+			}
+
+			long numCutoffs = 0;
+			for(long count : stats.getCutoffIdxCounts())
+			{
+				numCutoffs += count;
+			}
+			System.out.println("cutoff_child_idx,count,fraction");
+			for(int cutoffIdx = 0; cutoffIdx < SearchTraceReader.MAX_CUTOFF_IDX; ++cutoffIdx)
+			{
+				long count = stats.getCutoffIdxCounts()[cutoffIdx];
+				if(count > 0)
+				{
+					String bucket = cutoffIdx == SearchTraceReader.MAX_CUTOFF_IDX - 1 ? ">=" + cutoffIdx : "" + cutoffIdx;
+					System.out.println(String.format(Locale.ROOT, "%s,%d,%.4f", bucket, count, (double)count / numCutoffs));
+				}
+			}
+		}
+	}
+
+}
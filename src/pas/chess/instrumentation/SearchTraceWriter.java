@@ -0,0 +1,171 @@
+package src.pas.chess.instrumentation;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.move.Move;
+import edu.bu.chess.utils.Coordinate;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.utils.MoveNotation;
+
+
+/**
+ * Writes search trees as fixed width binary records, one per visited node, in the order the nodes finish (post order).
+ * Records are put into a direct buffer and written to the file channel when it is full, so per node this is a handful
+ * of stores and no allocation.
+ *
+ * File layout (little endian): a HEADER_SIZE byte header (MAGIC, VERSION, RECORD_SIZE) followed by RECORD_SIZE byte
+ * records:
+ *     0  long   node id (pre order, unique within the file)
+ *     8  long   parent id (-1 for a root)
+ *     16 int    move that led to the node (see encodeMove, 0 for a root)
+ *     20 short  remaining depth
+ *     22 short  index of the node among its siblings
+ *     24 double score (max player utility)
+ *     32 double alpha at entry
+ *     40 double beta at entry
+ *     48 long   runtime of the subtree in ns
+ *     56 short  number of children generated
+ *     58 short  number of children searched (less than generated after a cutoff)
+ *     60 byte   flags (FLAG_TERMINAL, FLAG_LEAF, FLAG_CUTOFF)
+ *     61        3 bytes padding
+ * SearchTraceReader reads them back.
+ */
+public class SearchTraceWriter
+    extends Object
+    implements AutoCloseable
+{
+
+	public static final int MAGIC = 0x52544843;  // "CHTR" on disk
+	public static final short VERSION = 1;
+	public static final int HEADER_SIZE = 16;
+	public static final int RECORD_SIZE = 64;
+	public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+	public static final byte FLAG_TERMINAL = 1;
+	public static final byte FLAG_LEAF = 2;         // evaluated with the heuristic
+	public static final byte FLAG_CUTOFF = 4;       // stopped searching children early
+
+	// record field offsets
+	public static final int NODE_ID_OFFSET = 0;
+	public static final int PARENT_ID_OFFSET = 8;
+	public static final int MOVE_OFFSET = 16;
+	public static final int DEPTH_OFFSET = 20;
+	public static final int CHILD_IDX_OFFSET = 22;
+	public static final int SCORE_OFFSET = 24;
+	public static final int ALPHA_OFFSET = 32;
+	public static final int BETA_OFFSET = 40;
+	public static final int RUNTIME_OFFSET = 48;
+	public static final int NUM_CHILDREN_OFFSET = 56;
+	public static final int NUM_SEARCHED_OFFSET = 58;
+	public static final int FLAGS_OFFSET = 60;
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+	private long nextNodeId;
+	private long numWritten;
+
+	/**
+	 * Opens path for appending; a new (or empty) file gets a header first.
+	 */
+	public SearchTraceWriter(File file, int bufferSize) throws IOException
+	{
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+			StandardOpenOption.APPEND);
+		int numRecords = Math.max(bufferSize / SearchTraceWriter.RECORD_SIZE, 1);
+		this.buffer = ByteBuffer.allocateDirect(numRecords * SearchTraceWriter.RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		this.numWritten = 0;
+
+		long fileSize = this.channel.size();
+		if(fileSize == 0)
+		{
+			ByteBuffer header = ByteBuffer.allocate(SearchTraceWriter.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(SearchTraceWriter.MAGIC).putShort(SearchTraceWriter.VERSION)
+				.putShort((short)SearchTraceWriter.RECORD_SIZE);
+			header.clear();
+			while(header.hasRemaining())
+			{
+				this.channel.write(header);
+			}
+			this.nextNodeId = 0;
+		} else
+		{
+			// keep node ids unique when appending to an existing trace
+			this.nextNodeId = (fileSize - SearchTraceWriter.HEADER_SIZE) / SearchTraceWriter.RECORD_SIZE;
+		}
+	}
+
+	public SearchTraceWriter(File file) throws IOException
+	{
+		this(file, SearchTraceWriter.DEFAULT_BUFFER_SIZE);
+	}
+
+	public long getNumWritten() { return this.numWritten; }
+
+	/**
+	 * Ids are handed out when a node is entered, the record is written when it finishes.
+	 */
+	public long nextNodeId() { return this.nextNodeId++; }
+
+	/**
+	 * from square (6 bits) | to square (6 bits) << 6 | move type ordinal << 12, squares as 8 * (rank - 1) + file - 1
+	 */
+	public static int encodeMove(Game game, Move move)
+	{
+		if(move == null)
+		{
+			return 0;
+		}
+		Coordinate src = game.getCurrentPosition(move.getActorPlayer(), move.getActorPieceID());
+		Coordinate dst = MoveNotation.getDstPosition(game, move);
+		return SearchTraceWriter.getSquareIdx(src) | (SearchTraceWriter.getSquareIdx(dst) << 6) |
+			(move.getType().ordinal() << 12);
+	}
+
+	private static int getSquareIdx(Coordinate position)
+	{
+		// y = 1 is rank 8
+		return 8 * (8 - position.getYPosition()) + position.getXPosition() - 1;
+	}
+
+	public void write(long nodeId, long parentId, int move, int depth, int childIdx, double score, double alpha,
+	                  double beta, long runtimeInNS, int numChildren, int numSearched, byte flags) throws IOException
+	{
+		if(!this.buffer.hasRemaining())
+		{
+			this.flush();
+		}
+		this.buffer.putLong(nodeId).putLong(parentId).putInt(move).putShort((short)depth).putShort((short)childIdx)
+			.putDouble(score).putDouble(alpha).putDouble(beta).putLong(runtimeInNS).putShort((short)numChildren)
+			.putShort((short)numSearched).put(flags).put((byte)0).putShort((short)0);
+		this.numWritten += 1;
+	}
+
+	public void flush() throws IOException
+	{
+		this.buffer.flip();
+		while(this.buffer.hasRemaining())
+		{
+			this.channel.write(this.buffer);
+		}
+		this.buffer.clear();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		this.flush();
+		this.channel.close();
+	}
+
+}
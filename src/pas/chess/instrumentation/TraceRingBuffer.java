@@ -0,0 +1,179 @@
+package src.pas.chess.instrumentation;
+
+
+// SYSTEM IMPORTS
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * A preallocated single-producer/single-consumer ring buffer of (depth, num_children, runtime_ns) records.
+ * The search thread calls record(...), which never blocks, allocates or does I/O: if the buffer is full the record is
+ * dropped and counted instead. A background daemon thread drains the buffer in batches and writes csv lines to a Writer.
+ *
+ * Only one thread may call record(...) at a time (the agents run one search at a time, so that holds).
+ */
+public class TraceRingBuffer
+    extends Object
+    implements AutoCloseable
+{
+
+	public static final int DEFAULT_CAPACITY = 1 << 18;
+	public static final long IDLE_PARK_NANOS = 1000000;  // how long the drainer sleeps when there is nothing to write
+
+	private final int mask;
+	private final int[] depths;
+	private final int[] numChildren;
+	private final long[] runtimesInNS;
+
+	// head is only written by the producer, tail only by the drainer. Both are published with lazySet
+	private final AtomicLong head;
+	private final AtomicLong tail;
+	private long cachedTail;            // producer's last look at tail, so it only re-reads tail when the buffer seems full
+	private volatile long numDropped;   // single writer (the producer)
+
+	private final Writer writer;
+	private final Thread drainThread;
+	private volatile boolean isRunning;
+	private long numWritten;
+
+	/**
+	 * @param capacity number of records, rounded up to a power of two
+	 * @param writer where the drainer writes csv lines (the caller writes any header)
+	 */
+	public TraceRingBuffer(int capacity, Writer writer)
+	{
+		int roundedCapacity = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+		this.mask = roundedCapacity - 1;
+		this.depths = new int[roundedCapacity];
+		this.numChildren = new int[roundedCapacity];
+		this.runtimesInNS = new long[roundedCapacity];
+		this.head = new AtomicLong(0);
+		this.tail = new AtomicLong(0);
+		this.cachedTail = 0;
+		this.numDropped = 0;
+		this.numWritten = 0;
+
+		this.writer = writer;
+		this.isRunning = true;
+		this.drainThread = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				TraceRingBuffer.this.drainLoop();
+			}
+		}, "trace-ring-buffer-drainer");
+		this.drainThread.setDaemon(true);
+		this.drainThread.start();
+	}
+
+	public TraceRingBuffer(Writer writer)
+	{
+		this(TraceRingBuffer.DEFAULT_CAPACITY, writer);
+	}
+
+	public int getCapacity() { return this.mask + 1; }
+	public long getNumDropped() { return this.numDropped; }
+	public long getNumWritten() { return this.numWritten; }
+	private Writer getWriter() { return this.writer; }
+
+	/**
+	 * Called from the search thread. Never blocks: if the drainer has fallen behind the record is dropped.
+	 */
+	public void record(int depth, int numChildren, long runtimeInNS)
+	{
+		long currentHead = this.head.get();
+		if(currentHead - this.cachedTail > this.mask)
+		{
+			this.cachedTail = this.tail.get();
+			if(currentHead - this.cachedTail > this.mask)
+			{
+				this.numDropped = this.numDropped + 1;
+				return;
+			}
+		}
+
+		int slot = (int)(currentHead & this.mask);
+		this.depths[slot] = depth;
+		this.numChildren[slot] = numChildren;
+		this.runtimesInNS[slot] = runtimeInNS;
+		this.head.lazySet(currentHead + 1);
+	}
+
+	/**
+	 * Writes every published record to the writer.
+	 * @return how many records were written
+	 */
+	private int drain() throws IOException
+	{
+		long currentTail = this.tail.get();
+		long currentHead = this.head.get();
+		if(currentHead == currentTail)
+		{
+			return 0;
+		}
+
+		StringBuilder builder = new StringBuilder(32 * (int)Math.min(currentHead - currentTail, 65536));
+		for(long idx = currentTail; idx < currentHead; ++idx)
+		{
+			int slot = (int)(idx & this.mask);
+			builder.append(this.depths[slot]).append(',').append(this.numChildren[slot]).append(',')
+				.append(this.runtimesInNS[slot]).append('\n');
+
+			// write in large chunks but keep the builder bounded
+			if(builder.length() >= (1 << 20))
+			{
+				this.getWriter().write(builder.toString());
+				builder.setLength(0);
+			}
+		}
+		this.getWriter().write(builder.toString());
+		this.tail.lazySet(currentHead);
+		this.numWritten += currentHead - currentTail;
+		return (int)(currentHead - currentTail);
+	}
+
+	private void drainLoop()
+	{
+		try
+		{
+			while(this.isRunning)
+			{
+				if(this.drain() == 0)
+				{
+					LockSupport.parkNanos(TraceRingBuffer.IDLE_PARK_NANOS);
+				}
+			}
+			this.drain();
+			this.getWriter().flush();
+		} catch(IOException e)
+		{
+			System.err.println("TraceRingBuffer.drainLoop [ERROR]: unable to write trace records");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Stops the drainer after it wrote everything still in the buffer. Does not close the writer.
+	 */
+	@Override
+	public void close()
+	{
+		this.isRunning = false;
+		LockSupport.unpark(this.drainThread);
+		try
+		{
+			this.drainThread.join();
+		} catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,38 @@
+package src.pas.chess.match;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.move.Move;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.history.GameHistory;
+
+
+/**
+ * Something that picks moves straight from a Game, without going through SEPIA or the Planner singleton.
+ * One Engine is made per game it plays, so implementations may keep per-game state but should not share mutable state
+ * between instances (games are played concurrently).
+ */
+public interface Engine
+{
+
+	public String getName();
+
+	/**
+	 * @param game the current position; the player to move is game.getCurrentPlayer()
+	 * @return the move to play, or null if the engine could not pick one
+	 */
+	public Move getChessMove(Game game);
+
+	/**
+	 * Same as getChessMove(history.getCurrentGame()) for engines that can use the moves played so far (e.g. to avoid
+	 * repeating positions).
+	 */
+	public default Move getChessMove(GameHistory history)
+	{
+		return this.getChessMove(history.getCurrentGame());
+	}
+
+}
@@ -0,0 +1,136 @@
+package src.pas.chess.match;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.agents.ChessAgent;
+
+
+import java.lang.reflect.Constructor;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.instrumentation.SearchStats;
+
+
+/**
+ * Makes a fresh Engine for every game from a short text spec:
+ *     random                  uniformly random moves
+ *     <AgentClass>[:depth]    the searcher of a ChessAgent, e.g. AlphaBetaAgent:4 or edu.bu.chess.agents.ReallyHardAgent:3
+ * Agent class names without a package are looked up in src.pas.chess.agents and then edu.bu.chess.agents.
+ */
+public class EngineFactory
+    extends Object
+{
+
+	public static final String RANDOM_SPEC = "random";
+	public static final String[] AGENT_PACKAGES = new String[]{"src.pas.chess.agents.", "edu.bu.chess.agents."};
+	public static final int DEFAULT_MAX_DEPTH = 3;
+
+	private final String spec;
+	private final ChessAgent agent;
+	private final Constructor<?> searcherConstructor;
+	private final int maxDepth;
+	private final AtomicLong nextSeed;
+
+	private EngineFactory(String spec, ChessAgent agent, Constructor<?> searcherConstructor, int maxDepth, long seed)
+	{
+		this.spec = spec;
+		this.agent = agent;
+		this.searcherConstructor = searcherConstructor;
+		this.maxDepth = maxDepth;
+		this.nextSeed = new AtomicLong(seed);
+	}
+
+	public String getSpec() { return this.spec; }
+	public String getName() { return this.getSpec(); }
+	public ChessAgent getAgent() { return this.agent; }
+	public Constructor<?> getSearcherConstructor() { return this.searcherConstructor; }
+	public int getMaxDepth() { return this.maxDepth; }
+	private AtomicLong getNextSeed() { return this.nextSeed; }
+
+	public Engine makeEngine()
+	{
+		if(this.getAgent() == null)
+		{
+			return new RandomEngine(this.getNextSeed().getAndIncrement());
+		}
+		// the agent is only the enclosing instance of the searcher, every search gets its own searcher object
+		return new SearcherEngine(this.getName(), this.getAgent(), this.getSearcherConstructor(), this.getMaxDepth());
+	}
+
+	/**
+	 * Unregister the SearchStats MBean of the agent (if it has one, see AlphaBetaAgent.getSearchStats): call once no
+	 * engine of this factory searches anymore. The engines can still be used, their counts just are not published.
+	 */
+	public void close()
+	{
+		if(this.getAgent() == null)
+		{
+			return;
+		}
+		try
+		{
+			Object stats = this.getAgent().getClass().getMethod("getSearchStats").invoke(this.getAgent());
+			if(stats instanceof SearchStats)
+			{
+				((SearchStats)stats).unregister();
+			}
+		} catch(NoSuchMethodException e)
+		{
+			// an agent without stats: nothing was registered
+		} catch(ReflectiveOperationException e)
+		{
+			System.err.println("EngineFactory.close [ERROR]: unable to get the search stats of spec=" + this.getSpec());
+			e.printStackTrace();
+		}
+	}
+
+	public static EngineFactory fromSpec(String spec, long seed)
+	{
+		if(spec.equals(EngineFactory.RANDOM_SPEC))
+		{
+			return new EngineFactory(spec, null, null, 0, seed);
+		}
+
+		String className = spec;
+		int maxDepth = EngineFactory.DEFAULT_MAX_DEPTH;
+		int depthIdx = spec.lastIndexOf(':');
+		if(depthIdx >= 0)
+		{
+			className = spec.substring(0, depthIdx);
+			maxDepth = Integer.parseInt(spec.substring(depthIdx + 1));
+		}
+
+		Class<? extends ChessAgent> agentClass = EngineFactory.getAgentClass(className);
+		ChessAgent agent = null;
+		try
+		{
+			// same program args SEPIA would pass: (name, team color, seconds to play, depth)
+			agent = agentClass.getConstructor(int.class, String[].class).newInstance(0,
+				new String[]{agentClass.getName(), "WHITE", "0", String.valueOf(maxDepth)});
+		} catch(ReflectiveOperationException e)
+		{
+			throw new IllegalArgumentException("EngineFactory.fromSpec [ERROR]: unable to construct agent for spec=" + spec, e);
+		}
+		return new EngineFactory(spec, agent, SearcherEngine.getSearcherConstructor(agentClass), maxDepth, seed);
+	}
+
+	private static Class<? extends ChessAgent> getAgentClass(String className)
+	{
+		String[] candidates = className.indexOf('.') >= 0 ? new String[]{className}
+			: new String[]{EngineFactory.AGENT_PACKAGES[0] + className, EngineFactory.AGENT_PACKAGES[1] + className};
+		for(String candidate : candidates)
+		{
+			try
+			{
+				return Class.forName(candidate).asSubclass(ChessAgent.class);
+			} catch(ClassNotFoundException e)
+			{
+				// try the next package
+			}
+		}
+		throw new IllegalArgumentException("EngineFactory.getAgentClass [ERROR]: unknown agent class=" + className);
+	}
+
+}
@@ -0,0 +1,59 @@
+package src.pas.chess.match;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.player.Player;
+import edu.bu.chess.game.player.PlayerType;
+
+
+// JAVA PROJECT IMPORTS
+
+
+public enum GameOutcome
+{
+	WHITE_WIN("1-0"),
+	BLACK_WIN("0-1"),
+	DRAW("1/2-1/2");
+
+	private final String pgnResult;
+
+	private GameOutcome(String pgnResult)
+	{
+		this.pgnResult = pgnResult;
+	}
+
+	public String getPgnResult() { return this.pgnResult; }
+
+	/**
+	 * @return the outcome a final position shows (checkmate, a flag fall or stalemate), null if game is not over
+	 */
+	public static GameOutcome of(Game game)
+	{
+		Player loser = null;
+		if(game.isInCheckmate())
+		{
+			loser = game.getCurrentPlayer();
+		} else if(game.outOfTime())
+		{
+			loser = game.getTimeLeftInMS(game.getWhitePlayer()) <= 0 ? game.getWhitePlayer() : game.getBlackPlayer();
+		} else if(game.isInStalemate())
+		{
+			return GameOutcome.DRAW;
+		}
+
+		if(loser == null)
+		{
+			return null;
+		}
+		return loser.getPlayerType() == PlayerType.WHITE ? GameOutcome.BLACK_WIN : GameOutcome.WHITE_WIN;
+	}
+
+	/**
+	 * @return 1, 0.5 or 0 from white's point of view
+	 */
+	public double getWhiteScore()
+	{
+		return this == GameOutcome.WHITE_WIN ? 1.0 : (this == GameOutcome.DRAW ? 0.5 : 0.0);
+	}
+}
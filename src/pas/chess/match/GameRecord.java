@@ -0,0 +1,140 @@
+package src.pas.chess.match;
+
+
+// SYSTEM IMPORTS
+import java.util.List;
+import java.util.Locale;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.utils.Fen;
+import src.pas.chess.utils.MoveNotation;
+
+
+/**
+ * Everything we keep about one finished headless game.
+ */
+public class GameRecord
+    extends Object
+{
+
+	public static final String CSV_HEADER =
+		"game,white,black,result,termination,plies,white_time_ms,black_time_ms,white_cpu_ms,black_cpu_ms,fen";
+
+	private final int gameIdx;
+	private final String whiteName;
+	private final String blackName;
+	private final String startFen;
+	private final List<String> sanMoves;
+	private final GameOutcome outcome;
+	private final Termination termination;
+	private final long whiteTimeUsedInMS;
+	private final long blackTimeUsedInMS;
+	private final long whiteCpuTimeInNS;
+	private final long blackCpuTimeInNS;
+
+	public GameRecord(int gameIdx, String whiteName, String blackName, String startFen, List<String> sanMoves,
+	                  GameOutcome outcome, Termination termination, long whiteTimeUsedInMS, long blackTimeUsedInMS,
+	                  long whiteCpuTimeInNS, long blackCpuTimeInNS)
+	{
+		this.gameIdx = gameIdx;
+		this.whiteName = whiteName;
+		this.blackName = blackName;
+		this.startFen = startFen;
+		this.sanMoves = sanMoves;
+		this.outcome = outcome;
+		this.termination = termination;
+		this.whiteTimeUsedInMS = whiteTimeUsedInMS;
+		this.blackTimeUsedInMS = blackTimeUsedInMS;
+		this.whiteCpuTimeInNS = whiteCpuTimeInNS;
+		this.blackCpuTimeInNS = blackCpuTimeInNS;
+	}
+
+	public int getGameIdx() { return this.gameIdx; }
+	public String getWhiteName() { return this.whiteName; }
+	public String getBlackName() { return this.blackName; }
+	public String getStartFen() { return this.startFen; }
+	public List<String> getSanMoves() { return this.sanMoves; }
+	public int getNumPlies() { return this.getSanMoves().size(); }
+	public GameOutcome getOutcome() { return this.outcome; }
+	public Termination getTermination() { return this.termination; }
+	public long getWhiteTimeUsedInMS() { return this.whiteTimeUsedInMS; }
+	public long getBlackTimeUsedInMS() { return this.blackTimeUsedInMS; }
+	public long getWhiteCpuTimeInNS() { return this.whiteCpuTimeInNS; }
+	public long getBlackCpuTimeInNS() { return this.blackCpuTimeInNS; }
+
+	public String toCsvLine()
+	{
+		return String.format(Locale.ROOT, "%d,%s,%s,%s,%s,%d,%d,%d,%d,%d,%s",
+			this.getGameIdx(), this.getWhiteName(), this.getBlackName(), this.getOutcome().getPgnResult(),
+			this.getTermination(), this.getNumPlies(), this.getWhiteTimeUsedInMS(), this.getBlackTimeUsedInMS(),
+			this.getWhiteCpuTimeInNS() / 1000000, this.getBlackCpuTimeInNS() / 1000000, this.getStartFen());
+	}
+
+	public String toPgn()
+	{
+		StringBuilder builder = new StringBuilder(256 + 8 * this.getNumPlies());
+		builder.append("[Event \"headless match\"]\n");
+		builder.append("[Round \"").append(this.getGameIdx() + 1).append("\"]\n");
+		builder.append("[White \"").append(this.getWhiteName()).append("\"]\n");
+		builder.append("[Black \"").append(this.getBlackName()).append("\"]\n");
+		builder.append("[Result \"").append(this.getOutcome().getPgnResult()).append("\"]\n");
+		builder.append("[Termination \"").append(this.getTermination()).append("\"]\n");
+		if(!this.getStartFen().equals(Fen.STARTING_POSITION))
+		{
+			builder.append("[SetUp \"1\"]\n");
+			builder.append("[FEN \"").append(this.getStartFen()).append("\"]\n");
+		}
+		builder.append('\n');
+
+		// numbering has to follow the side to move of the start position, and skip the promotion turns folded into
+		// their pawn moves: black's move after one needs its number again
+		List<String> sanMoves = MoveNotation.foldPromotions(this.getSanMoves());
+		boolean whiteToMove = !this.getStartFen().trim().split("\\s+")[1].equals("b");
+		boolean needsMoveNumber = true;
+		int moveNumber = 1;
+		int lineLength = 0;
+		for(int plyIdx = 0; plyIdx < this.getNumPlies(); ++plyIdx)
+		{
+			String token = sanMoves.get(plyIdx);
+			if(token == null)
+			{
+				// a promotion turn, already in its pawn move
+				moveNumber += whiteToMove ? 0 : 1;
+				whiteToMove = !whiteToMove;
+				needsMoveNumber = true;
+				continue;
+			}
+
+			if(whiteToMove)
+			{
+				token = moveNumber + ". " + token;
+			} else if(needsMoveNumber)
+			{
+				token = moveNumber + "... " + token;
+			}
+			needsMoveNumber = false;
+
+			if(lineLength > 0 && lineLength + token.length() + 1 > 80)
+			{
+				builder.append('\n');
+				lineLength = 0;
+			} else if(lineLength > 0)
+			{
+				builder.append(' ');
+				lineLength += 1;
+			}
+			builder.append(token);
+			lineLength += token.length();
+
+			if(!whiteToMove)
+			{
+				moveNumber += 1;
+			}
+			whiteToMove = !whiteToMove;
+		}
+		builder.append(lineLength > 0 ? " " : "").append(this.getOutcome().getPgnResult()).append("\n\n");
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,285 @@
+package src.pas.chess.match;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.move.Move;
+import edu.bu.chess.game.player.Player;
+import edu.bu.chess.game.player.PlayerType;
+
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.history.GameHistory;
+import src.pas.chess.utils.Fen;
+import src.pas.chess.utils.MoveNotation;
+import src.pas.chess.utils.PositionCorpus;
+
+
+/**
+ * Plays engines against each other directly on edu.bu.chess.game.Game: no SEPIA, no Planner, no unit animations.
+ * Games run concurrently on a fixed thread pool; every finished game is appended to resultPrefix.csv and resultPrefix.pgn.
+ *
+ * Clocks work like in the SEPIA game: each side starts with the same budget and the wall time of every search is taken
+ * off it. Searches are not interrupted, a side whose clock runs out loses when its search returns.
+ *
+ * Usage:
+ *     java -cp "./lib/*:." src.pas.chess.match.MatchRunner <engineA> <engineB> [--games N] [--threads T]
+ *         [--time seconds] [--max-plies N] [--openings path] [--out resultPrefix] [--seed S]
+ * Engines are EngineFactory specs (e.g. AlphaBetaAgent:3, ReallyHardAgent:3, random). Colors alternate every game and each
+ * opening of the (FEN, one per line) opening file is played twice, once with each color.
+ */
+public class MatchRunner
+    extends Object
+{
+
+	public static final int DEFAULT_NUM_GAMES = 100;
+	public static final long DEFAULT_TIME_IN_SECONDS = 300;
+	public static final int DEFAULT_MAX_PLIES = 300;
+	public static final int REPETITIONS_FOR_DRAW = 3;
+	public static final String DEFAULT_RESULT_PREFIX = "output/matches/match";
+
+	/**
+	 * Appends finished games to the csv and pgn files. Games finish out of order, so lines are in completion order.
+	 */
+	public static class ResultWriter
+	    extends Object
+	    implements AutoCloseable
+	{
+		private final BufferedWriter csvWriter;
+		private final BufferedWriter pgnWriter;
+
+		public ResultWriter(String resultPrefix) throws IOException
+		{
+			File resultDirectory = new File(resultPrefix).getAbsoluteFile().getParentFile();
+			if(!resultDirectory.exists())
+			{
+				resultDirectory.mkdirs();
+			}
+			this.csvWriter = Files.newBufferedWriter(Paths.get(resultPrefix + ".csv"), StandardCharsets.UTF_8);
+			this.pgnWriter = Files.newBufferedWriter(Paths.get(resultPrefix + ".pgn"), StandardCharsets.UTF_8);
+
+			this.csvWriter.write(GameRecord.CSV_HEADER);
+			this.csvWriter.newLine();
+		}
+
+		public synchronized void write(GameRecord record) throws IOException
+		{
+			this.csvWriter.write(record.toCsvLine());
+			this.csvWriter.newLine();
+			this.pgnWriter.write(record.toPgn());
+
+			// flush per game so a long match can be watched (and killed) without losing results
+			this.csvWriter.flush();
+			this.pgnWriter.flush();
+		}
+
+		@Override
+		public synchronized void close() throws IOException
+		{
+			this.csvWriter.close();
+			this.pgnWriter.close();
+		}
+	}
+
+	/**
+	 * Play one game to the end on the calling thread.
+	 * @param timeInMS the clock of each side
+	 * @param maxPlies the game is adjudicated a draw after this many plies (the game has no 50 move rule)
+	 */
+	public static GameRecord playGame(int gameIdx, EngineFactory whiteFactory, EngineFactory blackFactory,
+	                                  String startFen, long timeInMS, int maxPlies)
+	{
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		Engine whiteEngine = whiteFactory.makeEngine();
+		Engine blackEngine = blackFactory.makeEngine();
+
+		Game game = Fen.parse(startFen, timeInMS);
+		GameHistory history = new GameHistory(game);
+		List<String> sanMoves = new ArrayList<String>();
+		long[] timeUsedInMS = new long[2];
+		long[] cpuTimeInNS = new long[2];
+
+		GameOutcome outcome = null;
+		Termination termination = null;
+		while(outcome == null)
+		{
+			Player player = game.getCurrentPlayer();
+			boolean isWhite = player.getPlayerType() == PlayerType.WHITE;
+			GameOutcome loss = isWhite ? GameOutcome.BLACK_WIN : GameOutcome.WHITE_WIN;
+
+			if(game.getAllMoves(player).isEmpty())
+			{
+				termination = game.isInCheck(player) ? Termination.CHECKMATE : Termination.STALEMATE;
+				outcome = termination == Termination.CHECKMATE ? loss : GameOutcome.DRAW;
+				break;
+			}
+			if(game.getBoard().getPieces(game.getWhitePlayer()).size() == 1 &&
+			   game.getBoard().getPieces(game.getBlackPlayer()).size() == 1)
+			{
+				termination = Termination.INSUFFICIENT_MATERIAL;
+				outcome = GameOutcome.DRAW;
+				break;
+			}
+			if(history.getRepetitionCount() >= MatchRunner.REPETITIONS_FOR_DRAW)
+			{
+				termination = Termination.REPETITION;
+				outcome = GameOutcome.DRAW;
+				break;
+			}
+			if(sanMoves.size() >= maxPlies)
+			{
+				termination = Termination.MOVE_LIMIT;
+				outcome = GameOutcome.DRAW;
+				break;
+			}
+
+			long startCpuTime = threadBean.getCurrentThreadCpuTime();
+			long startTime = System.nanoTime();
+			Move move = (isWhite ? whiteEngine : blackEngine).getChessMove(history);
+			long elapsedInMS = (System.nanoTime() - startTime) / 1000000;
+			cpuTimeInNS[isWhite ? 0 : 1] += threadBean.getCurrentThreadCpuTime() - startCpuTime;
+			timeUsedInMS[isWhite ? 0 : 1] += elapsedInMS;
+
+			game.removeTimeFromPlayer(player, elapsedInMS);
+			if(game.getTimeLeftInMS(player) <= 0)
+			{
+				termination = Termination.TIME_FORFEIT;
+				outcome = loss;
+			} else if(move == null)
+			{
+				termination = Termination.NO_MOVE;
+				outcome = loss;
+			} else
+			{
+				sanMoves.add(MoveNotation.toSan(game, move));
+				game = history.addMove(move);
+			}
+		}
+
+		return new GameRecord(gameIdx, whiteFactory.getName(), blackFactory.getName(), startFen, sanMoves, outcome,
+			termination, timeUsedInMS[0], timeUsedInMS[1], cpuTimeInNS[0], cpuTimeInNS[1]);
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException, ExecutionException
+	{
+		if(args.length < 2)
+		{
+			System.err.println("Usage: java src.pas.chess.match.MatchRunner <engineA> <engineB> [--games N] [--threads T]" +
+				" [--time seconds] [--max-plies N] [--openings path] [--out resultPrefix] [--seed S]");
+			System.exit(-1);
+		}
+
+		int numGames = MatchRunner.DEFAULT_NUM_GAMES;
+		int numThreads = Runtime.getRuntime().availableProcessors();
+		long timeInMS = MatchRunner.DEFAULT_TIME_IN_SECONDS * 1000;
+		int maxPlies = MatchRunner.DEFAULT_MAX_PLIES;
+		String openingsPath = null;
+		String resultPrefix = MatchRunner.DEFAULT_RESULT_PREFIX;
+		long seed = 0;
+		for(int argIdx = 2; argIdx + 1 < args.length; argIdx += 2)
+		{
+			switch(args[argIdx])
+			{
+			case "--games":
+				numGames = Integer.parseInt(args[argIdx + 1]);
+				break;
+			case "--threads":
+				numThreads = Integer.parseInt(args[argIdx + 1]);
+				break;
+			case "--time":
+				timeInMS = Long.parseLong(args[argIdx + 1]) * 1000;
+				break;
+			case "--max-plies":
+				maxPlies = Integer.parseInt(args[argIdx + 1]);
+				break;
+			case "--openings":
+				openingsPath = args[argIdx + 1];
+				break;
+			case "--out":
+				resultPrefix = args[argIdx + 1];
+				break;
+			case "--seed":
+				seed = Long.parseLong(args[argIdx + 1]);
+				break;
+			default:
+				System.err.println("MatchRunner.main [ERROR]: unknown option=" + args[argIdx]);
+				System.exit(-1);
+			}
+		}
+
+		EngineFactory factoryA = EngineFactory.fromSpec(args[0], seed);
+		EngineFactory factoryB = EngineFactory.fromSpec(args[1], seed + numGames);
+		List<String> openings = openingsPath != null ? PositionCorpus.load(openingsPath).getFens()
+			: Arrays.asList(Fen.STARTING_POSITION);
+
+		ExecutorService threadPool = Executors.newFixedThreadPool(numThreads);
+		CompletionService<GameRecord> completionService = new ExecutorCompletionService<GameRecord>(threadPool);
+		for(int gameIdx = 0; gameIdx < numGames; ++gameIdx)
+		{
+			final int finalGameIdx = gameIdx;
+			final String startFen = openings.get((gameIdx / 2) % openings.size());
+			final EngineFactory whiteFactory = gameIdx % 2 == 0 ? factoryA : factoryB;
+			final EngineFactory blackFactory = gameIdx % 2 == 0 ? factoryB : factoryA;
+			final long finalTimeInMS = timeInMS;
+			final int finalMaxPlies = maxPlies;
+			completionService.submit(new Callable<GameRecord>()
+			{
+				@Override
+				public GameRecord call()
+				{
+					return MatchRunner.playGame(finalGameIdx, whiteFactory, blackFactory, startFen, finalTimeInMS,
+						finalMaxPlies);
+				}
+			});
+		}
+
+		// score from engineA's point of view
+		int numWins = 0;
+		int numDraws = 0;
+		int numLosses = 0;
+		long startTime = System.nanoTime();
+		try(ResultWriter writer = new ResultWriter(resultPrefix))
+		{
+			for(int gameIdx = 0; gameIdx < numGames; ++gameIdx)
+			{
+				GameRecord record = completionService.take().get();
+				writer.write(record);
+
+				double scoreA = record.getGameIdx() % 2 == 0 ? record.getOutcome().getWhiteScore() : 1.0 - record.getOutcome().getWhiteScore();
+				numWins += scoreA == 1.0 ? 1 : 0;
+				numDraws += scoreA == 0.5 ? 1 : 0;
+				numLosses += scoreA == 0.0 ? 1 : 0;
+			}
+		} finally
+		{
+			threadPool.shutdownNow();
+			factoryA.close();
+			factoryB.close();
+		}
+
+		double elapsedHours = (System.nanoTime() - startTime) / 3.6e12;
+		System.out.println(String.format(Locale.ROOT, "%s vs %s: +%d =%d -%d (%d games, %.0f games/hour)",
+			factoryA.getName(), factoryB.getName(), numWins, numDraws, numLosses, numGames, numGames / elapsedHours));
+	}
+
+}
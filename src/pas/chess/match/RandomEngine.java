@@ -0,0 +1,43 @@
+package src.pas.chess.match;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.move.Move;
+
+
+import java.util.List;
+import java.util.Random;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Plays a uniformly random legal move, same as edu.bu.chess.agents.RandomActionAgent. Handy as a sanity check opponent.
+ */
+public class RandomEngine
+    extends Object
+    implements Engine
+{
+
+	private final Random random;
+
+	public RandomEngine(long seed)
+	{
+		this.random = new Random(seed);
+	}
+
+	public Random getRandom() { return this.random; }
+
+	@Override
+	public String getName() { return "random"; }
+
+	@Override
+	public Move getChessMove(Game game)
+	{
+		List<Move> moves = game.getAllMoves(game.getCurrentPlayer());
+		return moves.isEmpty() ? null : moves.get(this.getRandom().nextInt(moves.size()));
+	}
+
+}
@@ -0,0 +1,139 @@
+package src.pas.chess.match;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.agents.ChessAgent;
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.move.Move;
+import edu.bu.chess.search.DFSTreeNode;
+import edu.bu.chess.utils.Pair;
+
+
+import java.lang.reflect.Constructor;
+import java.util.concurrent.Callable;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.history.GameHistory;
+import src.pas.chess.search.SearchOptions;
+import src.pas.chess.search.SearchStack;
+
+
+/**
+ * Plays the moves of an existing ChessAgent by running its background searcher (the inner Callable class every agent
+ * uses, e.g. AlphaBetaAgent$AlphaBetaSearcher) directly on a Game. This is the same reflection trick
+ * MinimaxReflectionAgent uses to get at AlphaBetaAgent's searcher, it just skips SEPIA and the Planner.
+ *
+ * The search runs on the calling thread: time is charged by whoever calls getChessMove. Engines of one EngineFactory
+ * share their agent but not their SearchOptions (transposition table, limits, analysis mode), which are installed on
+ * the calling thread for the length of a search, so engines can play in parallel games.
+ */
+public class SearcherEngine
+    extends Object
+    implements Engine
+{
+
+	private final String name;
+	private final ChessAgent agent;
+	private final Constructor<?> searcherConstructor;
+	private final int maxDepth;
+	private final SearchOptions searchOptions;
+	private double lastScore;
+
+	public SearcherEngine(String name, ChessAgent agent, Constructor<?> searcherConstructor, int maxDepth)
+	{
+		this(name, agent, searcherConstructor, maxDepth, SearchOptions.fromProperties());
+	}
+
+	public SearcherEngine(String name, ChessAgent agent, Constructor<?> searcherConstructor, int maxDepth,
+						  SearchOptions searchOptions)
+	{
+		this.name = name;
+		this.agent = agent;
+		this.searcherConstructor = searcherConstructor;
+		this.maxDepth = maxDepth;
+		this.searchOptions = searchOptions;
+		this.lastScore = Double.NaN;
+	}
+
+	public ChessAgent getAgent() { return this.agent; }
+	public Constructor<?> getSearcherConstructor() { return this.searcherConstructor; }
+	public int getMaxDepth() { return this.maxDepth; }
+	public SearchOptions getSearchOptions() { return this.searchOptions; }
+
+	/**
+	 * @return the root score of the last search, from the point of view of the player who was to move (NaN if the
+	 *         searcher does not keep it on its SearchStack)
+	 */
+	public double getLastScore() { return this.lastScore; }
+
+	@Override
+	public String getName() { return this.name; }
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public Move getChessMove(Game game)
+	{
+		DFSTreeNode rootNode = new DFSTreeNode(game, game.getCurrentPlayer());
+		// searchers pick up the options of the thread that constructs them
+		SearchOptions.setForCurrentThread(this.getSearchOptions());
+		try
+		{
+			Callable<Pair<Move, Long> > searcher = (Callable<Pair<Move, Long> >)this.getSearcherConstructor()
+				.newInstance(this.getAgent(), rootNode, this.getMaxDepth());
+			// searchers that keep their root on the thread's SearchStack overwrite the NaN pushed here
+			SearchStack stack = SearchStack.ofCurrentThread();
+			stack.push(0, rootNode, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+			Move move = searcher.call().getFirst();
+			this.lastScore = stack.getBestScore(0);
+			stack.pop(0);
+			return move;
+		} catch(Exception e)
+		{
+			throw new IllegalStateException("SearcherEngine.getChessMove [ERROR]: searcher of engine=" + this.getName() +
+				" failed", e);
+		} finally
+		{
+			SearchOptions.setForCurrentThread(null);
+		}
+	}
+
+	/**
+	 * The searchers look for repetitions in the positions their thread's SearchStack was loaded with, and the search
+	 * runs on this thread.
+	 */
+	@Override
+	public Move getChessMove(GameHistory history)
+	{
+		SearchStack.forCurrentThread(this.getMaxDepth() + 2).getPositionHashes().loadGame(history);
+		return this.getChessMove(history.getCurrentGame());
+	}
+
+	/**
+	 * Find the searcher of an agent class: the inner Callable class whose constructor takes (agent, DFSTreeNode, int).
+	 */
+	public static Constructor<?> getSearcherConstructor(Class<? extends ChessAgent> agentClass)
+	{
+		for(Class<?> innerClass : agentClass.getDeclaredClasses())
+		{
+			if(!Callable.class.isAssignableFrom(innerClass))
+			{
+				continue;
+			}
+
+			for(Constructor<?> constructor : innerClass.getDeclaredConstructors())
+			{
+				Class<?>[] parameterTypes = constructor.getParameterTypes();
+				if(parameterTypes.length == 3 && parameterTypes[0].equals(agentClass) &&
+				   parameterTypes[1].equals(DFSTreeNode.class) && parameterTypes[2].equals(int.class))
+				{
+					constructor.setAccessible(true);
+					return constructor;
+				}
+			}
+		}
+		throw new IllegalArgumentException("SearcherEngine.getSearcherConstructor [ERROR]: agentClass=" +
+			agentClass.getName() + " has no searcher with a (DFSTreeNode, int) constructor");
+	}
+
+}
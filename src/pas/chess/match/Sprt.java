@@ -0,0 +1,198 @@
+package src.pas.chess.match;
+
+
+// SYSTEM IMPORTS
+import java.util.Locale;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Sequential probability ratio test on the Elo difference between two engines, fed with game pairs (same opening,
+ * colors swapped). Pair results are kept as a pentanomial (pair score 0, 0.5, 1, 1.5 or 2) because the two games of a
+ * pair are correlated through the opening, and the log likelihood ratio uses the usual normal approximation:
+ *     LLR = n * (s1 - s0) * (2 * mean - s0 - s1) / (2 * variance)
+ * where mean/variance are over pair scores scaled to [0, 1] and s0/s1 are the expected scores of elo0/elo1.
+ */
+public class Sprt
+    extends Object
+{
+
+	public static enum Decision
+	{
+		H0,          // accept elo0: the change is not an improvement of elo1
+		H1,          // accept elo1
+		CONTINUE;
+	}
+
+	private final double elo0;
+	private final double elo1;
+	private final double lowerBound;
+	private final double upperBound;
+
+	// pair counts indexed by twice the pair score (0..4)
+	private final long[] pairCounts;
+	private long numWins;
+	private long numDraws;
+	private long numLosses;
+
+	public Sprt(double elo0, double elo1, double alpha, double beta)
+	{
+		this.elo0 = elo0;
+		this.elo1 = elo1;
+		this.lowerBound = Math.log(beta / (1.0 - alpha));
+		this.upperBound = Math.log((1.0 - beta) / alpha);
+		this.pairCounts = new long[5];
+		this.numWins = 0;
+		this.numDraws = 0;
+		this.numLosses = 0;
+	}
+
+	public double getElo0() { return this.elo0; }
+	public double getElo1() { return this.elo1; }
+	public double getLowerBound() { return this.lowerBound; }
+	public double getUpperBound() { return this.upperBound; }
+	public long[] getPairCounts() { return this.pairCounts; }
+	public long getNumWins() { return this.numWins; }
+	public long getNumDraws() { return this.numDraws; }
+	public long getNumLosses() { return this.numLosses; }
+	public long getNumGames() { return this.getNumWins() + this.getNumDraws() + this.getNumLosses(); }
+
+	public long getNumPairs()
+	{
+		long numPairs = 0;
+		for(long count : this.getPairCounts())
+		{
+			numPairs += count;
+		}
+		return numPairs;
+	}
+
+	/**
+	 * @param firstScore score (1, 0.5 or 0) of the tested engine in the first game of the pair
+	 * @param secondScore score of the tested engine in the second game (colors swapped)
+	 */
+	public synchronized void addPair(double firstScore, double secondScore)
+	{
+		this.getPairCounts()[(int)Math.round(2.0 * (firstScore + secondScore))] += 1;
+		for(double score : new double[]{firstScore, secondScore})
+		{
+			if(score == 1.0)
+			{
+				this.numWins += 1;
+			} else if(score == 0.5)
+			{
+				this.numDraws += 1;
+			} else
+			{
+				this.numLosses += 1;
+			}
+		}
+	}
+
+	public static double getExpectedScore(double elo)
+	{
+		return 1.0 / (1.0 + Math.pow(10.0, -elo / 400.0));
+	}
+
+	public static double getElo(double expectedScore)
+	{
+		// clamp so that 100% or 0% scores give a (huge) finite number
+		double score = Math.min(Math.max(expectedScore, 1e-6), 1.0 - 1e-6);
+		return -400.0 * Math.log10(1.0 / score - 1.0);
+	}
+
+	/**
+	 * @return mean of the pair scores scaled to [0, 1], i.e. the expected score of the tested engine
+	 */
+	public synchronized double getMeanScore()
+	{
+		long numPairs = this.getNumPairs();
+		if(numPairs == 0)
+		{
+			return 0.5;
+		}
+		double sum = 0.0;
+		for(int pairScoreIdx = 0; pairScoreIdx < this.getPairCounts().length; ++pairScoreIdx)
+		{
+			sum += this.getPairCounts()[pairScoreIdx] * pairScoreIdx / 4.0;
+		}
+		return sum / numPairs;
+	}
+
+	public synchronized double getScoreVariance()
+	{
+		long numPairs = this.getNumPairs();
+		if(numPairs == 0)
+		{
+			return 0.0;
+		}
+		double mean = this.getMeanScore();
+		double sum = 0.0;
+		for(int pairScoreIdx = 0; pairScoreIdx < this.getPairCounts().length; ++pairScoreIdx)
+		{
+			double deviation = pairScoreIdx / 4.0 - mean;
+			sum += this.getPairCounts()[pairScoreIdx] * deviation * deviation;
+		}
+		return sum / numPairs;
+	}
+
+	public synchronized double getLLR()
+	{
+		double variance = this.getScoreVariance();
+		if(variance <= 0.0)
+		{
+			// every pair so far had the same score: nothing can be said yet
+			return 0.0;
+		}
+		double s0 = Sprt.getExpectedScore(this.getElo0());
+		double s1 = Sprt.getExpectedScore(this.getElo1());
+		return this.getNumPairs() * (s1 - s0) * (2.0 * this.getMeanScore() - s0 - s1) / (2.0 * variance);
+	}
+
+	public synchronized Decision getDecision()
+	{
+		double llr = this.getLLR();
+		if(llr >= this.getUpperBound())
+		{
+			return Decision.H1;
+		} else if(llr <= this.getLowerBound())
+		{
+			return Decision.H0;
+		}
+		return Decision.CONTINUE;
+	}
+
+	public synchronized double getElo()
+	{
+		return Sprt.getElo(this.getMeanScore());
+	}
+
+	/**
+	 * @return half the width of the 95% confidence interval of getElo()
+	 */
+	public synchronized double getEloError()
+	{
+		long numPairs = this.getNumPairs();
+		if(numPairs == 0)
+		{
+			return Double.POSITIVE_INFINITY;
+		}
+		double scoreError = 1.959964 * Math.sqrt(this.getScoreVariance() / numPairs);
+		double mean = this.getMeanScore();
+		return (Sprt.getElo(mean + scoreError) - Sprt.getElo(mean - scoreError)) / 2.0;
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		return String.format(Locale.ROOT, "games=%d W/D/L=%d/%d/%d pairs[0,0.5,1,1.5,2]=[%d,%d,%d,%d,%d] " +
+			"elo=%.1f +/- %.1f LLR=%.2f [%.2f, %.2f] (elo0=%.1f, elo1=%.1f)",
+			this.getNumGames(), this.getNumWins(), this.getNumDraws(), this.getNumLosses(),
+			this.getPairCounts()[0], this.getPairCounts()[1], this.getPairCounts()[2], this.getPairCounts()[3],
+			this.getPairCounts()[4], this.getElo(), this.getEloError(), this.getLLR(), this.getLowerBound(),
+			this.getUpperBound(), this.getElo0(), this.getElo1());
+	}
+
+}
@@ -0,0 +1,217 @@
+package src.pas.chess.match;
+
+
+// SYSTEM IMPORTS
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.utils.Fen;
+import src.pas.chess.utils.PositionCorpus;
+
+
+/**
+ * Plays game pairs (same opening, colors swapped) between a tested engine configuration and a baseline in parallel until
+ * the sequential probability ratio test decides between elo0 (H0) and elo1 (H1), or until maxPairs pairs were played.
+ * Games are written like MatchRunner does (resultPrefix.csv/.pgn) and the final line reports games played, W/D/L,
+ * Elo +/- 95% error, the LLR and the CPU time each engine used.
+ *
+ * Usage:
+ *     java -cp "./lib/*:." src.pas.chess.match.SprtTournament <testEngine> <baseEngine> [--openings path]
+ *         [--elo0 E] [--elo1 E] [--alpha A] [--beta B] [--max-pairs N] [--threads T] [--time seconds]
+ *         [--max-plies N] [--out resultPrefix] [--seed S]
+ * Engines are EngineFactory specs, e.g. AlphaBetaAgent:4 against AlphaBetaAgent:3.
+ */
+public class SprtTournament
+    extends Object
+{
+
+	public static final double DEFAULT_ELO0 = 0.0;
+	public static final double DEFAULT_ELO1 = 10.0;
+	public static final double DEFAULT_ALPHA = 0.05;
+	public static final double DEFAULT_BETA = 0.05;
+	public static final int DEFAULT_MAX_PAIRS = 5000;
+	public static final String DEFAULT_RESULT_PREFIX = "output/matches/sprt";
+
+	/**
+	 * Plays both games of a pair on one worker: the tested engine is white in the first game and black in the second.
+	 */
+	public static class GamePair
+	    extends Object
+	    implements Callable<GameRecord[]>
+	{
+		private final int pairIdx;
+		private final EngineFactory testFactory;
+		private final EngineFactory baseFactory;
+		private final String startFen;
+		private final long timeInMS;
+		private final int maxPlies;
+
+		public GamePair(int pairIdx, EngineFactory testFactory, EngineFactory baseFactory, String startFen,
+		                long timeInMS, int maxPlies)
+		{
+			this.pairIdx = pairIdx;
+			this.testFactory = testFactory;
+			this.baseFactory = baseFactory;
+			this.startFen = startFen;
+			this.timeInMS = timeInMS;
+			this.maxPlies = maxPlies;
+		}
+
+		public int getPairIdx() { return this.pairIdx; }
+		public EngineFactory getTestFactory() { return this.testFactory; }
+		public EngineFactory getBaseFactory() { return this.baseFactory; }
+		public String getStartFen() { return this.startFen; }
+		public long getTimeInMS() { return this.timeInMS; }
+		public int getMaxPlies() { return this.maxPlies; }
+
+		@Override
+		public GameRecord[] call()
+		{
+			return new GameRecord[]{
+				MatchRunner.playGame(2 * this.getPairIdx(), this.getTestFactory(), this.getBaseFactory(),
+					this.getStartFen(), this.getTimeInMS(), this.getMaxPlies()),
+				MatchRunner.playGame(2 * this.getPairIdx() + 1, this.getBaseFactory(), this.getTestFactory(),
+					this.getStartFen(), this.getTimeInMS(), this.getMaxPlies())
+			};
+		}
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException, ExecutionException
+	{
+		if(args.length < 2)
+		{
+			System.err.println("Usage: java src.pas.chess.match.SprtTournament <testEngine> <baseEngine> [--openings path]" +
+				" [--elo0 E] [--elo1 E] [--alpha A] [--beta B] [--max-pairs N] [--threads T] [--time seconds]" +
+				" [--max-plies N] [--out resultPrefix] [--seed S]");
+			System.exit(-1);
+		}
+
+		String openingsPath = null;
+		double elo0 = SprtTournament.DEFAULT_ELO0;
+		double elo1 = SprtTournament.DEFAULT_ELO1;
+		double alpha = SprtTournament.DEFAULT_ALPHA;
+		double beta = SprtTournament.DEFAULT_BETA;
+		int maxPairs = SprtTournament.DEFAULT_MAX_PAIRS;
+		int numThreads = Runtime.getRuntime().availableProcessors();
+		long timeInMS = MatchRunner.DEFAULT_TIME_IN_SECONDS * 1000;
+		int maxPlies = MatchRunner.DEFAULT_MAX_PLIES;
+		String resultPrefix = SprtTournament.DEFAULT_RESULT_PREFIX;
+		long seed = 0;
+		for(int argIdx = 2; argIdx + 1 < args.length; argIdx += 2)
+		{
+			switch(args[argIdx])
+			{
+			case "--openings":
+				openingsPath = args[argIdx + 1];
+				break;
+			case "--elo0":
+				elo0 = Double.parseDouble(args[argIdx + 1]);
+				break;
+			case "--elo1":
+				elo1 = Double.parseDouble(args[argIdx + 1]);
+				break;
+			case "--alpha":
+				alpha = Double.parseDouble(args[argIdx + 1]);
+				break;
+			case "--beta":
+				beta = Double.parseDouble(args[argIdx + 1]);
+				break;
+			case "--max-pairs":
+				maxPairs = Integer.parseInt(args[argIdx + 1]);
+				break;
+			case "--threads":
+				numThreads = Integer.parseInt(args[argIdx + 1]);
+				break;
+			case "--time":
+				timeInMS = Long.parseLong(args[argIdx + 1]) * 1000;
+				break;
+			case "--max-plies":
+				maxPlies = Integer.parseInt(args[argIdx + 1]);
+				break;
+			case "--out":
+				resultPrefix = args[argIdx + 1];
+				break;
+			case "--seed":
+				seed = Long.parseLong(args[argIdx + 1]);
+				break;
+			default:
+				System.err.println("SprtTournament.main [ERROR]: unknown option=" + args[argIdx]);
+				System.exit(-1);
+			}
+		}
+
+		EngineFactory testFactory = EngineFactory.fromSpec(args[0], seed);
+		EngineFactory baseFactory = EngineFactory.fromSpec(args[1], seed + 2L * maxPairs);
+		List<String> openings = openingsPath != null ? PositionCorpus.load(openingsPath).getFens()
+			: Arrays.asList(Fen.STARTING_POSITION);
+		Sprt sprt = new Sprt(elo0, elo1, alpha, beta);
+
+		ExecutorService threadPool = Executors.newFixedThreadPool(numThreads);
+		CompletionService<GameRecord[]> completionService = new ExecutorCompletionService<GameRecord[]>(threadPool);
+
+		// only keep as many pairs in flight as there are workers, so we can stop soon after the test is decided
+		int numSubmittedPairs = 0;
+		int numPendingPairs = 0;
+		long testCpuTimeInNS = 0;
+		long baseCpuTimeInNS = 0;
+		long startTime = System.nanoTime();
+		Sprt.Decision decision = Sprt.Decision.CONTINUE;
+		try(MatchRunner.ResultWriter writer = new MatchRunner.ResultWriter(resultPrefix))
+		{
+			while(numSubmittedPairs < maxPairs && numPendingPairs < numThreads)
+			{
+				completionService.submit(new GamePair(numSubmittedPairs, testFactory, baseFactory,
+					openings.get(numSubmittedPairs % openings.size()), timeInMS, maxPlies));
+				numSubmittedPairs += 1;
+				numPendingPairs += 1;
+			}
+
+			while(numPendingPairs > 0 && decision == Sprt.Decision.CONTINUE)
+			{
+				GameRecord[] records = completionService.take().get();
+				numPendingPairs -= 1;
+
+				writer.write(records[0]);
+				writer.write(records[1]);
+				sprt.addPair(records[0].getOutcome().getWhiteScore(), 1.0 - records[1].getOutcome().getWhiteScore());
+				testCpuTimeInNS += records[0].getWhiteCpuTimeInNS() + records[1].getBlackCpuTimeInNS();
+				baseCpuTimeInNS += records[0].getBlackCpuTimeInNS() + records[1].getWhiteCpuTimeInNS();
+
+				decision = sprt.getDecision();
+				System.out.println(sprt);
+
+				if(decision == Sprt.Decision.CONTINUE && numSubmittedPairs < maxPairs)
+				{
+					completionService.submit(new GamePair(numSubmittedPairs, testFactory, baseFactory,
+						openings.get(numSubmittedPairs % openings.size()), timeInMS, maxPlies));
+					numSubmittedPairs += 1;
+					numPendingPairs += 1;
+				}
+			}
+		} finally
+		{
+			// pairs still running when the test is decided are abandoned
+			threadPool.shutdownNow();
+			testFactory.close();
+			baseFactory.close();
+		}
+
+		double elapsedSeconds = (System.nanoTime() - startTime) / 1e9;
+		System.out.println(String.format(Locale.ROOT, "%s vs %s: %s after %d games, W/D/L=%d/%d/%d, elo=%.1f +/- %.1f, " +
+			"LLR=%.2f, cpu_s(test)=%.1f cpu_s(base)=%.1f wall_s=%.1f",
+			testFactory.getName(), baseFactory.getName(), decision == Sprt.Decision.CONTINUE ? "undecided" : decision,
+			sprt.getNumGames(), sprt.getNumWins(), sprt.getNumDraws(), sprt.getNumLosses(), sprt.getElo(),
+			sprt.getEloError(), sprt.getLLR(), testCpuTimeInNS / 1e9, baseCpuTimeInNS / 1e9, elapsedSeconds));
+	}
+
+}
@@ -0,0 +1,22 @@
+package src.pas.chess.match;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Why a headless game ended.
+ */
+public enum Termination
+{
+	CHECKMATE,
+	STALEMATE,
+	INSUFFICIENT_MATERIAL,   // kings only, which Game.isInStalemate also treats as a draw
+	REPETITION,              // the same position for the third time
+	TIME_FORFEIT,
+	NO_MOVE,                 // the engine did not return a move
+	MOVE_LIMIT;
+}
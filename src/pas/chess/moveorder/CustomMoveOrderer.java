@@ -11,6 +11,7 @@ import java.util.List;
 // PROJECT-SPECIFIC IMPORTS
 import edu.bu.chess.game.move.Move;
 import edu.bu.chess.game.move.MoveType;
+import src.pas.chess.instrumentation.MoveOrderingEvent;
 import src.pas.chess.moveorder.DefaultMoveOrderer;
 
 public class CustomMoveOrderer
@@ -25,6 +26,9 @@ public class CustomMoveOrderer
 	 * @return The ordered nodes.
 	 */
     public static List<DFSTreeNode> order(List<DFSTreeNode> nodes) {
+        MoveOrderingEvent event = new MoveOrderingEvent();
+        event.begin();
+
         List<DFSTreeNode> highImpactMoves = new LinkedList<>();
         List<DFSTreeNode> castlingMoves = new LinkedList<>();
         List<DFSTreeNode> otherMoves = new LinkedList<>();
@@ -52,6 +56,12 @@ public class CustomMoveOrderer
         orderedNodes.addAll(castlingMoves);
         orderedNodes.addAll(otherMoves);
 
+        event.end();
+        if (event.shouldCommit()) {
+            event.orderer = "CustomMoveOrderer";
+            event.numMoves = orderedNodes.size();
+            event.commit();
+        }
         return orderedNodes;
     }
 
@@ -0,0 +1,180 @@
+package src.pas.chess.nnue;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.piece.Piece;
+import edu.bu.chess.game.player.Player;
+import edu.bu.chess.game.player.PlayerType;
+import edu.bu.chess.utils.Coordinate;
+
+
+import java.util.Arrays;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * The accumulators of an NnueNetwork along a search path, one pair (white's and black's perspective) per ply. The
+ * root's is computed from scratch (refresh); every other ply starts from a copy of its parent's and only adds the
+ * feature rows of the pieces the move put down and subtracts those of the pieces it took away (update), typically
+ * two or three rows per perspective. Games are immutable, so unmaking a move is just going back to the parent's ply.
+ *
+ * The pieces a move changed are found by comparing the sorted piece lists of the two positions rather than by
+ * decoding the move, which covers castling, en passant and promotion without special cases.
+ */
+public class NnueAccumulator
+    extends Object
+{
+
+	private static final int MAX_PIECES = 64;
+	private static final int BLACK_PIECES = 6 * 64;
+
+	private final NnueNetwork network;
+	private final NnueKernel kernel;
+	private int[][] accumulators;      // [ply]: white's perspective, then black's
+	private int[][] pieces;            // [ply]: the pieces as white sees them (NnueNetwork features), sorted
+	private int[] numPieces;
+
+	public NnueAccumulator(NnueNetwork network, NnueKernel kernel, int numPlies)
+	{
+		this.network = network;
+		this.kernel = kernel;
+		this.accumulators = new int[0][];
+		this.pieces = new int[0][];
+		this.numPieces = new int[0];
+		this.ensurePlies(numPlies);
+	}
+
+	public NnueNetwork getNetwork() { return this.network; }
+	public NnueKernel getKernel() { return this.kernel; }
+	public int getNumPlies() { return this.accumulators.length; }
+
+	/**
+	 * @return both accumulators of ply, white's perspective at 0, black's at getNetwork().getAccumulatorSize()
+	 */
+	public int[] getAccumulators(int ply) { return this.accumulators[ply]; }
+
+	public void ensurePlies(int numPlies)
+	{
+		int oldNumPlies = this.getNumPlies();
+		if(numPlies <= oldNumPlies)
+		{
+			return;
+		}
+		this.accumulators = Arrays.copyOf(this.accumulators, numPlies);
+		this.pieces = Arrays.copyOf(this.pieces, numPlies);
+		this.numPieces = Arrays.copyOf(this.numPieces, numPlies);
+		for(int ply = oldNumPlies; ply < numPlies; ++ply)
+		{
+			this.accumulators[ply] = new int[2 * this.getNetwork().getAccumulatorSize()];
+			this.pieces[ply] = new int[NnueAccumulator.MAX_PIECES];
+		}
+	}
+
+	/**
+	 * Compute the accumulators of game, at ply, from scratch.
+	 */
+	public void refresh(int ply, Game game)
+	{
+		this.ensurePlies(ply + 1);
+		this.readPieces(ply, game);
+
+		int accumulatorSize = this.getNetwork().getAccumulatorSize();
+		int[] accumulators = this.accumulators[ply];
+		System.arraycopy(this.getNetwork().getFeatureBiases(), 0, accumulators, 0, accumulatorSize);
+		System.arraycopy(this.getNetwork().getFeatureBiases(), 0, accumulators, accumulatorSize, accumulatorSize);
+		for(int pieceIdx = 0; pieceIdx < this.numPieces[ply]; ++pieceIdx)
+		{
+			this.addPiece(accumulators, this.pieces[ply][pieceIdx]);
+		}
+	}
+
+	/**
+	 * Compute the accumulators of game, at ply, from those of its parent at ply - 1.
+	 */
+	public void update(int ply, Game game)
+	{
+		this.ensurePlies(ply + 1);
+		this.readPieces(ply, game);
+
+		int[] accumulators = this.accumulators[ply];
+		System.arraycopy(this.accumulators[ply - 1], 0, accumulators, 0, accumulators.length);
+
+		// merge the two sorted piece lists: pieces only the parent has were taken away, pieces only the child has are new
+		int[] parentPieces = this.pieces[ply - 1];
+		int[] childPieces = this.pieces[ply];
+		int numParentPieces = this.numPieces[ply - 1];
+		int numChildPieces = this.numPieces[ply];
+		int parentIdx = 0;
+		int childIdx = 0;
+		while(parentIdx < numParentPieces || childIdx < numChildPieces)
+		{
+			int parentPiece = parentIdx < numParentPieces ? parentPieces[parentIdx] : Integer.MAX_VALUE;
+			int childPiece = childIdx < numChildPieces ? childPieces[childIdx] : Integer.MAX_VALUE;
+			if(parentPiece == childPiece)
+			{
+				parentIdx += 1;
+				childIdx += 1;
+			} else if(parentPiece < childPiece)
+			{
+				this.subPiece(accumulators, parentPiece);
+				parentIdx += 1;
+			} else
+			{
+				this.addPiece(accumulators, childPiece);
+				childIdx += 1;
+			}
+		}
+	}
+
+	private void addPiece(int[] accumulators, int whiteFeature)
+	{
+		NnueNetwork network = this.getNetwork();
+		int accumulatorSize = network.getAccumulatorSize();
+		this.getKernel().addRow(accumulators, 0, network.getFeatureWeights(), network.getFeatureOffset(whiteFeature),
+			accumulatorSize);
+		this.getKernel().addRow(accumulators, accumulatorSize, network.getFeatureWeights(),
+			network.getFeatureOffset(NnueAccumulator.getBlackFeature(whiteFeature)), accumulatorSize);
+	}
+
+	private void subPiece(int[] accumulators, int whiteFeature)
+	{
+		NnueNetwork network = this.getNetwork();
+		int accumulatorSize = network.getAccumulatorSize();
+		this.getKernel().subRow(accumulators, 0, network.getFeatureWeights(), network.getFeatureOffset(whiteFeature),
+			accumulatorSize);
+		this.getKernel().subRow(accumulators, accumulatorSize, network.getFeatureWeights(),
+			network.getFeatureOffset(NnueAccumulator.getBlackFeature(whiteFeature)), accumulatorSize);
+	}
+
+	/**
+	 * The same piece from black's perspective: own and other swap, and the board is upside down.
+	 */
+	private static int getBlackFeature(int whiteFeature)
+	{
+		int flipped = whiteFeature ^ 56;
+		return whiteFeature < NnueAccumulator.BLACK_PIECES ? flipped + NnueAccumulator.BLACK_PIECES
+			: flipped - NnueAccumulator.BLACK_PIECES;
+	}
+
+	private void readPieces(int ply, Game game)
+	{
+		int[] pieces = this.pieces[ply];
+		int numPieces = 0;
+		for(Player player : new Player[]{game.getWhitePlayer(), game.getBlackPlayer()})
+		{
+			boolean isWhite = player.getPlayerType() == PlayerType.WHITE;
+			for(Piece piece : game.getBoard().getPieces(player))
+			{
+				Coordinate position = game.getCurrentPosition(piece);
+				int square = 8 * (position.getYPosition() - 1) + position.getXPosition() - 1;
+				pieces[numPieces++] = NnueNetwork.getFeature(isWhite, piece.getType(), square);
+			}
+		}
+		Arrays.sort(pieces, 0, numPieces);
+		this.numPieces[ply] = numPieces;
+	}
+
+}
@@ -0,0 +1,156 @@
+package src.pas.chess.nnue;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.player.PlayerType;
+import edu.bu.chess.search.DFSTreeNode;
+
+
+import java.io.IOException;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Leaf evaluation with an NnueNetwork instead of CustomHeuristics, for a searcher that tells it about every position on
+ * its path: refresh at the root, update for every child it builds (see NnueAccumulator), evaluate at the leaves.
+ *
+ * Which evaluation an agent uses is chosen per side with system properties, e.g.
+ *     -Dchess.evaluator.WHITE=nnue -Dchess.evaluator.BLACK=custom
+ * or -Dchess.evaluator=... for both. "custom" (the default) is CustomHeuristics; "nnue" loads NnueNetwork.DEFAULT_PATH
+ * and "nnue:path" another network file. The kernel is VectorNnueKernel when it was built (vector.srcs) and the JVM runs
+ * with --add-modules jdk.incubator.vector, ScalarNnueKernel otherwise or with -Dchess.nnue.kernel=scalar.
+ */
+public class NnueEvaluator
+    extends Object
+{
+
+	public static final String EVALUATOR_PROPERTY = "chess.evaluator";
+	public static final String KERNEL_PROPERTY = "chess.nnue.kernel";
+	public static final String CUSTOM_EVALUATOR = "custom";
+	public static final String NNUE_EVALUATOR = "nnue";
+	public static final String VECTOR_KERNEL_CLASS = "src.pas.chess.nnue.VectorNnueKernel";
+
+	private static volatile NnueKernel defaultKernel = null;
+
+	private final NnueAccumulator accumulator;
+	private final int[] scratch;
+
+	public NnueEvaluator(NnueNetwork network, NnueKernel kernel, int numPlies)
+	{
+		this.accumulator = new NnueAccumulator(network, kernel, numPlies);
+		this.scratch = new int[2 * network.getAccumulatorSize() + network.getHiddenSize()];
+	}
+
+	public NnueAccumulator getAccumulator() { return this.accumulator; }
+	public NnueNetwork getNetwork() { return this.getAccumulator().getNetwork(); }
+	public NnueKernel getKernel() { return this.getAccumulator().getKernel(); }
+
+	/**
+	 * The root of a search is at ply 0.
+	 */
+	public void refresh(int ply, Game game) { this.getAccumulator().refresh(ply, game); }
+
+	/**
+	 * game is a child of the position at ply - 1.
+	 */
+	public void update(int ply, Game game) { this.getAccumulator().update(ply, game); }
+
+	/**
+	 * @return the value of the position at ply from the point of view of node's max player
+	 */
+	public double evaluate(int ply, DFSTreeNode node)
+	{
+		boolean whiteToMove = node.getGame().getCurrentPlayer().getPlayerType() == PlayerType.WHITE;
+		double value = this.evaluate(ply, whiteToMove);
+		return node.getGame().getCurrentPlayer().equals(node.getMaxPlayer()) ? value : -value;
+	}
+
+	/**
+	 * @return the value of the position at ply from the point of view of the side to move, in CustomHeuristics units
+	 */
+	public double evaluate(int ply, boolean whiteToMove)
+	{
+		int accumulatorSize = this.getNetwork().getAccumulatorSize();
+		int ownOffset = whiteToMove ? 0 : accumulatorSize;
+		int otherOffset = whiteToMove ? accumulatorSize : 0;
+		return this.getKernel().forward(this.getNetwork(), this.getAccumulator().getAccumulators(ply), ownOffset,
+			otherOffset, this.scratch) * (double)this.getNetwork().getOutputScale();
+	}
+
+	/**
+	 * @return the evaluator spec of the agent playing playerType: CUSTOM_EVALUATOR, NNUE_EVALUATOR or "nnue:<path>"
+	 */
+	public static String getSpec(PlayerType playerType)
+	{
+		return System.getProperty(NnueEvaluator.EVALUATOR_PROPERTY + "." + playerType,
+			System.getProperty(NnueEvaluator.EVALUATOR_PROPERTY, NnueEvaluator.CUSTOM_EVALUATOR));
+	}
+
+	/**
+	 * @return the evaluator the agent playing playerType should search with, null for CustomHeuristics (also when the
+	 *         network cannot be loaded, which is reported)
+	 */
+	public static NnueEvaluator forPlayer(PlayerType playerType, int numPlies)
+	{
+		String spec = NnueEvaluator.getSpec(playerType);
+		if(spec.equals(NnueEvaluator.CUSTOM_EVALUATOR))
+		{
+			return null;
+		}
+		if(!spec.equals(NnueEvaluator.NNUE_EVALUATOR) && !spec.startsWith(NnueEvaluator.NNUE_EVALUATOR + ":"))
+		{
+			System.err.println("NnueEvaluator.forPlayer [ERROR]: unknown evaluator=" + spec + " for " + playerType +
+				", using " + NnueEvaluator.CUSTOM_EVALUATOR);
+			return null;
+		}
+
+		String path = spec.length() > NnueEvaluator.NNUE_EVALUATOR.length()
+			? spec.substring(NnueEvaluator.NNUE_EVALUATOR.length() + 1) : NnueNetwork.DEFAULT_PATH;
+		try
+		{
+			return new NnueEvaluator(NnueNetwork.forPath(path), NnueEvaluator.getDefaultKernel(), numPlies);
+		} catch(IOException e)
+		{
+			System.err.println("NnueEvaluator.forPlayer [ERROR]: unable to load " + path + ", using " +
+				NnueEvaluator.CUSTOM_EVALUATOR + ": " + e);
+			return null;
+		}
+	}
+
+	/**
+	 * @return VectorNnueKernel if it can be loaded (and was not turned off), ScalarNnueKernel otherwise
+	 */
+	public static NnueKernel getDefaultKernel()
+	{
+		NnueKernel kernel = NnueEvaluator.defaultKernel;
+		if(kernel == null)
+		{
+			kernel = "scalar".equals(System.getProperty(NnueEvaluator.KERNEL_PROPERTY)) ? null
+				: NnueEvaluator.loadVectorKernel();
+			if(kernel == null)
+			{
+				kernel = new ScalarNnueKernel();
+			}
+			NnueEvaluator.defaultKernel = kernel;
+		}
+		return kernel;
+	}
+
+	/**
+	 * @return a VectorNnueKernel, null if it was not built or jdk.incubator.vector is not resolved
+	 */
+	public static NnueKernel loadVectorKernel()
+	{
+		try
+		{
+			return (NnueKernel)Class.forName(NnueEvaluator.VECTOR_KERNEL_CLASS).getConstructor().newInstance();
+		} catch(ReflectiveOperationException | LinkageError e)
+		{
+			return null;
+		}
+	}
+
+}
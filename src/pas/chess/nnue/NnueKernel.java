@@ -0,0 +1,43 @@
+package src.pas.chess.nnue;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * The arithmetic of an NnueNetwork, all in int:
+ *     accumulator  = feature biases + the feature weight rows of the pieces on the board    (addRow/subRow keep it)
+ *     input        = clamp(own accumulator, 0, ACTIVATION_MAX) ++ clamp(other accumulator, 0, ACTIVATION_MAX)
+ *     hidden[j]    = clamp((hidden biases[j] + hidden weight row j . input) >> WEIGHT_SHIFT, 0, ACTIVATION_MAX)
+ *     output       = output bias + output weights . hidden
+ * ScalarNnueKernel does this in plain loops; VectorNnueKernel (built separately, see vector.srcs) with the incubating
+ * Vector API. Both compute exactly the same numbers.
+ */
+public interface NnueKernel
+{
+
+	public String getName();
+
+	/**
+	 * accumulator[accumulatorOffset + i] += weights[rowOffset + i] for i in [0, size)
+	 */
+	public void addRow(int[] accumulator, int accumulatorOffset, int[] weights, int rowOffset, int size);
+
+	/**
+	 * accumulator[accumulatorOffset + i] -= weights[rowOffset + i] for i in [0, size)
+	 */
+	public void subRow(int[] accumulator, int accumulatorOffset, int[] weights, int rowOffset, int size);
+
+	/**
+	 * @param accumulators both perspectives' accumulators, getAccumulatorSize() entries each
+	 * @param ownOffset where the side to move's accumulator starts
+	 * @param otherOffset where the other side's accumulator starts
+	 * @param scratch room for 2 * getAccumulatorSize() + getHiddenSize() ints
+	 * @return the raw output, from the side to move's point of view (times getOutputScale() is CustomHeuristics units)
+	 */
+	public int forward(NnueNetwork network, int[] accumulators, int ownOffset, int otherOffset, int[] scratch);
+
+}
@@ -0,0 +1,237 @@
+package src.pas.chess.nnue;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.piece.PieceType;
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.heuristics.HeuristicParameters;
+
+
+/**
+ * The weights of a small quantized NNUE-style network:
+ *     768 board features -> accumulator (accumulatorSize per perspective) -> clipped ReLU
+ *     -> hidden layer (hiddenSize, reading the side to move's accumulator then the other one) -> clipped ReLU -> 1 output
+ * A board feature is (piece color relative to the perspective, piece type, square seen from the perspective): the
+ * accumulator of a perspective is the feature bias plus the feature weight rows of every piece on the board, which is
+ * what NnueAccumulator keeps up to date as moves are made. See NnueKernel for the integer arithmetic.
+ *
+ * File format (big endian): MAGIC (int), VERSION (byte), numFeatures, accumulatorSize, hiddenSize (ints), outputScale
+ * (float: CustomHeuristics units per raw output), then the int16 feature biases, feature weights (one row of
+ * accumulatorSize per feature), hidden weights (one row of 2 * accumulatorSize per hidden neuron), the int32 hidden
+ * biases, the int16 output weights and the int32 output bias. The weights are int16 in the file and widened to int in
+ * memory, which is what the Vector API kernel works on.
+ */
+public class NnueNetwork
+    extends Object
+{
+
+	public static final int MAGIC = 0x3434304e;   // "440N"
+	public static final byte VERSION = 1;
+	public static final int NUM_FEATURES = 2 * 6 * 64;
+	public static final int DEFAULT_ACCUMULATOR_SIZE = 128;
+	public static final int DEFAULT_HIDDEN_SIZE = 32;
+
+	/** activations are clipped to [0, ACTIVATION_MAX], i.e. [0, 1] in steps of 1/ACTIVATION_MAX */
+	public static final int ACTIVATION_MAX = 127;
+	/** hidden weights are fixed point with WEIGHT_SHIFT fraction bits */
+	public static final int WEIGHT_SHIFT = 6;
+
+	public static final String DEFAULT_PATH = "data/pas/chess/nnue/network.nnue";
+
+	private static final ConcurrentHashMap<String, NnueNetwork> LOADED_NETWORKS =
+		new ConcurrentHashMap<String, NnueNetwork>();
+
+	private final int accumulatorSize;
+	private final int hiddenSize;
+	private final float outputScale;
+	private final int[] featureBiases;       // accumulatorSize
+	private final int[] featureWeights;      // NUM_FEATURES rows of accumulatorSize
+	private final int[] hiddenWeights;       // hiddenSize rows of 2 * accumulatorSize
+	private final int[] hiddenBiases;        // hiddenSize
+	private final int[] outputWeights;       // hiddenSize
+	private int outputBias;
+
+	public NnueNetwork(int accumulatorSize, int hiddenSize, float outputScale)
+	{
+		this.accumulatorSize = accumulatorSize;
+		this.hiddenSize = hiddenSize;
+		this.outputScale = outputScale;
+		this.featureBiases = new int[accumulatorSize];
+		this.featureWeights = new int[NnueNetwork.NUM_FEATURES * accumulatorSize];
+		this.hiddenWeights = new int[hiddenSize * 2 * accumulatorSize];
+		this.hiddenBiases = new int[hiddenSize];
+		this.outputWeights = new int[hiddenSize];
+		this.outputBias = 0;
+	}
+
+	public int getAccumulatorSize() { return this.accumulatorSize; }
+	public int getHiddenSize() { return this.hiddenSize; }
+	public float getOutputScale() { return this.outputScale; }
+	public int[] getFeatureBiases() { return this.featureBiases; }
+	public int[] getFeatureWeights() { return this.featureWeights; }
+	public int[] getHiddenWeights() { return this.hiddenWeights; }
+	public int[] getHiddenBiases() { return this.hiddenBiases; }
+	public int[] getOutputWeights() { return this.outputWeights; }
+	public int getOutputBias() { return this.outputBias; }
+
+	/**
+	 * @return where the weight row of a feature starts in getFeatureWeights()
+	 */
+	public int getFeatureOffset(int feature) { return feature * this.getAccumulatorSize(); }
+
+	/**
+	 * @param isOwn whether the piece belongs to the perspective's player
+	 * @param square 0 (a8) .. 63 (h1) as seen from the perspective: white's squares as they are, black's upside down
+	 */
+	public static int getFeature(boolean isOwn, PieceType type, int square)
+	{
+		return ((isOwn ? 0 : 6) + type.ordinal()) * 64 + square;
+	}
+
+	/**
+	 * @return the network at path, loaded once per process and shared (networks are never modified once loaded)
+	 */
+	public static NnueNetwork forPath(String path) throws IOException
+	{
+		NnueNetwork network = NnueNetwork.LOADED_NETWORKS.get(path);
+		if(network == null)
+		{
+			network = NnueNetwork.load(Paths.get(path));
+			NnueNetwork previous = NnueNetwork.LOADED_NETWORKS.putIfAbsent(path, network);
+			network = previous != null ? previous : network;
+		}
+		return network;
+	}
+
+	public static NnueNetwork load(Path path) throws IOException
+	{
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16)))
+		{
+			if(in.readInt() != NnueNetwork.MAGIC || in.readByte() != NnueNetwork.VERSION)
+			{
+				throw new IOException("NnueNetwork.load [ERROR]: " + path + " is not a network of version " +
+					NnueNetwork.VERSION);
+			}
+			int numFeatures = in.readInt();
+			int accumulatorSize = in.readInt();
+			int hiddenSize = in.readInt();
+			if(numFeatures != NnueNetwork.NUM_FEATURES || accumulatorSize <= 0 || hiddenSize <= 0)
+			{
+				throw new IOException("NnueNetwork.load [ERROR]: unsupported shape " + numFeatures + "x" + accumulatorSize +
+					"x" + hiddenSize + " in " + path);
+			}
+
+			NnueNetwork network = new NnueNetwork(accumulatorSize, hiddenSize, in.readFloat());
+			NnueNetwork.readShorts(in, network.featureBiases);
+			NnueNetwork.readShorts(in, network.featureWeights);
+			NnueNetwork.readShorts(in, network.hiddenWeights);
+			for(int idx = 0; idx < hiddenSize; ++idx)
+			{
+				network.hiddenBiases[idx] = in.readInt();
+			}
+			NnueNetwork.readShorts(in, network.outputWeights);
+			network.outputBias = in.readInt();
+			return network;
+		}
+	}
+
+	public void save(Path path) throws IOException
+	{
+		if(path.toAbsolutePath().getParent() != null)
+		{
+			Files.createDirectories(path.toAbsolutePath().getParent());
+		}
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16)))
+		{
+			out.writeInt(NnueNetwork.MAGIC);
+			out.writeByte(NnueNetwork.VERSION);
+			out.writeInt(NnueNetwork.NUM_FEATURES);
+			out.writeInt(this.getAccumulatorSize());
+			out.writeInt(this.getHiddenSize());
+			out.writeFloat(this.getOutputScale());
+			NnueNetwork.writeShorts(out, this.featureBiases);
+			NnueNetwork.writeShorts(out, this.featureWeights);
+			NnueNetwork.writeShorts(out, this.hiddenWeights);
+			for(int bias : this.hiddenBiases)
+			{
+				out.writeInt(bias);
+			}
+			NnueNetwork.writeShorts(out, this.outputWeights);
+			out.writeInt(this.outputBias);
+		}
+	}
+
+	/**
+	 * A network that computes the material part of CustomHeuristics (material weight * piece values) to 1/100 of a
+	 * unit: the first 12 accumulator entries count the pieces of each type of each side, the hidden layer passes the side
+	 * to move's counts through and the output weighs them with the piece values. A starting point for training and a
+	 * known answer for testing the kernels.
+	 */
+	public static NnueNetwork materialNetwork(HeuristicParameters parameters)
+	{
+		NnueNetwork network = new NnueNetwork(NnueNetwork.DEFAULT_ACCUMULATOR_SIZE, NnueNetwork.DEFAULT_HIDDEN_SIZE,
+			0.01f);
+		int accumulatorSize = network.getAccumulatorSize();
+		for(PieceType type : PieceType.values())
+		{
+			for(int ownIdx = 0; ownIdx < 2; ++ownIdx)
+			{
+				int counter = 6 * ownIdx + type.ordinal();
+				for(int square = 0; square < 64; ++square)
+				{
+					network.featureWeights[network.getFeatureOffset(NnueNetwork.getFeature(ownIdx == 0, type, square)) +
+						counter] = 1;
+				}
+				network.hiddenWeights[counter * 2 * accumulatorSize + counter] = 1 << NnueNetwork.WEIGHT_SHIFT;
+				// both sides always have their king, so it is left out (its value does not fit 16 bits anyway)
+				network.outputWeights[counter] = type == PieceType.KING ? 0 : (int)Math.round((ownIdx == 0 ? 1 : -1) *
+					parameters.getMaterialWeight() * parameters.getPieceValue(type) / network.getOutputScale());
+			}
+		}
+		return network;
+	}
+
+	private static void readShorts(DataInputStream in, int[] values) throws IOException
+	{
+		for(int idx = 0; idx < values.length; ++idx)
+		{
+			values[idx] = in.readShort();
+		}
+	}
+
+	private static void writeShorts(DataOutputStream out, int[] values) throws IOException
+	{
+		for(int value : values)
+		{
+			if(value < Short.MIN_VALUE || value > Short.MAX_VALUE)
+			{
+				throw new IOException("NnueNetwork.save [ERROR]: weight " + value + " does not fit 16 bits");
+			}
+			out.writeShort(value);
+		}
+	}
+
+	/**
+	 * Write the material network (see materialNetwork) to a file, by default DEFAULT_PATH.
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		Path path = Paths.get(args.length > 0 ? args[0] : NnueNetwork.DEFAULT_PATH);
+		NnueNetwork.materialNetwork(HeuristicParameters.get()).save(path);
+		System.out.println("wrote the material network to " + path);
+	}
+
+}
@@ -0,0 +1,73 @@
+package src.pas.chess.nnue;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * NnueKernel in plain Java loops: the fallback when the Vector API is not available, and the reference the vector
+ * kernel is checked against.
+ */
+public class ScalarNnueKernel
+    extends Object
+    implements NnueKernel
+{
+
+	@Override
+	public String getName() { return "scalar"; }
+
+	@Override
+	public void addRow(int[] accumulator, int accumulatorOffset, int[] weights, int rowOffset, int size)
+	{
+		for(int idx = 0; idx < size; ++idx)
+		{
+			accumulator[accumulatorOffset + idx] += weights[rowOffset + idx];
+		}
+	}
+
+	@Override
+	public void subRow(int[] accumulator, int accumulatorOffset, int[] weights, int rowOffset, int size)
+	{
+		for(int idx = 0; idx < size; ++idx)
+		{
+			accumulator[accumulatorOffset + idx] -= weights[rowOffset + idx];
+		}
+	}
+
+	@Override
+	public int forward(NnueNetwork network, int[] accumulators, int ownOffset, int otherOffset, int[] scratch)
+	{
+		int accumulatorSize = network.getAccumulatorSize();
+		int inputSize = 2 * accumulatorSize;
+		for(int idx = 0; idx < accumulatorSize; ++idx)
+		{
+			scratch[idx] = ScalarNnueKernel.clamp(accumulators[ownOffset + idx]);
+			scratch[accumulatorSize + idx] = ScalarNnueKernel.clamp(accumulators[otherOffset + idx]);
+		}
+
+		int[] hiddenWeights = network.getHiddenWeights();
+		int[] hiddenBiases = network.getHiddenBiases();
+		int[] outputWeights = network.getOutputWeights();
+		int output = network.getOutputBias();
+		for(int neuronIdx = 0; neuronIdx < network.getHiddenSize(); ++neuronIdx)
+		{
+			int rowOffset = neuronIdx * inputSize;
+			int sum = hiddenBiases[neuronIdx];
+			for(int idx = 0; idx < inputSize; ++idx)
+			{
+				sum += scratch[idx] * hiddenWeights[rowOffset + idx];
+			}
+			output += ScalarNnueKernel.clamp(sum >> NnueNetwork.WEIGHT_SHIFT) * outputWeights[neuronIdx];
+		}
+		return output;
+	}
+
+	private static int clamp(int value)
+	{
+		return Math.max(0, Math.min(NnueNetwork.ACTIVATION_MAX, value));
+	}
+
+}
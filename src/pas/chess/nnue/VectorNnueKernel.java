@@ -0,0 +1,119 @@
+package src.pas.chess.nnue;
+
+
+// SYSTEM IMPORTS
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * NnueKernel with the (incubating) Vector API, on the platform's preferred int vectors; tails shorter than a vector
+ * fall back to scalar loops. The module is not resolved by default, so this class is compiled and run separately:
+ *     javac --add-modules jdk.incubator.vector -cp "./lib/*:." @vector.srcs
+ *     java --add-modules jdk.incubator.vector ...
+ * NnueEvaluator.getDefaultKernel() loads it reflectively and uses ScalarNnueKernel when that fails.
+ */
+public class VectorNnueKernel
+    extends Object
+    implements NnueKernel
+{
+
+	private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+	@Override
+	public String getName() { return "vector" + VectorNnueKernel.SPECIES.vectorBitSize(); }
+
+	@Override
+	public void addRow(int[] accumulator, int accumulatorOffset, int[] weights, int rowOffset, int size)
+	{
+		int idx = 0;
+		for(int bound = VectorNnueKernel.SPECIES.loopBound(size); idx < bound; idx += VectorNnueKernel.SPECIES.length())
+		{
+			IntVector.fromArray(VectorNnueKernel.SPECIES, accumulator, accumulatorOffset + idx)
+				.add(IntVector.fromArray(VectorNnueKernel.SPECIES, weights, rowOffset + idx))
+				.intoArray(accumulator, accumulatorOffset + idx);
+		}
+		for(; idx < size; ++idx)
+		{
+			accumulator[accumulatorOffset + idx] += weights[rowOffset + idx];
+		}
+	}
+
+	@Override
+	public void subRow(int[] accumulator, int accumulatorOffset, int[] weights, int rowOffset, int size)
+	{
+		int idx = 0;
+		for(int bound = VectorNnueKernel.SPECIES.loopBound(size); idx < bound; idx += VectorNnueKernel.SPECIES.length())
+		{
+			IntVector.fromArray(VectorNnueKernel.SPECIES, accumulator, accumulatorOffset + idx)
+				.sub(IntVector.fromArray(VectorNnueKernel.SPECIES, weights, rowOffset + idx))
+				.intoArray(accumulator, accumulatorOffset + idx);
+		}
+		for(; idx < size; ++idx)
+		{
+			accumulator[accumulatorOffset + idx] -= weights[rowOffset + idx];
+		}
+	}
+
+	@Override
+	public int forward(NnueNetwork network, int[] accumulators, int ownOffset, int otherOffset, int[] scratch)
+	{
+		int accumulatorSize = network.getAccumulatorSize();
+		int inputSize = 2 * accumulatorSize;
+		int hiddenSize = network.getHiddenSize();
+		VectorNnueKernel.clamp(accumulators, ownOffset, scratch, 0, accumulatorSize);
+		VectorNnueKernel.clamp(accumulators, otherOffset, scratch, accumulatorSize, accumulatorSize);
+
+		int[] hiddenWeights = network.getHiddenWeights();
+		int[] hiddenBiases = network.getHiddenBiases();
+		for(int neuronIdx = 0; neuronIdx < hiddenSize; ++neuronIdx)
+		{
+			int sum = hiddenBiases[neuronIdx] + VectorNnueKernel.dot(scratch, 0, hiddenWeights, neuronIdx * inputSize,
+				inputSize);
+			scratch[inputSize + neuronIdx] = Math.max(0, Math.min(NnueNetwork.ACTIVATION_MAX,
+				sum >> NnueNetwork.WEIGHT_SHIFT));
+		}
+		return network.getOutputBias() + VectorNnueKernel.dot(scratch, inputSize, network.getOutputWeights(), 0,
+			hiddenSize);
+	}
+
+	private static void clamp(int[] source, int sourceOffset, int[] destination, int destinationOffset, int size)
+	{
+		int idx = 0;
+		for(int bound = VectorNnueKernel.SPECIES.loopBound(size); idx < bound; idx += VectorNnueKernel.SPECIES.length())
+		{
+			IntVector.fromArray(VectorNnueKernel.SPECIES, source, sourceOffset + idx)
+				.max(0)
+				.min(NnueNetwork.ACTIVATION_MAX)
+				.intoArray(destination, destinationOffset + idx);
+		}
+		for(; idx < size; ++idx)
+		{
+			destination[destinationOffset + idx] = Math.max(0, Math.min(NnueNetwork.ACTIVATION_MAX,
+				source[sourceOffset + idx]));
+		}
+	}
+
+	private static int dot(int[] a, int aOffset, int[] b, int bOffset, int size)
+	{
+		IntVector sums = IntVector.zero(VectorNnueKernel.SPECIES);
+		int idx = 0;
+		for(int bound = VectorNnueKernel.SPECIES.loopBound(size); idx < bound; idx += VectorNnueKernel.SPECIES.length())
+		{
+			sums = IntVector.fromArray(VectorNnueKernel.SPECIES, a, aOffset + idx)
+				.mul(IntVector.fromArray(VectorNnueKernel.SPECIES, b, bOffset + idx))
+				.add(sums);
+		}
+		int sum = sums.reduceLanes(VectorOperators.ADD);
+		for(; idx < size; ++idx)
+		{
+			sum += a[aOffset + idx] * b[bOffset + idx];
+		}
+		return sum;
+	}
+
+}
@@ -0,0 +1,222 @@
+package src.pas.chess.perft;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.move.Move;
+
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.utils.Fen;
+import src.pas.chess.utils.MoveNotation;
+
+
+/**
+ * Counts the leaves of the legal move tree (perft) to a fixed depth using Game.getAllMoves and Game.applyMove.
+ * This measures raw move generation speed and, when compared against reference counts, its correctness.
+ *
+ * Note that this game has no en passant and treats promotion as a separate turn, so counts only agree with the usual
+ * published numbers in positions/depths where neither comes up (see data/pas/chess/perft/perft.epd).
+ *
+ * Usage:
+ *     java -cp "./lib/*:." src.pas.chess.perft.Perft <depth> [fen|startpos] [--divide] [--threads N]
+ * With --threads the root moves are searched in parallel on a fork-join pool of that size.
+ */
+public class Perft
+    extends Object
+{
+
+	/**
+	 * Searches the subtree of one root move on a fork-join worker.
+	 */
+	public static class RootMoveTask
+	    extends RecursiveTask<Long>
+	{
+		private static final long serialVersionUID = -2546207925263165388L;
+
+		private final Game game;
+		private final int depth;
+
+		public RootMoveTask(Game game, int depth)
+		{
+			this.game = game;
+			this.depth = depth;
+		}
+
+		public Game getGame() { return this.game; }
+		public int getDepth() { return this.depth; }
+
+		@Override
+		protected Long compute()
+		{
+			return Perft.perft(this.getGame(), this.getDepth());
+		}
+	}
+
+	/**
+	 * @return the number of leaves at exactly depth plies below game
+	 */
+	public static long perft(Game game, int depth)
+	{
+		if(depth == 0)
+		{
+			return 1;
+		}
+
+		List<Move> moves = game.getAllMoves(game.getCurrentPlayer());
+		if(depth == 1)
+		{
+			// bulk count: no need to play out the last ply
+			return moves.size();
+		}
+
+		long numNodes = 0;
+		for(Move move : moves)
+		{
+			numNodes += Perft.perft(game.applyMove(move), depth - 1);
+		}
+		return numNodes;
+	}
+
+	/**
+	 * @return the perft count below every root move (in move generation order), keyed by the move's text
+	 */
+	public static Map<String, Long> divide(Game game, int depth)
+	{
+		Map<String, Long> counts = new LinkedHashMap<String, Long>();
+		if(depth <= 0)
+		{
+			return counts;
+		}
+
+		for(Move move : game.getAllMoves(game.getCurrentPlayer()))
+		{
+			counts.put(MoveNotation.toText(game, move), Perft.perft(game.applyMove(move), depth - 1));
+		}
+		return counts;
+	}
+
+	/**
+	 * Same as divide but every root move is searched as its own fork-join task.
+	 */
+	public static Map<String, Long> parallelDivide(Game game, int depth, ForkJoinPool pool)
+	{
+		Map<String, Long> counts = new LinkedHashMap<String, Long>();
+		if(depth <= 0)
+		{
+			return counts;
+		}
+
+		// the children are made here so that the root game is only ever touched by one thread
+		List<String> moveTexts = new ArrayList<String>();
+		List<RootMoveTask> tasks = new ArrayList<RootMoveTask>();
+		for(Move move : game.getAllMoves(game.getCurrentPlayer()))
+		{
+			moveTexts.add(MoveNotation.toText(game, move));
+			tasks.add(new RootMoveTask(game.applyMove(move), depth - 1));
+		}
+
+		for(RootMoveTask task : tasks)
+		{
+			pool.execute(task);
+		}
+		for(int taskIdx = 0; taskIdx < tasks.size(); ++taskIdx)
+		{
+			counts.put(moveTexts.get(taskIdx), tasks.get(taskIdx).join());
+		}
+		return counts;
+	}
+
+	public static long parallelPerft(Game game, int depth, ForkJoinPool pool)
+	{
+		if(depth <= 1)
+		{
+			return Perft.perft(game, depth);
+		}
+		return Perft.sum(Perft.parallelDivide(game, depth, pool));
+	}
+
+	public static long sum(Map<String, Long> counts)
+	{
+		long numNodes = 0;
+		for(long count : counts.values())
+		{
+			numNodes += count;
+		}
+		return numNodes;
+	}
+
+	public static double getNodesPerSecond(long numNodes, long elapsedNanos)
+	{
+		return elapsedNanos > 0 ? numNodes * 1e9 / elapsedNanos : 0.0;
+	}
+
+	public static void main(String[] args)
+	{
+		if(args.length < 1)
+		{
+			System.err.println("Usage: java src.pas.chess.perft.Perft <depth> [fen|startpos] [--divide] [--threads N]");
+			System.exit(-1);
+		}
+
+		int depth = Integer.parseInt(args[0]);
+		String fen = Fen.STARTING_POSITION;
+		boolean divide = false;
+		int numThreads = 0;
+		for(int argIdx = 1; argIdx < args.length; ++argIdx)
+		{
+			if(args[argIdx].equals("--divide"))
+			{
+				divide = true;
+			} else if(args[argIdx].equals("--threads") && argIdx + 1 < args.length)
+			{
+				numThreads = Integer.parseInt(args[++argIdx]);
+			} else if(!args[argIdx].equals("startpos"))
+			{
+				fen = args[argIdx];
+			}
+		}
+
+		Game game = Fen.parse(fen);
+		ForkJoinPool pool = numThreads > 0 ? new ForkJoinPool(numThreads) : null;
+		try
+		{
+			long startTime = System.nanoTime();
+			Map<String, Long> counts = null;
+			if(divide)
+			{
+				counts = pool != null ? Perft.parallelDivide(game, depth, pool) : Perft.divide(game, depth);
+			}
+			long numNodes = counts != null ? Perft.sum(counts)
+				: (pool != null ? Perft.parallelPerft(game, depth, pool) : Perft.perft(game, depth));
+			long elapsedNanos = System.nanoTime() - startTime;
+
+			if(counts != null)
+			{
+				for(Map.Entry<String, Long> entry : counts.entrySet())
+				{
+					System.out.println(entry.getKey() + ": " + entry.getValue());
+				}
+				System.out.println();
+			}
+			System.out.println(String.format(Locale.ROOT, "depth=%d nodes=%d time_ms=%.1f nps=%.0f",
+				depth, numNodes, elapsedNanos / 1e6, Perft.getNodesPerSecond(numNodes, elapsedNanos)));
+		} finally
+		{
+			if(pool != null)
+			{
+				pool.shutdown();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,113 @@
+package src.pas.chess.perft;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.utils.Fen;
+import src.pas.chess.utils.PositionCorpus;
+
+
+/**
+ * Move generation regression check: runs perft on every position of an EPD file and compares against the expected
+ * counts written after the FEN as ";D<depth> <count>" annotations. Exits with a non-zero status if any count differs,
+ * so it can be run after every change to move generation (or to anything Game.applyMove touches).
+ *
+ * Usage:
+ *     java -cp "./lib/*:." src.pas.chess.perft.PerftSuite [epdPath] [maxDepth] [--threads N]
+ */
+public class PerftSuite
+    extends Object
+{
+
+	public static final String DEFAULT_SUITE_PATH = "data/pas/chess/perft/perft.epd";
+
+	public static void main(String[] args) throws IOException
+	{
+		String suitePath = PerftSuite.DEFAULT_SUITE_PATH;
+		int maxDepth = Integer.MAX_VALUE;
+		int numThreads = 0;
+
+		int positionalArgIdx = 0;
+		for(int argIdx = 0; argIdx < args.length; ++argIdx)
+		{
+			if(args[argIdx].equals("--threads") && argIdx + 1 < args.length)
+			{
+				numThreads = Integer.parseInt(args[++argIdx]);
+			} else if(positionalArgIdx++ == 0)
+			{
+				suitePath = args[argIdx];
+			} else
+			{
+				maxDepth = Integer.parseInt(args[argIdx]);
+			}
+		}
+
+		PositionCorpus suite = PositionCorpus.load(suitePath);
+		ForkJoinPool pool = numThreads > 0 ? new ForkJoinPool(numThreads) : null;
+
+		int numChecks = 0;
+		int numFailures = 0;
+		long totalNodes = 0;
+		long totalNanos = 0;
+		try
+		{
+			for(String line : suite.getLines())
+			{
+				String[] fields = line.split(";");
+				Game game = Fen.parse(fields[0]);
+				for(int fieldIdx = 1; fieldIdx < fields.length; ++fieldIdx)
+				{
+					String[] annotation = fields[fieldIdx].trim().split("\\s+");
+					if(annotation.length != 2 || !annotation[0].startsWith("D"))
+					{
+						throw new IllegalArgumentException("PerftSuite.main [ERROR]: bad annotation=" + fields[fieldIdx] +
+							" in line=" + line);
+					}
+
+					int depth = Integer.parseInt(annotation[0].substring(1));
+					long expectedNodes = Long.parseLong(annotation[1]);
+					if(depth > maxDepth)
+					{
+						continue;
+					}
+
+					long startTime = System.nanoTime();
+					long numNodes = pool != null ? Perft.parallelPerft(game, depth, pool) : Perft.perft(game, depth);
+					long elapsedNanos = System.nanoTime() - startTime;
+
+					boolean passed = numNodes == expectedNodes;
+					numChecks += 1;
+					numFailures += passed ? 0 : 1;
+					totalNodes += numNodes;
+					totalNanos += elapsedNanos;
+
+					System.out.println(String.format(Locale.ROOT, "%s depth=%d expected=%d actual=%d nps=%.0f fen=%s",
+						passed ? "PASS" : "FAIL", depth, expectedNodes, numNodes,
+						Perft.getNodesPerSecond(numNodes, elapsedNanos), fields[0].trim()));
+				}
+			}
+		} finally
+		{
+			if(pool != null)
+			{
+				pool.shutdown();
+			}
+		}
+
+		System.out.println(String.format(Locale.ROOT, "%d/%d passed, nodes=%d nps=%.0f",
+			numChecks - numFailures, numChecks, totalNodes, Perft.getNodesPerSecond(totalNodes, totalNanos)));
+		if(numFailures > 0)
+		{
+			System.exit(1);
+		}
+	}
+
+}
@@ -0,0 +1,313 @@
+package src.pas.chess.replay;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.move.Move;
+import edu.bu.chess.game.piece.Piece;
+import edu.bu.chess.game.player.Player;
+import edu.bu.chess.utils.Coordinate;
+
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.history.GameHistory;
+import src.pas.chess.match.GameOutcome;
+import src.pas.chess.search.PackedMove;
+import src.pas.chess.utils.Fen;
+
+
+/**
+ * One game read back from a binary replay file. A replay file holds any number of games (one per SEPIA episode),
+ * written append-only by ReplayWriter while they are played:
+ *
+ *     file   = MAGIC (int) VERSION (byte) game*
+ *     game   = GAME_TAG (byte) fen whiteClockInMS blackClockInMS move* [END_OF_GAME outcome (byte)]
+ *     fen    = length (varint) + UTF-8 bytes of the initial position
+ *     move   = compact move (unsigned short) durationInMS (varint)
+ *
+ * Integers are big endian, varints are unsigned LEB128 (7 bits per byte, low bits first). The compact move is the low
+ * 15 bits of the PackedMove (from, to, MoveType) except that a promotion, whose to square is its from square, keeps the
+ * PieceType ordinal of the promotion piece in the to bits; the rest of the PackedMove follows from the position.
+ * END_OF_GAME (0) can not be a move (a capture from a1 to a1), the outcome after it is 0 for an unfinished game or
+ * GameOutcome ordinal + 1. A game without END_OF_GAME was cut off (the process died): it reads as unfinished, without
+ * the torn record it may end in.
+ *
+ * A 40 move game takes a few hundred bytes against the ~300 KB of history.xml SEPIA saves for it. The XML can be
+ * regenerated when it is needed: ReplayAgent plays a replay back inside SEPIA, which saves its usual history.xml.
+ */
+public class Replay
+    extends Object
+{
+
+	public static final int MAGIC = 0x34343052;   // "440R"
+	public static final byte VERSION = 1;
+	public static final byte GAME_TAG = 'G';
+	public static final int END_OF_GAME = 0;
+
+	public static final int COMPACT_MOVE_MASK = 0x7fff;
+
+	private final String initialFen;
+	private final long whiteClockInMS;
+	private final long blackClockInMS;
+	private final int[] compactMoves;
+	private final long[] durationsInMS;
+	private final GameOutcome outcome;        // null if the game is unfinished
+
+	public Replay(String initialFen, long whiteClockInMS, long blackClockInMS, int[] compactMoves, long[] durationsInMS,
+	              GameOutcome outcome)
+	{
+		if(compactMoves.length != durationsInMS.length)
+		{
+			throw new IllegalArgumentException("Replay.Replay [ERROR]: " + compactMoves.length + " moves but " +
+				durationsInMS.length + " durations");
+		}
+		this.initialFen = initialFen;
+		this.whiteClockInMS = whiteClockInMS;
+		this.blackClockInMS = blackClockInMS;
+		this.compactMoves = compactMoves;
+		this.durationsInMS = durationsInMS;
+		this.outcome = outcome;
+	}
+
+	public String getInitialFen() { return this.initialFen; }
+	public long getWhiteClockInMS() { return this.whiteClockInMS; }
+	public long getBlackClockInMS() { return this.blackClockInMS; }
+	public int size() { return this.compactMoves.length; }
+	public int getCompactMove(int ply) { return this.compactMoves[ply]; }
+	public long getDurationInMS(int ply) { return this.durationsInMS[ply]; }
+
+	/**
+	 * @return the outcome the game was recorded with, null if it is unfinished
+	 */
+	public GameOutcome getOutcome() { return this.outcome; }
+
+	/**
+	 * @return the initial position with the initial clocks
+	 */
+	public Game getInitialGame()
+	{
+		Game game = Fen.parse(this.getInitialFen(), this.getWhiteClockInMS());
+		game.removeTimeFromPlayer(game.getBlackPlayer(), this.getWhiteClockInMS() - this.getBlackClockInMS());
+		return game;
+	}
+
+	/**
+	 * Replay every move.
+	 * @return the game as a GameHistory; every position has the clocks it had when it was played
+	 */
+	public GameHistory toGameHistory()
+	{
+		GameHistory history = new GameHistory(this.getInitialGame());
+		for(int ply = 0; ply < this.size(); ++ply)
+		{
+			Game game = history.getCurrentGame();
+			Move move = Replay.decodeMove(game, this.getCompactMove(ply));
+			// applyMove copies the clocks, so charge them to the position the move is played from
+			game.removeTimeFromPlayer(game.getCurrentPlayer(), this.getDurationInMS(ply));
+			history.addMove(move);
+		}
+		return history;
+	}
+
+	/**
+	 * @return the compact (16 bit) form of a PackedMove
+	 */
+	public static int compact(int packedMove)
+	{
+		int compactMove = packedMove & Replay.COMPACT_MOVE_MASK;
+		if(PackedMove.isPromotion(packedMove))
+		{
+			compactMove = (compactMove & ~(PackedMove.SQUARE_MASK << PackedMove.TO_SHIFT)) |
+				(PackedMove.getPromotionType(packedMove).ordinal() << PackedMove.TO_SHIFT);
+		}
+		return compactMove;
+	}
+
+	/**
+	 * @param game the position the move is played from
+	 * @return the Move of the player to move that compacts to compactMove
+	 */
+	public static Move decodeMove(Game game, int compactMove)
+	{
+		int from = PackedMove.getFrom(compactMove);
+		Piece piece = game.getBoard().getPieceAtPosition(new Coordinate((from & 7) + 1, 8 - (from >>> 3)));
+		Player player = game.getCurrentPlayer();
+		if(piece != null && piece.getPlayer().getPlayerType() == player.getPlayerType())
+		{
+			for(Move move : game.getAllMovesForPiece(player, piece))
+			{
+				if(Replay.compact(PackedMove.encode(game, move)) == compactMove)
+				{
+					return move;
+				}
+			}
+		}
+		throw new IllegalStateException("Replay.decodeMove [ERROR]: no move of " + player.getPlayerType() + " matches " +
+			String.format(Locale.ROOT, "0x%04x", compactMove) + " in " + Fen.toFen(game));
+	}
+
+	/**
+	 * @return every game in the replay file
+	 */
+	public static List<Replay> readAll(Path path) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+		if(buffer.remaining() < 5 || buffer.getInt() != Replay.MAGIC)
+		{
+			throw new IOException("Replay.readAll [ERROR]: " + path + " is not a replay file");
+		}
+		byte version = buffer.get();
+		if(version != Replay.VERSION)
+		{
+			throw new IOException("Replay.readAll [ERROR]: " + path + " has version " + version + ", expected " +
+				Replay.VERSION);
+		}
+
+		List<Replay> replays = new ArrayList<Replay>();
+		while(buffer.hasRemaining())
+		{
+			byte tag = buffer.get();
+			if(tag != Replay.GAME_TAG)
+			{
+				throw new IOException("Replay.readAll [ERROR]: expected a game at offset " + (buffer.position() - 1) +
+					" of " + path + ", found tag " + tag);
+			}
+			replays.add(Replay.readGame(buffer));
+		}
+		return replays;
+	}
+
+	/**
+	 * @return game gameIdx (0 = the first) of the replay file
+	 */
+	public static Replay read(Path path, int gameIdx) throws IOException
+	{
+		List<Replay> replays = Replay.readAll(path);
+		if(gameIdx < 0 || gameIdx >= replays.size())
+		{
+			throw new IndexOutOfBoundsException("Replay.read [ERROR]: gameIdx=" + gameIdx + " but " + path + " has " +
+				replays.size() + " games");
+		}
+		return replays.get(gameIdx);
+	}
+
+	private static Replay readGame(ByteBuffer buffer) throws IOException
+	{
+		String initialFen = null;
+		long whiteClockInMS = 0;
+		long blackClockInMS = 0;
+		try
+		{
+			byte[] fenBytes = new byte[(int)Replay.readVarLong(buffer)];
+			buffer.get(fenBytes);
+			initialFen = new String(fenBytes, StandardCharsets.UTF_8);
+			whiteClockInMS = Replay.readVarLong(buffer);
+			blackClockInMS = Replay.readVarLong(buffer);
+		} catch(BufferUnderflowException e)
+		{
+			throw new IOException("Replay.readGame [ERROR]: the replay ends inside the header of a game");
+		}
+
+		int numMoves = 0;
+		int[] compactMoves = new int[64];
+		long[] durationsInMS = new long[64];
+		GameOutcome outcome = null;
+		try
+		{
+			while(buffer.hasRemaining())
+			{
+				int compactMove = Short.toUnsignedInt(buffer.getShort());
+				if(compactMove == Replay.END_OF_GAME)
+				{
+					int outcomeIdx = buffer.get();
+					outcome = outcomeIdx > 0 ? GameOutcome.values()[outcomeIdx - 1] : null;
+					break;
+				}
+				long durationInMS = Replay.readVarLong(buffer);
+
+				if(numMoves == compactMoves.length)
+				{
+					compactMoves = Arrays.copyOf(compactMoves, 2 * numMoves);
+					durationsInMS = Arrays.copyOf(durationsInMS, 2 * numMoves);
+				}
+				compactMoves[numMoves] = compactMove;
+				durationsInMS[numMoves] = durationInMS;
+				numMoves += 1;
+			}
+		} catch(BufferUnderflowException e)
+		{
+			// the writer died in the middle of its last write: the game is cut off before that record
+		}
+		return new Replay(initialFen, whiteClockInMS, blackClockInMS, Arrays.copyOf(compactMoves, numMoves),
+			Arrays.copyOf(durationsInMS, numMoves), outcome);
+	}
+
+	static long readVarLong(ByteBuffer buffer)
+	{
+		long value = 0;
+		for(int shift = 0; ; shift += 7)
+		{
+			byte b = buffer.get();
+			value |= (long)(b & 0x7f) << shift;
+			if(b >= 0)
+			{
+				return value;
+			}
+		}
+	}
+
+	static void writeVarLong(ByteBuffer buffer, long value)
+	{
+		while((value & ~0x7fL) != 0)
+		{
+			buffer.put((byte)((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte)value);
+	}
+
+	/**
+	 * Print every game in the replay files, and how long reading them took.
+	 *     java -cp "./lib/*:." src.pas.chess.replay.Replay &lt;file.replay&gt;...
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if(args.length == 0)
+		{
+			System.err.println("Usage: java src.pas.chess.replay.Replay <file.replay>...");
+			System.exit(-1);
+		}
+
+		for(String arg : args)
+		{
+			Path path = Paths.get(arg);
+			long startTime = System.nanoTime();
+			List<Replay> replays = Replay.readAll(path);
+			double readTimeInMS = (System.nanoTime() - startTime) / 1e6;
+
+			System.out.println(String.format(Locale.ROOT, "%s: %d games, %d bytes, read in %.2fms", path,
+				replays.size(), Files.size(path), readTimeInMS));
+			for(int gameIdx = 0; gameIdx < replays.size(); ++gameIdx)
+			{
+				Replay replay = replays.get(gameIdx);
+				System.out.println("    game " + gameIdx + ": " + replay.size() + " plies, " +
+					(replay.getOutcome() != null ? replay.getOutcome().getPgnResult() : "*") + ", from " +
+					replay.getInitialFen());
+			}
+		}
+	}
+
+}
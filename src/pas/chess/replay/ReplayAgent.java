@@ -0,0 +1,193 @@
+package src.pas.chess.replay;
+
+
+// SYSTEM IMPORTS
+import edu.cwru.sepia.action.Action;
+import edu.cwru.sepia.environment.model.history.History.HistoryView;
+import edu.cwru.sepia.environment.model.state.State.StateView;
+import edu.bu.chess.agents.ChessAgent;
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.move.Move;
+import edu.bu.chess.game.planning.Planner;
+import edu.bu.chess.game.player.Player;
+import edu.bu.chess.game.player.PlayerType;
+import edu.bu.chess.streaming.Streamer;
+
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.utils.Fen;
+import src.pas.chess.utils.Zobrist;
+
+
+/**
+ * Plays one side of a recorded game (a Replay) back inside SEPIA instead of searching: every turn it submits the next
+ * recorded move and charges the recorded duration to its clock. With a ReplayAgent on both sides SEPIA plays the game
+ * exactly as it was played and saves its usual history.xml (experiment.save.replaydirectory), which is how the XML of
+ * a game that was only kept as a binary replay is regenerated; see data/pas/chess/replay/ReplayToXml.xml.
+ *
+ * Arguments: playerNumber, WHITE or BLACK, total playing time in seconds, replay file, and optionally the game in the
+ * file to play (0 = the first, the default). When the recording runs out before the game is over (the recorded player
+ * ran out of time, or the game was cut off) the agent forfeits on time, just like a search that timed out.
+ */
+public class ReplayAgent
+    extends ChessAgent
+{
+
+	private static final long serialVersionUID = 1263148095476465577L;
+
+	private final PlayerType playerType;
+	private final long maxPlaytimeInMS;
+	private final String replayPath;
+	private final int gameIdx;
+
+	private Player myPlayer;
+	private Replay replay;
+	private int nextPly;
+
+	public ReplayAgent(int playerID, String[] args)
+	{
+		super(playerID);
+		if(args.length < 4 || args.length > 5)
+		{
+			System.err.println("ReplayAgent.ReplayAgent [ERROR]: expected player type, total playing time (in seconds)," +
+				" replay file and (optionally) the game index");
+			System.exit(-1);
+		}
+
+		this.playerType = PlayerType.valueOf(args[1]);
+		this.maxPlaytimeInMS = Long.parseLong(args[2]) * 1000;
+		this.replayPath = args[3];
+		this.gameIdx = args.length == 5 ? Integer.parseInt(args[4]) : 0;
+		this.myPlayer = null;
+		this.replay = null;
+		this.nextPly = 0;
+
+		System.out.println("Constructed ReplayAgent(teamColor=" + this.getPlayerType() + ", replay=" + this.getReplayPath() +
+			", game=" + this.getGameIdx() + ")");
+	}
+
+	public long getMaxPlaytimeInMS() { return this.maxPlaytimeInMS; }
+	public String getReplayPath() { return this.replayPath; }
+	public int getGameIdx() { return this.gameIdx; }
+	public Replay getReplay() { return this.replay; }
+
+	@Override
+	public PlayerType getPlayerType() { return this.playerType; }
+
+	@Override
+	protected Player getPlayer() { return this.myPlayer; }
+
+	@Override
+	protected Move getChessMove(StateView state)
+	{
+		Game game = Planner.getPlanner().getGame();
+		if(this.nextPly >= this.getReplay().size())
+		{
+			// nothing recorded for this turn: the recorded player ran out of time here
+			game.removeTimeFromPlayer(this.getPlayer(), game.getTimeLeftInMS(this.getPlayer()));
+			return null;
+		}
+
+		Move move = Replay.decodeMove(game, this.getReplay().getCompactMove(this.nextPly));
+		game.removeTimeFromPlayer(this.getPlayer(), this.getReplay().getDurationInMS(this.nextPly));
+		this.nextPly += 2;
+		return move;
+	}
+
+	@Override
+	public Map<Integer, Action> initialStep(StateView state, HistoryView history)
+	{
+		// register the player with the game
+		Game game = Planner.getPlanner().getGame(state, this.getMaxPlaytimeInMS());
+		game.registerPlayer(this.getPlayerNumber(), this.getPlayerType(), state);
+
+		// remember what player we are
+		this.myPlayer = game.getPlayer(this.getPlayerType());
+
+		try
+		{
+			this.replay = Replay.read(Paths.get(this.getReplayPath()), this.getGameIdx());
+		} catch(IOException e)
+		{
+			System.err.println("ReplayAgent.initialStep [ERROR]: unable to read " + this.getReplayPath() + ": " + e);
+			System.exit(-1);
+		}
+
+		// the map decides the initial position, it has to be the one the game was recorded from
+		Game initialGame = this.getReplay().getInitialGame();
+		if(Zobrist.hash(initialGame) != Zobrist.hash(game))
+		{
+			throw new IllegalStateException("ReplayAgent.initialStep [ERROR]: the map starts from " + Fen.toFen(game) +
+				" but game " + this.getGameIdx() + " of " + this.getReplayPath() + " starts from " +
+				this.getReplay().getInitialFen());
+		}
+		this.nextPly = initialGame.getCurrentPlayer().getPlayerType() == this.getPlayerType() ? 0 : 1;
+
+		// init streamer
+		Streamer.getStreamer(this.getFilePath());
+		return null;
+	}
+
+	@Override
+	public Map<Integer, Action> middleStep(StateView state, HistoryView history)
+	{
+		Map<Integer, Action> actions = new HashMap<Integer, Action>();
+
+		if(Planner.getPlanner().isMyTurn(this.getPlayerType()))
+		{
+			if(Planner.getPlanner().isGameOver())
+			{
+				actions = this.killMyPieces(state);
+			}
+			else
+			{
+				if(Planner.getPlanner().canSubmitMove())
+				{
+					Move move = this.getChessMove(state);
+					if(Planner.getPlanner().canSubmitMove())
+					{
+						Planner.getPlanner().submitMove(move, Planner.getPlanner().getGame());
+					}
+				}
+
+				Action action = Planner.getPlanner().getAction(this.getPlayer(), state);
+				if(action != null)
+				{
+					actions.put(action.getUnitId(), action);
+				}
+			}
+		}
+		return actions;
+	}
+
+	@Override
+	public void terminalStep(StateView state, HistoryView history)
+	{
+		if(this.nextPly < this.getReplay().size())
+		{
+			System.err.println("ReplayAgent.terminalStep [WARNING]: the game ended after " + this.nextPly + " plies but" +
+				" the replay has " + this.getReplay().size());
+		}
+	}
+
+	@Override
+	public void loadPlayerData(InputStream stream)
+	{
+		// nothing to load
+	}
+
+	@Override
+	public void savePlayerData(OutputStream stream)
+	{
+		// nothing to save
+	}
+
+}
@@ -0,0 +1,224 @@
+package src.pas.chess.replay;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.move.Move;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.match.GameOutcome;
+import src.pas.chess.search.PackedMove;
+import src.pas.chess.utils.Fen;
+
+
+/**
+ * Appends games to a binary replay file (see Replay for the format) while they are played. Every move is one write of
+ * a few bytes at the end of the file (nothing is ever rewritten), so a game cut off by a crash is still readable up to
+ * its last move.
+ *
+ * There is one writer per file (forFile), shared by both agents when they stream to the same file. The first use in a
+ * process truncates the file, like AsyncPgnStreamer does with its PGN file; every episode after that is appended.
+ */
+public class ReplayWriter
+    extends Object
+{
+
+	public static final String FILE_EXTENSION = ".replay";
+
+	private static final int MAX_MOVE_RECORD_SIZE = 2 + 10;
+
+	private static final ConcurrentHashMap<String, ReplayWriter> WRITERS = new ConcurrentHashMap<String, ReplayWriter>();
+
+	private final String filePath;
+	private final ByteBuffer moveBuffer;
+	private FileChannel channel;             // opened with the first game, null after an error
+	private boolean failed;
+	private boolean gameStarted;
+
+	private ReplayWriter(String filePath)
+	{
+		this.filePath = filePath;
+		this.moveBuffer = ByteBuffer.allocate(ReplayWriter.MAX_MOVE_RECORD_SIZE);
+		this.channel = null;
+		this.failed = false;
+		this.gameStarted = false;
+	}
+
+	/**
+	 * @return the writer of filePath, created on first use
+	 */
+	public static ReplayWriter forFile(String filePath)
+	{
+		return ReplayWriter.WRITERS.computeIfAbsent(filePath, ReplayWriter::new);
+	}
+
+	/**
+	 * @return the replay file that goes with a stream file: its path with the extension replaced by FILE_EXTENSION
+	 */
+	public static String getReplayPath(String streamFilePath)
+	{
+		int extensionIdx = streamFilePath.lastIndexOf('.');
+		if(extensionIdx <= streamFilePath.lastIndexOf(File.separatorChar) + 1)
+		{
+			extensionIdx = streamFilePath.length();
+		}
+		return streamFilePath.substring(0, extensionIdx) + ReplayWriter.FILE_EXTENSION;
+	}
+
+	public String getFilePath() { return this.filePath; }
+
+	/**
+	 * Record a move. The first move of a game also records the game's initial position and clocks.
+	 * @param game the position move is played from, with the clocks from before the move
+	 */
+	public synchronized void writeMove(Game game, Move move, long durationInMS)
+	{
+		if(!this.gameStarted)
+		{
+			this.startGame(game);
+		}
+
+		ByteBuffer buffer = this.moveBuffer;
+		buffer.clear();
+		buffer.putShort((short)Replay.compact(PackedMove.encode(game, move)));
+		Replay.writeVarLong(buffer, Math.max(durationInMS, 0));
+		buffer.flip();
+		this.write(buffer);
+	}
+
+	/**
+	 * Record the end of the game in progress with the outcome that game (the final position) shows. Both agents may
+	 * call this, only the first call writes anything.
+	 */
+	public synchronized void finishGame(Game game)
+	{
+		if(!this.gameStarted)
+		{
+			return;
+		}
+
+		GameOutcome outcome = GameOutcome.of(game);
+		ByteBuffer buffer = this.moveBuffer;
+		buffer.clear();
+		buffer.putShort((short)Replay.END_OF_GAME);
+		buffer.put((byte)(outcome != null ? outcome.ordinal() + 1 : 0));
+		buffer.flip();
+		this.write(buffer);
+		this.gameStarted = false;
+	}
+
+	public synchronized void close()
+	{
+		if(this.channel != null)
+		{
+			try
+			{
+				this.channel.close();
+			} catch(IOException e)
+			{
+				System.err.println("ReplayWriter.close [ERROR]: unable to close " + this.getFilePath() + ": " + e);
+			}
+			this.channel = null;
+		}
+		ReplayWriter.WRITERS.remove(this.getFilePath(), this);
+	}
+
+	/**
+	 * Close every writer, e.g. when the process (or an episode of ParallelExperiment) is done.
+	 */
+	public static void closeAll()
+	{
+		for(ReplayWriter writer : ReplayWriter.WRITERS.values())
+		{
+			writer.close();
+		}
+	}
+
+	private void startGame(Game game)
+	{
+		byte[] fenBytes = Fen.toFen(game).getBytes(StandardCharsets.UTF_8);
+		ByteBuffer buffer = ByteBuffer.allocate(4 + 1 + 1 + 5 + fenBytes.length + 2 * 10);
+		if(this.channel == null && !this.failed)
+		{
+			this.channel = this.open();
+			buffer.putInt(Replay.MAGIC).put(Replay.VERSION);
+		}
+		buffer.put(Replay.GAME_TAG);
+		Replay.writeVarLong(buffer, fenBytes.length);
+		buffer.put(fenBytes);
+		Replay.writeVarLong(buffer, game.getTimeLeftInMS(game.getWhitePlayer()));
+		Replay.writeVarLong(buffer, game.getTimeLeftInMS(game.getBlackPlayer()));
+		buffer.flip();
+		this.write(buffer);
+		this.gameStarted = true;
+	}
+
+	private FileChannel open()
+	{
+		try
+		{
+			File parent = new File(this.getFilePath()).getAbsoluteFile().getParentFile();
+			if(parent != null)
+			{
+				parent.mkdirs();
+			}
+			return FileChannel.open(Paths.get(this.getFilePath()), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		} catch(IOException e)
+		{
+			this.fail(e);
+			return null;
+		}
+	}
+
+	private void write(ByteBuffer buffer)
+	{
+		if(this.channel == null)
+		{
+			return;
+		}
+		try
+		{
+			while(buffer.hasRemaining())
+			{
+				this.channel.write(buffer);
+			}
+		} catch(IOException e)
+		{
+			this.fail(e);
+		}
+	}
+
+	/**
+	 * A replay is a by-product of the game: report the error once and stop recording instead of ending the game.
+	 */
+	private void fail(IOException e)
+	{
+		System.err.println("ReplayWriter.write [ERROR]: unable to write " + this.getFilePath() + ", not recording it" +
+			" any more: " + e);
+		this.failed = true;
+		if(this.channel != null)
+		{
+			try
+			{
+				this.channel.close();
+			} catch(IOException closeException)
+			{
+				// already failed
+			}
+			this.channel = null;
+		}
+	}
+
+}
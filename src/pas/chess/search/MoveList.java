@@ -0,0 +1,151 @@
+package src.pas.chess.search;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.move.Move;
+
+
+import java.util.Arrays;
+import java.util.List;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Per ply move lists for one search: the moves of the node being searched at ply p live in row p, as packed ints
+ * (see PackedMove). Rows are allocated once, with room for MAX_MOVES moves, and reused by every node at that ply, so
+ * the search keeps no per node lists.
+ *
+ * Game.applyMove only takes edu.bu.chess Move objects, so each row also keeps the Move every packed move came from;
+ * the search only reaches for it to apply the move (and at the root, to hand the chosen move to the Planner).
+ * Not thread safe: searchers use the one of their thread's SearchStack.
+ */
+public class MoveList
+    extends Object
+{
+
+	public static final int MAX_MOVES = 256;  // legal chess positions have at most 218
+
+	private int[][] moves;
+	private Move[][] sourceMoves;
+	private int[] sizes;
+
+	/**
+	 * @param numPlies the number of rows to allocate up front (more are added when a search goes deeper)
+	 */
+	public MoveList(int numPlies)
+	{
+		this.moves = new int[0][];
+		this.sourceMoves = new Move[0][];
+		this.sizes = new int[0];
+		this.ensurePly(Math.max(numPlies, 1) - 1);
+	}
+
+	public int getNumPlies() { return this.sizes.length; }
+	public int size(int ply) { return this.sizes[ply]; }
+	public int get(int ply, int idx) { return this.moves[ply][idx]; }
+
+	/**
+	 * @return the edu.bu.chess Move the packed move at (ply, idx) was generated from
+	 */
+	public Move getMove(int ply, int idx) { return this.sourceMoves[ply][idx]; }
+
+	/**
+	 * Fill row ply with the legal moves of the player to move in game, in the order the game generates them.
+	 * @return the number of moves
+	 */
+	public int generate(int ply, Game game)
+	{
+		this.ensurePly(ply);
+		List<Move> legalMoves = game.getAllMoves(game.getCurrentPlayer());
+		int[] row = this.moves[ply];
+		Move[] sourceRow = this.sourceMoves[ply];
+		int size = Math.min(legalMoves.size(), MoveList.MAX_MOVES);
+		for(int idx = 0; idx < size; ++idx)
+		{
+			Move move = legalMoves.get(idx);
+			row[idx] = PackedMove.encode(game, move);
+			sourceRow[idx] = move;
+		}
+		this.clearFrom(ply, size);
+		this.sizes[ply] = size;
+		return size;
+	}
+
+	/**
+	 * @return the index of move in row ply, or -1
+	 */
+	public int indexOf(int ply, int move)
+	{
+		int[] row = this.moves[ply];
+		for(int idx = 0; idx < this.sizes[ply]; ++idx)
+		{
+			if(row[idx] == move)
+			{
+				return idx;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * The Move behind a packed move of row ply; this is the one conversion back to edu.bu.chess moves the searchers do,
+	 * at the root.
+	 */
+	public Move toMove(int ply, int move)
+	{
+		int idx = this.indexOf(ply, move);
+		if(idx < 0)
+		{
+			throw new IllegalArgumentException("MoveList.toMove [ERROR]: move=" + PackedMove.toText(move) +
+				" is not in the list of ply=" + ply);
+		}
+		return this.getMove(ply, idx);
+	}
+
+	/**
+	 * Move the move at idx of row ply to dstIdx (<= idx), shifting the moves in between back by one.
+	 */
+	public void moveToFront(int ply, int idx, int dstIdx)
+	{
+		int[] row = this.moves[ply];
+		Move[] sourceRow = this.sourceMoves[ply];
+		int move = row[idx];
+		Move sourceMove = sourceRow[idx];
+		System.arraycopy(row, dstIdx, row, dstIdx + 1, idx - dstIdx);
+		System.arraycopy(sourceRow, dstIdx, sourceRow, dstIdx + 1, idx - dstIdx);
+		row[dstIdx] = move;
+		sourceRow[dstIdx] = sourceMove;
+	}
+
+	private void clearFrom(int ply, int idx)
+	{
+		// drop the Move references a previous (larger) list left behind so they can be collected
+		Arrays.fill(this.sourceMoves[ply], idx, Math.max(idx, this.sizes[ply]), null);
+	}
+
+	/**
+	 * Make sure rows 0 through ply exist.
+	 */
+	public void ensurePly(int ply)
+	{
+		int numPlies = this.sizes.length;
+		if(ply < numPlies)
+		{
+			return;
+		}
+
+		int newNumPlies = Math.max(ply + 1, 2 * numPlies);
+		this.moves = Arrays.copyOf(this.moves, newNumPlies);
+		this.sourceMoves = Arrays.copyOf(this.sourceMoves, newNumPlies);
+		this.sizes = Arrays.copyOf(this.sizes, newNumPlies);
+		for(int newPly = numPlies; newPly < newNumPlies; ++newPly)
+		{
+			this.moves[newPly] = new int[MoveList.MAX_MOVES];
+			this.sourceMoves[newPly] = new Move[MoveList.MAX_MOVES];
+		}
+	}
+
+}
@@ -0,0 +1,157 @@
+package src.pas.chess.search;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.move.CaptureMove;
+import edu.bu.chess.game.move.Move;
+import edu.bu.chess.game.move.MoveType;
+import edu.bu.chess.game.move.PromotePawnMove;
+import edu.bu.chess.game.piece.PieceType;
+import edu.bu.chess.utils.Coordinate;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.utils.Fen;
+import src.pas.chess.utils.MoveNotation;
+
+
+/**
+ * Moves packed into a single int, so the search can keep, compare and sort them without touching Move objects:
+ *     bits 0-5   from square
+ *     bits 6-11  to square (the king's square for castling, the pawn's own square for a promotion)
+ *     bits 12-14 MoveType ordinal
+ *     bits 15-17 PieceType ordinal of the moving piece
+ *     bits 18-20 PieceType ordinal + 1 of the captured piece, 0 if nothing is captured
+ *     bits 21-23 PieceType ordinal + 1 of the promotion piece, 0 if this is not a promotion
+ * Squares are 8 * (rank - 1) + file - 1 (a1 = 0, h8 = 63). The low 15 bits are the move encoding of the binary search
+ * trace (SearchTraceWriter.encodeMove). NONE (0) is never a legal move since from and to cannot both be a1.
+ */
+public class PackedMove
+    extends Object
+{
+
+	public static final int NONE = 0;
+
+	public static final int SQUARE_MASK = 0x3f;
+	public static final int TYPE_MASK = 0x7;
+	public static final int PIECE_MASK = 0x7;
+
+	public static final int FROM_SHIFT = 0;
+	public static final int TO_SHIFT = 6;
+	public static final int MOVE_TYPE_SHIFT = 12;
+	public static final int PIECE_SHIFT = 15;
+	public static final int CAPTURED_SHIFT = 18;
+	public static final int PROMOTION_SHIFT = 21;
+
+	private static final MoveType[] MOVE_TYPES = MoveType.values();
+	private static final PieceType[] PIECE_TYPES = PieceType.values();
+
+	public static int pack(int from, int to, MoveType moveType, PieceType pieceType, PieceType capturedType,
+	                       PieceType promotionType)
+	{
+		return (from << PackedMove.FROM_SHIFT) | (to << PackedMove.TO_SHIFT) |
+			(moveType.ordinal() << PackedMove.MOVE_TYPE_SHIFT) | (pieceType.ordinal() << PackedMove.PIECE_SHIFT) |
+			((capturedType != null ? capturedType.ordinal() + 1 : 0) << PackedMove.CAPTURED_SHIFT) |
+			((promotionType != null ? promotionType.ordinal() + 1 : 0) << PackedMove.PROMOTION_SHIFT);
+	}
+
+	/**
+	 * @param game the position the move is played from
+	 */
+	public static int encode(Game game, Move move)
+	{
+		Coordinate src = game.getCurrentPosition(move.getActorPlayer(), move.getActorPieceID());
+		Coordinate dst = MoveNotation.getDstPosition(game, move);
+		PieceType pieceType = game.getPiece(move.getActorPlayer(), move.getActorPieceID()).getType();
+
+		PieceType capturedType = null;
+		PieceType promotionType = null;
+		if(move instanceof CaptureMove)
+		{
+			CaptureMove captureMove = (CaptureMove)move;
+			capturedType = game.getPiece(captureMove.getTargetPlayer(), captureMove.getTargetPieceID()).getType();
+		} else if(move instanceof PromotePawnMove)
+		{
+			promotionType = ((PromotePawnMove)move).getPromotedPieceType();
+		}
+		return PackedMove.pack(PackedMove.getSquare(src), PackedMove.getSquare(dst), move.getType(), pieceType,
+			capturedType, promotionType);
+	}
+
+	/**
+	 * @return 8 * (rank - 1) + file - 1 of a SEPIA coordinate (y = 1 is rank 8)
+	 */
+	public static int getSquare(Coordinate position)
+	{
+		return 8 * (8 - position.getYPosition()) + position.getXPosition() - 1;
+	}
+
+	public static int getFrom(int move) { return (move >>> PackedMove.FROM_SHIFT) & PackedMove.SQUARE_MASK; }
+	public static int getTo(int move) { return (move >>> PackedMove.TO_SHIFT) & PackedMove.SQUARE_MASK; }
+
+	public static MoveType getMoveType(int move)
+	{
+		return PackedMove.MOVE_TYPES[(move >>> PackedMove.MOVE_TYPE_SHIFT) & PackedMove.TYPE_MASK];
+	}
+
+	public static PieceType getPieceType(int move)
+	{
+		return PackedMove.PIECE_TYPES[(move >>> PackedMove.PIECE_SHIFT) & PackedMove.PIECE_MASK];
+	}
+
+	/**
+	 * @return the type of the captured piece, or null
+	 */
+	public static PieceType getCapturedType(int move)
+	{
+		int capturedIdx = (move >>> PackedMove.CAPTURED_SHIFT) & PackedMove.PIECE_MASK;
+		return capturedIdx > 0 ? PackedMove.PIECE_TYPES[capturedIdx - 1] : null;
+	}
+
+	/**
+	 * @return the type the pawn is promoted to, or null
+	 */
+	public static PieceType getPromotionType(int move)
+	{
+		int promotionIdx = (move >>> PackedMove.PROMOTION_SHIFT) & PackedMove.PIECE_MASK;
+		return promotionIdx > 0 ? PackedMove.PIECE_TYPES[promotionIdx - 1] : null;
+	}
+
+	public static boolean isCapture(int move) { return ((move >>> PackedMove.CAPTURED_SHIFT) & PackedMove.PIECE_MASK) != 0; }
+	public static boolean isPromotion(int move) { return ((move >>> PackedMove.PROMOTION_SHIFT) & PackedMove.PIECE_MASK) != 0; }
+	public static boolean isCastle(int move) { return PackedMove.getMoveType(move) == MoveType.CASTLEMOVE; }
+
+	/**
+	 * @return whether no sequence of moves can lead back to the position before move: captures, pawn moves (and so
+	 *         promotions) and castling
+	 */
+	public static boolean isIrreversible(int move)
+	{
+		return PackedMove.isCapture(move) || PackedMove.isPromotion(move) || PackedMove.isCastle(move) ||
+			PackedMove.getPieceType(move) == PieceType.PAWN;
+	}
+
+	/**
+	 * Coordinate notation, e.g. "e2e4" or "e8=Q" (promotions are their own turn in this engine), like MoveNotation.toText.
+	 */
+	public static String toText(int move)
+	{
+		StringBuilder builder = new StringBuilder(5);
+		PackedMove.appendSquare(builder, PackedMove.getFrom(move));
+		PieceType promotionType = PackedMove.getPromotionType(move);
+		if(promotionType != null)
+		{
+			return builder.append('=').append(Character.toUpperCase(Fen.getPieceSymbol(promotionType)))
+				.toString();
+		}
+		PackedMove.appendSquare(builder, PackedMove.getTo(move));
+		return builder.toString();
+	}
+
+	private static void appendSquare(StringBuilder builder, int square)
+	{
+		builder.append((char)('a' + (square & 7))).append((char)('1' + (square >>> 3)));
+	}
+
+}
@@ -0,0 +1,145 @@
+package src.pas.chess.search;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.history.History;
+import edu.bu.chess.game.move.Move;
+import edu.bu.chess.utils.Pair;
+
+
+import java.util.Arrays;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.history.GameHistory;
+import src.pas.chess.utils.Zobrist;
+
+
+/**
+ * The Zobrist hashes of the positions leading to the node being searched: the game positions since the last
+ * irreversible move (loadGame) followed by the positions on the current search path (push/pop). Every entry remembers
+ * where its run of reversible moves started, so isRepetition() only scans back to the last capture, pawn move or
+ * castle, i.e. costs O(plies since the last irreversible move).
+ */
+public class PositionHashStack
+    extends Object
+{
+
+	/**
+	 * The utility of a repeated position, the same DFSTreeNode gives a stalemate.
+	 */
+	public static final double DRAW_UTILITY = 0.0;
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private long[] hashes;
+	private int[] runStarts;   // runStarts[i] is the first position of the reversible run position i is in
+	private int size;
+	private boolean isLoaded;  // by loadGame, since the last search started from the positions
+
+	public PositionHashStack()
+	{
+		this.hashes = new long[PositionHashStack.INITIAL_CAPACITY];
+		this.runStarts = new int[PositionHashStack.INITIAL_CAPACITY];
+		this.size = 0;
+		this.isLoaded = false;
+	}
+
+	public int size() { return this.size; }
+	public long getTopHash() { return this.hashes[this.size - 1]; }
+
+	/**
+	 * @return whether loadGame filled the positions since the last search started from them (see setLoaded), i.e.
+	 *         they were loaded for the next search rather than left over from the previous one
+	 */
+	public boolean isLoaded() { return this.isLoaded; }
+	public void setLoaded(boolean isLoaded) { this.isLoaded = isLoaded; }
+
+	public void clear()
+	{
+		this.size = 0;
+	}
+
+	/**
+	 * @param irreversible whether the move that led to this position is irreversible (PackedMove.isIrreversible), i.e.
+	 *                     no position below it can occur again
+	 */
+	public void push(long hash, boolean irreversible)
+	{
+		if(this.size == this.hashes.length)
+		{
+			this.hashes = Arrays.copyOf(this.hashes, 2 * this.size);
+			this.runStarts = Arrays.copyOf(this.runStarts, 2 * this.size);
+		}
+		this.hashes[this.size] = hash;
+		this.runStarts[this.size] = irreversible || this.size == 0 ? this.size : this.runStarts[this.size - 1];
+		this.size += 1;
+	}
+
+	public void pop()
+	{
+		this.size -= 1;
+	}
+
+	/**
+	 * @return whether the top position already occurred since the last irreversible move
+	 */
+	public boolean isRepetition()
+	{
+		int top = this.size - 1;
+		long hash = this.hashes[top];
+		// the hash includes the side to move, and within a reversible run the sides alternate, so only every other
+		// position can match; the first one that can is four plies back
+		for(int positionIdx = top - 4; positionIdx >= this.runStarts[top]; positionIdx -= 2)
+		{
+			if(this.hashes[positionIdx] == hash)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Replace the contents with the positions of history since its last irreversible move, ending in its current one.
+	 */
+	public void loadGame(GameHistory history)
+	{
+		this.clear();
+		int firstPositionIdx = history.getLastIrreversiblePosition();
+		this.push(history.getHash(firstPositionIdx), true);
+		for(int positionIdx = firstPositionIdx + 1; positionIdx <= history.size(); ++positionIdx)
+		{
+			this.push(history.getHash(positionIdx), false);
+		}
+		this.setLoaded(true);
+	}
+
+	/**
+	 * Same as loadGame(GameHistory) from the Planner's history (a (move, position it was played from) pair per move),
+	 * ending in currentGame.
+	 */
+	public void loadGame(History history, Game currentGame)
+	{
+		this.clear();
+		int firstStateIdx = history.size();
+		while(firstStateIdx > 0)
+		{
+			Pair<Move, Game> state = history.getPastState(firstStateIdx - 1);
+			if(PackedMove.isIrreversible(PackedMove.encode(state.getSecond(), state.getFirst())))
+			{
+				break;
+			}
+			firstStateIdx -= 1;
+		}
+
+		for(int stateIdx = firstStateIdx; stateIdx < history.size(); ++stateIdx)
+		{
+			this.push(Zobrist.hash(history.getPastState(stateIdx).getSecond()), false);
+		}
+		this.push(Zobrist.hash(currentGame), false);
+		this.setLoaded(true);
+	}
+
+}
@@ -0,0 +1,83 @@
+package src.pas.chess.search;
+
+
+// SYSTEM IMPORTS
+import java.util.Locale;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * One line of a multi-PV search: a root move, its score searched to depth, and the principal variation starting with it
+ * (packed moves). Lines are ranked from 1 (the best) by score.
+ */
+public class PvLine
+    extends Object
+{
+
+	private final int depth;
+	private final int rank;
+	private final double score;
+	private final int[] moves;
+
+	/**
+	 * @param score from the point of view of the player to move at the root; +-Double.MAX_VALUE for won/lost
+	 */
+	public PvLine(int depth, int rank, double score, int[] moves)
+	{
+		this.depth = depth;
+		this.rank = rank;
+		this.score = score;
+		this.moves = moves;
+	}
+
+	public int getDepth() { return this.depth; }
+	public int getRank() { return this.rank; }
+	public double getScore() { return this.score; }
+	public int[] getMoves() { return this.moves; }
+	public int getRootMove() { return this.moves[0]; }
+
+	public boolean isMate() { return Math.abs(this.getScore()) >= Double.MAX_VALUE; }
+
+	/**
+	 * @return the same line under another rank
+	 */
+	public PvLine withRank(int rank)
+	{
+		return new PvLine(this.getDepth(), rank, this.getScore(), this.getMoves());
+	}
+
+	/**
+	 * @return the moves in coordinate notation, separated by spaces
+	 */
+	public String getMovesText()
+	{
+		StringBuilder builder = new StringBuilder(6 * this.getMoves().length);
+		for(int move : this.getMoves())
+		{
+			builder.append(builder.length() > 0 ? " " : "").append(PackedMove.toText(move));
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * @return the score with two decimals, or "mate"/"-mate" (the searchers do not know the distance to mate)
+	 */
+	public String getScoreText()
+	{
+		if(this.isMate())
+		{
+			return this.getScore() > 0 ? "mate" : "-mate";
+		}
+		return String.format(Locale.ROOT, "%.2f", this.getScore());
+	}
+
+	@Override
+	public String toString()
+	{
+		return "depth " + this.getDepth() + " line " + this.getRank() + " score " + this.getScoreText() + " pv " +
+			this.getMovesText();
+	}
+
+}
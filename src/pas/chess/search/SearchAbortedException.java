@@ -0,0 +1,26 @@
+package src.pas.chess.search;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Thrown out of a search when its SearchLimits say it has to stop. Whoever catches it owns cleaning up the per ply state
+ * the search left behind (see AlphaBetaAgent's searchMultiPv).
+ */
+public class SearchAbortedException
+    extends RuntimeException
+{
+
+	private static final long serialVersionUID = 4404904955632186121L;
+
+	public SearchAbortedException()
+	{
+		// thrown once per aborted search: the stack trace is of no use
+		super("search aborted", null, false, false);
+	}
+
+}
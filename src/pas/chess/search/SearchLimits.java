@@ -0,0 +1,87 @@
+package src.pas.chess.search;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * When a search has to stop before its maximum depth: on stop() (from any thread), past a deadline, or past a node
+ * budget. The searcher calls countNode() at every node, which throws SearchAbortedException once a limit is hit, and
+ * asks canStartDepth() before every iteration of an iterative deepening search, which is false past the soft deadline
+ * (the next depth would most likely not finish before the hard one anyway).
+ *
+ * Deadlines are System.nanoTime() values; NO_LIMIT is none. setTimeBudget(...) may be called during the search (e.g.
+ * when a ponder search becomes a real one).
+ */
+public class SearchLimits
+    extends Object
+{
+
+	public static final long NO_LIMIT = Long.MAX_VALUE;
+
+	private final long maxNodes;
+	private final long startTimeInNS;
+	private volatile boolean isStopped;
+	private volatile long softDeadlineInNS;
+	private volatile long hardDeadlineInNS;
+	private long numNodes;                    // only touched by the search thread
+
+	/**
+	 * Limits without deadlines (see setTimeBudget).
+	 * @param maxNodes NO_LIMIT for none
+	 */
+	public SearchLimits(long maxNodes)
+	{
+		this.maxNodes = maxNodes;
+		this.startTimeInNS = System.nanoTime();
+		this.isStopped = false;
+		this.softDeadlineInNS = SearchLimits.NO_LIMIT;
+		this.hardDeadlineInNS = SearchLimits.NO_LIMIT;
+		this.numNodes = 0;
+	}
+
+	public long getMaxNodes() { return this.maxNodes; }
+	public long getNumNodes() { return this.numNodes; }
+	public boolean isStopped() { return this.isStopped; }
+
+	public long getElapsedInMS() { return (System.nanoTime() - this.startTimeInNS) / 1000000; }
+
+	public void stop() { this.isStopped = true; }
+
+	/**
+	 * Start the clock: no new depth after softInMS from now, and stop at hardInMS from now (NO_LIMIT for none).
+	 */
+	public void setTimeBudget(long softInMS, long hardInMS)
+	{
+		long now = System.nanoTime();
+		this.softDeadlineInNS = softInMS == SearchLimits.NO_LIMIT ? SearchLimits.NO_LIMIT : now + softInMS * 1000000;
+		this.hardDeadlineInNS = hardInMS == SearchLimits.NO_LIMIT ? SearchLimits.NO_LIMIT : now + hardInMS * 1000000;
+	}
+
+	/**
+	 * Count a node of the search.
+	 * @throws SearchAbortedException when the search has to stop
+	 */
+	public void countNode()
+	{
+		this.numNodes += 1;
+		if(this.isStopped || this.numNodes > this.maxNodes ||
+		   (this.hardDeadlineInNS != SearchLimits.NO_LIMIT && System.nanoTime() >= this.hardDeadlineInNS))
+		{
+			throw new SearchAbortedException();
+		}
+	}
+
+	/**
+	 * @return whether an iterative deepening search should start its next depth
+	 */
+	public boolean canStartDepth()
+	{
+		return !this.isStopped && this.numNodes < this.maxNodes &&
+			(this.softDeadlineInNS == SearchLimits.NO_LIMIT || System.nanoTime() < this.softDeadlineInNS);
+	}
+
+}
@@ -0,0 +1,138 @@
+package src.pas.chess.search;
+
+
+// SYSTEM IMPORTS
+import java.util.List;
+import java.util.function.Consumer;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * The settings of a player's searches that cannot be kept on its agent: the transposition table they fill, the limits
+ * of the search running now, and the analysis (multi-PV) mode. EngineFactory gives every SearcherEngine the same agent,
+ * and engines play in parallel games, so each engine has a SearchOptions of its own and installs it on the thread it
+ * searches on for the length of a search (setForCurrentThread). A search started without one (the SEPIA path, where an
+ * agent plays a single game) uses its agent's.
+ *
+ * Not thread safe, like the table: one search at a time.
+ */
+public class SearchOptions
+    extends Object
+{
+
+	/**
+	 * -Dchess.search.hashMB=N: give every engine (and SEPIA agent) a transposition table of N megabytes, kept from move
+	 * to move.
+	 */
+	public static final String HASH_SIZE_PROPERTY = "chess.search.hashMB";
+
+	private static final ThreadLocal<SearchOptions> THREAD_OPTIONS = new ThreadLocal<SearchOptions>();
+
+	private TranspositionTable transpositionTable;
+	private int tableSizeInMB;                        // of the table to make on first use, 0 when there is none to make
+	private SearchLimits searchLimits;
+	private Consumer<List<PvLine> > pvListener;
+	private int numPvLines;
+
+	/**
+	 * @param transpositionTable null for none
+	 */
+	public SearchOptions(TranspositionTable transpositionTable)
+	{
+		this.transpositionTable = transpositionTable;
+		this.tableSizeInMB = 0;
+		this.searchLimits = null;
+		this.pvListener = null;
+		this.numPvLines = 1;
+	}
+
+	/**
+	 * @return options with a transposition table of HASH_SIZE_PROPERTY megabytes (made when a search first asks for
+	 *         it, so engines of agents that never do cost nothing), none if the property is not set
+	 */
+	public static SearchOptions fromProperties()
+	{
+		SearchOptions options = new SearchOptions(null);
+		options.tableSizeInMB = Math.max(Integer.getInteger(SearchOptions.HASH_SIZE_PROPERTY, 0), 0);
+		return options;
+	}
+
+	/**
+	 * @return the options installed on the calling thread, null if there are none
+	 */
+	public static SearchOptions ofCurrentThread() { return SearchOptions.THREAD_OPTIONS.get(); }
+
+	/**
+	 * @param options what the searches the calling thread runs from now on use, null to go back to their agent's
+	 */
+	public static void setForCurrentThread(SearchOptions options)
+	{
+		if(options == null)
+		{
+			SearchOptions.THREAD_OPTIONS.remove();
+		} else
+		{
+			SearchOptions.THREAD_OPTIONS.set(options);
+		}
+	}
+
+	public TranspositionTable getTranspositionTable()
+	{
+		if(this.transpositionTable == null && this.tableSizeInMB > 0)
+		{
+			this.transpositionTable = TranspositionTable.ofSizeInMB(this.tableSizeInMB);
+		}
+		return this.transpositionTable;
+	}
+
+	public SearchLimits getSearchLimits() { return this.searchLimits; }
+	public Consumer<List<PvLine> > getPvListener() { return this.pvListener; }
+	public int getNumPvLines() { return this.numPvLines; }
+
+	/**
+	 * @param transpositionTable used (and kept filled) by every search from now on, null for none
+	 */
+	public void setTranspositionTable(TranspositionTable transpositionTable)
+	{
+		this.transpositionTable = transpositionTable;
+		this.tableSizeInMB = 0;
+	}
+
+	/**
+	 * @param searchLimits stop the next search when they say so (e.g. on a deadline or from another thread), which
+	 *        then deepens iteratively like an analysis search and plays the best move of the last depth it finished;
+	 *        null: search to the maximum depth
+	 */
+	public void setSearchLimits(SearchLimits searchLimits)
+	{
+		this.searchLimits = searchLimits;
+	}
+
+	/**
+	 * Switch the searches to analysis: deepen iteratively to the maximum depth and find the best numPvLines root moves
+	 * at every depth, each as a PvLine, which pvListener gets (on the search thread) as soon as a depth is done. The
+	 * move played is the best line's. A null pvListener switches back to the plain search.
+	 */
+	public void setMultiPv(int numPvLines, Consumer<List<PvLine> > pvListener)
+	{
+		if(numPvLines < 1)
+		{
+			throw new IllegalArgumentException("SearchOptions.setMultiPv [ERROR]: numPvLines=" + numPvLines +
+				" must be at least 1");
+		}
+		this.numPvLines = numPvLines;
+		this.pvListener = pvListener;
+	}
+
+	/**
+	 * @return whether the searches deepen iteratively (analysis mode or limits) rather than search to the maximum depth
+	 *         at once
+	 */
+	public boolean isIterative()
+	{
+		return this.getPvListener() != null || this.getSearchLimits() != null;
+	}
+
+}
@@ -0,0 +1,213 @@
+package src.pas.chess.search;
+
+
+// SYSTEM IMPORTS
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * What an agent's searches learned, kept from one game (and process) to the next: the deepest entries of its
+ * transposition table, and the learned positions, a small table of the results of the searches it played its moves
+ * from. Loaded back into the tables, they give the first searches of a game from a familiar opening their best moves
+ * to try first, and cutoffs wherever the stored depth is enough.
+ *
+ * File format (big endian): MAGIC (int), VERSION (int), fingerprint (long), numTableEntries (int), numLearnedEntries
+ * (int), then the entries of both tables, TranspositionTable.ENTRY_SIZE bytes each: key (long), score (double), move
+ * (int), depth (byte), bound (byte). The fingerprint identifies what the scores were computed with (see
+ * AlphaBetaAgent): a snapshot with another fingerprint is loaded with depth 0, so only its moves are used. The entry
+ * counts are capped both when writing and when reading, so a snapshot stays a few megabytes at most.
+ *
+ * Files are written and read through memory mappings: loading is one pass over the mapped entries, without copying the
+ * file first. Snapshots are written to a temporary file that then replaces the old one, so a reader never sees half
+ * of one.
+ */
+public class SearchSnapshot
+    extends Object
+{
+
+	public static final int MAGIC = 0x34343053;   // "440S"
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4;
+
+	/** the most table entries a snapshot holds: the deepest ones are kept (1.4 MB) */
+	public static final int MAX_TABLE_ENTRIES = 1 << 16;
+	/** the most learned positions a snapshot holds (360 KB) */
+	public static final int MAX_LEARNED_ENTRIES = 1 << 14;
+	public static final int MAX_SIZE = SearchSnapshot.HEADER_SIZE + TranspositionTable.ENTRY_SIZE *
+		(SearchSnapshot.MAX_TABLE_ENTRIES + SearchSnapshot.MAX_LEARNED_ENTRIES);
+
+	/**
+	 * @return the size in bytes of the snapshot of table and learned (null for none)
+	 */
+	public static int getSize(TranspositionTable table, TranspositionTable learned)
+	{
+		return SearchSnapshot.HEADER_SIZE + TranspositionTable.ENTRY_SIZE *
+			(SearchSnapshot.getNumEntries(table, SearchSnapshot.MAX_TABLE_ENTRIES) +
+			 SearchSnapshot.getNumEntries(learned, SearchSnapshot.MAX_LEARNED_ENTRIES));
+	}
+
+	private static int getNumEntries(TranspositionTable table, int maxEntries)
+	{
+		return table == null ? 0 : Math.min(table.size(), maxEntries);
+	}
+
+	/**
+	 * Write the snapshot of table and learned (null for none) at out's position; out needs getSize(table, learned)
+	 * bytes left.
+	 */
+	public static void write(ByteBuffer out, long fingerprint, TranspositionTable table, TranspositionTable learned)
+	{
+		int numTableEntries = SearchSnapshot.getNumEntries(table, SearchSnapshot.MAX_TABLE_ENTRIES);
+		int numLearnedEntries = SearchSnapshot.getNumEntries(learned, SearchSnapshot.MAX_LEARNED_ENTRIES);
+		out.putInt(SearchSnapshot.MAGIC);
+		out.putInt(SearchSnapshot.VERSION);
+		out.putLong(fingerprint);
+		out.putInt(numTableEntries);
+		out.putInt(numLearnedEntries);
+		SearchSnapshot.writeDeepest(out, table, numTableEntries);
+		SearchSnapshot.writeDeepest(out, learned, numLearnedEntries);
+	}
+
+	/**
+	 * Write the numEntries deepest entries of table.
+	 */
+	private static void writeDeepest(ByteBuffer out, TranspositionTable table, int numEntries)
+	{
+		if(numEntries == 0)
+		{
+			return;
+		}
+
+		// the shallowest depth that makes the cut, and how many entries of that depth still fit
+		int[] numPerDepth = new int[Byte.MAX_VALUE + 1];
+		for(int slot = 0; slot < table.getNumSlots(); ++slot)
+		{
+			if(table.getBound(slot) != TranspositionTable.EMPTY)
+			{
+				numPerDepth[table.getDepth(slot)] += 1;
+			}
+		}
+		int minDepth = Byte.MAX_VALUE;
+		int numDeeper = 0;
+		while(minDepth > 0 && numDeeper + numPerDepth[minDepth] < numEntries)
+		{
+			numDeeper += numPerDepth[minDepth];
+			minDepth -= 1;
+		}
+		int numAtMinDepth = numEntries - numDeeper;
+
+		for(int slot = 0; slot < table.getNumSlots(); ++slot)
+		{
+			int depth = table.getDepth(slot);
+			if(table.getBound(slot) == TranspositionTable.EMPTY || depth < minDepth ||
+			   (depth == minDepth && numAtMinDepth-- <= 0))
+			{
+				continue;
+			}
+			out.putLong(table.getKey(slot));
+			out.putDouble(table.getScore(slot));
+			out.putInt(table.getMove(slot));
+			out.put((byte)depth);
+			out.put(table.getBound(slot));
+		}
+	}
+
+	/**
+	 * Store the entries of the snapshot at in's position into table and learned (either may be null to skip its
+	 * entries; the learned positions are stored into table too, they are search results as well).
+	 * @return the number of entries read, -1 if in holds no snapshot of this VERSION
+	 */
+	public static int read(ByteBuffer in, long fingerprint, TranspositionTable table, TranspositionTable learned)
+	{
+		if(in.remaining() < SearchSnapshot.HEADER_SIZE || in.getInt() != SearchSnapshot.MAGIC ||
+		   in.getInt() != SearchSnapshot.VERSION)
+		{
+			return -1;
+		}
+		boolean isSameEvaluation = in.getLong() == fingerprint;
+		int numTableEntries = in.getInt();
+		int numLearnedEntries = in.getInt();
+		if(numTableEntries < 0 || numTableEntries > SearchSnapshot.MAX_TABLE_ENTRIES || numLearnedEntries < 0 ||
+		   numLearnedEntries > SearchSnapshot.MAX_LEARNED_ENTRIES ||
+		   in.remaining() < (numTableEntries + numLearnedEntries) * TranspositionTable.ENTRY_SIZE)
+		{
+			return -1;
+		}
+
+		for(int entryIdx = 0; entryIdx < numTableEntries + numLearnedEntries; ++entryIdx)
+		{
+			long key = in.getLong();
+			double score = in.getDouble();
+			int move = in.getInt();
+			byte depth = in.get();
+			byte bound = in.get();
+			if(bound < TranspositionTable.EXACT || bound > TranspositionTable.UPPER_BOUND)
+			{
+				continue;
+			}
+			// depth 0 is never deep enough to reuse the score, but the move is still tried first
+			int usableDepth = isSameEvaluation ? depth : 0;
+			if(table != null)
+			{
+				table.store(key, usableDepth, bound, score, move);
+			}
+			if(learned != null && entryIdx >= numTableEntries)
+			{
+				learned.store(key, usableDepth, bound, score, move);
+			}
+		}
+		return numTableEntries + numLearnedEntries;
+	}
+
+	/**
+	 * Write the snapshot of table and learned to path, replacing what is there.
+	 */
+	public static void save(Path path, long fingerprint, TranspositionTable table, TranspositionTable learned)
+		throws IOException
+	{
+		Path absolutePath = path.toAbsolutePath();
+		if(absolutePath.getParent() != null)
+		{
+			Files.createDirectories(absolutePath.getParent());
+		}
+		Path tempPath = absolutePath.resolveSibling(absolutePath.getFileName() + ".tmp");
+		try(FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+			StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+				SearchSnapshot.getSize(table, learned));
+			SearchSnapshot.write(out, fingerprint, table, learned);
+			out.force();
+		}
+		Files.move(tempPath, absolutePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Load the snapshot at path into table and learned (see read).
+	 * @return the number of entries read, -1 if there is no snapshot of this VERSION at path
+	 */
+	public static int load(Path path, long fingerprint, TranspositionTable table, TranspositionTable learned)
+		throws IOException
+	{
+		if(!Files.isRegularFile(path))
+		{
+			return -1;
+		}
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+		{
+			return SearchSnapshot.read(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+				Math.min(channel.size(), SearchSnapshot.MAX_SIZE)), fingerprint, table, learned);
+		}
+	}
+
+}
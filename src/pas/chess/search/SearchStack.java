@@ -0,0 +1,300 @@
+package src.pas.chess.search;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.history.History;
+import edu.bu.chess.search.DFSTreeNode;
+
+
+import java.util.Arrays;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.utils.Zobrist;
+
+
+/**
+ * Everything a depth first search keeps per ply, preallocated and indexed by ply (0 = root): the node being searched,
+ * its move list, the window and best score/move, two killer moves and a triangular principal variation table, plus the
+ * hashes of the positions leading to the node for repetition detection. Every
+ * search thread gets one (forCurrentThread) and reuses it for every search it runs, so once a thread has searched as
+ * deep as it is going to, the stack itself allocates nothing more.
+ *
+ * The nodes themselves are edu.bu.chess DFSTreeNodes (and their Games), which are immutable and made by Game.applyMove,
+ * so they cannot be recycled; the stack only holds on to the one node per ply on the current path.
+ */
+public class SearchStack
+    extends Object
+{
+
+	public static final int NUM_KILLERS = 2;
+
+	private static final ThreadLocal<SearchStack> THREAD_STACKS = ThreadLocal.withInitial(() -> new SearchStack(1));
+
+	private final MoveList moveList;
+	private final PositionHashStack positionHashes;
+	private DFSTreeNode[] nodes;
+	private double[] alphas;
+	private double[] betas;
+	private double[] bestScores;
+	private int[] bestMoves;
+	private int[][] killers;
+	private int[][] pv;          // pv[ply] is the best line from ply on, pvLengths[ply] moves long
+	private int[] pvLengths;
+
+	public SearchStack(int numPlies)
+	{
+		this.moveList = new MoveList(numPlies);
+		this.positionHashes = new PositionHashStack();
+		this.nodes = new DFSTreeNode[0];
+		this.alphas = new double[0];
+		this.betas = new double[0];
+		this.bestScores = new double[0];
+		this.bestMoves = new int[0];
+		this.killers = new int[0][];
+		this.pv = new int[0][];
+		this.pvLengths = new int[0];
+		this.ensurePlies(numPlies);
+	}
+
+	/**
+	 * The stack of the calling thread, with room for at least numPlies plies and reset for a new search.
+	 */
+	public static SearchStack forCurrentThread(int numPlies)
+	{
+		SearchStack stack = SearchStack.THREAD_STACKS.get();
+		stack.ensurePlies(numPlies);
+		stack.reset();
+		return stack;
+	}
+
+	/**
+	 * The stack of the calling thread as its last search left it, e.g. to read the root's best score after the search.
+	 */
+	public static SearchStack ofCurrentThread()
+	{
+		return SearchStack.THREAD_STACKS.get();
+	}
+
+	public int getNumPlies() { return this.nodes.length; }
+	public MoveList getMoveList() { return this.moveList; }
+	public PositionHashStack getPositionHashes() { return this.positionHashes; }
+
+	public DFSTreeNode getNode(int ply) { return this.nodes[ply]; }
+	public double getAlpha(int ply) { return this.alphas[ply]; }
+	public double getBeta(int ply) { return this.betas[ply]; }
+	public double getBestScore(int ply) { return this.bestScores[ply]; }
+	public int getBestMove(int ply) { return this.bestMoves[ply]; }
+
+	/**
+	 * Clear killers and principal variations left over from the previous search.
+	 */
+	public void reset()
+	{
+		for(int ply = 0; ply < this.getNumPlies(); ++ply)
+		{
+			Arrays.fill(this.killers[ply], PackedMove.NONE);
+			this.pvLengths[ply] = 0;
+			this.nodes[ply] = null;
+		}
+	}
+
+	/**
+	 * Get the position hashes ready for a search from rootGame. Whoever runs the search can load the game positions
+	 * before it (getPositionHashes().loadGame(...)); if they did not, or they do not end in rootGame, they are taken
+	 * from the Planner's History instead, and if that does not end in rootGame either, the search only knows about
+	 * its own path. Positions left over from an earlier search on this thread are never trusted: the game may have
+	 * come back to the same root since, through positions they do not have.
+	 */
+	public void startSearch(Game rootGame)
+	{
+		long rootHash = Zobrist.hash(rootGame);
+		PositionHashStack positionHashes = this.getPositionHashes();
+		if(!positionHashes.isLoaded() || positionHashes.getTopHash() != rootHash)
+		{
+			positionHashes.loadGame(History.getHistory(), rootGame);
+			if(positionHashes.getTopHash() != rootHash)
+			{
+				positionHashes.clear();
+				positionHashes.push(rootHash, true);
+			}
+		}
+		positionHashes.setLoaded(false);
+	}
+
+	/**
+	 * Add the position game, reached by move (packed), to the search path. Undo with leavePosition().
+	 */
+	public void enterPosition(Game game, int move)
+	{
+		this.getPositionHashes().push(Zobrist.hash(game), PackedMove.isIrreversible(move));
+	}
+
+	public void leavePosition()
+	{
+		this.getPositionHashes().pop();
+	}
+
+	/**
+	 * @return whether the last position entered already occurred since the last irreversible move
+	 */
+	public boolean isRepetition()
+	{
+		return this.getPositionHashes().isRepetition();
+	}
+
+	/**
+	 * Enter node at ply: records it, its window, and starts an empty principal variation for it.
+	 */
+	public void push(int ply, DFSTreeNode node, double alpha, double beta)
+	{
+		this.ensurePlies(ply + 2);  // the pv of ply reads the one of ply + 1
+		this.nodes[ply] = node;
+		this.alphas[ply] = alpha;
+		this.betas[ply] = beta;
+		this.bestScores[ply] = Double.NaN;
+		this.bestMoves[ply] = PackedMove.NONE;
+		this.pvLengths[ply] = 0;
+		this.pvLengths[ply + 1] = 0;
+	}
+
+	/**
+	 * Leave ply, dropping the node reference so the subtree can be collected.
+	 */
+	public void pop(int ply)
+	{
+		this.nodes[ply] = null;
+	}
+
+	public void setWindow(int ply, double alpha, double beta)
+	{
+		this.alphas[ply] = alpha;
+		this.betas[ply] = beta;
+	}
+
+	/**
+	 * move (of ply's move list) is the new best move of ply: it becomes the head of ply's principal variation,
+	 * followed by the principal variation the child just left at ply + 1.
+	 */
+	public void setBest(int ply, int move, double score)
+	{
+		this.bestMoves[ply] = move;
+		this.bestScores[ply] = score;
+
+		int[] line = this.pv[ply];
+		line[0] = move;
+		int childLength = Math.min(this.pvLengths[ply + 1], line.length - 1);
+		System.arraycopy(this.pv[ply + 1], 0, line, 1, childLength);
+		this.pvLengths[ply] = childLength + 1;
+	}
+
+	/**
+	 * Make line (packed moves from ply on) the best line of ply, e.g. when the best line was found before others were
+	 * searched from the same node.
+	 */
+	public void setBest(int ply, int[] line, double score)
+	{
+		this.bestMoves[ply] = line[0];
+		this.bestScores[ply] = score;
+		int length = Math.min(line.length, this.pv[ply].length);
+		System.arraycopy(line, 0, this.pv[ply], 0, length);
+		this.pvLengths[ply] = length;
+	}
+
+	/**
+	 * @return a copy of the principal variation found from the root (packed moves)
+	 */
+	public int[] getPrincipalVariation()
+	{
+		return this.getPrincipalVariation(0);
+	}
+
+	/**
+	 * @return a copy of the principal variation found from ply, by the last search of ply's node
+	 */
+	public int[] getPrincipalVariation(int ply)
+	{
+		return Arrays.copyOf(this.pv[ply], this.pvLengths[ply]);
+	}
+
+	/**
+	 * Remember a quiet move that caused a cutoff at ply, most recent first.
+	 */
+	public void addKiller(int ply, int move)
+	{
+		int[] plyKillers = this.killers[ply];
+		if(plyKillers[0] == move)
+		{
+			return;
+		}
+		System.arraycopy(plyKillers, 0, plyKillers, 1, SearchStack.NUM_KILLERS - 1);
+		plyKillers[0] = move;
+	}
+
+	public boolean isKiller(int ply, int move)
+	{
+		int[] plyKillers = this.killers[ply];
+		for(int killerIdx = 0; killerIdx < SearchStack.NUM_KILLERS; ++killerIdx)
+		{
+			if(plyKillers[killerIdx] == move && move != PackedMove.NONE)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Move ply's killer moves, if they are in its move list, to the front of the list (keeping the order of the rest).
+	 * @return the number of killers moved to the front
+	 */
+	public int orderKillers(int ply)
+	{
+		int numFront = 0;
+		int[] plyKillers = this.killers[ply];
+		for(int killerIdx = 0; killerIdx < SearchStack.NUM_KILLERS; ++killerIdx)
+		{
+			int moveIdx = plyKillers[killerIdx] != PackedMove.NONE
+				? this.getMoveList().indexOf(ply, plyKillers[killerIdx]) : -1;
+			if(moveIdx >= numFront)
+			{
+				this.getMoveList().moveToFront(ply, moveIdx, numFront);
+				numFront += 1;
+			}
+		}
+		return numFront;
+	}
+
+	private void ensurePlies(int numPlies)
+	{
+		int oldNumPlies = this.nodes.length;
+		if(numPlies <= oldNumPlies)
+		{
+			return;
+		}
+
+		int newNumPlies = Math.max(numPlies, 2 * oldNumPlies);
+		this.nodes = Arrays.copyOf(this.nodes, newNumPlies);
+		this.alphas = Arrays.copyOf(this.alphas, newNumPlies);
+		this.betas = Arrays.copyOf(this.betas, newNumPlies);
+		this.bestScores = Arrays.copyOf(this.bestScores, newNumPlies);
+		this.bestMoves = Arrays.copyOf(this.bestMoves, newNumPlies);
+		this.killers = Arrays.copyOf(this.killers, newNumPlies);
+		this.pvLengths = Arrays.copyOf(this.pvLengths, newNumPlies);
+
+		// the pv rows are as long as the deepest line that can start at that ply, so they all get regrown
+		this.pv = new int[newNumPlies][];
+		for(int ply = 0; ply < newNumPlies; ++ply)
+		{
+			this.pv[ply] = new int[newNumPlies - ply];
+			if(ply >= oldNumPlies)
+			{
+				this.killers[ply] = new int[SearchStack.NUM_KILLERS];
+			}
+		}
+		Arrays.fill(this.pvLengths, 0);
+		this.getMoveList().ensurePly(newNumPlies - 1);
+	}
+
+}
@@ -0,0 +1,144 @@
+package src.pas.chess.search;
+
+
+// SYSTEM IMPORTS
+import java.util.Arrays;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Search results of positions, keyed by their Zobrist hash: the score a search of some depth found, whether it is exact
+ * or only a bound (the search failed low or high against its window), and the best move (packed), which is worth
+ * trying first the next time the position is searched even when the score is not deep enough to reuse.
+ *
+ * Entries live in parallel primitive arrays with a power of two number of slots, one entry per slot (index = low bits
+ * of the hash, the full hash is kept to tell positions apart). A store replaces the slot's entry unless it is the same
+ * position searched deeper. Scores are from the point of view of the player to move in the position, so the table can
+ * be shared by searches for either side. Not thread safe: one search thread at a time, which is why every engine has
+ * a table of its own (see SearchOptions).
+ */
+public class TranspositionTable
+    extends Object
+{
+
+	public static final byte EMPTY = 0;
+	public static final byte EXACT = 1;
+	public static final byte LOWER_BOUND = 2;   // the score is at least this (the search failed high)
+	public static final byte UPPER_BOUND = 3;   // the score is at most this (the search failed low)
+
+	/** bytes per entry: key, score, move, depth, bound */
+	public static final int ENTRY_SIZE = 8 + 8 + 4 + 1 + 1;
+	public static final int DEFAULT_SIZE_IN_MB = 16;
+
+	private final long[] keys;
+	private final double[] scores;
+	private final int[] moves;
+	private final byte[] depths;
+	private final byte[] bounds;
+	private final int mask;
+	private int numEntries;
+
+	/**
+	 * @param numSlots rounded down to a power of two
+	 */
+	public TranspositionTable(int numSlots)
+	{
+		int size = Integer.highestOneBit(Math.max(numSlots, 1));
+		this.keys = new long[size];
+		this.scores = new double[size];
+		this.moves = new int[size];
+		this.depths = new byte[size];
+		this.bounds = new byte[size];
+		this.mask = size - 1;
+		this.numEntries = 0;
+	}
+
+	/**
+	 * @return a table of at most sizeInMB megabytes
+	 */
+	public static TranspositionTable ofSizeInMB(int sizeInMB)
+	{
+		return new TranspositionTable((int)Math.min((long)sizeInMB * (1 << 20) / TranspositionTable.ENTRY_SIZE,
+			1 << 30));
+	}
+
+	public int getNumSlots() { return this.keys.length; }
+	public int size() { return this.numEntries; }
+
+	public long getKey(int slot) { return this.keys[slot]; }
+	public double getScore(int slot) { return this.scores[slot]; }
+	public int getMove(int slot) { return this.moves[slot]; }
+	public int getDepth(int slot) { return this.depths[slot]; }
+	public byte getBound(int slot) { return this.bounds[slot]; }
+
+	/**
+	 * @return the slot holding the entry of the position, -1 if there is none
+	 */
+	public int probe(long key)
+	{
+		int slot = (int)key & this.mask;
+		return this.bounds[slot] != TranspositionTable.EMPTY && this.keys[slot] == key ? slot : -1;
+	}
+
+	/**
+	 * @param score from the point of view of the player to move in the position
+	 * @param move the best move found (packed), PackedMove.NONE if there is none
+	 */
+	public void store(long key, int depth, byte bound, double score, int move)
+	{
+		int slot = (int)key & this.mask;
+		boolean isSamePosition = this.bounds[slot] != TranspositionTable.EMPTY && this.keys[slot] == key;
+		if(isSamePosition && this.depths[slot] > depth)
+		{
+			return;
+		}
+		if(this.bounds[slot] == TranspositionTable.EMPTY)
+		{
+			this.numEntries += 1;
+		}
+		this.keys[slot] = key;
+		this.scores[slot] = score;
+		// a search that found no best move (it failed low) keeps the one an earlier search of the position found
+		this.moves[slot] = move == PackedMove.NONE && isSamePosition ? this.moves[slot] : move;
+		this.depths[slot] = (byte)Math.min(depth, Byte.MAX_VALUE);
+		this.bounds[slot] = bound;
+	}
+
+	/**
+	 * @return whether an entry of the given depth and bound settles a search of depth with window (alpha, beta), all
+	 *         scores from the same point of view
+	 */
+	public static boolean isUsable(int entryDepth, byte bound, double score, int depth, double alpha, double beta)
+	{
+		return entryDepth >= depth && (bound == TranspositionTable.EXACT ||
+			(bound == TranspositionTable.LOWER_BOUND && score >= beta) ||
+			(bound == TranspositionTable.UPPER_BOUND && score <= alpha));
+	}
+
+	/**
+	 * @return the bound the result of a search with window (alpha, beta) is, all from the same point of view
+	 */
+	public static byte getBound(double score, double alpha, double beta)
+	{
+		return score <= alpha ? TranspositionTable.UPPER_BOUND
+			: (score >= beta ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT);
+	}
+
+	/**
+	 * @return bound seen from the other player's point of view (the score negated)
+	 */
+	public static byte flipBound(byte bound)
+	{
+		return bound == TranspositionTable.LOWER_BOUND ? TranspositionTable.UPPER_BOUND
+			: (bound == TranspositionTable.UPPER_BOUND ? TranspositionTable.LOWER_BOUND : bound);
+	}
+
+	public void clear()
+	{
+		Arrays.fill(this.bounds, TranspositionTable.EMPTY);
+		this.numEntries = 0;
+	}
+
+}
@@ -0,0 +1,335 @@
+package src.pas.chess.selfplay;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.piece.PieceType;
+
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.utils.Fen;
+
+
+/**
+ * A file of self-play positions (see SelfPlayGenerator): an 8 byte header followed by fixed-width records, so record i
+ * is at HEADER_SIZE + i * RECORD_SIZE and a file cut off mid-write loses at most its last, partial, record.
+ *
+ * Header: MAGIC (int), VERSION (byte), RECORD_SIZE (byte), 2 reserved bytes. Record (big endian):
+ *     0..31   the board, one nibble per square (high nibble first), squares in FEN order (a8, b8, ..., h1):
+ *             0 empty, 1 + PieceType ordinal for a white piece, 9 + PieceType ordinal for a black one
+ *     32      bit 0: black to move, bits 1..4: castling rights K, Q, k, q
+ *     33      the depth the position was searched to
+ *     34..35  the ply of the game the position is from (unsigned)
+ *     36..37  the search score from white's point of view in tenths of a CustomHeuristics unit (so a pawn is about
+ *             100), within +-MAX_SCORE; +-MATE_SCORE when the search found a forced mate
+ *     38      the game's result as 2 * white's score: 0 black won, 1 draw, 2 white won
+ *     39      reserved
+ * Records are read through a read only mapping of the file.
+ */
+public class SelfPlayData
+    extends Object
+{
+
+	public static final int MAGIC = 0x34343053;   // "440S"
+	public static final byte VERSION = 1;
+	public static final int HEADER_SIZE = 8;
+	public static final int RECORD_SIZE = 40;
+	public static final String FILE_EXTENSION = ".selfplay";
+
+	public static final double SCORE_SCALE = 10.0;
+	public static final short MAX_SCORE = 31999;
+	public static final short MATE_SCORE = 32000;
+
+	private static final int BOARD_SIZE = 32;
+	private static final int FLAGS_OFFSET = 32;
+	private static final int DEPTH_OFFSET = 33;
+	private static final int PLY_OFFSET = 34;
+	private static final int SCORE_OFFSET = 36;
+	private static final int RESULT_OFFSET = 38;
+	private static final int BLACK_PIECE = 8;
+	private static final String CASTLING_SYMBOLS = "KQkq";
+	private static final PieceType[] PIECE_TYPES = PieceType.values();
+
+	private final Path path;
+	private final ByteBuffer records;      // the records only, record i at i * RECORD_SIZE
+
+	private SelfPlayData(Path path, ByteBuffer records)
+	{
+		this.path = path;
+		this.records = records;
+	}
+
+	public Path getPath() { return this.path; }
+	public int size() { return this.records.capacity() / SelfPlayData.RECORD_SIZE; }
+
+	public int getDepth(int recordIdx)
+	{
+		return this.records.get(this.getOffset(recordIdx) + SelfPlayData.DEPTH_OFFSET);
+	}
+
+	public int getPly(int recordIdx)
+	{
+		return this.records.getShort(this.getOffset(recordIdx) + SelfPlayData.PLY_OFFSET) & 0xffff;
+	}
+
+	public int getRawScore(int recordIdx)
+	{
+		return this.records.getShort(this.getOffset(recordIdx) + SelfPlayData.SCORE_OFFSET);
+	}
+
+	/**
+	 * @return white's score in the game the position is from: 1, 0.5 or 0
+	 */
+	public double getWhiteScore(int recordIdx)
+	{
+		return this.records.get(this.getOffset(recordIdx) + SelfPlayData.RESULT_OFFSET) / 2.0;
+	}
+
+	/**
+	 * @return the search score from white's point of view in CustomHeuristics units, +-infinity for a forced mate
+	 */
+	public double getScore(int recordIdx)
+	{
+		int rawScore = this.getRawScore(recordIdx);
+		if(Math.abs(rawScore) >= SelfPlayData.MATE_SCORE)
+		{
+			return rawScore > 0 ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+		}
+		return rawScore / SelfPlayData.SCORE_SCALE;
+	}
+
+	/**
+	 * @return the position as FEN (the game does not track en passant and move counters, see Fen.toFen(Game))
+	 */
+	public String getFen(int recordIdx)
+	{
+		int offset = this.getOffset(recordIdx);
+		StringBuilder builder = new StringBuilder(90);
+		for(int rank = 0; rank < 8; ++rank)
+		{
+			int numEmpty = 0;
+			for(int file = 0; file < 8; ++file)
+			{
+				int square = 8 * rank + file;
+				int nibble = (this.records.get(offset + square / 2) >> (square % 2 == 0 ? 4 : 0)) & 0xf;
+				if(nibble == 0)
+				{
+					numEmpty += 1;
+					continue;
+				}
+				if(numEmpty > 0)
+				{
+					builder.append(numEmpty);
+					numEmpty = 0;
+				}
+				char symbol = Fen.getPieceSymbol(SelfPlayData.PIECE_TYPES[(nibble & 0x7) - 1]);
+				builder.append((nibble & SelfPlayData.BLACK_PIECE) != 0 ? symbol : Character.toUpperCase(symbol));
+			}
+			if(numEmpty > 0)
+			{
+				builder.append(numEmpty);
+			}
+			if(rank < 7)
+			{
+				builder.append('/');
+			}
+		}
+
+		int flags = this.records.get(offset + SelfPlayData.FLAGS_OFFSET);
+		builder.append((flags & 1) != 0 ? " b " : " w ");
+		int numCastlingRights = builder.length();
+		for(int rightIdx = 0; rightIdx < 4; ++rightIdx)
+		{
+			if((flags & (2 << rightIdx)) != 0)
+			{
+				builder.append(SelfPlayData.CASTLING_SYMBOLS.charAt(rightIdx));
+			}
+		}
+		if(builder.length() == numCastlingRights)
+		{
+			builder.append('-');
+		}
+		return builder.append(" - 0 1").toString();
+	}
+
+	public Game getGame(int recordIdx)
+	{
+		return Fen.parse(this.getFen(recordIdx));
+	}
+
+	private int getOffset(int recordIdx)
+	{
+		return recordIdx * SelfPlayData.RECORD_SIZE;
+	}
+
+	/**
+	 * Map a file for reading. A trailing partial record is ignored.
+	 */
+	public static SelfPlayData read(Path path) throws IOException
+	{
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+		{
+			long fileSize = channel.size();
+			ByteBuffer header = ByteBuffer.allocate(SelfPlayData.HEADER_SIZE);
+			while(header.hasRemaining() && channel.read(header) >= 0)
+			{
+				// keep reading
+			}
+			header.flip();
+			if(header.remaining() < SelfPlayData.HEADER_SIZE || header.getInt() != SelfPlayData.MAGIC ||
+			   header.get() != SelfPlayData.VERSION || header.get() != SelfPlayData.RECORD_SIZE)
+			{
+				throw new IOException("SelfPlayData.read [ERROR]: " + path + " is not a self-play file of version " +
+					SelfPlayData.VERSION);
+			}
+
+			long numRecords = (fileSize - SelfPlayData.HEADER_SIZE) / SelfPlayData.RECORD_SIZE;
+			if(numRecords * SelfPlayData.RECORD_SIZE > Integer.MAX_VALUE)
+			{
+				throw new IOException("SelfPlayData.read [ERROR]: " + path + " has more records than one mapping holds");
+			}
+			MappedByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, SelfPlayData.HEADER_SIZE,
+				numRecords * SelfPlayData.RECORD_SIZE);
+			return new SelfPlayData(path, records);
+		}
+	}
+
+	public static ByteBuffer newHeader()
+	{
+		ByteBuffer header = ByteBuffer.allocate(SelfPlayData.HEADER_SIZE);
+		header.putInt(SelfPlayData.MAGIC).put(SelfPlayData.VERSION).put((byte)SelfPlayData.RECORD_SIZE).putShort((short)0);
+		header.flip();
+		return header;
+	}
+
+	/**
+	 * Append the record of game's position to buffer. The result is not known yet, see setResult.
+	 * @param whiteScore the search score from white's point of view (NaN if there is none, stored as 0)
+	 */
+	public static void putRecord(ByteBuffer buffer, Game game, int depth, int ply, double whiteScore)
+	{
+		String fen = Fen.toFen(game);
+		int start = buffer.position();
+		byte[] board = new byte[SelfPlayData.BOARD_SIZE];
+		int square = 0;
+		int charIdx = 0;
+		for(; fen.charAt(charIdx) != ' '; ++charIdx)
+		{
+			char c = fen.charAt(charIdx);
+			if(c == '/')
+			{
+				continue;
+			}
+			if(Character.isDigit(c))
+			{
+				square += c - '0';
+				continue;
+			}
+			int nibble = 1 + Fen.getPieceType(c).ordinal() + (Character.isLowerCase(c) ? SelfPlayData.BLACK_PIECE : 0);
+			board[square / 2] |= (byte)(square % 2 == 0 ? nibble << 4 : nibble);
+			square += 1;
+		}
+
+		int flags = fen.charAt(charIdx + 1) == 'b' ? 1 : 0;
+		for(charIdx += 3; fen.charAt(charIdx) != ' '; ++charIdx)
+		{
+			int rightIdx = SelfPlayData.CASTLING_SYMBOLS.indexOf(fen.charAt(charIdx));
+			if(rightIdx >= 0)
+			{
+				flags |= 2 << rightIdx;
+			}
+		}
+
+		buffer.put(board);
+		buffer.put((byte)flags);
+		buffer.put((byte)depth);
+		buffer.putShort((short)Math.min(ply, 0xffff));
+		buffer.putShort(SelfPlayData.toRawScore(whiteScore));
+		buffer.put((byte)0);
+		buffer.put((byte)0);
+		assert buffer.position() - start == SelfPlayData.RECORD_SIZE;
+	}
+
+	/**
+	 * Set the result of every record in buffer (from its start to its position), i.e. of a finished game.
+	 */
+	public static void setResult(ByteBuffer buffer, double whiteScore)
+	{
+		for(int offset = 0; offset < buffer.position(); offset += SelfPlayData.RECORD_SIZE)
+		{
+			buffer.put(offset + SelfPlayData.RESULT_OFFSET, (byte)Math.round(2.0 * whiteScore));
+		}
+	}
+
+	public static short toRawScore(double whiteScore)
+	{
+		if(Double.isNaN(whiteScore))
+		{
+			return 0;
+		}
+		if(Math.abs(whiteScore) >= Double.MAX_VALUE)
+		{
+			return whiteScore > 0 ? SelfPlayData.MATE_SCORE : -SelfPlayData.MATE_SCORE;
+		}
+		long rawScore = Math.round(whiteScore * SelfPlayData.SCORE_SCALE);
+		return (short)Math.max(-SelfPlayData.MAX_SCORE, Math.min(SelfPlayData.MAX_SCORE, rawScore));
+	}
+
+	/**
+	 * Print a summary of a file, or with --fen write its positions as a FEN corpus (one per line, the format
+	 * PositionCorpus and the benchmarks read), with --labeled followed by the result (the format TexelTuner reads).
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if(args.length < 1 || args.length > 2 || (args.length == 2 && !args[1].equals("--fen") &&
+		   !args[1].equals("--labeled")))
+		{
+			System.err.println("Usage: java src.pas.chess.selfplay.SelfPlayData <file" + SelfPlayData.FILE_EXTENSION +
+				"> [--fen | --labeled]");
+			System.exit(-1);
+		}
+
+		SelfPlayData data = SelfPlayData.read(Paths.get(args[0]));
+		if(args.length == 2)
+		{
+			boolean labeled = args[1].equals("--labeled");
+			BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+			for(int recordIdx = 0; recordIdx < data.size(); ++recordIdx)
+			{
+				writer.write(data.getFen(recordIdx));
+				if(labeled)
+				{
+					writer.write(' ');
+					writer.write(String.valueOf(data.getWhiteScore(recordIdx)));
+				}
+				writer.newLine();
+			}
+			writer.flush();
+			return;
+		}
+
+		int[] numResults = new int[3];
+		int numMates = 0;
+		for(int recordIdx = 0; recordIdx < data.size(); ++recordIdx)
+		{
+			numResults[(int)Math.round(2.0 * data.getWhiteScore(recordIdx))] += 1;
+			numMates += Double.isInfinite(data.getScore(recordIdx)) ? 1 : 0;
+		}
+		System.out.println(String.format(Locale.ROOT, "%s: %d positions (from games white won %d, drawn %d, lost %d)," +
+			" %d with a forced mate", args[0], data.size(), numResults[2], numResults[1], numResults[0], numMates));
+	}
+
+}
@@ -0,0 +1,309 @@
+package src.pas.chess.selfplay;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.move.Move;
+import edu.bu.chess.game.move.MoveType;
+import edu.bu.chess.game.player.Player;
+import edu.bu.chess.game.player.PlayerType;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.history.GameHistory;
+import src.pas.chess.match.EngineFactory;
+import src.pas.chess.match.GameOutcome;
+import src.pas.chess.match.MatchRunner;
+import src.pas.chess.match.SearcherEngine;
+import src.pas.chess.utils.Fen;
+import src.pas.chess.utils.PositionCorpus;
+
+
+/**
+ * Generates training and test positions by self-play: many games of one engine against itself run concurrently (like
+ * MatchRunner, directly on Game, one game per worker at a time), each starting with a random number of random moves
+ * from an opening so no two games are alike. Every position a search was run on is recorded with the search's score
+ * and, once the game is over, its result, in the fixed-width format of SelfPlayData; SelfPlayWriter batches the games
+ * of all workers into large writes.
+ *
+ * Games are not timed: the engine searches to its fixed depth every move. A game is a draw by stalemate, bare kings,
+ * threefold repetition, or when it reaches maxPlies. A game the engine cannot finish (a searcher error) is dropped.
+ *
+ * Usage:
+ *     java -cp "./lib/*:." src.pas.chess.selfplay.SelfPlayGenerator <engine> [--games N] [--threads T]
+ *         [--min-random-plies N] [--max-random-plies N] [--max-plies N] [--openings path] [--out path] [--seed S]
+ *         [--append]
+ * The engine is an EngineFactory spec of a searcher, e.g. AlphaBetaAgent:2. The output feeds TexelTuner directly and
+ * the benchmarks through SelfPlayData --fen.
+ */
+public class SelfPlayGenerator
+    extends Object
+{
+
+	public static final int DEFAULT_NUM_GAMES = 1000;
+	public static final int DEFAULT_MIN_RANDOM_PLIES = 4;
+	public static final int DEFAULT_MAX_RANDOM_PLIES = 12;
+	public static final int DEFAULT_MAX_PLIES = 200;
+	public static final String DEFAULT_OUT_PATH = "output/selfplay/positions" + SelfPlayData.FILE_EXTENSION;
+
+	private static final int MAX_OPENING_ATTEMPTS = 16;
+
+	/**
+	 * One self-play game, played on the calling thread and written to the shared writer when it is over.
+	 */
+	public static class SelfPlayGame
+	    extends Object
+	    implements Callable<Integer>
+	{
+		private final EngineFactory factory;
+		private final String openingFen;
+		private final Random random;
+		private final int numRandomPlies;
+		private final int maxPlies;
+		private final SelfPlayWriter writer;
+
+		public SelfPlayGame(EngineFactory factory, String openingFen, long seed, int minRandomPlies, int maxRandomPlies,
+		                    int maxPlies, SelfPlayWriter writer)
+		{
+			this.factory = factory;
+			this.openingFen = openingFen;
+			this.random = new Random(seed);
+			this.numRandomPlies = minRandomPlies + this.random.nextInt(maxRandomPlies - minRandomPlies + 1);
+			this.maxPlies = maxPlies;
+			this.writer = writer;
+		}
+
+		public EngineFactory getFactory() { return this.factory; }
+		public String getOpeningFen() { return this.openingFen; }
+		public Random getRandom() { return this.random; }
+		public int getNumRandomPlies() { return this.numRandomPlies; }
+		public int getMaxPlies() { return this.maxPlies; }
+		public SelfPlayWriter getWriter() { return this.writer; }
+
+		/**
+		 * @return the number of positions written, 0 if the game was dropped
+		 */
+		@Override
+		public Integer call() throws IOException
+		{
+			Game game = this.playOpening();
+			if(game == null)
+			{
+				return 0;
+			}
+
+			SearcherEngine whiteEngine = (SearcherEngine)this.getFactory().makeEngine();
+			SearcherEngine blackEngine = (SearcherEngine)this.getFactory().makeEngine();
+			GameHistory history = new GameHistory(game);
+			ByteBuffer records = ByteBuffer.allocate((this.getMaxPlies() + 1) * SelfPlayData.RECORD_SIZE);
+
+			GameOutcome outcome = null;
+			try
+			{
+				for(int ply = this.getNumRandomPlies(); outcome == null; ++ply)
+				{
+					Player player = game.getCurrentPlayer();
+					boolean isWhite = player.getPlayerType() == PlayerType.WHITE;
+					GameOutcome loss = isWhite ? GameOutcome.BLACK_WIN : GameOutcome.WHITE_WIN;
+					if(game.getAllMoves(player).isEmpty())
+					{
+						outcome = game.isInCheck(player) ? loss : GameOutcome.DRAW;
+						break;
+					}
+					if((game.getBoard().getPieces(game.getWhitePlayer()).size() == 1 &&
+					    game.getBoard().getPieces(game.getBlackPlayer()).size() == 1) ||
+					   history.getRepetitionCount() >= MatchRunner.REPETITIONS_FOR_DRAW || ply >= this.getMaxPlies())
+					{
+						outcome = GameOutcome.DRAW;
+						break;
+					}
+
+					SearcherEngine engine = isWhite ? whiteEngine : blackEngine;
+					Move move = engine.getChessMove(history);
+					if(move == null)
+					{
+						outcome = loss;
+						break;
+					}
+					double score = engine.getLastScore();
+					SelfPlayData.putRecord(records, game, engine.getMaxDepth(), ply, isWhite ? score : -score);
+					game = history.addMove(move);
+				}
+			} catch(RuntimeException e)
+			{
+				System.err.println("SelfPlayGenerator.SelfPlayGame.call [WARNING]: dropping a game from " +
+					this.getOpeningFen() + ": " + e);
+				return 0;
+			}
+
+			SelfPlayData.setResult(records, outcome.getWhiteScore());
+			this.getWriter().writeGame(records);
+			return records.position() / SelfPlayData.RECORD_SIZE;
+		}
+
+		/**
+		 * Play the random moves. Castling is left out: the game can offer it to a king that already left its square.
+		 * @return the position after them, null if every attempt ended the game first
+		 */
+		private Game playOpening()
+		{
+			for(int attempt = 0; attempt < SelfPlayGenerator.MAX_OPENING_ATTEMPTS; ++attempt)
+			{
+				Game game = Fen.parse(this.getOpeningFen());
+				int ply = 0;
+				for(; ply < this.getNumRandomPlies(); ++ply)
+				{
+					List<Move> moves = new ArrayList<Move>();
+					for(Move move : game.getAllMoves(game.getCurrentPlayer()))
+					{
+						if(move.getType() != MoveType.CASTLEMOVE)
+						{
+							moves.add(move);
+						}
+					}
+					if(moves.isEmpty())
+					{
+						break;
+					}
+					game = game.applyMove(moves.get(this.getRandom().nextInt(moves.size())));
+				}
+				if(ply == this.getNumRandomPlies() && !game.getAllMoves(game.getCurrentPlayer()).isEmpty())
+				{
+					return game;
+				}
+			}
+			return null;
+		}
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException, ExecutionException
+	{
+		if(args.length < 1)
+		{
+			System.err.println("Usage: java src.pas.chess.selfplay.SelfPlayGenerator <engine> [--games N] [--threads T]" +
+				" [--min-random-plies N] [--max-random-plies N] [--max-plies N] [--openings path] [--out path]" +
+				" [--seed S] [--append]");
+			System.exit(-1);
+		}
+
+		int numGames = SelfPlayGenerator.DEFAULT_NUM_GAMES;
+		int numThreads = Runtime.getRuntime().availableProcessors();
+		int minRandomPlies = SelfPlayGenerator.DEFAULT_MIN_RANDOM_PLIES;
+		int maxRandomPlies = SelfPlayGenerator.DEFAULT_MAX_RANDOM_PLIES;
+		int maxPlies = SelfPlayGenerator.DEFAULT_MAX_PLIES;
+		String openingsPath = null;
+		String outPath = SelfPlayGenerator.DEFAULT_OUT_PATH;
+		long seed = 0;
+		boolean append = false;
+		for(int argIdx = 1; argIdx < args.length; argIdx += 2)
+		{
+			if(args[argIdx].equals("--append"))
+			{
+				append = true;
+				argIdx -= 1;
+				continue;
+			}
+			if(argIdx + 1 >= args.length)
+			{
+				System.err.println("SelfPlayGenerator.main [ERROR]: missing value for option=" + args[argIdx]);
+				System.exit(-1);
+			}
+			switch(args[argIdx])
+			{
+			case "--games":
+				numGames = Integer.parseInt(args[argIdx + 1]);
+				break;
+			case "--threads":
+				numThreads = Integer.parseInt(args[argIdx + 1]);
+				break;
+			case "--min-random-plies":
+				minRandomPlies = Integer.parseInt(args[argIdx + 1]);
+				break;
+			case "--max-random-plies":
+				maxRandomPlies = Integer.parseInt(args[argIdx + 1]);
+				break;
+			case "--max-plies":
+				maxPlies = Integer.parseInt(args[argIdx + 1]);
+				break;
+			case "--openings":
+				openingsPath = args[argIdx + 1];
+				break;
+			case "--out":
+				outPath = args[argIdx + 1];
+				break;
+			case "--seed":
+				seed = Long.parseLong(args[argIdx + 1]);
+				break;
+			default:
+				System.err.println("SelfPlayGenerator.main [ERROR]: unknown option=" + args[argIdx]);
+				System.exit(-1);
+			}
+		}
+		if(minRandomPlies < 0 || maxRandomPlies < minRandomPlies || maxPlies <= maxRandomPlies)
+		{
+			System.err.println("SelfPlayGenerator.main [ERROR]: expected 0 <= min-random-plies <= max-random-plies <" +
+				" max-plies");
+			System.exit(-1);
+		}
+
+		EngineFactory factory = EngineFactory.fromSpec(args[0], seed);
+		if(!(factory.makeEngine() instanceof SearcherEngine))
+		{
+			System.err.println("SelfPlayGenerator.main [ERROR]: engine=" + args[0] + " does not search");
+			System.exit(-1);
+		}
+		List<String> openings = openingsPath != null ? PositionCorpus.load(openingsPath).getFens()
+			: Arrays.asList(Fen.STARTING_POSITION);
+
+		ExecutorService threadPool = Executors.newFixedThreadPool(numThreads);
+		long startTime = System.nanoTime();
+		try(SelfPlayWriter writer = new SelfPlayWriter(Paths.get(outPath), append))
+		{
+			CompletionService<Integer> completionService = new ExecutorCompletionService<Integer>(threadPool);
+			for(int gameIdx = 0; gameIdx < numGames; ++gameIdx)
+			{
+				completionService.submit(new SelfPlayGame(factory, openings.get(gameIdx % openings.size()), seed + gameIdx,
+					minRandomPlies, maxRandomPlies, maxPlies, writer));
+			}
+
+			long numPositions = 0;
+			int numDroppedGames = 0;
+			int reportInterval = Math.max(numGames / 20, 1);
+			for(int numFinishedGames = 1; numFinishedGames <= numGames; ++numFinishedGames)
+			{
+				int numGamePositions = completionService.take().get();
+				numPositions += numGamePositions;
+				numDroppedGames += numGamePositions == 0 ? 1 : 0;
+				if(numFinishedGames % reportInterval == 0 || numFinishedGames == numGames)
+				{
+					double elapsedMinutes = (System.nanoTime() - startTime) / 6e10;
+					System.out.println(String.format(Locale.ROOT, "%d/%d games (%d dropped), %d positions, %.0f" +
+						" positions/minute", numFinishedGames, numGames, numDroppedGames, numPositions,
+						numPositions / elapsedMinutes));
+				}
+			}
+			System.out.println("wrote " + writer.getNumRecords() + " positions to " + writer.getPath());
+		} finally
+		{
+			threadPool.shutdownNow();
+			factory.close();
+		}
+	}
+
+}
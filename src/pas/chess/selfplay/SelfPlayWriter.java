@@ -0,0 +1,116 @@
+package src.pas.chess.selfplay;
+
+
+// SYSTEM IMPORTS
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Appends the records of finished games to a SelfPlayData file. Games come from many threads: each adds its whole game
+ * at once (writeGame), which is copied into one large direct buffer that goes to the FileChannel whenever it fills up,
+ * so the file sees a few large writes instead of one per position.
+ */
+public class SelfPlayWriter
+    extends Object
+    implements AutoCloseable
+{
+
+	public static final int DEFAULT_BUFFER_SIZE = SelfPlayData.RECORD_SIZE * (1 << 15);
+
+	private final Path path;
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+	private long numRecords;
+
+	/**
+	 * @param append whether to add to an existing file (which has to be a SelfPlayData file) instead of replacing it
+	 */
+	public SelfPlayWriter(Path path, boolean append) throws IOException
+	{
+		File parent = path.toAbsolutePath().getParent().toFile();
+		parent.mkdirs();
+
+		this.path = path;
+		this.buffer = ByteBuffer.allocateDirect(SelfPlayWriter.DEFAULT_BUFFER_SIZE);
+		if(append && path.toFile().length() > 0)
+		{
+			// validates the header, and drops a partial record a crash may have left at the end
+			long numExistingRecords = SelfPlayData.read(path).size();
+			this.channel = FileChannel.open(path, StandardOpenOption.WRITE);
+			this.channel.truncate(SelfPlayData.HEADER_SIZE + numExistingRecords * SelfPlayData.RECORD_SIZE);
+			this.channel.position(this.channel.size());
+			this.numRecords = numExistingRecords;
+		} else
+		{
+			this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+			this.write(SelfPlayData.newHeader());
+			this.numRecords = 0;
+		}
+	}
+
+	public Path getPath() { return this.path; }
+
+	/**
+	 * @return how many records the file holds, including the ones still buffered
+	 */
+	public synchronized long getNumRecords() { return this.numRecords; }
+
+	/**
+	 * Add the records of a game.
+	 * @param records a buffer of whole records, from its start to its position (see SelfPlayData.putRecord)
+	 */
+	public synchronized void writeGame(ByteBuffer records) throws IOException
+	{
+		ByteBuffer game = records.duplicate();
+		game.flip();
+		this.numRecords += game.remaining() / SelfPlayData.RECORD_SIZE;
+		if(game.remaining() > this.buffer.remaining())
+		{
+			this.flush();
+		}
+		if(game.remaining() > this.buffer.remaining())
+		{
+			this.write(game);
+		} else
+		{
+			this.buffer.put(game);
+		}
+	}
+
+	public synchronized void flush() throws IOException
+	{
+		this.buffer.flip();
+		this.write(this.buffer);
+		this.buffer.clear();
+	}
+
+	@Override
+	public synchronized void close() throws IOException
+	{
+		try
+		{
+			this.flush();
+		} finally
+		{
+			this.channel.close();
+		}
+	}
+
+	private void write(ByteBuffer source) throws IOException
+	{
+		while(source.hasRemaining())
+		{
+			this.channel.write(source);
+		}
+	}
+
+}
@@ -0,0 +1,134 @@
+package src.pas.chess.sepia;
+
+
+// SYSTEM IMPORTS
+import edu.cwru.sepia.action.ActionQueue;
+import edu.cwru.sepia.environment.model.BestEffortModel;
+import edu.cwru.sepia.environment.model.state.State;
+import edu.cwru.sepia.environment.model.state.StateCreator;
+import edu.cwru.sepia.experiment.Configuration;
+
+
+import java.lang.reflect.Field;
+import java.util.Map;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * A BestEffortModel that runs every queued compound action (the MovementCommand/PromotePawnCommand actions the
+ * Planner hands out) to completion inside a single environment step. A piece that slides over n squares normally takes
+ * n SEPIA steps, each of which polls every agent (and redraws the VisualAgent) while nobody has anything to say; here
+ * the environment only comes back to the agents once the units are idle again.
+ *
+ * Select it in the config XML instead of the default model:
+ *     &lt;Parameter Name="environment.model.class" Value="src.pas.chess.sepia.FastForwardModel" /&gt;
+ * and optionally bound the number of model steps per environment step (a compound move that keeps failing is retried
+ * by the model, this stops it from retrying forever within one step):
+ *     &lt;Parameter Name="environment.model.fastforward.maxsteps" Value="64" /&gt;
+ *
+ * Every model step still executes (and logs) exactly one round of primitive actions, in the same order as
+ * BestEffortModel, so the chess moves, the outcome and the saved replay are unchanged. The agents are just not
+ * consulted between the primitives of a compound action (the Planner would only have handed out the same action again).
+ */
+public class FastForwardModel
+    extends BestEffortModel
+{
+
+	private static final long serialVersionUID = 4631752096513877610L;
+
+	public static final String MAX_STEPS_KEY = "environment.model.fastforward.maxsteps";
+	public static final int DEFAULT_MAX_STEPS = 64;
+
+	/**
+	 * BestEffortModel keeps the in flight compound actions to itself: player id -> unit id -> remaining primitives.
+	 */
+	private static final Field QUEUED_ACTIONS_FIELD = FastForwardModel.getQueuedActionsField();
+
+	private final int maxSteps;
+	private long numModelSteps;
+	private long numEnvironmentSteps;
+
+	/**
+	 * The constructor the SEPIA runners look up for environment.model.class.
+	 */
+	public FastForwardModel(State initState, int seed, StateCreator restartTactic, Configuration configuration)
+	{
+		super(initState, seed, restartTactic, configuration);
+		this.maxSteps = configuration != null
+			? configuration.getInt(FastForwardModel.MAX_STEPS_KEY, FastForwardModel.DEFAULT_MAX_STEPS)
+			: FastForwardModel.DEFAULT_MAX_STEPS;
+		if(this.maxSteps < 1)
+		{
+			throw new IllegalArgumentException("FastForwardModel.FastForwardModel [ERROR]: " + FastForwardModel.MAX_STEPS_KEY +
+				" must be positive, got " + this.maxSteps);
+		}
+		this.numModelSteps = 0;
+		this.numEnvironmentSteps = 0;
+	}
+
+	public int getMaxSteps() { return this.maxSteps; }
+
+	/**
+	 * @return the number of BestEffortModel steps executed so far, compare to getNumEnvironmentSteps()
+	 */
+	public long getNumModelSteps() { return this.numModelSteps; }
+	public long getNumEnvironmentSteps() { return this.numEnvironmentSteps; }
+
+	@Override
+	public void executeStep()
+	{
+		int numSteps = 0;
+		do
+		{
+			super.executeStep();
+			numSteps += 1;
+		} while(numSteps < this.getMaxSteps() && !this.isTerminated() && this.hasQueuedPrimitives());
+
+		this.numModelSteps += numSteps;
+		this.numEnvironmentSteps += 1;
+	}
+
+	/**
+	 * @return whether some unit is still in the middle of a compound action
+	 */
+	@SuppressWarnings("unchecked")
+	private boolean hasQueuedPrimitives()
+	{
+		Map<Integer, Map<Integer, ActionQueue> > queuedActions = null;
+		try
+		{
+			queuedActions = (Map<Integer, Map<Integer, ActionQueue> >)FastForwardModel.QUEUED_ACTIONS_FIELD.get(this);
+		} catch(IllegalAccessException e)
+		{
+			throw new IllegalStateException("FastForwardModel.hasQueuedPrimitives [ERROR]: unable to read the action queues", e);
+		}
+
+		for(Map<Integer, ActionQueue> unitQueues : queuedActions.values())
+		{
+			for(ActionQueue queue : unitQueues.values())
+			{
+				if(queue.hasNext())
+				{
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static Field getQueuedActionsField()
+	{
+		try
+		{
+			Field field = BestEffortModel.class.getDeclaredField("queuedActions");
+			field.setAccessible(true);
+			return field;
+		} catch(NoSuchFieldException e)
+		{
+			throw new IllegalStateException("FastForwardModel.getQueuedActionsField [ERROR]: BestEffortModel has no action queues", e);
+		}
+	}
+
+}
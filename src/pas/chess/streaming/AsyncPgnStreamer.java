@@ -0,0 +1,557 @@
+package src.pas.chess.streaming;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.move.Move;
+import edu.bu.chess.game.player.Player;
+import edu.bu.chess.game.player.PlayerType;
+import edu.bu.chess.streaming.Streamer;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.match.GameOutcome;
+import src.pas.chess.utils.Fen;
+import src.pas.chess.utils.MoveNotation;
+
+
+/**
+ * A Streamer that writes the game as PGN from a background thread. streamMove only queues the move (with the clock and
+ * the searcher's evaluation, both taken when it is called); the writer thread keeps its own copy of the position,
+ * renders the SAN, and writes everything that queued up while it was busy in one go. Only the first move of a game
+ * copies the caller's Game (a deep copy of the library board costs milliseconds).
+ *
+ * The file always holds valid PGN: the game in progress has [Result "*"], ends in the "*" game termination marker, and
+ * grows a move (with a { [%clk h:mm:ss] [%eval e] } comment, eval in pawns from white's point of view) at a time,
+ * written over the marker and followed by a new one; finishGame rewrites it with the real result. A promotion turn rewrites it too, with the promotion in its pawn move ("exf8=Q+", see
+ * MoveNotation.foldPromotions). Several games (SEPIA episodes) go into the same file one after the other.
+ *
+ * There is one streamer per file (forFile), shared by both agents when they stream to the same file. Moves have to be
+ * streamed in the order they are played, which the Planner's turns already guarantee.
+ */
+public class AsyncPgnStreamer
+    extends Streamer
+{
+
+	public static final int MAX_LINE_LENGTH = 80;
+	public static final long FLUSH_TIMEOUT_IN_MS = 5000;
+
+	private static final ConcurrentHashMap<String, AsyncPgnStreamer> STREAMERS =
+		new ConcurrentHashMap<String, AsyncPgnStreamer>();
+
+	/**
+	 * What the writer thread works through: a move, the end of a game, or a flush request.
+	 */
+	private static class Entry
+	    extends Object
+	{
+		private final Move move;
+		private final Game startGame;      // the position the move was played from, only on the first move of a game
+		private final long clockInMS;      // time left of the player that moved, < 0 if unknown
+		private final double whiteEval;    // NaN if unknown
+		private final String result;       // set for the end of a game
+		private final CountDownLatch flushed;
+
+		private Entry(Move move, Game startGame, long clockInMS, double whiteEval, String result, CountDownLatch flushed)
+		{
+			this.move = move;
+			this.startGame = startGame;
+			this.clockInMS = clockInMS;
+			this.whiteEval = whiteEval;
+			this.result = result;
+			this.flushed = flushed;
+		}
+
+		public Move getMove() { return this.move; }
+		public Game getStartGame() { return this.startGame; }
+		public long getClockInMS() { return this.clockInMS; }
+		public double getWhiteEval() { return this.whiteEval; }
+		public String getResult() { return this.result; }
+		public CountDownLatch getFlushed() { return this.flushed; }
+	}
+
+	private final LinkedBlockingQueue<Entry> queue;
+	private final Thread writerThread;
+	private final String[] playerNames;    // indexed by PlayerType ordinal
+	private volatile boolean closed;
+	private boolean gameStarted;           // whether the writer already has the position of the game in progress
+
+	// only touched by the writer thread
+	private RandomAccessFile file;
+	private Game game;                     // the position the next move is played from
+	private int gameIdx;
+	private long gameStartOffset;          // where the game in progress starts in the file, < 0 if there is none
+	private int endLength;                 // bytes of the game in progress's "*" at the end of the file, 0 if none
+	private String startFen;
+	private StringBuilder movetext;
+	private final List<String> tokens;                 // the movetext, token by token
+	private final Map<String, Integer> promotingTokens; // square -> token of the pawn move waiting for its promotion
+	private int lineLength;
+	private int moveNumber;
+	private boolean needsMoveNumber;
+
+	private AsyncPgnStreamer(String filePath)
+	{
+		super(filePath);
+		this.queue = new LinkedBlockingQueue<Entry>();
+		this.playerNames = new String[]{"?", "?"};
+		this.closed = false;
+		this.gameStarted = false;
+
+		this.file = null;
+		this.game = null;
+		this.gameIdx = 0;
+		this.gameStartOffset = -1;
+		this.endLength = 0;
+		this.startFen = null;
+		this.movetext = new StringBuilder(1024);
+		this.tokens = new ArrayList<String>();
+		this.promotingTokens = new HashMap<String, Integer>();
+		this.lineLength = 0;
+		this.moveNumber = 1;
+		this.needsMoveNumber = true;
+
+		this.writerThread = new Thread(this::writeLoop, "AsyncPgnStreamer-" + new File(filePath).getName());
+		this.writerThread.setDaemon(true);
+		this.writerThread.start();
+	}
+
+	/**
+	 * @return the streamer of filePath, started on first use
+	 */
+	public static AsyncPgnStreamer forFile(String filePath)
+	{
+		return AsyncPgnStreamer.STREAMERS.computeIfAbsent(filePath, AsyncPgnStreamer::new);
+	}
+
+	private LinkedBlockingQueue<Entry> getQueue() { return this.queue; }
+
+	public void setPlayerName(PlayerType playerType, String name)
+	{
+		this.playerNames[playerType.ordinal()] = name;
+	}
+
+	@Override
+	public void createStream()
+	{
+		// the file is opened by the writer thread when the first move arrives
+	}
+
+	@Override
+	public void streamMove(Move move, Game game)
+	{
+		this.streamMove(move, game, game.getTimeLeftInMS(move.getActorPlayer()), Double.NaN);
+	}
+
+	/**
+	 * Queue a move. The first move of a game also copies game (the Planner keeps changing its own), everything else
+	 * happens on the writer thread.
+	 * @param game the position move was played from
+	 * @param clockInMS the time the player has left after the move, < 0 to leave out the clock comment
+	 * @param whiteEval the evaluation of the position after the move in pawns from white's point of view, NaN to leave
+	 *                  it out
+	 */
+	public synchronized void streamMove(Move move, Game game, long clockInMS, double whiteEval)
+	{
+		Game startGame = this.gameStarted ? null : game.copy();
+		this.gameStarted = true;
+		this.enqueue(new Entry(move, startGame, clockInMS, whiteEval, null, null));
+	}
+
+	/**
+	 * @param utility a search utility of maxPlayerType
+	 * @return utility from white's point of view, NaN for won or lost positions (the searchers score those as
+	 *         +-Double.MAX_VALUE, which says nothing about the distance to mate)
+	 */
+	public static double getWhiteEval(double utility, PlayerType maxPlayerType)
+	{
+		if(Double.isNaN(utility) || Math.abs(utility) >= Double.MAX_VALUE)
+		{
+			return Double.NaN;
+		}
+		return maxPlayerType == PlayerType.WHITE ? utility : -utility;
+	}
+
+	/**
+	 * End the game in progress with the result that game (the final position) shows, then wait for the writes.
+	 */
+	public void finishGame(Game game)
+	{
+		GameOutcome outcome = GameOutcome.of(game);
+		this.endGame(outcome != null ? outcome.getPgnResult() : "*");
+		this.flush();
+	}
+
+	/**
+	 * @param winner the winning player, null for a draw
+	 */
+	@Override
+	public void streamOutcome(Player winner)
+	{
+		String result = winner == null ? GameOutcome.DRAW.getPgnResult()
+			: (winner.getPlayerType() == PlayerType.WHITE ? GameOutcome.WHITE_WIN : GameOutcome.BLACK_WIN).getPgnResult();
+		this.endGame(result);
+	}
+
+	private synchronized void endGame(String result)
+	{
+		this.gameStarted = false;
+		this.enqueue(new Entry(null, null, -1, Double.NaN, result, null));
+	}
+
+	/**
+	 * Wait (up to FLUSH_TIMEOUT_IN_MS) until everything queued so far is in the file.
+	 */
+	public void flush()
+	{
+		CountDownLatch flushed = new CountDownLatch(1);
+		this.enqueue(new Entry(null, null, -1, Double.NaN, null, flushed));
+		try
+		{
+			if(!flushed.await(AsyncPgnStreamer.FLUSH_TIMEOUT_IN_MS, TimeUnit.MILLISECONDS))
+			{
+				System.err.println("AsyncPgnStreamer.flush [WARNING]: writer of " + this.getFilePath() +
+					" did not catch up within " + AsyncPgnStreamer.FLUSH_TIMEOUT_IN_MS + "ms");
+			}
+		} catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public void closeStream()
+	{
+		this.flush();
+		this.closed = true;
+		this.writerThread.interrupt();
+		AsyncPgnStreamer.STREAMERS.remove(this.getFilePath(), this);
+	}
+
+	/**
+	 * Flush and close every streamer, e.g. when the process (or an episode of ParallelExperiment) is done.
+	 */
+	public static void closeAll()
+	{
+		for(AsyncPgnStreamer streamer : AsyncPgnStreamer.STREAMERS.values())
+		{
+			streamer.closeStream();
+		}
+	}
+
+	private void enqueue(Entry entry)
+	{
+		if(this.closed)
+		{
+			throw new IllegalStateException("AsyncPgnStreamer.enqueue [ERROR]: the stream of " + this.getFilePath() +
+				" is closed");
+		}
+		this.getQueue().add(entry);
+	}
+
+	private void writeLoop()
+	{
+		List<Entry> batch = new ArrayList<Entry>();
+		try
+		{
+			while(!this.closed || !this.getQueue().isEmpty())
+			{
+				batch.add(this.getQueue().take());
+				this.getQueue().drainTo(batch);
+				this.writeBatch(batch);
+				batch.clear();
+			}
+		} catch(InterruptedException e)
+		{
+			// closed
+		} finally
+		{
+			this.closeFile();
+		}
+	}
+
+	private void writeBatch(List<Entry> batch)
+	{
+		StringBuilder appended = new StringBuilder(64 * batch.size());
+		try
+		{
+			for(Entry entry : batch)
+			{
+				if(entry.getMove() != null)
+				{
+					if(entry.getStartGame() != null)
+					{
+						this.write(appended);
+						appended.setLength(0);
+						this.writeResult("*");  // a game that was never ended, ends unfinished
+						this.startGame(entry.getStartGame());
+						appended.append(this.getHeader("*"));
+					}
+					this.appendMove(appended, entry);
+					this.game = this.game.applyMove(entry.getMove());
+				} else if(entry.getResult() != null)
+				{
+					// everything before this entry has to be in the file before the game is rewritten
+					this.write(appended);
+					appended.setLength(0);
+					this.writeResult(entry.getResult());
+				} else if(entry.getFlushed() != null)
+				{
+					this.write(appended);
+					appended.setLength(0);
+					entry.getFlushed().countDown();
+				}
+			}
+			this.write(appended);
+		} catch(IOException e)
+		{
+			System.err.println("AsyncPgnStreamer.writeBatch [ERROR]: unable to write " + this.getFilePath() + ": " + e);
+			for(Entry entry : batch)
+			{
+				if(entry.getFlushed() != null)
+				{
+					entry.getFlushed().countDown();
+				}
+			}
+		}
+	}
+
+	private void startGame(Game game) throws IOException
+	{
+		if(this.file == null)
+		{
+			File parent = new File(this.getFilePath()).getAbsoluteFile().getParentFile();
+			if(parent != null)
+			{
+				parent.mkdirs();
+			}
+			this.file = new RandomAccessFile(this.getFilePath(), "rw");
+			this.file.setLength(0);
+		}
+		this.gameIdx += 1;
+		this.gameStartOffset = this.file.length();
+		this.game = game;
+		this.startFen = Fen.toFen(game);
+		this.movetext.setLength(0);
+		this.tokens.clear();
+		this.promotingTokens.clear();
+		this.lineLength = 0;
+		this.moveNumber = 1;
+		this.needsMoveNumber = true;
+	}
+
+	private void writeResult(String result) throws IOException
+	{
+		if(this.gameStartOffset < 0)
+		{
+			return;  // both agents end the game, only the first one has anything to do
+		}
+
+		this.rewriteGame(result, this.getEnd(result));
+		this.gameStartOffset = -1;
+		this.endLength = 0;
+	}
+
+	/**
+	 * @return what ends the movetext of the game in progress: the game termination marker (result)
+	 */
+	private String getEnd(String result)
+	{
+		return (this.lineLength > 0 ? " " : "") + result + "\n\n";
+	}
+
+	/**
+	 * Write the game in progress over what the file has of it: the header with result, the movetext, then end.
+	 */
+	private void rewriteGame(String result, String end) throws IOException
+	{
+		StringBuilder game = new StringBuilder(this.movetext.length() + 512);
+		game.append(this.getHeader(result)).append(this.movetext).append(end);
+		byte[] bytes = game.toString().getBytes(StandardCharsets.UTF_8);
+		this.file.seek(this.gameStartOffset);
+		this.file.write(bytes);
+		this.file.setLength(this.gameStartOffset + bytes.length);
+		this.endLength = end.getBytes(StandardCharsets.UTF_8).length;
+	}
+
+	private String getHeader(String result)
+	{
+		StringBuilder header = new StringBuilder(256);
+		header.append("[Event \"SEPIA game\"]\n");
+		header.append("[Site \"?\"]\n");
+		header.append("[Date \"").append(LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy.MM.dd"))).append("\"]\n");
+		header.append("[Round \"").append(this.gameIdx).append("\"]\n");
+		header.append("[White \"").append(this.playerNames[PlayerType.WHITE.ordinal()]).append("\"]\n");
+		header.append("[Black \"").append(this.playerNames[PlayerType.BLACK.ordinal()]).append("\"]\n");
+		header.append("[Result \"").append(result).append("\"]\n");
+		// toFen always writes "- 0 1" for the fields Game does not have, so compare the first three
+		if(!this.startFen.startsWith(Fen.STARTING_POSITION.substring(0, Fen.STARTING_POSITION.indexOf(" - "))))
+		{
+			header.append("[SetUp \"1\"]\n");
+			header.append("[FEN \"").append(this.startFen).append("\"]\n");
+		}
+		return header.append('\n').toString();
+	}
+
+	private void appendMove(StringBuilder appended, Entry entry) throws IOException
+	{
+		Game game = this.game;
+		boolean whiteToMove = game.getCurrentPlayer().getPlayerType() == PlayerType.WHITE;
+		String san = MoveNotation.toSan(game, entry.getMove());
+		Integer pawnTokenIdx = MoveNotation.getPromotionSquare(san) != null
+			? this.promotingTokens.remove(MoveNotation.getPromotionSquare(san)) : null;
+		if(pawnTokenIdx != null)
+		{
+			// PGN has the promotion in the pawn move (see MoveNotation.foldPromotions), which is already in the file
+			this.tokens.set(pawnTokenIdx, MoveNotation.foldPromotion(this.tokens.get(pawnTokenIdx), san));
+			this.layoutTokens();
+			this.write(appended);
+			appended.setLength(0);
+			this.rewriteGame("*", this.getEnd("*"));
+
+			// a turn without a move: black's next move needs its number
+			this.needsMoveNumber = true;
+			if(!whiteToMove)
+			{
+				this.moveNumber += 1;
+			}
+			return;
+		}
+		if(MoveNotation.getPromotingSquare(san) != null)
+		{
+			this.promotingTokens.put(MoveNotation.getPromotingSquare(san), this.tokens.size());
+		}
+
+		StringBuilder token = new StringBuilder(64);
+		if(whiteToMove)
+		{
+			token.append(this.moveNumber).append(". ");
+		} else if(this.needsMoveNumber)
+		{
+			token.append(this.moveNumber).append("... ");
+		}
+		token.append(san);
+		this.appendToken(appended, token.toString());
+
+		boolean hasComment = entry.getClockInMS() >= 0 || !Double.isNaN(entry.getWhiteEval());
+		if(hasComment)
+		{
+			StringBuilder comment = new StringBuilder(40).append('{');
+			if(entry.getClockInMS() >= 0)
+			{
+				long seconds = entry.getClockInMS() / 1000;
+				comment.append(String.format(Locale.ROOT, " [%%clk %d:%02d:%02d]", seconds / 3600, (seconds / 60) % 60,
+					seconds % 60));
+			}
+			if(!Double.isNaN(entry.getWhiteEval()))
+			{
+				comment.append(String.format(Locale.ROOT, " [%%eval %.2f]", entry.getWhiteEval()));
+			}
+			this.appendToken(appended, comment.append(" }").toString());
+		}
+
+		// after a comment black's move needs its number again ("1... e5")
+		this.needsMoveNumber = hasComment;
+		if(!whiteToMove)
+		{
+			this.moveNumber += 1;
+			this.needsMoveNumber = true;
+		}
+	}
+
+	/**
+	 * Append a movetext token to the game in progress and to what goes into the file next, breaking lines at
+	 * MAX_LINE_LENGTH.
+	 */
+	private void appendToken(StringBuilder appended, String token)
+	{
+		this.tokens.add(token);
+		appended.append(this.layoutToken(token)).append(token);
+	}
+
+	/**
+	 * Append token to the movetext.
+	 * @return the separator that went before it
+	 */
+	private String layoutToken(String token)
+	{
+		String separator = "";
+		if(this.lineLength > 0 && this.lineLength + token.length() + 1 > AsyncPgnStreamer.MAX_LINE_LENGTH)
+		{
+			separator = "\n";
+			this.lineLength = 0;
+		} else if(this.lineLength > 0)
+		{
+			separator = " ";
+			this.lineLength += 1;
+		}
+		this.movetext.append(separator).append(token);
+		this.lineLength += token.length();
+		return separator;
+	}
+
+	/**
+	 * Lay the movetext out again from its tokens, after one of them changed.
+	 */
+	private void layoutTokens()
+	{
+		this.movetext.setLength(0);
+		this.lineLength = 0;
+		for(String token : this.tokens)
+		{
+			this.layoutToken(token);
+		}
+	}
+
+	/**
+	 * Append appended to the game in progress, over its "*", and end it with a new one.
+	 */
+	private void write(StringBuilder appended) throws IOException
+	{
+		if(appended.length() == 0)
+		{
+			return;
+		}
+		String end = this.gameStartOffset >= 0 ? this.getEnd("*") : "";
+		byte[] bytes = (appended + end).getBytes(StandardCharsets.UTF_8);
+		long offset = this.file.length() - this.endLength;
+		this.file.seek(offset);
+		this.file.write(bytes);
+		this.file.setLength(offset + bytes.length);
+		this.endLength = end.getBytes(StandardCharsets.UTF_8).length;
+	}
+
+	private void closeFile()
+	{
+		if(this.file == null)
+		{
+			return;
+		}
+		try
+		{
+			this.file.close();
+		} catch(IOException e)
+		{
+			System.err.println("AsyncPgnStreamer.closeFile [ERROR]: unable to close " + this.getFilePath() + ": " + e);
+		}
+		this.file = null;
+	}
+
+}
@@ -0,0 +1,305 @@
+package src.pas.chess.tuning;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.piece.Piece;
+import edu.bu.chess.game.piece.PieceType;
+import edu.bu.chess.game.player.Player;
+import edu.bu.chess.game.player.PlayerType;
+import edu.bu.chess.utils.Coordinate;
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.heuristics.HeuristicParameters;
+
+
+/**
+ * Labeled positions as sparse feature vectors, in primitive arrays (compressed rows: the features of position i are
+ * features[offsets[i]] .. features[offsets[i + 1] - 1] with their values in values[]). CustomHeuristics is linear in
+ * its parameters (once mobility has a value per piece type, see HeuristicParameters), so
+ *     getMaxPlayerHeuristicValue (white to max) = sum over the features f of a position of coefficients[f] * value(f)
+ * with the coefficients toCoefficients(parameters) computes. Extracting is the expensive part (it needs the library's
+ * move generation for mobility); evaluating and differentiating a position afterwards is a few dozen multiply-adds.
+ *
+ * Features, all counted for white minus for black, i.e. from white's point of view:
+ *     COUNT_OFFSET + type              number of pieces of a type
+ *     TABLE_OFFSET + 64 * type + 8 * row + column   pieces on a square of white's piece-square table
+ *     MOBILITY_OFFSET + type           moves of the pieces of a type
+ *     ADVANCED_PAWNS                   pawns that count as advanced
+ * Squares are looked up exactly like CustomHeuristics.getPiecePositionValue does (including the positions it rejects).
+ */
+public class TexelFeatures
+    extends Object
+{
+
+	public static final int NUM_PIECE_TYPES = HeuristicParameters.NUM_PIECE_TYPES;
+	public static final int COUNT_OFFSET = 0;
+	public static final int TABLE_OFFSET = TexelFeatures.COUNT_OFFSET + TexelFeatures.NUM_PIECE_TYPES;
+	public static final int MOBILITY_OFFSET = TexelFeatures.TABLE_OFFSET + 64 * TexelFeatures.NUM_PIECE_TYPES;
+	public static final int ADVANCED_PAWNS = TexelFeatures.MOBILITY_OFFSET + TexelFeatures.NUM_PIECE_TYPES;
+	public static final int NUM_FEATURES = TexelFeatures.ADVANCED_PAWNS + 1;
+
+	private static final int CACHE_MAGIC = 0x54657846;   // "TexF"
+	private static final PieceType[] PIECE_TYPES = PieceType.values();
+
+	private int numPositions;
+	private int[] offsets;            // numPositions + 1 of them
+	private short[] features;
+	private short[] values;
+	private byte[] results;           // 2 * white's score: 0 loss, 1 draw, 2 win
+
+	public TexelFeatures()
+	{
+		this.numPositions = 0;
+		this.offsets = new int[1024 + 1];
+		this.features = new short[1024 * 48];
+		this.values = new short[1024 * 48];
+		this.results = new byte[1024];
+	}
+
+	public int size() { return this.numPositions; }
+	public int getOffset(int positionIdx) { return this.offsets[positionIdx]; }
+	public int getFeature(int entryIdx) { return this.features[entryIdx]; }
+	public int getValue(int entryIdx) { return this.values[entryIdx]; }
+
+	/**
+	 * @return white's score in the game the position is from: 1, 0.5 or 0
+	 */
+	public double getResult(int positionIdx) { return this.results[positionIdx] / 2.0; }
+
+	/**
+	 * @return the sum of coefficients * features of a position
+	 */
+	public double evaluate(int positionIdx, double[] coefficients)
+	{
+		double eval = 0.0;
+		for(int entryIdx = this.offsets[positionIdx]; entryIdx < this.offsets[positionIdx + 1]; ++entryIdx)
+		{
+			eval += coefficients[this.features[entryIdx]] * this.values[entryIdx];
+		}
+		return eval;
+	}
+
+	/**
+	 * Extract a position and add it.
+	 * @param whiteScore white's score in the game the position is from: 1, 0.5 or 0
+	 */
+	public void add(Game game, double whiteScore)
+	{
+		int[] dense = new int[TexelFeatures.NUM_FEATURES];
+		TexelFeatures.extract(game, dense);
+
+		int numEntries = 0;
+		for(int value : dense)
+		{
+			numEntries += value != 0 ? 1 : 0;
+		}
+		this.ensureCapacity(this.numPositions + 1, this.offsets[this.numPositions] + numEntries);
+
+		int entryIdx = this.offsets[this.numPositions];
+		for(int featureIdx = 0; featureIdx < TexelFeatures.NUM_FEATURES; ++featureIdx)
+		{
+			if(dense[featureIdx] != 0)
+			{
+				this.features[entryIdx] = (short)featureIdx;
+				this.values[entryIdx] = (short)dense[featureIdx];
+				entryIdx += 1;
+			}
+		}
+		this.results[this.numPositions] = (byte)Math.round(2.0 * whiteScore);
+		this.numPositions += 1;
+		this.offsets[this.numPositions] = entryIdx;
+	}
+
+	/**
+	 * Append every position of other.
+	 */
+	public void addAll(TexelFeatures other)
+	{
+		int numEntries = other.offsets[other.numPositions];
+		int firstEntryIdx = this.offsets[this.numPositions];
+		this.ensureCapacity(this.numPositions + other.numPositions, firstEntryIdx + numEntries);
+
+		System.arraycopy(other.features, 0, this.features, firstEntryIdx, numEntries);
+		System.arraycopy(other.values, 0, this.values, firstEntryIdx, numEntries);
+		System.arraycopy(other.results, 0, this.results, this.numPositions, other.numPositions);
+		for(int positionIdx = 1; positionIdx <= other.numPositions; ++positionIdx)
+		{
+			this.offsets[this.numPositions + positionIdx] = firstEntryIdx + other.offsets[positionIdx];
+		}
+		this.numPositions += other.numPositions;
+	}
+
+	/**
+	 * Add the features of game (white's minus black's) to dense, which has NUM_FEATURES entries.
+	 */
+	public static void extract(Game game, int[] dense)
+	{
+		TexelFeatures.extract(game, game.getWhitePlayer(), 1, dense);
+		TexelFeatures.extract(game, game.getBlackPlayer(), -1, dense);
+	}
+
+	/**
+	 * The features of player's pieces, added to dense with sign (1 for white, -1 for black). Mirrors
+	 * CustomHeuristics.getMaterialBalance, getMobility and getPawnStructureScore.
+	 */
+	private static void extract(Game game, Player player, int sign, int[] dense)
+	{
+		boolean isBlack = player.getPlayerType() == PlayerType.BLACK;
+		for(Piece piece : game.getBoard().getPieces(player))
+		{
+			int type = piece.getType().ordinal();
+			Coordinate position = game.getCurrentPosition(piece);
+			int x = position.getXPosition();
+			int y = position.getYPosition();
+
+			dense[TexelFeatures.COUNT_OFFSET + type] += sign;
+			if(x >= 0 && x < 8 && y >= 0 && y < 8)
+			{
+				// the table is indexed [x][y], and flipped (rows reversed) for black
+				int row = isBlack ? 7 - x : x;
+				dense[TexelFeatures.TABLE_OFFSET + 64 * type + 8 * row + y] += sign;
+			}
+			dense[TexelFeatures.MOBILITY_OFFSET + type] += sign * piece.getAllMoves(game).size();
+
+			if(piece.getType() == PieceType.PAWN && (isBlack ? x >= 4 : x <= 3))
+			{
+				dense[TexelFeatures.ADVANCED_PAWNS] += sign;
+			}
+		}
+	}
+
+	/**
+	 * @return the coefficient of every feature under parameters
+	 */
+	public static double[] toCoefficients(HeuristicParameters parameters)
+	{
+		double[] coefficients = new double[TexelFeatures.NUM_FEATURES];
+		for(PieceType type : TexelFeatures.PIECE_TYPES)
+		{
+			int typeIdx = type.ordinal();
+			coefficients[TexelFeatures.COUNT_OFFSET + typeIdx] = parameters.getMaterialWeight() * parameters.getPieceValue(type);
+			coefficients[TexelFeatures.MOBILITY_OFFSET + typeIdx] = parameters.getMobilityWeight() *
+				parameters.getMobilityValue(type);
+			double[][] table = parameters.getPieceSquareTable(type, PlayerType.WHITE);
+			for(int squareIdx = 0; squareIdx < 64; ++squareIdx)
+			{
+				coefficients[TexelFeatures.TABLE_OFFSET + 64 * typeIdx + squareIdx] = parameters.getMaterialWeight() *
+					table[squareIdx / 8][squareIdx % 8];
+			}
+		}
+		coefficients[TexelFeatures.ADVANCED_PAWNS] = parameters.getPawnStructureWeight() *
+			parameters.getAdvancedPawnValue();
+		return coefficients;
+	}
+
+	/**
+	 * The inverse of toCoefficients: the group weights of template are kept, the values under them are set.
+	 */
+	public static HeuristicParameters toParameters(double[] coefficients, HeuristicParameters template)
+	{
+		HeuristicParameters parameters = new HeuristicParameters();
+		parameters.setMaterialWeight(template.getMaterialWeight());
+		parameters.setMobilityWeight(template.getMobilityWeight());
+		parameters.setPawnStructureWeight(template.getPawnStructureWeight());
+		parameters.setCenterControlWeight(template.getCenterControlWeight());
+		for(PieceType type : TexelFeatures.PIECE_TYPES)
+		{
+			int typeIdx = type.ordinal();
+			parameters.setPieceValue(type, coefficients[TexelFeatures.COUNT_OFFSET + typeIdx] /
+				template.getMaterialWeight());
+			parameters.setMobilityValue(type, coefficients[TexelFeatures.MOBILITY_OFFSET + typeIdx] /
+				template.getMobilityWeight());
+			double[][] table = new double[8][8];
+			for(int squareIdx = 0; squareIdx < 64; ++squareIdx)
+			{
+				table[squareIdx / 8][squareIdx % 8] = coefficients[TexelFeatures.TABLE_OFFSET + 64 * typeIdx + squareIdx] /
+					template.getMaterialWeight();
+			}
+			parameters.setPieceSquareTable(type, table);
+		}
+		parameters.setAdvancedPawnValue(coefficients[TexelFeatures.ADVANCED_PAWNS] / template.getPawnStructureWeight());
+		return parameters;
+	}
+
+	/**
+	 * Write the extracted positions, so the next run skips the extraction.
+	 */
+	public void save(Path path) throws IOException
+	{
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16)))
+		{
+			int numEntries = this.offsets[this.numPositions];
+			out.writeInt(TexelFeatures.CACHE_MAGIC);
+			out.writeInt(TexelFeatures.NUM_FEATURES);
+			out.writeInt(this.numPositions);
+			out.writeInt(numEntries);
+			for(int positionIdx = 0; positionIdx <= this.numPositions; ++positionIdx)
+			{
+				out.writeInt(this.offsets[positionIdx]);
+			}
+			for(int entryIdx = 0; entryIdx < numEntries; ++entryIdx)
+			{
+				out.writeShort(this.features[entryIdx]);
+				out.writeShort(this.values[entryIdx]);
+			}
+			out.write(this.results, 0, this.numPositions);
+		}
+	}
+
+	public static TexelFeatures load(Path path) throws IOException
+	{
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16)))
+		{
+			if(in.readInt() != TexelFeatures.CACHE_MAGIC || in.readInt() != TexelFeatures.NUM_FEATURES)
+			{
+				throw new IOException("TexelFeatures.load [ERROR]: " + path + " is not a feature cache of this version");
+			}
+			int numPositions = in.readInt();
+			int numEntries = in.readInt();
+
+			TexelFeatures positions = new TexelFeatures();
+			positions.ensureCapacity(numPositions, numEntries);
+			for(int positionIdx = 0; positionIdx <= numPositions; ++positionIdx)
+			{
+				positions.offsets[positionIdx] = in.readInt();
+			}
+			for(int entryIdx = 0; entryIdx < numEntries; ++entryIdx)
+			{
+				positions.features[entryIdx] = in.readShort();
+				positions.values[entryIdx] = in.readShort();
+			}
+			in.readFully(positions.results, 0, numPositions);
+			positions.numPositions = numPositions;
+			return positions;
+		}
+	}
+
+	private void ensureCapacity(int numPositions, int numEntries)
+	{
+		if(numPositions + 1 > this.offsets.length)
+		{
+			int capacity = Math.max(numPositions, 2 * this.results.length);
+			this.offsets = Arrays.copyOf(this.offsets, capacity + 1);
+			this.results = Arrays.copyOf(this.results, capacity);
+		}
+		if(numEntries > this.features.length)
+		{
+			int capacity = Math.max(numEntries, 2 * this.features.length);
+			this.features = Arrays.copyOf(this.features, capacity);
+			this.values = Arrays.copyOf(this.values, capacity);
+		}
+	}
+
+}
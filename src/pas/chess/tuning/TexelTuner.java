@@ -0,0 +1,450 @@
+package src.pas.chess.tuning;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.move.Move;
+
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.heuristics.HeuristicParameters;
+import src.pas.chess.match.GameOutcome;
+import src.pas.chess.replay.Replay;
+import src.pas.chess.selfplay.SelfPlayData;
+import src.pas.chess.utils.Fen;
+
+
+/**
+ * Texel tuning of the CustomHeuristics parameters: minimizes the mean squared error between the result of the game a
+ * position is from and the result the evaluation predicts for it, sigmoid(k * eval). k is fitted to the current
+ * parameters first (and then kept), so the loss only measures how well the evaluation ranks positions, not its scale.
+ *
+ * The positions are extracted once into TexelFeatures, after which an epoch is one pass over primitive arrays: the
+ * gradient of every chunk of positions is computed on a worker of a ForkJoinPool (--threads, default every core) and
+ * the chunks are summed, then Adam takes one step. The group weights (weight.material, ...) are kept, everything under
+ * them is tuned, and the result is written where HeuristicParameters.get() loads it from at startup.
+ *
+ * Usage:
+ *     java -cp "./lib/*:." src.pas.chess.tuning.TexelTuner <positions>... [--epochs N] [--threads T]
+ *         [--learning-rate R] [--k K] [--cache path] [--out path]
+ * Every input is either a replay (*.replay: every position of every finished game, labeled with the game's result), a
+ * SelfPlayGenerator file (*.selfplay), a feature cache written by --cache, or a text file with a FEN and white's result
+ * per line ("fen 1-0", "fen 0.5", "fen [1/2-1/2]", ...; the result is the last token). Extracted positions are
+ * written to --cache so the next run can skip the extraction.
+ */
+public class TexelTuner
+    extends Object
+{
+
+	public static final int DEFAULT_NUM_EPOCHS = 200;
+	public static final double DEFAULT_LEARNING_RATE = 0.05;
+	public static final String FEATURE_CACHE_EXTENSION = ".features";
+
+	private static final int CHUNK_SIZE = 8192;
+	private static final int LOSS_IDX = TexelFeatures.NUM_FEATURES;
+	private static final double ADAM_BETA1 = 0.9;
+	private static final double ADAM_BETA2 = 0.999;
+	private static final double ADAM_EPSILON = 1e-8;
+
+	private final TexelFeatures positions;
+	private final ForkJoinPool threadPool;
+
+	public TexelTuner(TexelFeatures positions, ForkJoinPool threadPool)
+	{
+		this.positions = positions;
+		this.threadPool = threadPool;
+	}
+
+	public TexelFeatures getPositions() { return this.positions; }
+	public ForkJoinPool getThreadPool() { return this.threadPool; }
+
+	/**
+	 * @return the mean squared error of the predictions sigmoid(k * eval)
+	 */
+	public double getLoss(double[] coefficients, double k)
+	{
+		return this.sum(coefficients, k, false)[TexelTuner.LOSS_IDX];
+	}
+
+	/**
+	 * @return the gradient of the loss with respect to every coefficient, with the loss itself at index NUM_FEATURES
+	 */
+	public double[] getGradient(double[] coefficients, double k)
+	{
+		return this.sum(coefficients, k, true);
+	}
+
+	/**
+	 * Golden section search for the k that minimizes the loss of coefficients (the loss is unimodal in log k).
+	 */
+	public double fitK(double[] coefficients)
+	{
+		final double invPhi = (Math.sqrt(5.0) - 1.0) / 2.0;
+		double lo = Math.log(1e-4);
+		double hi = Math.log(10.0);
+		double left = hi - invPhi * (hi - lo);
+		double right = lo + invPhi * (hi - lo);
+		double leftLoss = this.getLoss(coefficients, Math.exp(left));
+		double rightLoss = this.getLoss(coefficients, Math.exp(right));
+		for(int iteration = 0; iteration < 40; ++iteration)
+		{
+			if(leftLoss < rightLoss)
+			{
+				hi = right;
+				right = left;
+				rightLoss = leftLoss;
+				left = hi - invPhi * (hi - lo);
+				leftLoss = this.getLoss(coefficients, Math.exp(left));
+			} else
+			{
+				lo = left;
+				left = right;
+				leftLoss = rightLoss;
+				right = lo + invPhi * (hi - lo);
+				rightLoss = this.getLoss(coefficients, Math.exp(right));
+			}
+		}
+		return Math.exp((lo + hi) / 2.0);
+	}
+
+	/**
+	 * Minimize the loss with Adam, one step per epoch.
+	 * @return the tuned coefficients (coefficients itself is not modified)
+	 */
+	public double[] tune(double[] coefficients, double k, int numEpochs, double learningRate)
+	{
+		double[] tuned = coefficients.clone();
+		double[] firstMoments = new double[TexelFeatures.NUM_FEATURES];
+		double[] secondMoments = new double[TexelFeatures.NUM_FEATURES];
+		for(int epoch = 1; epoch <= numEpochs; ++epoch)
+		{
+			long startTime = System.nanoTime();
+			double[] gradient = this.getGradient(tuned, k);
+
+			double firstCorrection = 1.0 - Math.pow(TexelTuner.ADAM_BETA1, epoch);
+			double secondCorrection = 1.0 - Math.pow(TexelTuner.ADAM_BETA2, epoch);
+			for(int featureIdx = 0; featureIdx < TexelFeatures.NUM_FEATURES; ++featureIdx)
+			{
+				double g = gradient[featureIdx];
+				firstMoments[featureIdx] = TexelTuner.ADAM_BETA1 * firstMoments[featureIdx] +
+					(1.0 - TexelTuner.ADAM_BETA1) * g;
+				secondMoments[featureIdx] = TexelTuner.ADAM_BETA2 * secondMoments[featureIdx] +
+					(1.0 - TexelTuner.ADAM_BETA2) * g * g;
+				tuned[featureIdx] -= learningRate * (firstMoments[featureIdx] / firstCorrection) /
+					(Math.sqrt(secondMoments[featureIdx] / secondCorrection) + TexelTuner.ADAM_EPSILON);
+			}
+
+			System.out.println(String.format(Locale.ROOT, "epoch %d: loss=%.6f (%.1f ms)", epoch,
+				gradient[TexelTuner.LOSS_IDX], (System.nanoTime() - startTime) / 1e6));
+		}
+		return tuned;
+	}
+
+	/**
+	 * Sum the loss (and, if withGradient, its gradient) over every position, one chunk of positions per task.
+	 */
+	private double[] sum(double[] coefficients, double k, boolean withGradient)
+	{
+		int numChunks = (this.getPositions().size() + TexelTuner.CHUNK_SIZE - 1) / TexelTuner.CHUNK_SIZE;
+		double[] total;
+		try
+		{
+			total = this.getThreadPool().submit(() -> IntStream.range(0, numChunks).parallel()
+				.mapToObj(chunkIdx -> this.sumChunk(chunkIdx, coefficients, k, withGradient))
+				.reduce(TexelTuner::add)
+				.orElse(new double[TexelFeatures.NUM_FEATURES + 1])).get();
+		} catch(InterruptedException | ExecutionException e)
+		{
+			throw new RuntimeException("TexelTuner.sum [ERROR]: a worker failed", e);
+		}
+
+		double scale = 1.0 / Math.max(this.getPositions().size(), 1);
+		for(int idx = 0; idx < total.length; ++idx)
+		{
+			total[idx] *= scale;
+		}
+		return total;
+	}
+
+	private double[] sumChunk(int chunkIdx, double[] coefficients, double k, boolean withGradient)
+	{
+		TexelFeatures positions = this.getPositions();
+		double[] sums = new double[TexelFeatures.NUM_FEATURES + 1];
+		double loss = 0.0;
+		int end = Math.min((chunkIdx + 1) * TexelTuner.CHUNK_SIZE, positions.size());
+		for(int positionIdx = chunkIdx * TexelTuner.CHUNK_SIZE; positionIdx < end; ++positionIdx)
+		{
+			double prediction = 1.0 / (1.0 + Math.exp(-k * positions.evaluate(positionIdx, coefficients)));
+			double error = positions.getResult(positionIdx) - prediction;
+			loss += error * error;
+
+			if(withGradient)
+			{
+				// d/dc (r - sigmoid(k * eval))^2 = -2 (r - s) s (1 - s) k * feature value
+				double scale = -2.0 * error * prediction * (1.0 - prediction) * k;
+				for(int entryIdx = positions.getOffset(positionIdx); entryIdx < positions.getOffset(positionIdx + 1);
+				    ++entryIdx)
+				{
+					sums[positions.getFeature(entryIdx)] += scale * positions.getValue(entryIdx);
+				}
+			}
+		}
+		sums[TexelTuner.LOSS_IDX] = loss;
+		return sums;
+	}
+
+	private static double[] add(double[] a, double[] b)
+	{
+		for(int idx = 0; idx < a.length; ++idx)
+		{
+			a[idx] += b[idx];
+		}
+		return a;
+	}
+
+	/**
+	 * Extract the positions of one input on the workers of threadPool.
+	 */
+	public static TexelFeatures load(Path path, ForkJoinPool threadPool) throws IOException
+	{
+		String fileName = path.getFileName().toString();
+		if(fileName.endsWith(TexelTuner.FEATURE_CACHE_EXTENSION))
+		{
+			return TexelFeatures.load(path);
+		}
+
+		List<TexelFeatures> parts;
+		try
+		{
+			if(fileName.endsWith(SelfPlayData.FILE_EXTENSION))
+			{
+				SelfPlayData data = SelfPlayData.read(path);
+				int numChunks = (data.size() + TexelTuner.CHUNK_SIZE - 1) / TexelTuner.CHUNK_SIZE;
+				parts = threadPool.submit(() -> IntStream.range(0, numChunks).parallel()
+					.mapToObj(chunkIdx -> TexelTuner.extractSelfPlay(data, chunkIdx * TexelTuner.CHUNK_SIZE,
+						Math.min((chunkIdx + 1) * TexelTuner.CHUNK_SIZE, data.size())))
+					.collect(Collectors.toList())).get();
+			} else if(fileName.endsWith(".replay"))
+			{
+				List<Replay> replays = Replay.readAll(path);
+				parts = threadPool.submit(() -> IntStream.range(0, replays.size()).parallel()
+					.mapToObj(gameIdx -> TexelTuner.extractReplay(replays.get(gameIdx)))
+					.collect(Collectors.toList())).get();
+			} else
+			{
+				List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+				int numChunks = (lines.size() + TexelTuner.CHUNK_SIZE - 1) / TexelTuner.CHUNK_SIZE;
+				parts = threadPool.submit(() -> IntStream.range(0, numChunks).parallel()
+					.mapToObj(chunkIdx -> TexelTuner.extractLines(lines, chunkIdx * TexelTuner.CHUNK_SIZE,
+						Math.min((chunkIdx + 1) * TexelTuner.CHUNK_SIZE, lines.size())))
+					.collect(Collectors.toList())).get();
+			}
+		} catch(InterruptedException | ExecutionException e)
+		{
+			throw new IOException("TexelTuner.load [ERROR]: unable to extract " + path, e);
+		}
+
+		TexelFeatures positions = new TexelFeatures();
+		for(TexelFeatures part : parts)
+		{
+			positions.addAll(part);
+		}
+		return positions;
+	}
+
+	/**
+	 * @return every position of a finished game (none for an unfinished one), labeled with the game's result
+	 */
+	private static TexelFeatures extractReplay(Replay replay)
+	{
+		TexelFeatures positions = new TexelFeatures();
+		GameOutcome outcome = replay.getOutcome();
+		if(outcome == null)
+		{
+			return positions;
+		}
+
+		Game game = replay.getInitialGame();
+		for(int ply = 0; ply < replay.size(); ++ply)
+		{
+			positions.add(game, outcome.getWhiteScore());
+			Move move = Replay.decodeMove(game, replay.getCompactMove(ply));
+			game = game.applyMove(move);
+		}
+		return positions;
+	}
+
+	private static TexelFeatures extractSelfPlay(SelfPlayData data, int start, int end)
+	{
+		TexelFeatures positions = new TexelFeatures();
+		for(int recordIdx = start; recordIdx < end; ++recordIdx)
+		{
+			positions.add(data.getGame(recordIdx), data.getWhiteScore(recordIdx));
+		}
+		return positions;
+	}
+
+	private static TexelFeatures extractLines(List<String> lines, int start, int end)
+	{
+		TexelFeatures positions = new TexelFeatures();
+		for(int lineIdx = start; lineIdx < end; ++lineIdx)
+		{
+			String line = lines.get(lineIdx).trim();
+			int separatorIdx = line.lastIndexOf(' ');
+			if(line.isEmpty() || line.startsWith("#") || separatorIdx < 0)
+			{
+				continue;
+			}
+
+			double whiteScore = TexelTuner.parseResult(line.substring(separatorIdx + 1));
+			if(Double.isNaN(whiteScore))
+			{
+				System.err.println("TexelTuner.extractLines [WARNING]: skipping line " + (lineIdx + 1) +
+					", no result in: " + line);
+				continue;
+			}
+			positions.add(Fen.parse(line.substring(0, separatorIdx).trim()), whiteScore);
+		}
+		return positions;
+	}
+
+	/**
+	 * @return white's score for a result token (1-0, 0-1, 1/2-1/2, 1.0, 0.5, 0.0, optionally quoted or bracketed), or
+	 *         NaN if it is not a result
+	 */
+	public static double parseResult(String token)
+	{
+		String result = token.replaceAll("[\\[\\]\";]", "");
+		switch(result)
+		{
+		case "1-0":
+			return 1.0;
+		case "0-1":
+			return 0.0;
+		case "1/2-1/2":
+			return 0.5;
+		default:
+			try
+			{
+				double whiteScore = Double.parseDouble(result);
+				return whiteScore == 0.0 || whiteScore == 0.5 || whiteScore == 1.0 ? whiteScore : Double.NaN;
+			} catch(NumberFormatException e)
+			{
+				return Double.NaN;
+			}
+		}
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		List<String> inputs = new ArrayList<String>();
+		int numEpochs = TexelTuner.DEFAULT_NUM_EPOCHS;
+		int numThreads = Runtime.getRuntime().availableProcessors();
+		double learningRate = TexelTuner.DEFAULT_LEARNING_RATE;
+		double k = Double.NaN;
+		String cachePath = null;
+		String outPath = HeuristicParameters.DEFAULT_PATH;
+		for(int argIdx = 0; argIdx < args.length; ++argIdx)
+		{
+			if(!args[argIdx].startsWith("--"))
+			{
+				inputs.add(args[argIdx]);
+				continue;
+			}
+			if(argIdx + 1 >= args.length)
+			{
+				System.err.println("TexelTuner.main [ERROR]: missing value for option=" + args[argIdx]);
+				System.exit(-1);
+			}
+			switch(args[argIdx])
+			{
+			case "--epochs":
+				numEpochs = Integer.parseInt(args[argIdx + 1]);
+				break;
+			case "--threads":
+				numThreads = Integer.parseInt(args[argIdx + 1]);
+				break;
+			case "--learning-rate":
+				learningRate = Double.parseDouble(args[argIdx + 1]);
+				break;
+			case "--k":
+				k = Double.parseDouble(args[argIdx + 1]);
+				break;
+			case "--cache":
+				cachePath = args[argIdx + 1];
+				break;
+			case "--out":
+				outPath = args[argIdx + 1];
+				break;
+			default:
+				System.err.println("TexelTuner.main [ERROR]: unknown option=" + args[argIdx]);
+				System.exit(-1);
+			}
+			argIdx += 1;
+		}
+		if(inputs.isEmpty())
+		{
+			System.err.println("Usage: java src.pas.chess.tuning.TexelTuner <positions>... [--epochs N] [--threads T]" +
+				" [--learning-rate R] [--k K] [--cache path] [--out path]");
+			System.exit(-1);
+		}
+
+		ForkJoinPool threadPool = new ForkJoinPool(numThreads);
+		try
+		{
+			long startTime = System.nanoTime();
+			TexelFeatures positions = new TexelFeatures();
+			for(String input : inputs)
+			{
+				positions.addAll(TexelTuner.load(Paths.get(input), threadPool));
+			}
+			System.out.println(String.format(Locale.ROOT, "extracted %d positions in %.1f s", positions.size(),
+				(System.nanoTime() - startTime) / 1e9));
+			if(cachePath != null)
+			{
+				positions.save(Paths.get(cachePath));
+			}
+			if(positions.size() == 0)
+			{
+				System.err.println("TexelTuner.main [ERROR]: no labeled positions");
+				System.exit(-1);
+			}
+
+			HeuristicParameters initialParameters = HeuristicParameters.get();
+			double[] coefficients = TexelFeatures.toCoefficients(initialParameters);
+			TexelTuner tuner = new TexelTuner(positions, threadPool);
+			if(Double.isNaN(k))
+			{
+				k = tuner.fitK(coefficients);
+			}
+			double initialLoss = tuner.getLoss(coefficients, k);
+			System.out.println(String.format(Locale.ROOT, "k=%.6f, initial loss=%.6f", k, initialLoss));
+
+			double[] tuned = tuner.tune(coefficients, k, numEpochs, learningRate);
+			double tunedLoss = tuner.getLoss(tuned, k);
+			TexelFeatures.toParameters(tuned, initialParameters).save(Paths.get(outPath), String.format(Locale.ROOT,
+				"tuned by TexelTuner on %d positions (k=%.6f, loss %.6f -> %.6f)", positions.size(), k, initialLoss,
+				tunedLoss));
+			System.out.println(String.format(Locale.ROOT, "loss %.6f -> %.6f, wrote %s", initialLoss, tunedLoss,
+				outPath));
+		} finally
+		{
+			threadPool.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,677 @@
+package src.pas.chess.uci;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.move.Move;
+import edu.bu.chess.game.piece.PieceType;
+import edu.bu.chess.game.player.PlayerType;
+
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.reflect.Constructor;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.agents.AlphaBetaAgent;
+import src.pas.chess.heuristics.HeuristicParameters;
+import src.pas.chess.history.GameHistory;
+import src.pas.chess.match.EngineFactory;
+import src.pas.chess.match.SearcherEngine;
+import src.pas.chess.search.PackedMove;
+import src.pas.chess.search.PvLine;
+import src.pas.chess.search.SearchLimits;
+import src.pas.chess.search.SearchOptions;
+import src.pas.chess.search.TranspositionTable;
+import src.pas.chess.utils.Fen;
+
+
+/**
+ * AlphaBetaAgent behind the UCI protocol on stdin/stdout, so any UCI GUI or match runner (e.g. cutechess-cli) can
+ * play it. One process serves any number of games: the agent, its transposition table and the JIT-compiled search
+ * stay warm between them, and a "position" that extends the previous one only plays the new moves.
+ *
+ * Commands are read on the main thread and searches run on a thread of their own, so isready, stop and ponderhit are
+ * answered while a search runs. A search deepens iteratively (AlphaBetaAgent's analysis search with SearchLimits) and
+ * reports every depth as info lines, one per MultiPV line; "go" understands wtime/btime/winc/binc/movestogo, movetime,
+ * depth, nodes, infinite and ponder.
+ *
+ * Promotions are their own turn in this engine (the pawn moves to the last rank, and is promoted on its owner's next
+ * turn), but one move in UCI (e7e8q). A UCI promotion is played as the pawn move plus the promotion right after it,
+ * the opponent still to move (see GameHistory.applyMove). When the search plays a pawn to the last rank, the piece is
+ * picked by searching each promotion PROMOTION_DEPTH plies deep. Info lines end at their first promotion, with the
+ * piece of the line's promotion turn (a queen if the line ends before it), since the turns of the rest of the line no
+ * longer match UCI's. Scores are in centipawns of CustomHeuristics' pawn value; a forced mate is reported as a mate
+ * in half the length of its line.
+ *
+ * Usage:
+ *     java -cp "./lib/*:." src.pas.chess.uci.UciEngine
+ * Everything but the protocol (e.g. the agent's own prints) goes to stderr.
+ */
+public class UciEngine
+    extends Object
+{
+
+	public static final String NAME = "440chess AlphaBetaAgent";
+	public static final String AUTHOR = "440chess";
+	public static final int MAX_DEPTH = 32;
+	public static final int MAX_PV_LINES = 64;
+	public static final int MAX_HASH_SIZE_IN_MB = 4096;
+	/** plies searched after each promotion the engine can play (see searchPromotion) */
+	public static final int PROMOTION_DEPTH = 2;
+
+	/** moves assumed left in the game when "go" does not say (movestogo) */
+	public static final int DEFAULT_MOVES_TO_GO = 30;
+	/** kept back from every time budget for the GUI's and the JVM's share of the move */
+	public static final long MOVE_OVERHEAD_IN_MS = 30;
+
+	private final PrintStream out;
+	private final AlphaBetaAgent agent;
+	private final Constructor<?> searcherConstructor;
+	private final ExecutorService searchThread;
+	private TranspositionTable transpositionTable;
+	private int numPvLines;
+
+	private String positionFen;
+	private final List<String> positionMoves;
+	private GameHistory history;
+
+	// the running (or last) search
+	private Future<?> search;
+	private SearchLimits searchLimits;
+	private CountDownLatch bestMoveRelease;   // bestmove waits for it after infinite and ponder searches
+	private long ponderSoftBudgetInMS;        // the time budget of a ponder search, which starts on ponderhit
+	private long ponderHardBudgetInMS;
+
+	public UciEngine(PrintStream out)
+	{
+		this.out = out;
+		EngineFactory factory = EngineFactory.fromSpec(AlphaBetaAgent.class.getSimpleName() + ":" + UciEngine.MAX_DEPTH,
+			0);
+		this.agent = (AlphaBetaAgent)factory.getAgent();
+		this.searcherConstructor = factory.getSearcherConstructor();
+		this.searchThread = Executors.newSingleThreadExecutor(runnable ->
+		{
+			Thread thread = new Thread(runnable, "uci-search");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.transpositionTable = TranspositionTable.ofSizeInMB(TranspositionTable.DEFAULT_SIZE_IN_MB);
+		this.numPvLines = 1;
+		this.positionFen = Fen.STARTING_POSITION;
+		this.positionMoves = new ArrayList<String>();
+		this.history = new GameHistory(Fen.parse(Fen.STARTING_POSITION));
+		this.search = null;
+		this.searchLimits = null;
+		this.bestMoveRelease = null;
+	}
+
+	public AlphaBetaAgent getAgent() { return this.agent; }
+	public Constructor<?> getSearcherConstructor() { return this.searcherConstructor; }
+	public TranspositionTable getTranspositionTable() { return this.transpositionTable; }
+	public int getNumPvLines() { return this.numPvLines; }
+	public GameHistory getHistory() { return this.history; }
+
+	/**
+	 * Write a protocol line (from either thread).
+	 */
+	private synchronized void send(String line)
+	{
+		this.out.println(line);
+		this.out.flush();
+	}
+
+	/**
+	 * Answer the commands of in until "quit" or the end of the input.
+	 */
+	public void run(BufferedReader in) throws IOException
+	{
+		String line;
+		while((line = in.readLine()) != null)
+		{
+			String[] tokens = line.trim().split("\\s+");
+			switch(tokens[0])
+			{
+			case "":
+				break;
+			case "uci":
+				this.send("id name " + UciEngine.NAME);
+				this.send("id author " + UciEngine.AUTHOR);
+				this.send("option name Hash type spin default " + TranspositionTable.DEFAULT_SIZE_IN_MB +
+					" min 1 max " + UciEngine.MAX_HASH_SIZE_IN_MB);
+				this.send("option name Clear Hash type button");
+				this.send("option name MultiPV type spin default 1 min 1 max " + UciEngine.MAX_PV_LINES);
+				this.send("option name Ponder type check default false");
+				this.send("uciok");
+				break;
+			case "isready":
+				this.send("readyok");
+				break;
+			case "debug":
+				break;
+			case "setoption":
+				this.waitForSearch();
+				this.setOption(tokens);
+				break;
+			case "ucinewgame":
+				this.waitForSearch();
+				this.getTranspositionTable().clear();
+				break;
+			case "position":
+				this.waitForSearch();
+				this.setPosition(tokens);
+				break;
+			case "go":
+				this.waitForSearch();
+				this.go(tokens);
+				break;
+			case "stop":
+				this.stopSearch();
+				break;
+			case "ponderhit":
+				this.ponderHit();
+				break;
+			case "quit":
+				this.stopSearch();
+				this.waitForSearch();
+				this.searchThread.shutdown();
+				this.getAgent().getSearchStats().unregister();
+				return;
+			default:
+				this.send("info string unknown command " + tokens[0]);
+			}
+		}
+		this.stopSearch();
+		this.waitForSearch();
+		this.searchThread.shutdown();
+		this.getAgent().getSearchStats().unregister();
+	}
+
+	private void setOption(String[] tokens)
+	{
+		// setoption name <name, may contain spaces> [value <value>]
+		int valueIdx = Arrays.asList(tokens).indexOf("value");
+		String name = String.join(" ", Arrays.copyOfRange(tokens, Math.min(2, tokens.length),
+			valueIdx < 0 ? tokens.length : valueIdx)).toLowerCase(Locale.ROOT);
+		String value = valueIdx < 0 ? "" : String.join(" ", Arrays.copyOfRange(tokens, valueIdx + 1, tokens.length));
+		try
+		{
+			switch(name)
+			{
+			case "hash":
+				int sizeInMB = Math.max(1, Math.min(Integer.parseInt(value), UciEngine.MAX_HASH_SIZE_IN_MB));
+				this.transpositionTable = TranspositionTable.ofSizeInMB(sizeInMB);
+				break;
+			case "clear hash":
+				this.getTranspositionTable().clear();
+				break;
+			case "multipv":
+				this.numPvLines = Math.max(1, Math.min(Integer.parseInt(value), UciEngine.MAX_PV_LINES));
+				break;
+			case "ponder":
+				break;  // only tells whether the GUI will send "go ponder"
+			default:
+				this.send("info string unknown option " + name);
+			}
+		} catch(NumberFormatException e)
+		{
+			this.send("info string bad value " + value + " for option " + name);
+		}
+	}
+
+	private void setPosition(String[] tokens)
+	{
+		// position (startpos | fen <fields>) [moves <move> ...]
+		int movesIdx = Arrays.asList(tokens).indexOf("moves");
+		int fenEnd = movesIdx < 0 ? tokens.length : movesIdx;
+		String fen;
+		if(tokens.length > 1 && tokens[1].equals("startpos"))
+		{
+			fen = Fen.STARTING_POSITION;
+		} else if(tokens.length > 2 && tokens[1].equals("fen"))
+		{
+			fen = String.join(" ", Arrays.copyOfRange(tokens, 2, fenEnd));
+		} else
+		{
+			this.send("info string position needs startpos or fen");
+			return;
+		}
+		List<String> moves = movesIdx < 0 ? List.of()
+			: Arrays.asList(tokens).subList(movesIdx + 1, tokens.length);
+
+		// the next position of a game is the previous one plus a move or two: only play those
+		boolean isContinuation = fen.equals(this.positionFen) && moves.size() >= this.positionMoves.size() &&
+			moves.subList(0, this.positionMoves.size()).equals(this.positionMoves);
+		if(!isContinuation)
+		{
+			try
+			{
+				this.history = new GameHistory(Fen.parse(fen));
+			} catch(RuntimeException e)
+			{
+				this.send("info string bad fen " + fen);
+				return;
+			}
+			this.positionFen = fen;
+			this.positionMoves.clear();
+		}
+		for(String text : moves.subList(this.positionMoves.size(), moves.size()))
+		{
+			List<Move> gameMoves = UciEngine.findMoves(this.getHistory().getCurrentGame(), text);
+			if(gameMoves == null)
+			{
+				this.send("info string illegal move " + text);
+				return;
+			}
+			for(Move move : gameMoves)
+			{
+				this.getHistory().addMove(move);
+			}
+			this.positionMoves.add(text);
+		}
+	}
+
+	private void go(String[] tokens)
+	{
+		long whiteTimeInMS = -1, blackTimeInMS = -1, whiteIncInMS = 0, blackIncInMS = 0, moveTimeInMS = -1;
+		long maxNodes = SearchLimits.NO_LIMIT;
+		int movesToGo = UciEngine.DEFAULT_MOVES_TO_GO;
+		int maxDepth = UciEngine.MAX_DEPTH;
+		boolean isInfinite = false;
+		boolean isPonder = false;
+		try
+		{
+			for(int tokenIdx = 1; tokenIdx < tokens.length; ++tokenIdx)
+			{
+				String value = tokenIdx + 1 < tokens.length ? tokens[tokenIdx + 1] : "0";
+				switch(tokens[tokenIdx])
+				{
+				case "infinite":
+					isInfinite = true;
+					continue;
+				case "ponder":
+					isPonder = true;
+					continue;
+				case "wtime":
+					whiteTimeInMS = Long.parseLong(value);
+					break;
+				case "btime":
+					blackTimeInMS = Long.parseLong(value);
+					break;
+				case "winc":
+					whiteIncInMS = Long.parseLong(value);
+					break;
+				case "binc":
+					blackIncInMS = Long.parseLong(value);
+					break;
+				case "movestogo":
+					movesToGo = Math.max(1, Integer.parseInt(value));
+					break;
+				case "movetime":
+					moveTimeInMS = Long.parseLong(value);
+					break;
+				case "depth":
+					maxDepth = Math.max(1, Math.min(Integer.parseInt(value), UciEngine.MAX_DEPTH));
+					break;
+				case "nodes":
+					maxNodes = Math.max(1, Long.parseLong(value));
+					break;
+				default:
+					continue;  // searchmoves, mate: not supported
+				}
+				tokenIdx += 1;
+			}
+		} catch(NumberFormatException e)
+		{
+			this.send("info string bad go command");
+			return;
+		}
+
+		// soft: no new depth after it (the next one would take many times longer); hard: stop
+		long softBudgetInMS = SearchLimits.NO_LIMIT;
+		long hardBudgetInMS = SearchLimits.NO_LIMIT;
+		boolean isWhite = this.getHistory().getCurrentGame().getCurrentPlayer().getPlayerType() == PlayerType.WHITE;
+		long timeLeftInMS = isWhite ? whiteTimeInMS : blackTimeInMS;
+		if(moveTimeInMS >= 0)
+		{
+			softBudgetInMS = Math.max(1, moveTimeInMS - UciEngine.MOVE_OVERHEAD_IN_MS);
+			hardBudgetInMS = softBudgetInMS;
+		} else if(timeLeftInMS >= 0)
+		{
+			long budgetInMS = timeLeftInMS / movesToGo + (isWhite ? whiteIncInMS : blackIncInMS);
+			hardBudgetInMS = Math.max(1, Math.min(2 * budgetInMS, timeLeftInMS / 2) - UciEngine.MOVE_OVERHEAD_IN_MS);
+			softBudgetInMS = Math.max(1, Math.min(budgetInMS / 2, hardBudgetInMS));
+		}
+
+		SearchLimits limits = new SearchLimits(maxNodes);
+		if(isPonder)
+		{
+			this.ponderSoftBudgetInMS = softBudgetInMS;
+			this.ponderHardBudgetInMS = hardBudgetInMS;
+		} else
+		{
+			limits.setTimeBudget(softBudgetInMS, hardBudgetInMS);
+		}
+		CountDownLatch release = new CountDownLatch(isInfinite || isPonder ? 1 : 0);
+		this.searchLimits = limits;
+		this.bestMoveRelease = release;
+
+		GameHistory history = this.getHistory();
+		int numPvLines = this.getNumPvLines();
+		int depth = maxDepth;
+		this.search = this.searchThread.submit(() -> this.search(history, depth, numPvLines, limits, release));
+	}
+
+	private void stopSearch()
+	{
+		if(this.searchLimits != null)
+		{
+			this.searchLimits.stop();
+			this.bestMoveRelease.countDown();
+		}
+	}
+
+	private void ponderHit()
+	{
+		if(this.searchLimits != null)
+		{
+			// the move pondered on was played: the search goes on, now on the clock
+			this.searchLimits.setTimeBudget(this.ponderSoftBudgetInMS, this.ponderHardBudgetInMS);
+			this.bestMoveRelease.countDown();
+		}
+	}
+
+	private void waitForSearch()
+	{
+		if(this.search == null)
+		{
+			return;
+		}
+		try
+		{
+			this.search.get();
+		} catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		} catch(ExecutionException e)
+		{
+			e.getCause().printStackTrace();
+		}
+		this.search = null;
+		this.searchLimits = null;
+		this.bestMoveRelease = null;
+	}
+
+	/**
+	 * Runs on the search thread: search the current position of history, report every depth, then send bestmove
+	 * (after infinite and ponder searches only once release is counted down by stop or ponderhit).
+	 */
+	private void search(GameHistory history, int maxDepth, int numPvLines, SearchLimits limits,
+                        CountDownLatch release)
+	{
+		Game game = history.getCurrentGame();
+		List<PvLine> lastLines = new ArrayList<PvLine>();
+		String bestMove = "0000";  // no legal move: the game is over
+		String ponderMove = null;
+		try
+		{
+			if(!game.getAllMoves(game.getCurrentPlayer()).isEmpty())
+			{
+				// the engine's own options: the agent's stay those of a plain search
+				SearchOptions options = new SearchOptions(this.getTranspositionTable());
+				options.setSearchLimits(limits);
+				options.setMultiPv(numPvLines, lines ->
+				{
+					for(PvLine line : lines)
+					{
+						this.send(UciEngine.toInfo(line, limits));
+					}
+					lastLines.clear();
+					lastLines.addAll(lines);
+				});
+				SearcherEngine engine = new SearcherEngine(UciEngine.NAME, this.getAgent(),
+					this.getSearcherConstructor(), maxDepth, options);
+				Move chosenMove = engine.getChessMove(history);
+				int move = PackedMove.encode(game, chosenMove);
+				List<String> bestLine = lastLines.isEmpty() ? List.of()
+					: UciEngine.toUciLine(lastLines.get(0).getMoves());
+				if(UciEngine.isPromoting(move))
+				{
+					bestMove = UciEngine.toUci(move, this.searchPromotion(game, chosenMove, limits));
+				} else
+				{
+					bestMove = UciEngine.toUci(move);
+					if(bestLine.size() > 1 && bestLine.get(0).equals(bestMove))
+					{
+						ponderMove = bestLine.get(1);
+					}
+				}
+			}
+			release.await();
+		} catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		} catch(RuntimeException e)
+		{
+			e.printStackTrace();
+			this.send("info string search failed: " + e);
+		} finally
+		{
+			this.send("bestmove " + bestMove + (ponderMove != null ? " ponder " + ponderMove : ""));
+		}
+	}
+
+	/**
+	 * @return the info line of a PvLine, with the search's node count and time so far
+	 */
+	public static String toInfo(PvLine line, SearchLimits limits)
+	{
+		long timeInMS = limits.getElapsedInMS();
+		StringBuilder builder = new StringBuilder(128);
+		builder.append("info depth ").append(line.getDepth()).append(" multipv ").append(line.getRank())
+			.append(" score ").append(UciEngine.toUciScore(line.getScore(), line.getMoves().length))
+			.append(" nodes ").append(limits.getNumNodes())
+			.append(" nps ").append(limits.getNumNodes() * 1000 / Math.max(1, timeInMS))
+			.append(" time ").append(timeInMS)
+			.append(" pv");
+		for(String move : UciEngine.toUciLine(line.getMoves()))
+		{
+			builder.append(' ').append(move);
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Runs on the search thread. The promotions are searched within the limits of the search that chose pawnMove, so
+	 * a time budget or stop cuts them short too: a promotion whose search was stopped before it scored a single reply
+	 * loses to any that got a score, and a queen is the answer when none did.
+	 * @return the piece to promote to after pawnMove, a pawn move to the last rank in game: the promotion whose
+	 *         position (the opponent to move) searches best for the pawn's owner
+	 */
+	private PieceType searchPromotion(Game game, Move pawnMove, SearchLimits limits)
+	{
+		Game nextGame = game.applyMove(pawnMove);
+		PieceType bestType = PieceType.QUEEN;
+		double bestScore = Double.NEGATIVE_INFINITY;
+		for(Move promotion : UciEngine.getPromotions(game, pawnMove))
+		{
+			Game promotedGame = GameHistory.applyMove(nextGame, promotion);
+			double score;
+			if(promotedGame.getAllMoves(promotedGame.getCurrentPlayer()).isEmpty())
+			{
+				// mate or stalemate, nothing to search
+				score = promotedGame.isInCheck(promotedGame.getCurrentPlayer()) ? Double.POSITIVE_INFINITY : 0.0;
+			} else
+			{
+				SearchOptions options = new SearchOptions(this.getTranspositionTable());
+				options.setSearchLimits(limits);
+				SearcherEngine engine = new SearcherEngine(UciEngine.NAME, this.getAgent(),
+					this.getSearcherConstructor(), UciEngine.PROMOTION_DEPTH, options);
+				engine.getChessMove(new GameHistory(promotedGame));
+				score = -engine.getLastScore();  // NaN (never best) when the limits stopped it before any score
+			}
+			// the first best wins ties: queens come first
+			if(score > bestScore)
+			{
+				bestScore = score;
+				bestType = PackedMove.getPromotionType(PackedMove.encode(nextGame, promotion));
+			}
+		}
+		return bestType;
+	}
+
+	/**
+	 * @return the promotions of pawnMove's pawn (a pawn move to the last rank in game), moves of the position after it
+	 */
+	private static List<Move> getPromotions(Game game, Move pawnMove)
+	{
+		int square = PackedMove.getTo(PackedMove.encode(game, pawnMove));
+		Game nextGame = game.applyMove(pawnMove);
+		List<Move> promotions = new ArrayList<Move>(4);
+		for(Move move : nextGame.getAllMoves(nextGame.getPlayer(pawnMove.getActorPlayer().getPlayerType())))
+		{
+			int packedMove = PackedMove.encode(nextGame, move);
+			if(PackedMove.isPromotion(packedMove) && PackedMove.getFrom(packedMove) == square)
+			{
+				promotions.add(move);
+			}
+		}
+		return promotions;
+	}
+
+	/**
+	 * @return whether move (packed) is a pawn move to the last rank, which UCI writes with the piece it promotes to
+	 */
+	public static boolean isPromoting(int move)
+	{
+		int toRank = PackedMove.getTo(move) >>> 3;
+		return PackedMove.getPieceType(move) == PieceType.PAWN && !PackedMove.isPromotion(move) &&
+			(toRank == 0 || toRank == 7);
+	}
+
+	/**
+	 * @return line (packed moves) in UCI notation, up to and including its first pawn move to the last rank, which gets
+	 *         the piece of the promotion turn two plies later (a queen if line ends first)
+	 */
+	public static List<String> toUciLine(int[] line)
+	{
+		List<String> uciLine = new ArrayList<String>(line.length);
+		for(int moveIdx = 0; moveIdx < line.length; ++moveIdx)
+		{
+			if(!UciEngine.isPromoting(line[moveIdx]))
+			{
+				uciLine.add(UciEngine.toUci(line[moveIdx]));
+				continue;
+			}
+			boolean isPromotedInLine = moveIdx + 2 < line.length && PackedMove.isPromotion(line[moveIdx + 2]) &&
+				PackedMove.getFrom(line[moveIdx + 2]) == PackedMove.getTo(line[moveIdx]);
+			uciLine.add(UciEngine.toUci(line[moveIdx],
+				isPromotedInLine ? PackedMove.getPromotionType(line[moveIdx + 2]) : PieceType.QUEEN));
+			break;
+		}
+		return uciLine;
+	}
+
+	/**
+	 * @param score from the point of view of the player to move, in CustomHeuristics units
+	 * @param lineLength the number of moves of the line the score is the end of
+	 */
+	public static String toUciScore(double score, int lineLength)
+	{
+		if(Math.abs(score) >= Double.MAX_VALUE)
+		{
+			// the line ends in the mate
+			int numMoves = (lineLength + 1) / 2;
+			return "mate " + (score > 0 ? numMoves : -numMoves);
+		}
+		HeuristicParameters parameters = HeuristicParameters.get();
+		double pawnValue = parameters.getMaterialWeight() * parameters.getPieceValue(PieceType.PAWN);
+		return "cp " + Math.round(100.0 * score / pawnValue);
+	}
+
+	/**
+	 * @return move (packed) in UCI long algebraic notation: e2e4, e1g1 for castling, e7e8 for a pawn move to the last
+	 *         rank (see toUci(int, PieceType)), e8e8q for a promotion turn (only legal when a FEN left a pawn on the
+	 *         last rank)
+	 */
+	public static String toUci(int move)
+	{
+		StringBuilder builder = new StringBuilder(5);
+		UciEngine.appendSquare(builder, PackedMove.getFrom(move));
+		PieceType promotionType = PackedMove.getPromotionType(move);
+		if(promotionType != null)
+		{
+			UciEngine.appendSquare(builder, PackedMove.getFrom(move));
+			return builder.append(Fen.getPieceSymbol(promotionType)).toString();
+		}
+		UciEngine.appendSquare(builder, PackedMove.getTo(move));
+		return builder.toString();
+	}
+
+	private static void appendSquare(StringBuilder builder, int square)
+	{
+		builder.append((char)('a' + (square & 7))).append((char)('1' + (square >>> 3)));
+	}
+
+	/**
+	 * @return pawnMove (packed), a pawn move to the last rank, together with its promotion to promotionType: e7e8q
+	 */
+	public static String toUci(int pawnMove, PieceType promotionType)
+	{
+		return UciEngine.toUci(pawnMove) + Fen.getPieceSymbol(promotionType);
+	}
+
+	/**
+	 * @return the legal moves of game that the UCI move text stands for: one move, or a pawn move to the last rank and
+	 *         the promotion played right after it (e7e8q); null if text is not legal in game
+	 */
+	public static List<Move> findMoves(Game game, String text)
+	{
+		for(Move move : game.getAllMoves(game.getCurrentPlayer()))
+		{
+			int packedMove = PackedMove.encode(game, move);
+			if(!UciEngine.isPromoting(packedMove))
+			{
+				if(UciEngine.toUci(packedMove).equals(text))
+				{
+					return List.of(move);
+				}
+				continue;
+			}
+
+			Game nextGame = game.applyMove(move);
+			for(Move promotion : UciEngine.getPromotions(game, move))
+			{
+				PieceType promotionType = PackedMove.getPromotionType(PackedMove.encode(nextGame, promotion));
+				if(UciEngine.toUci(packedMove, promotionType).equals(text))
+				{
+					return List.of(move, promotion);
+				}
+			}
+		}
+		return null;
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		// stdout belongs to the protocol: everything else printed (e.g. by the agent's constructor) goes to stderr
+		PrintStream protocolOut = new PrintStream(System.out, false, StandardCharsets.UTF_8);
+		System.setOut(System.err);
+		UciEngine engine = new UciEngine(protocolOut);
+		engine.run(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)));
+	}
+
+}
@@ -0,0 +1,439 @@
+package src.pas.chess.utils;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Board;
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.piece.Castleable;
+import edu.bu.chess.game.piece.Piece;
+import edu.bu.chess.game.piece.PieceType;
+import edu.bu.chess.game.player.Player;
+import edu.bu.chess.game.player.PlayerType;
+import edu.bu.chess.utils.Coordinate;
+
+
+import java.lang.reflect.Constructor;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Builds edu.bu.chess Game objects straight from FEN text so that positions can be set up without loading
+ * a SEPIA state. Board coordinates follow the SEPIA map: x is the file (1 = a-file) and y grows towards the white side
+ * (y = 1 is rank 8, y = 8 is rank 1).
+ *
+ * Game has no en passant target or move counters, so parse(...) drops those fields; read(...) keeps them next to the
+ * Game in a FenPosition, which writes back the exact FEN it was read from.
+ */
+public class Fen
+    extends Object
+{
+
+	public static final String STARTING_POSITION = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+	public static final int WHITE_PLAYER_ID = 0;
+	public static final int BLACK_PLAYER_ID = 1;
+
+	/**
+	 * Positions loaded from FEN are not on a clock, so give both players (practically) infinite time.
+	 */
+	public static final long UNLIMITED_TIME_IN_MS = Long.MAX_VALUE / 2;
+
+	private static final Pattern FIELD_SEPARATOR = Pattern.compile("\\s+");
+
+	/**
+	 * Game's private copy constructor, looked up once: the lookup costs more than the rest of a parse.
+	 */
+	private static final Constructor<Game> GAME_CONSTRUCTOR = Fen.getGameConstructor();
+
+	public static int getXPosition(char file) { return file - 'a' + 1; }
+	public static int getYPosition(char rank) { return '9' - rank; }
+
+	/**
+	 * Parse the piece placement, side to move and castling rights of a FEN string into a brand new Game.
+	 * Both players get unlimited time. Kings and rooks that are not covered by the castling field are disqualified
+	 * from castling (the game engine lets every king and rook castle by default).
+	 * @param fen the FEN string (only the first two fields are required, a missing castling field means "-")
+	 * @return a Game in the described position
+	 */
+	public static Game parse(String fen)
+	{
+		return Fen.read(fen, Fen.UNLIMITED_TIME_IN_MS).getGame();
+	}
+
+	/**
+	 * Same as parse(fen) but both players start with timeLeftInMS on their clocks.
+	 */
+	public static Game parse(String fen, long timeLeftInMS)
+	{
+		return Fen.read(fen, timeLeftInMS).getGame();
+	}
+
+	/**
+	 * Parse all six FEN fields: the Game plus the en passant target and move counters, which Game has no room for.
+	 * Missing trailing fields default to "- - 0 1".
+	 */
+	public static FenPosition read(String fen)
+	{
+		return Fen.read(fen, Fen.UNLIMITED_TIME_IN_MS);
+	}
+
+	public static FenPosition read(String fen, long timeLeftInMS)
+	{
+		String[] fields = Fen.FIELD_SEPARATOR.split(fen.trim());
+		if(fields.length < 2)
+		{
+			throw new IllegalArgumentException("Fen.read [ERROR]: expected at least placement and side to move in fen=" + fen);
+		}
+
+		Player whitePlayer = new Player(Fen.WHITE_PLAYER_ID, PlayerType.WHITE);
+		Player blackPlayer = new Player(Fen.BLACK_PLAYER_ID, PlayerType.BLACK);
+
+		Map<Integer, Piece> whitePieces = new HashMap<Integer, Piece>();
+		Map<Integer, Integer> whiteUnitIDs = new HashMap<Integer, Integer>();
+		Map<Integer, Coordinate> whitePositions = new HashMap<Integer, Coordinate>();
+		Map<Integer, Piece> blackPieces = new HashMap<Integer, Piece>();
+		Map<Integer, Integer> blackUnitIDs = new HashMap<Integer, Integer>();
+		Map<Integer, Coordinate> blackPositions = new HashMap<Integer, Coordinate>();
+
+		String[] ranks = fields[0].split("/");
+		if(ranks.length != 8)
+		{
+			throw new IllegalArgumentException("Fen.read [ERROR]: expected 8 ranks in fen=" + fen);
+		}
+
+		int nextPieceID = 0;
+		for(int rankIdx = 0; rankIdx < ranks.length; ++rankIdx)
+		{
+			int x = 1;
+			int y = rankIdx + 1;
+			for(char c : ranks[rankIdx].toCharArray())
+			{
+				if(Character.isDigit(c))
+				{
+					x += c - '0';
+					continue;
+				}
+
+				PieceType pieceType = Fen.getPieceType(c);
+				if(pieceType == null || x > 8)
+				{
+					throw new IllegalArgumentException("Fen.read [ERROR]: bad rank=" + ranks[rankIdx] + " in fen=" + fen);
+				}
+
+				// piece ids double as unit ids: there are no SEPIA units behind a FEN position
+				int pieceID = nextPieceID++;
+				if(Character.isUpperCase(c))
+				{
+					whitePieces.put(pieceID, Piece.makePiece(pieceID, whitePlayer, pieceType));
+					whiteUnitIDs.put(pieceID, pieceID);
+					whitePositions.put(pieceID, new Coordinate(x, y));
+				} else
+				{
+					blackPieces.put(pieceID, Piece.makePiece(pieceID, blackPlayer, pieceType));
+					blackUnitIDs.put(pieceID, pieceID);
+					blackPositions.put(pieceID, new Coordinate(x, y));
+				}
+				x += 1;
+			}
+		}
+
+		Player currentPlayer = null;
+		switch(fields[1])
+		{
+		case "w":
+			currentPlayer = whitePlayer;
+			break;
+		case "b":
+			currentPlayer = blackPlayer;
+			break;
+		default:
+			throw new IllegalArgumentException("Fen.read [ERROR]: unknown side to move=" + fields[1] + " in fen=" + fen);
+		}
+
+		String castlingRights = fields.length > 2 ? fields[2] : "-";
+		Fen.applyCastlingRights(whitePieces, whitePositions, castlingRights.indexOf('K') >= 0, castlingRights.indexOf('Q') >= 0, 8);
+		Fen.applyCastlingRights(blackPieces, blackPositions, castlingRights.indexOf('k') >= 0, castlingRights.indexOf('q') >= 0, 1);
+
+		Coordinate enPassantTarget = fields.length > 3 ? Fen.parseEnPassantTarget(fields[3], currentPlayer, whitePieces,
+			whitePositions, blackPieces, blackPositions, fen) : null;
+		int halfmoveClock = fields.length > 4 ? Fen.parseCounter(fields[4], 0, fen) : 0;
+		int fullmoveNumber = fields.length > 5 ? Fen.parseCounter(fields[5], 1, fen) : 1;
+
+		Board board = new Board(blackPieces, blackUnitIDs, blackPositions, whitePieces, whiteUnitIDs, whitePositions);
+		return new FenPosition(Fen.makeGame(whitePlayer, blackPlayer, board, currentPlayer, timeLeftInMS),
+			enPassantTarget, halfmoveClock, fullmoveNumber);
+	}
+
+	/**
+	 * The en passant target must be the square a pawn of the side that just moved skipped over: rank 6 with white to
+	 * move (rank 3 with black to move), with that pawn right in front of it.
+	 * @return the target square, or null for "-"
+	 */
+	private static Coordinate parseEnPassantTarget(String field, Player currentPlayer,
+	                                               Map<Integer, Piece> whitePieces, Map<Integer, Coordinate> whitePositions,
+	                                               Map<Integer, Piece> blackPieces, Map<Integer, Coordinate> blackPositions,
+	                                               String fen)
+	{
+		if(field.equals("-"))
+		{
+			return null;
+		}
+
+		boolean isWhiteToMove = currentPlayer.getPlayerType() == PlayerType.WHITE;
+		if(field.length() != 2 || field.charAt(0) < 'a' || field.charAt(0) > 'h' ||
+		   field.charAt(1) != (isWhiteToMove ? '6' : '3'))
+		{
+			throw new IllegalArgumentException("Fen.read [ERROR]: bad en passant target=" + field + " in fen=" + fen);
+		}
+
+		// y grows towards white, so the pawn that just moved sits one row further from its own side than the target
+		int x = Fen.getXPosition(field.charAt(0));
+		int pawnY = Fen.getYPosition(field.charAt(1)) + (isWhiteToMove ? 1 : -1);
+		Map<Integer, Piece> pieces = isWhiteToMove ? blackPieces : whitePieces;
+		Map<Integer, Coordinate> positions = isWhiteToMove ? blackPositions : whitePositions;
+		for(Map.Entry<Integer, Piece> entry : pieces.entrySet())
+		{
+			Coordinate position = positions.get(entry.getKey());
+			if(entry.getValue().getType() == PieceType.PAWN && position.getXPosition() == x &&
+			   position.getYPosition() == pawnY)
+			{
+				return new Coordinate(x, Fen.getYPosition(field.charAt(1)));
+			}
+		}
+		throw new IllegalArgumentException("Fen.read [ERROR]: no pawn in front of en passant target=" + field +
+			" in fen=" + fen);
+	}
+
+	private static int parseCounter(String field, int minValue, String fen)
+	{
+		int value = -1;
+		try
+		{
+			value = Integer.parseInt(field);
+		} catch(NumberFormatException e)
+		{
+			// reported below
+		}
+		if(value < minValue)
+		{
+			throw new IllegalArgumentException("Fen.read [ERROR]: bad move counter=" + field + " in fen=" + fen);
+		}
+		return value;
+	}
+
+	/**
+	 * Disqualify every king and rook of one player that the castling rights do not allow to castle.
+	 * @param homeY the y coordinate of the player's back rank
+	 */
+	private static void applyCastlingRights(Map<Integer, Piece> pieces, Map<Integer, Coordinate> positions,
+	                                        boolean kingSide, boolean queenSide, int homeY)
+	{
+		for(Map.Entry<Integer, Piece> entry : pieces.entrySet())
+		{
+			Piece piece = entry.getValue();
+			Coordinate position = positions.get(entry.getKey());
+			boolean canCastle = true;
+			switch(piece.getType())
+			{
+			case KING:
+				canCastle = (kingSide || queenSide) && position.getXPosition() == 5 && position.getYPosition() == homeY;
+				break;
+			case ROOK:
+				canCastle = position.getYPosition() == homeY &&
+					((kingSide && position.getXPosition() == 8) || (queenSide && position.getXPosition() == 1));
+				break;
+			default:
+				break;
+			}
+
+			if(!canCastle)
+			{
+				((Castleable)piece).disqualify();
+			}
+		}
+	}
+
+	/**
+	 * Write the piece placement, side to move and castling rights of a game as FEN. The game does not track en passant
+	 * or move counters, so those fields are always "- 0 1" (FenPosition.toFen() keeps the ones that were parsed).
+	 */
+	public static String toFen(Game game)
+	{
+		return Fen.toFen(game, null, 0, 1);
+	}
+
+	/**
+	 * @param enPassantTarget the en passant target square, or null for "-"
+	 */
+	public static String toFen(Game game, Coordinate enPassantTarget, int halfmoveClock, int fullmoveNumber)
+	{
+		char[] squares = new char[64];  // indexed by 8 * (y - 1) + x - 1, i.e. rank 8 first
+		for(Player player : new Player[]{game.getWhitePlayer(), game.getBlackPlayer()})
+		{
+			for(Piece piece : game.getBoard().getPieces(player))
+			{
+				Coordinate position = game.getCurrentPosition(piece);
+				char symbol = Fen.getPieceSymbol(piece.getType());
+				squares[8 * (position.getYPosition() - 1) + position.getXPosition() - 1] =
+					player.getPlayerType() == PlayerType.WHITE ? Character.toUpperCase(symbol) : symbol;
+			}
+		}
+
+		StringBuilder builder = new StringBuilder(90);
+		for(int y = 1; y <= 8; ++y)
+		{
+			int numEmpty = 0;
+			for(int x = 1; x <= 8; ++x)
+			{
+				char symbol = squares[8 * (y - 1) + x - 1];
+				if(symbol == 0)
+				{
+					numEmpty += 1;
+					continue;
+				}
+				if(numEmpty > 0)
+				{
+					builder.append(numEmpty);
+					numEmpty = 0;
+				}
+				builder.append(symbol);
+			}
+			if(numEmpty > 0)
+			{
+				builder.append(numEmpty);
+			}
+			if(y < 8)
+			{
+				builder.append('/');
+			}
+		}
+
+		builder.append(game.getCurrentPlayer().getPlayerType() == PlayerType.WHITE ? " w " : " b ");
+		int numCastlingRights = builder.length();
+		if(Fen.canCastle(game, game.getWhitePlayer(), 8, 8))
+		{
+			builder.append('K');
+		}
+		if(Fen.canCastle(game, game.getWhitePlayer(), 1, 8))
+		{
+			builder.append('Q');
+		}
+		if(Fen.canCastle(game, game.getBlackPlayer(), 8, 1))
+		{
+			builder.append('k');
+		}
+		if(Fen.canCastle(game, game.getBlackPlayer(), 1, 1))
+		{
+			builder.append('q');
+		}
+		if(builder.length() == numCastlingRights)
+		{
+			builder.append('-');
+		}
+		builder.append(' ');
+		if(enPassantTarget == null)
+		{
+			builder.append('-');
+		} else
+		{
+			builder.append((char)('a' + enPassantTarget.getXPosition() - 1)).append(9 - enPassantTarget.getYPosition());
+		}
+		return builder.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber).toString();
+	}
+
+	/**
+	 * @return whether the king on its home square and the rook on rookX of the back rank may still castle
+	 */
+	static boolean canCastle(Game game, Player player, int rookX, int homeY)
+	{
+		Piece king = game.getBoard().getPieceAtPosition(new Coordinate(5, homeY));
+		Piece rook = game.getBoard().getPieceAtPosition(new Coordinate(rookX, homeY));
+		return king != null && king.getType() == PieceType.KING && king.getPlayer().equals(player) &&
+			((Castleable)king).canCastle() && rook != null && rook.getType() == PieceType.ROOK &&
+			rook.getPlayer().equals(player) && ((Castleable)rook).canCastle();
+	}
+
+	/**
+	 * @return the lower case FEN letter of a piece type
+	 */
+	public static char getPieceSymbol(PieceType pieceType)
+	{
+		switch(pieceType)
+		{
+		case KING:
+			return 'k';
+		case QUEEN:
+			return 'q';
+		case ROOK:
+			return 'r';
+		case BISHOP:
+			return 'b';
+		case KNIGHT:
+			return 'n';
+		default:
+			return 'p';
+		}
+	}
+
+	public static PieceType getPieceType(char c)
+	{
+		switch(Character.toLowerCase(c))
+		{
+		case 'k':
+			return PieceType.KING;
+		case 'q':
+			return PieceType.QUEEN;
+		case 'r':
+			return PieceType.ROOK;
+		case 'b':
+			return PieceType.BISHOP;
+		case 'n':
+			return PieceType.KNIGHT;
+		case 'p':
+			return PieceType.PAWN;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Game only exposes a constructor that reads a SEPIA state, so we go through its private copy constructor instead
+	 * (the same one Game.copy uses).
+	 */
+	private static Game makeGame(Player whitePlayer, Player blackPlayer, Board board, Player currentPlayer,
+	                             long timeLeftInMS)
+	{
+		Map<Player, Map<PieceType, Integer> > pieceType2TemplateIDs = new HashMap<Player, Map<PieceType, Integer> >(2);
+		pieceType2TemplateIDs.put(whitePlayer, new HashMap<PieceType, Integer>());
+		pieceType2TemplateIDs.put(blackPlayer, new HashMap<PieceType, Integer>());
+
+		try
+		{
+			return Fen.GAME_CONSTRUCTOR.newInstance(blackPlayer, whitePlayer, board, currentPlayer,
+				timeLeftInMS, timeLeftInMS, pieceType2TemplateIDs);
+		} catch(ReflectiveOperationException e)
+		{
+			throw new IllegalStateException("Fen.makeGame [ERROR]: unable to construct a Game", e);
+		}
+	}
+
+	private static Constructor<Game> getGameConstructor()
+	{
+		try
+		{
+			Constructor<Game> constructor = Game.class.getDeclaredConstructor(Player.class, Player.class, Board.class,
+				Player.class, long.class, long.class, Map.class);
+			constructor.setAccessible(true);
+			return constructor;
+		} catch(ReflectiveOperationException e)
+		{
+			throw new IllegalStateException("Fen.getGameConstructor [ERROR]: Game has no copy constructor", e);
+		}
+	}
+
+}
@@ -0,0 +1,51 @@
+package src.pas.chess.utils;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.utils.Coordinate;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * A Game together with the FEN fields the Game does not track: the en passant target square and the two move
+ * counters. Note that the game engine never generates en passant captures, so the target is only carried along (for
+ * round tripping positions and keying them), the searchers do not see it.
+ */
+public class FenPosition
+    extends Object
+{
+
+	private final Game game;
+	private final Coordinate enPassantTarget;
+	private final int halfmoveClock;
+	private final int fullmoveNumber;
+
+	public FenPosition(Game game, Coordinate enPassantTarget, int halfmoveClock, int fullmoveNumber)
+	{
+		this.game = game;
+		this.enPassantTarget = enPassantTarget;
+		this.halfmoveClock = halfmoveClock;
+		this.fullmoveNumber = fullmoveNumber;
+	}
+
+	public Game getGame() { return this.game; }
+
+	/**
+	 * @return the square a pawn skipped over on the last move (SEPIA coordinates), or null if there is none
+	 */
+	public Coordinate getEnPassantTarget() { return this.enPassantTarget; }
+	public int getHalfmoveClock() { return this.halfmoveClock; }
+	public int getFullmoveNumber() { return this.fullmoveNumber; }
+
+	public String toFen()
+	{
+		return Fen.toFen(this.getGame(), this.getEnPassantTarget(), this.getHalfmoveClock(), this.getFullmoveNumber());
+	}
+
+	@Override
+	public String toString() { return this.toFen(); }
+
+}
@@ -0,0 +1,236 @@
+package src.pas.chess.utils;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.move.CaptureMove;
+import edu.bu.chess.game.move.CastleMove;
+import edu.bu.chess.game.move.MovementMove;
+import edu.bu.chess.game.move.Move;
+import edu.bu.chess.game.move.MoveType;
+import edu.bu.chess.game.move.PromotePawnMove;
+import edu.bu.chess.game.piece.Piece;
+import edu.bu.chess.game.piece.PieceType;
+import edu.bu.chess.utils.Coordinate;
+
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Prints moves either in long algebraic (coordinate) notation, e.g. "e2e4" or "e1g1" for white castling king side,
+ * or in standard algebraic notation for PGN. Promotions are their own turn in this game, so they print as the pawn's
+ * square followed by the new piece, e.g. "e8=Q", in both; PGN writers fold them into the pawn move that reached the
+ * last rank ("exf8=Q+", see foldPromotions).
+ */
+public class MoveNotation
+    extends Object
+{
+
+	// SAN of a pawn move to the last rank (optionally after a move number), and of a promotion turn
+	private static final Pattern PAWN_TO_LAST_RANK = Pattern.compile("(?:\\d+\\.+ )?(?:[a-h]x)?([a-h][18])[+#]?");
+	private static final Pattern PROMOTION = Pattern.compile("([a-h][18])=[QRBN][+#]?");
+
+	public static char getFile(int xPosition) { return (char)('a' + xPosition - 1); }
+	public static char getRank(int yPosition) { return (char)('9' - yPosition); }
+
+	public static String getSquare(Coordinate position)
+	{
+		return new StringBuilder(2).append(MoveNotation.getFile(position.getXPosition()))
+			.append(MoveNotation.getRank(position.getYPosition())).toString();
+	}
+
+	/**
+	 * @return where the moving piece ends up (for castling that is the king's square, for promotions the pawn's square)
+	 */
+	public static Coordinate getDstPosition(Game game, Move move)
+	{
+		Coordinate src = game.getCurrentPosition(move.getActorPlayer(), move.getActorPieceID());
+		switch(move.getType())
+		{
+		case MOVEMENTMOVE:
+			return ((MovementMove)move).getTargetPosition();
+		case CAPTUREMOVE:
+			CaptureMove captureMove = (CaptureMove)move;
+			return game.getCurrentPosition(captureMove.getTargetPlayer(), captureMove.getTargetPieceID());
+		case CASTLEMOVE:
+			// the king always travels two files towards the rook
+			CastleMove castleMove = (CastleMove)move;
+			Coordinate rookPosition = game.getCurrentPosition(castleMove.getRookPlayer(), castleMove.getRookPieceID());
+			return new Coordinate(src.getXPosition() + (rookPosition.getXPosition() > src.getXPosition() ? 2 : -2),
+				src.getYPosition());
+		default:
+			return src;
+		}
+	}
+
+	/**
+	 * @param game the position the move is played from (needed to look up where the moving piece stands)
+	 */
+	public static String toText(Game game, Move move)
+	{
+		Coordinate src = game.getCurrentPosition(move.getActorPlayer(), move.getActorPieceID());
+		if(move.getType() == MoveType.PROMOTEPAWNMOVE)
+		{
+			return MoveNotation.getSquare(src) + "=" +
+				Piece.getAlgebraicSymbol(((PromotePawnMove)move).getPromotedPieceType());
+		}
+		return MoveNotation.getSquare(src) + MoveNotation.getSquare(MoveNotation.getDstPosition(game, move));
+	}
+
+	/**
+	 * Standard algebraic notation (e.g. "Nbd7", "exd5", "O-O", "Qh4#") as used in PGN movetext.
+	 * Promotions print like toText does ("e8=Q") since they are played as their own turn.
+	 */
+	public static String toSan(Game game, Move move)
+	{
+		Piece piece = game.getPiece(move.getActorPlayer(), move.getActorPieceID());
+		Coordinate src = game.getCurrentPosition(piece);
+		Coordinate dst = MoveNotation.getDstPosition(game, move);
+
+		StringBuilder builder = new StringBuilder(8);
+		switch(move.getType())
+		{
+		case CASTLEMOVE:
+			builder.append(dst.getXPosition() > src.getXPosition() ? "O-O" : "O-O-O");
+			break;
+		case PROMOTEPAWNMOVE:
+			builder.append(MoveNotation.toText(game, move));
+			break;
+		default:
+			boolean isCapture = move.getType() == MoveType.CAPTUREMOVE;
+			if(piece.getType() == PieceType.PAWN)
+			{
+				if(isCapture)
+				{
+					builder.append(MoveNotation.getFile(src.getXPosition()));
+				}
+			} else
+			{
+				builder.append(piece.getAlgebraicSymbol());
+				MoveNotation.appendDisambiguation(builder, game, move, piece, src, dst);
+			}
+			if(isCapture)
+			{
+				builder.append('x');
+			}
+			builder.append(MoveNotation.getSquare(dst));
+			break;
+		}
+
+		Game nextGame = game.applyMove(move);
+		if(nextGame.isInCheck(nextGame.getCurrentPlayer()))
+		{
+			builder.append(nextGame.getAllMoves(nextGame.getCurrentPlayer()).isEmpty() ? '#' : '+');
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Add the file, rank or both of src when another piece of the same type could also move to dst.
+	 */
+	private static void appendDisambiguation(StringBuilder builder, Game game, Move move, Piece piece,
+	                                         Coordinate src, Coordinate dst)
+	{
+		boolean isAmbiguous = false;
+		boolean sameFile = false;
+		boolean sameRank = false;
+		for(Move otherMove : game.getAllMovesForPieceType(move.getActorPlayer(), piece.getType()))
+		{
+			if(otherMove.getActorPieceID() == move.getActorPieceID() || otherMove.getType() == MoveType.CASTLEMOVE ||
+			   !MoveNotation.getDstPosition(game, otherMove).equals(dst))
+			{
+				continue;
+			}
+
+			Coordinate otherSrc = game.getCurrentPosition(otherMove.getActorPlayer(), otherMove.getActorPieceID());
+			isAmbiguous = true;
+			sameFile = sameFile || otherSrc.getXPosition() == src.getXPosition();
+			sameRank = sameRank || otherSrc.getYPosition() == src.getYPosition();
+		}
+
+		if(isAmbiguous)
+		{
+			if(!sameFile)
+			{
+				builder.append(MoveNotation.getFile(src.getXPosition()));
+			} else if(!sameRank)
+			{
+				builder.append(MoveNotation.getRank(src.getYPosition()));
+			} else
+			{
+				builder.append(MoveNotation.getSquare(src));
+			}
+		}
+	}
+
+
+	/**
+	 * @return the square san (a SAN move, optionally after its move number) takes a pawn to when that is the last
+	 *         rank, where it waits for its promotion turn; null for any other move
+	 */
+	public static String getPromotingSquare(String san)
+	{
+		Matcher matcher = MoveNotation.PAWN_TO_LAST_RANK.matcher(san);
+		return matcher.matches() ? matcher.group(1) : null;
+	}
+
+	/**
+	 * @return the square of the pawn san (a SAN move) promotes, null if it is not a promotion turn
+	 */
+	public static String getPromotionSquare(String san)
+	{
+		Matcher matcher = MoveNotation.PROMOTION.matcher(san);
+		return matcher.matches() ? matcher.group(1) : null;
+	}
+
+	/**
+	 * @return pawnSan (see getPromotingSquare) with the promotion promotionSan of its pawn: "exf8" and "f8=Q+" make
+	 *         "exf8=Q+" (the check is the promotion's)
+	 */
+	public static String foldPromotion(String pawnSan, String promotionSan)
+	{
+		int end = pawnSan.length();
+		while(pawnSan.charAt(end - 1) == '+' || pawnSan.charAt(end - 1) == '#')
+		{
+			end -= 1;
+		}
+		return pawnSan.substring(0, end) + promotionSan.substring(promotionSan.indexOf('='));
+	}
+
+	/**
+	 * PGN has promotions in the pawn move, this game plays them as a later turn of the pawn's owner.
+	 * @return sanMoves (one per ply) with every promotion turn folded into the pawn move that reached the last rank and
+	 *         replaced by null (a turn without a move in the PGN); promotions of pawns that started on the last rank
+	 *         stay as they are
+	 */
+	public static List<String> foldPromotions(List<String> sanMoves)
+	{
+		List<String> folded = new ArrayList<String>(sanMoves);
+		Map<String, Integer> promotingPlies = new HashMap<String, Integer>();
+		for(int plyIdx = 0; plyIdx < folded.size(); ++plyIdx)
+		{
+			String san = folded.get(plyIdx);
+			Integer pawnPlyIdx = MoveNotation.getPromotionSquare(san) != null
+				? promotingPlies.remove(MoveNotation.getPromotionSquare(san)) : null;
+			if(pawnPlyIdx != null)
+			{
+				folded.set(pawnPlyIdx, MoveNotation.foldPromotion(folded.get(pawnPlyIdx), san));
+				folded.set(plyIdx, null);
+			} else if(MoveNotation.getPromotingSquare(san) != null)
+			{
+				promotingPlies.put(MoveNotation.getPromotingSquare(san), plyIdx);
+			}
+		}
+		return folded;
+	}
+
+}
@@ -0,0 +1,80 @@
+package src.pas.chess.utils;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * A plain text list of positions, one FEN per line. Blank lines and lines starting with '#' are ignored,
+ * and anything after a ';' on a line (EPD style annotations) is left for the caller to interpret.
+ */
+public class PositionCorpus
+    extends Object
+{
+
+	private final List<String> lines;
+
+	public PositionCorpus(List<String> lines)
+	{
+		this.lines = lines;
+	}
+
+	public List<String> getLines() { return this.lines; }
+	public int size() { return this.getLines().size(); }
+
+	/**
+	 * @return the FEN part of every line (EPD annotations after ';' removed)
+	 */
+	public List<String> getFens()
+	{
+		List<String> fens = new ArrayList<String>(this.size());
+		for(String line : this.getLines())
+		{
+			int annotationIdx = line.indexOf(';');
+			fens.add((annotationIdx >= 0 ? line.substring(0, annotationIdx) : line).trim());
+		}
+		return fens;
+	}
+
+	public List<Game> getGames()
+	{
+		List<Game> games = new ArrayList<Game>(this.size());
+		for(String fen : this.getFens())
+		{
+			games.add(Fen.parse(fen));
+		}
+		return games;
+	}
+
+	public static PositionCorpus load(String path) throws IOException
+	{
+		List<String> lines = new ArrayList<String>();
+		try(BufferedReader reader = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8))
+		{
+			String line = null;
+			while((line = reader.readLine()) != null)
+			{
+				line = line.trim();
+				if(!line.isEmpty() && !line.startsWith("#"))
+				{
+					lines.add(line);
+				}
+			}
+		}
+		return new PositionCorpus(lines);
+	}
+
+}
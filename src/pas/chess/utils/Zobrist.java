@@ -0,0 +1,98 @@
+package src.pas.chess.utils;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.piece.Piece;
+import edu.bu.chess.game.piece.PieceType;
+import edu.bu.chess.game.player.Player;
+import edu.bu.chess.game.player.PlayerType;
+import edu.bu.chess.utils.Coordinate;
+
+
+import java.util.SplittableRandom;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * 64 bit Zobrist hashes of positions: the xor of one key per (color, piece type, square), one for black to move and
+ * one per castling right that is still available. Game has no en passant target (and the engine never generates en
+ * passant captures), so it is not part of the hash.
+ *
+ * The keys come from a fixed seed, so hashes are the same in every run and can be written to disk.
+ */
+public class Zobrist
+    extends Object
+{
+
+	private static final long SEED = 0x440c4e55L;
+	private static final int NUM_PIECE_TYPES = PieceType.values().length;
+
+	private static final long[] PIECE_KEYS;           // indexed by (2 * type + color) * 64 + square
+	private static final long BLACK_TO_MOVE_KEY;
+	private static final long[] CASTLING_KEYS;        // K, Q, k, q
+
+	static
+	{
+		SplittableRandom random = new SplittableRandom(Zobrist.SEED);
+		PIECE_KEYS = new long[2 * Zobrist.NUM_PIECE_TYPES * 64];
+		for(int keyIdx = 0; keyIdx < Zobrist.PIECE_KEYS.length; ++keyIdx)
+		{
+			Zobrist.PIECE_KEYS[keyIdx] = random.nextLong();
+		}
+		BLACK_TO_MOVE_KEY = random.nextLong();
+		CASTLING_KEYS = new long[4];
+		for(int keyIdx = 0; keyIdx < Zobrist.CASTLING_KEYS.length; ++keyIdx)
+		{
+			Zobrist.CASTLING_KEYS[keyIdx] = random.nextLong();
+		}
+	}
+
+	/**
+	 * @param square 8 * (rank - 1) + file - 1 (a1 = 0), like PackedMove squares
+	 */
+	public static long getPieceKey(PlayerType playerType, PieceType pieceType, int square)
+	{
+		int color = playerType == PlayerType.WHITE ? 0 : 1;
+		return Zobrist.PIECE_KEYS[(2 * pieceType.ordinal() + color) * 64 + square];
+	}
+
+	public static long hash(Game game)
+	{
+		long hash = 0L;
+		for(Player player : new Player[]{game.getWhitePlayer(), game.getBlackPlayer()})
+		{
+			for(Piece piece : game.getBoard().getPieces(player))
+			{
+				Coordinate position = game.getCurrentPosition(piece);
+				int square = 8 * (8 - position.getYPosition()) + position.getXPosition() - 1;
+				hash ^= Zobrist.getPieceKey(player.getPlayerType(), piece.getType(), square);
+			}
+		}
+
+		if(game.getCurrentPlayer().getPlayerType() == PlayerType.BLACK)
+		{
+			hash ^= Zobrist.BLACK_TO_MOVE_KEY;
+		}
+		if(Fen.canCastle(game, game.getWhitePlayer(), 8, 8))
+		{
+			hash ^= Zobrist.CASTLING_KEYS[0];
+		}
+		if(Fen.canCastle(game, game.getWhitePlayer(), 1, 8))
+		{
+			hash ^= Zobrist.CASTLING_KEYS[1];
+		}
+		if(Fen.canCastle(game, game.getBlackPlayer(), 8, 1))
+		{
+			hash ^= Zobrist.CASTLING_KEYS[2];
+		}
+		if(Fen.canCastle(game, game.getBlackPlayer(), 1, 1))
+		{
+			hash ^= Zobrist.CASTLING_KEYS[3];
+		}
+		return hash;
+	}
+
+}